@@ -0,0 +1,55 @@
+#!/bin/bash
+# Builds the headless native image (ConsoleMain: --init, --console) and compares
+# its startup time and memory use with the JVM build. Needs GraalVM as the active
+# JDK for native-image and the tracing agent, and GNU time for the comparison.
+# Usage: ./native-console.sh [--skip-agent]
+#   --skip-agent  Reuse the reachability metadata in src/main/native-image/console
+
+set -e
+METADATA=$PWD/src/main/native-image/console
+JAR=$PWD/target/MicrOS-1.0-SNAPSHOT-jar-with-dependencies.jar
+MAIN=org.Finite.MicrOS.cli.ConsoleMain
+SESSION='help
+mkdir /agent
+cd /agent
+touch notes.txt
+ls
+pwd
+cat notes.txt
+rm notes.txt
+cd /
+logs
+clear
+exit'
+
+mvn -q clean package -DskipTests
+
+if [ "$1" != "--skip-agent" ]; then
+    # Run every console path under the agent, in a fresh directory so --init
+    # copies its resources, and merge what it records into the metadata
+    WORK=$(mktemp -d)
+    cp "$JAR" "$WORK/micros.jar"
+    AGENT="-agentlib:native-image-agent=config-merge-dir=$METADATA"
+    java "$AGENT" -cp "$WORK/micros.jar" $MAIN --help > /dev/null
+    java "$AGENT" -cp "$WORK/micros.jar" $MAIN --version > /dev/null
+    java "$AGENT" -cp "$WORK/micros.jar" $MAIN --init
+    echo "$SESSION" | java "$AGENT" -cp "$WORK/micros.jar" $MAIN --console > /dev/null
+    rm -rf "$WORK"
+fi
+
+mvn -q package -Pnative-console -DskipTests
+
+# Startup and peak RSS for an --init followed by a console session that exits at once
+compare() {
+    local name=$1
+    shift
+    local work
+    work=$(mktemp -d)
+    (cd "$work" && "$@" --init > /dev/null)
+    for i in 1 2 3 4 5; do
+        (cd "$work" && echo exit | /usr/bin/time -f "$name: %e s, %M KB max RSS" "$@" --console 2>&1 > /dev/null | tail -1)
+    done
+    rm -rf "$work"
+}
+compare JVM java -cp "$JAR" $MAIN
+compare native "$PWD/target/micros-console"
@@ -7,9 +7,15 @@ import org.Finite.MicrOS.core.VirtualFileSystem;
 import java.awt.*;
 import java.awt.image.BufferedImage;
 import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import javax.imageio.ImageIO;
 
 public class BackgroundPanel extends JPanel {
+    // Wallpapers decoded ahead of time, taken by the first panel that shows them
+    private static final Map<String, BufferedImage> preloaded = new ConcurrentHashMap<>();
+
     private BufferedImage backgroundImage;
     private Color backgroundColor;
     private final VirtualFileSystem vfs;
@@ -38,12 +44,35 @@ public class BackgroundPanel extends JPanel {
         repaint();
     }
 
-    private void loadImage(String imagePath) {
+    /**
+     * Decodes a wallpaper off the EDT so the panel that shows it doesn't
+     * have to. Colors need no preloading.
+     */
+    public static void preload(String background) {
+        if (background.startsWith("#")) {
+            return;
+        }
         try {
-            byte[] imageData = vfs.readFile(imagePath);
-            try (ByteArrayInputStream bis = new ByteArrayInputStream(imageData)) {
-                backgroundImage = ImageIO.read(bis);
+            BufferedImage image = decode(VirtualFileSystem.getInstance(), background);
+            if (image != null) {
+                preloaded.put(background, image);
             }
+        } catch (IOException e) {
+            // Reported when a panel tries to show it
+        }
+    }
+
+    private static BufferedImage decode(VirtualFileSystem vfs, String imagePath) throws IOException {
+        byte[] imageData = vfs.readFile(imagePath);
+        try (ByteArrayInputStream bis = new ByteArrayInputStream(imageData)) {
+            return ImageIO.read(bis);
+        }
+    }
+
+    private void loadImage(String imagePath) {
+        try {
+            BufferedImage image = preloaded.remove(imagePath);
+            backgroundImage = image != null ? image : decode(vfs, imagePath);
         } catch (Exception e) {
             System.err.println("Failed to load background image: " + e.getMessage());
             backgroundImage = null;
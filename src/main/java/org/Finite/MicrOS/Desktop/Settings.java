@@ -2,17 +2,25 @@ package org.Finite.MicrOS.Desktop;
 
 import javax.swing.*;
 
+import org.Finite.MicrOS.core.FileWatcher;
 import org.Finite.MicrOS.core.VirtualFileSystem;
 
 import java.awt.*;
 import java.io.*;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
 
 public class Settings {
     private static Settings instance;
-    private final Properties properties;
+    private volatile Properties properties;
     private final String settingsPath;
     private final VirtualFileSystem vfs;
+    private final List<Consumer<Set<String>>> changeListeners = new CopyOnWriteArrayList<>();
+    private boolean watching;
 
     private Settings() {
         this.vfs = VirtualFileSystem.getInstance();
@@ -47,6 +55,59 @@ public class Settings {
         }
     }
 
+    /**
+     * Reloads the settings file whenever it changes on disk, e.g. when edited
+     * by hand, and tells listeners which keys changed. Saves made through
+     * this class don't notify, since nothing changed.
+     */
+    public synchronized void watchForChanges() {
+        if (watching) {
+            return;
+        }
+        watching = true;
+        FileWatcher.watchFile(vfs.resolveVirtualPath(settingsPath).toString(), path -> reload());
+    }
+
+    /**
+     * Adds a listener called on the watcher thread with the keys changed on disk.
+     */
+    public void addChangeListener(Consumer<Set<String>> listener) {
+        changeListeners.add(listener);
+    }
+
+    private void reload() {
+        Properties loaded = new Properties();
+        try {
+            if (!vfs.exists(settingsPath)) {
+                return;
+            }
+            loaded.load(new ByteArrayInputStream(vfs.readFile(settingsPath)));
+        } catch (IOException | IllegalArgumentException e) {
+            // Partially written; the next change event will reload it
+            return;
+        }
+        Properties previous = properties;
+        Set<String> changed = new HashSet<>();
+        for (String key : loaded.stringPropertyNames()) {
+            if (!loaded.getProperty(key).equals(previous.getProperty(key))) {
+                changed.add(key);
+            }
+        }
+        for (String key : previous.stringPropertyNames()) {
+            if (!loaded.containsKey(key)) {
+                changed.add(key);
+            }
+        }
+        if (changed.isEmpty()) {
+            return;
+        }
+        // Swap the whole set so readers never see a mix of old and new values
+        properties = loaded;
+        for (Consumer<Set<String>> listener : changeListeners) {
+            listener.accept(changed);
+        }
+    }
+
     public void saveSettings() {
         try {
             ByteArrayOutputStream out = new ByteArrayOutputStream();
@@ -164,6 +164,7 @@ public class Taskbar extends JPanel {
         };
         dummyApp.setManifest(manifest);
         dummyFrame.putClientProperty("app", dummyApp);
+        windowManager.keepWarm(identifier);
         
         TaskButton pinnedButton = new TaskButton(dummyFrame) {
             @Override
@@ -12,12 +12,18 @@ import org.Finite.MicrOS.core.WindowManager;
 import org.Finite.MicrOS.apps.AppManifest;  // Add this import
 import org.Finite.MicrOS.apps.AppType;      // Add this import
 import org.Finite.MicrOS.apps.MicrOSApp;
+import org.Finite.MicrOS.core.BootSequence;
+import org.Finite.MicrOS.core.MessageBus;
+import org.Finite.MicrOS.syntax.SyntaxDefinitions;
 import org.Finite.MicrOS.ui.Console;
 import org.Finite.MicrOS.util.AsmRunner;
+import org.Finite.MicrOS.util.StartupTimer;
 import org.finite.ModuleManager.ModuleInit;
 
 import org.Finite.MicrOS.ui.ErrorDialog; // Add this import
+import org.Finite.MicrOS.ui.FontLoader;
 import org.Finite.MicrOS.ui.SplashScreen;
+import org.Finite.MicrOS.ui.WebEnginePool;
 import org.Finite.MicrOS.x11.X11Manager;
 
 import java.io.IOException;
@@ -29,6 +35,7 @@ import java.awt.event.KeyEvent;
 
 import com.beust.jcommander.JCommander;
 import org.Finite.MicrOS.cli.CommandLineArgs;
+import org.Finite.MicrOS.cli.ConsoleMain;
 
 /**
  * Main class for launching the MicrOS desktop environment.
@@ -36,8 +43,9 @@ import org.Finite.MicrOS.cli.CommandLineArgs;
 public class Main {
 
     private static WindowManager windowManager;
-    private static final String VERSION = "1.0.0";
+    private static final String VERSION = ConsoleMain.VERSION;
     private static JDesktopPane desktop; // Define desktop here
+    private static JFrame mainFrame;
     private static CommandLineArgs commandLineArgs;
 
     /**
@@ -55,20 +63,6 @@ public class Main {
         commander.setProgramName("MicrOS");
 
         try {
-            if (commandLineArgs.isX11()) {
-                try {
-                    X11Manager x11Manager = X11Manager.getInstance();
-                    x11Manager.initialize(desktop);
-
-                    // Add shutdown hook to clean up X11
-                    Runtime.getRuntime().addShutdownHook(new Thread(x11Manager::shutdown));
-
-                    System.out.println("X11 integration enabled");
-                } catch (Exception e) {
-                    System.err.println("Failed to initialize X11 integration: " + e.getMessage());
-                    System.out.println("Running without X11 integration");
-                }
-            }
             commander.parse(args);
 
             if (cliArgs.isHelp()) {
@@ -87,29 +81,21 @@ public class Main {
             }
 
             if (cliArgs.isInit()) {
-                initializeFilesystem(cliArgs.getConfigPath());
+                ConsoleMain.initializeFilesystem(cliArgs.getConfigPath());
                 return;
             }
 
             if (cliArgs.isConsoleOnly()) {
-                startConsoleMode();
+                ConsoleMain.startConsoleMode();
                 return;
             }
 
-
-            // Update fullscreen setting based on CLI argument
-            Settings settings = Settings.getInstance();
-            settings.setIsfullscreen(cliArgs.isFullscreen());
-
             // Normal startup
             // Initialize JavaFX platform
             // Platform.startup(() -> {});
 
             // ModuleInit.initallmodules();
 
-            // Initialize settings and apply look and feel
-            UIManager.setLookAndFeel(settings.getLookAndFeel());
-
         } catch (Exception e) {
             try {
 
@@ -120,30 +106,110 @@ public class Main {
             commander.usage();
             // System.exit(1);
         }
-        SwingUtilities.invokeLater(Main::Desktopenviroment);
+        boot();
     }
 
-    private static void initializeFilesystem(String configPath) {
+    /**
+     * Boots the desktop. The filesystem comes first; after it the app index,
+     * fonts and wallpaper are prepared in parallel while the look and feel is
+     * applied, and the desktop is built once the parts it needs are ready.
+     * The splash shows how many of these steps are done.
+     */
+    private static void boot() {
+        SplashScreen splash;
         try {
-            VirtualFileSystem vfs = VirtualFileSystem.getInstance();
-            if (configPath != null) {
-                // TODO: Load custom config
-                System.out.println("Initializing filesystem with config: " + configPath);
+            SplashScreen[] created = new SplashScreen[1];
+            SwingUtilities.invokeAndWait(() -> {
+                created[0] = new SplashScreen(null);
+                created[0].show();
+            });
+            splash = created[0];
+        } catch (Exception e) {
+            e.printStackTrace();
+            return;
+        }
+
+        VirtualFileSystem.deferAppLoading();
+        BootSequence boot = new BootSequence()
+            .task("vfs", VirtualFileSystem::getInstance)
+            .task("settings", () -> Settings.getInstance().setIsfullscreen(commandLineArgs.isFullscreen()), "vfs")
+            .edtTask("lookAndFeel", Main::applyLookAndFeel, "settings")
+            .task("apps", () -> VirtualFileSystem.getInstance().getAppLoader().loadApps(), "vfs")
+            .task("fonts", Main::loadFonts, "vfs")
+            .task("wallpaper", () -> BackgroundPanel.preload(Settings.getInstance().getBackground()), "settings")
+            .edtTask("desktop", Main::Desktopenviroment, "lookAndFeel", "fonts", "wallpaper");
+        if (commandLineArgs.isX11()) {
+            boot.edtTask("x11", Main::initializeX11, "desktop");
+        }
+        boot.edtTask("show", () -> mainFrame.setVisible(true), "desktop")
+            .task("hotReload", () -> startHotReload(VirtualFileSystem.getInstance()), "desktop", "apps");
+
+        int total = boot.getTaskCount();
+        try {
+            boot.run((done, name) -> {
+                splash.setStatus("Started " + name);
+                splash.setProgress(done, total);
+            });
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+        SwingUtilities.invokeLater(splash::disposeSplash);
+        // Off the boot path: only HTML windows need it
+        WebEnginePool.startInBackground();
+
+        if (commandLineArgs.isBootTrace()) {
+            System.out.print(boot.formatTimeline());
+        }
+        for (BootSequence.Timing timing : boot.getTimeline()) {
+            if (timing.failure != null) {
+                SwingUtilities.invokeLater(() ->
+                    ErrorDialog.showError(desktop, "An error occurred during startup:", timing.failure));
+                break;
             }
-            System.out.println("Filesystem initialized successfully");
+        }
+
+        if (commandLineArgs.isExitAfterBoot() || commandLineArgs.isCdsTraining()) {
+            VirtualFileSystem vfs = VirtualFileSystem.getInstance();
+            StartupTimer.onFirstPaint(millis -> SwingUtilities.invokeLater(() -> exitAfterBoot(vfs, millis)));
+        }
+    }
+
+    private static void applyLookAndFeel() {
+        try {
+            UIManager.setLookAndFeel(Settings.getInstance().getLookAndFeel());
         } catch (Exception e) {
-            System.err.println("Failed to initialize filesystem: " + e.getMessage());
-            System.exit(1);
+            throw new IllegalStateException("Failed to apply look and feel", e);
         }
     }
 
-    public static String getOS() {
-        return System.getProperty("os.name");
+    /**
+     * Registers the bundled fonts and has AWT scan the system fonts, which
+     * would otherwise happen on the EDT the first time a font is looked up.
+     */
+    private static void loadFonts() {
+        FontLoader.initializeDefaultFonts();
+        FontLoader.loadSystemFont("JetBrains Mono", "/system/fonts/JetBrainsMono-Regular.ttf");
+        GraphicsEnvironment.getLocalGraphicsEnvironment().getAvailableFontFamilyNames();
     }
 
-    private static void startConsoleMode() {
-        // TODO: Implement console-only mode
+    private static void initializeX11() {
+        try {
+            X11Manager x11Manager = X11Manager.getInstance();
+            x11Manager.initialize(desktop);
+
+            // Add shutdown hook to clean up X11
+            Runtime.getRuntime().addShutdownHook(new Thread(x11Manager::shutdown));
+
+            System.out.println("X11 integration enabled");
+        } catch (Exception e) {
+            System.err.println("Failed to initialize X11 integration: " + e.getMessage());
+            System.out.println("Running without X11 integration");
+        }
+    }
 
+    public static String getOS() {
+        return System.getProperty("os.name");
     }
 
     private static boolean isAndroid() {
@@ -152,10 +218,61 @@ public class Main {
     }
 
     /**
-     * Initializes and displays the desktop environment.
+     * Reloads app bundles, syntax definitions, themes and settings when they
+     * change on disk. Only apps whose own bundle changed are restarted.
+     */
+    private static void startHotReload(VirtualFileSystem vfs) {
+        vfs.getAppLoader().watchForChanges(identifier ->
+            SwingUtilities.invokeLater(() -> windowManager.restartApp(identifier)));
+        SyntaxDefinitions.getInstance().watchForChanges();
+
+        Settings settings = Settings.getInstance();
+        settings.addChangeListener(changed -> SwingUtilities.invokeLater(() -> {
+            if (changed.contains("lookAndFeel")) {
+                try {
+                    UIManager.setLookAndFeel(settings.getLookAndFeel());
+                    windowManager.updateLookAndFeel();
+                } catch (Exception e) {
+                    e.printStackTrace();
+                }
+            }
+            if (changed.contains("background")) {
+                windowManager.updateBackground(settings.getBackground());
+            }
+        }));
+        settings.watchForChanges();
+    }
+
+    /**
+     * Ends a benchmark or CDS training boot. A training boot first loads the
+     * classes of every installed app so the archive written at exit (see
+     * {@code -XX:ArchiveClassesAtExit}) covers them too.
+     */
+    private static void exitAfterBoot(VirtualFileSystem vfs, long startupMillis) {
+        System.out.println("Startup time: " + startupMillis + " ms (JVM start to first desktop paint)");
+        if (commandLineArgs.isCdsTraining()) {
+            int loaded = 0;
+            for (AppManifest manifest : vfs.getAppLoader().getLoadedApps()) {
+                if (manifest.isIsolated()) {
+                    continue;
+                }
+                try {
+                    loaded += vfs.getAppLoader().preloadApp(manifest.getIdentifier(), true);
+                } catch (Exception e) {
+                    System.err.println("Failed to load classes of " + manifest.getIdentifier() + ": " + e.getMessage());
+                }
+            }
+            System.out.println("CDS training loaded " + loaded + " app classes");
+        }
+        System.exit(0);
+    }
+
+    /**
+     * Builds the desktop environment; the boot sequence shows it.
      */
     public static void Desktopenviroment() {
         JFrame frame = new JFrame("MicrOS");
+        mainFrame = frame;
 
         // Set undecorated for borderless
         frame.setUndecorated(true);
@@ -178,26 +295,16 @@ public class Main {
         frame.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
         frame.setLayout(new BorderLayout());
 
-        desktop = new JDesktopPane(); // Initialize desktop here
+        desktop = new JDesktopPane() {
+            @Override
+            protected void paintComponent(Graphics g) {
+                super.paintComponent(g);
+                StartupTimer.markFirstPaint();
+            }
+        };
         VirtualFileSystem vfs = VirtualFileSystem.getInstance();
         windowManager = new WindowManager(desktop, vfs);
 
-        // Initialize X11 Manager if on Linux
-        if (commandLineArgs.isX11()) {
-            try {
-                X11Manager x11Manager = X11Manager.getInstance();
-                x11Manager.initialize(desktop);
-
-                // Add shutdown hook to clean up X11
-                Runtime.getRuntime().addShutdownHook(new Thread(x11Manager::shutdown));
-
-                System.out.println("X11 integration enabled");
-            } catch (Exception e) {
-                System.err.println("Failed to initialize X11 integration: " + e.getMessage());
-                System.out.println("Running without X11 integration");
-            }
-        }
-
         // Register ASM interpreter as a virtual program
         vfs.registerProgram("asm", args -> {
             if (args.length > 1) {
@@ -254,8 +361,6 @@ public class Main {
 
         frame.add(desktop, BorderLayout.CENTER); // Ensure desktop is added to the frame
 
-        frame.setVisible(true);
-
         // Auto-start registered apps
         SwingUtilities.invokeLater(() -> {
             try {
@@ -313,6 +418,7 @@ public class Main {
                     Thread.sleep(200);
 
                     splash.setStatus("Saving system state...");
+                    MessageBus.closeDurableTopics();
                     Thread.sleep(300);
                 }
 
@@ -0,0 +1,169 @@
+package org.Finite.MicrOS.apps;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Binary cache of parsed app manifests, keyed by bundle name and stamped
+ * with the bundle's modification times, so startup only has to parse the
+ * manifests of bundles that changed since the last run.
+ */
+class AppIndex {
+    private static final int MAGIC = 0x4D414958; // "MAIX"
+    private static final int FORMAT_VERSION = 1;
+
+    static class Entry {
+        final long stamp;
+        final AppManifest manifest;
+
+        Entry(long stamp, AppManifest manifest) {
+            this.stamp = stamp;
+            this.manifest = manifest;
+        }
+    }
+
+    private AppIndex() {
+    }
+
+    /**
+     * Changes whenever the manifest is edited or JARs are added to or removed
+     * from the bundle.
+     */
+    static long stamp(File appBundle) {
+        File contentsDir = new File(appBundle, "Contents");
+        return Math.max(
+            Math.max(appBundle.lastModified(), contentsDir.lastModified()),
+            Math.max(new File(contentsDir, "manifest.json").lastModified(),
+                new File(contentsDir, "Resources").lastModified()));
+    }
+
+    /**
+     * @return The cached entries, or an empty map if the index is missing,
+     *         from another format version or damaged
+     */
+    static Map<String, Entry> read(File indexFile) {
+        Map<String, Entry> entries = new HashMap<>();
+        if (indexFile == null || !indexFile.isFile()) {
+            return entries;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(indexFile)))) {
+            if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION) {
+                return entries;
+            }
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                String bundleName = in.readUTF();
+                long stamp = in.readLong();
+                entries.put(bundleName, new Entry(stamp, readManifest(in)));
+            }
+        } catch (IOException e) {
+            // Rebuilt from the bundles
+            entries.clear();
+        }
+        return entries;
+    }
+
+    static void write(File indexFile, Map<String, Entry> entries) {
+        if (indexFile == null) {
+            return;
+        }
+        File temp = new File(indexFile.getPath() + ".tmp");
+        try {
+            Files.createDirectories(indexFile.getParentFile().toPath());
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)))) {
+                out.writeInt(MAGIC);
+                out.writeInt(FORMAT_VERSION);
+                out.writeInt(entries.size());
+                for (Map.Entry<String, Entry> entry : entries.entrySet()) {
+                    out.writeUTF(entry.getKey());
+                    out.writeLong(entry.getValue().stamp);
+                    writeManifest(out, entry.getValue().manifest);
+                }
+            }
+            Files.move(temp.toPath(), indexFile.toPath(),
+                StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    // Mirrors the fields AppLoader.parseManifest reads
+    private static void writeManifest(DataOutputStream out, AppManifest manifest) throws IOException {
+        writeString(out, manifest.getName());
+        writeString(out, manifest.getIdentifier());
+        writeString(out, manifest.getVersion());
+        writeString(out, manifest.getMainClass());
+        writeString(out, manifest.getDescription());
+        writeString(out, manifest.getIcon());
+        writeString(out, manifest.getCategory());
+        writeString(out, manifest.getMinimumOSVersion());
+        out.writeBoolean(manifest.isIsolated());
+        writeStrings(out, manifest.getAuthors());
+        writeStrings(out, manifest.getSupportedFileTypes());
+        AppManifest.AppPermissions permissions = manifest.getPermissions();
+        out.writeBoolean(permissions != null);
+        if (permissions != null) {
+            out.writeBoolean(permissions.fileSystemAccess);
+            out.writeBoolean(permissions.networkAccess);
+            out.writeBoolean(permissions.shellAccess);
+        }
+    }
+
+    private static AppManifest readManifest(DataInputStream in) throws IOException {
+        AppManifest manifest = new AppManifest();
+        manifest.setName(readString(in));
+        manifest.setIdentifier(readString(in));
+        manifest.setVersion(readString(in));
+        manifest.setMainClass(readString(in));
+        manifest.setDescription(readString(in));
+        manifest.setIcon(readString(in));
+        manifest.setCategory(readString(in));
+        manifest.setMinimumOSVersion(readString(in));
+        manifest.setIsolated(in.readBoolean());
+        manifest.setAuthors(readStrings(in));
+        manifest.setSupportedFileTypes(readStrings(in));
+        if (in.readBoolean()) {
+            AppManifest.AppPermissions permissions = new AppManifest.AppPermissions();
+            permissions.fileSystemAccess = in.readBoolean();
+            permissions.networkAccess = in.readBoolean();
+            permissions.shellAccess = in.readBoolean();
+            manifest.setPermissions(permissions);
+        }
+        return manifest;
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeUTF(value);
+        }
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
+    private static void writeStrings(DataOutputStream out, String[] values) throws IOException {
+        out.writeInt(values != null ? values.length : -1);
+        if (values != null) {
+            for (String value : values) {
+                out.writeUTF(value);
+            }
+        }
+    }
+
+    private static String[] readStrings(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            return null;
+        }
+        String[] values = new String[length];
+        for (int i = 0; i < length; i++) {
+            values[i] = in.readUTF();
+        }
+        return values;
+    }
+}
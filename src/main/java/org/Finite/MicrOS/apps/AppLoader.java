@@ -6,37 +6,200 @@ import java.io.*;
 import java.net.URL;
 import java.net.URLClassLoader;
 import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 import java.util.jar.*;
+import org.Finite.MicrOS.core.FileWatcher;
 import org.Finite.MicrOS.ui.ErrorDialog;
 
 public class AppLoader {
-    private final Map<String, AppManifest> loadedApps = new HashMap<>();
-    private final Map<String, ClassLoader> appClassLoaders = new HashMap<>();
+    // Copying a bundle produces a burst of events; wait for it to settle
+    private static final long RELOAD_DEBOUNCE_MS = 500;
+    // How long a loader with no live instances is kept around for a quick relaunch
+    private static final long LOADER_IDLE_TIMEOUT_MS = 5 * 60 * 1000;
+
+    private final Map<String, AppManifest> loadedApps = new ConcurrentHashMap<>();
+    private final Map<String, AppClassLoader> appClassLoaders = new ConcurrentHashMap<>();
+    private final Map<MicrOSApp, AppClassLoader> liveInstances = new IdentityHashMap<>();
+    private final Map<String, String> bundleIdentifiers = new ConcurrentHashMap<>();
+    private final Map<String, File> appBundles = new ConcurrentHashMap<>();
+    private final Map<String, AppIndex.Entry> indexEntries = new ConcurrentHashMap<>();
     private final String appDirectory;
+    private final File indexFile;
+    private ExecutorService reloader;
+    private ScheduledExecutorService loaderReaper;
+
+    /**
+     * An app's class loader and the number of live instances created from
+     * it. The loader is closed, releasing its JARs and letting its classes be
+     * unloaded, once it has no instances and has either been replaced by a
+     * newer version of the bundle or sat idle for the timeout.
+     */
+    private static class AppClassLoader {
+        final URLClassLoader loader;
+        int instances;
+        boolean retired;
+        boolean closed;
+        ScheduledFuture<?> idleClose;
+
+        AppClassLoader(URLClassLoader loader) {
+            this.loader = loader;
+        }
+    }
 
     public AppLoader(String appDirectory) {
+        this(appDirectory, null);
+    }
+
+    /**
+     * @param indexFile Where to cache parsed manifests between runs, or null to always parse them
+     */
+    public AppLoader(String appDirectory, String indexFile) {
         this.appDirectory = appDirectory;
+        this.indexFile = indexFile != null ? new File(indexFile) : null;
     }
 
+    /**
+     * Registers every bundle in the app directory. Manifests of bundles
+     * unchanged since the index was written are taken from the index; the
+     * rest are parsed in parallel. Class loaders are created on first use.
+     */
     public void loadApps() {
         File dir = new File(appDirectory);
         if (!dir.exists() || !dir.isDirectory()) return;
 
+        Map<String, AppIndex.Entry> cached = AppIndex.read(indexFile);
+        List<File> changed = new ArrayList<>();
         for (File file : dir.listFiles((d, name) -> name.endsWith(".app"))) {
+            if (!file.isDirectory()) {
+                continue;
+            }
+            AppIndex.Entry entry = cached.get(file.getName());
+            if (entry != null && entry.stamp == AppIndex.stamp(file)) {
+                registerApp(file, entry);
+            } else {
+                changed.add(file);
+            }
+        }
+
+        // Parsing manifest.json dominates, so spread it over all cores
+        Map<File, Object> parsed = new ConcurrentHashMap<>();
+        changed.parallelStream().forEach(file -> {
             try {
-                loadApp(file);
+                parsed.put(file, readBundle(file));
             } catch (Exception e) {
-                ErrorDialog.showError(null, "Failed to load app: " + file.getName(), e);
+                parsed.put(file, e);
+            }
+        });
+        for (File file : changed) {
+            Object result = parsed.get(file);
+            if (result instanceof Exception) {
+                ErrorDialog.showError(null, "Failed to load app: " + file.getName(), (Exception) result);
+            } else {
+                registerApp(file, (AppIndex.Entry) result);
             }
         }
+
+        if (!changed.isEmpty() || cached.size() != indexEntries.size()) {
+            AppIndex.write(indexFile, indexEntries);
+        }
+        System.out.println("Loaded " + loadedApps.size() + " apps (" + changed.size() + " manifests parsed)");
     }
 
-    private void loadApp(File appBundle) throws Exception {
-        if (!appBundle.isDirectory() || !appBundle.getName().endsWith(".app")) {
+    /**
+     * Watches the app directory and reloads bundles in the background as
+     * they are added, changed or removed. Each reloaded app is swapped in as
+     * a whole; apps whose bundles didn't change are left alone.
+     * @param onAppChanged Called with the identifier of each reloaded or removed app
+     */
+    public synchronized void watchForChanges(Consumer<String> onAppChanged) {
+        if (reloader != null) {
+            return;
+        }
+        reloader = Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r, "app-reloader");
+            thread.setDaemon(true);
+            return thread;
+        });
+        Path root = Paths.get(appDirectory).toAbsolutePath().normalize();
+        FileWatcher.watchDirectory(root.toString(), true, RELOAD_DEBOUNCE_MS, changed -> {
+            Set<String> bundles = new LinkedHashSet<>();
+            for (Path path : changed) {
+                Path relative = root.relativize(path);
+                if (relative.getNameCount() > 0 && relative.getName(0).toString().endsWith(".app")) {
+                    bundles.add(relative.getName(0).toString());
+                }
+            }
+            if (!bundles.isEmpty()) {
+                reloader.execute(() -> {
+                    for (String bundle : bundles) {
+                        reloadBundle(new File(appDirectory, bundle), onAppChanged);
+                    }
+                    AppIndex.write(indexFile, indexEntries);
+                });
+            }
+        });
+    }
+
+    /**
+     * Loads, reloads or, if it no longer exists, unloads one bundle. Runs on
+     * the reloader thread, and directly in tests.
+     */
+    void reloadBundle(File appBundle, Consumer<String> onAppChanged) {
+        String previous = bundleIdentifiers.get(appBundle.getName());
+        if (!appBundle.isDirectory()) {
+            if (previous != null) {
+                removeApp(appBundle.getName(), previous);
+                onAppChanged.accept(previous);
+            }
             return;
         }
+        try {
+            String identifier = loadApp(appBundle);
+            if (previous != null && !previous.equals(identifier)) {
+                removeApp(null, previous);
+                onAppChanged.accept(previous);
+            }
+            onAppChanged.accept(identifier);
+        } catch (Exception e) {
+            // Most likely a bundle still being copied; the previous version stays loaded
+            System.err.println("Failed to reload app " + appBundle.getName() + ": " + e.getMessage());
+        }
+    }
+
+    private synchronized void removeApp(String bundleName, String identifier) {
+        loadedApps.remove(identifier);
+        retireClassLoader(identifier);
+        appBundles.remove(identifier);
+        if (bundleName != null) {
+            bundleIdentifiers.remove(bundleName);
+            indexEntries.remove(bundleName);
+        }
+    }
+
+    private String loadApp(File appBundle) throws Exception {
+        if (!appBundle.isDirectory() || !appBundle.getName().endsWith(".app")) {
+            return null;
+        }
+        AppIndex.Entry entry = readBundle(appBundle);
+        registerApp(appBundle, entry);
+        return entry.manifest.getIdentifier();
+    }
 
+    /**
+     * Parses a bundle's manifest. Thread-safe, so bundles can be read in parallel.
+     */
+    private AppIndex.Entry readBundle(File appBundle) throws Exception {
+        // Taken first so a change made while parsing is picked up next time
+        long stamp = AppIndex.stamp(appBundle);
         File contentsDir = new File(appBundle, "Contents");
         File manifestFile = new File(contentsDir, "manifest.json");
         File resourcesDir = new File(contentsDir, "Resources");
@@ -49,28 +212,112 @@ public class AppLoader {
         String jsonContent = new String(Files.readAllBytes(manifestFile.toPath()));
         JSONObject json = new JSONObject(jsonContent);
         
-        AppManifest manifest = parseManifest(json);
-        
-        // Create class loader for all JARs in Resources directory
-        List<URL> urls = new ArrayList<>();
-        File[] jarFiles = resourcesDir.listFiles((dir, name) -> name.endsWith(".jar"));
-        if (jarFiles != null) {
-            for (File jar : jarFiles) {
-                urls.add(jar.toURI().toURL());
+        return new AppIndex.Entry(stamp, parseManifest(json));
+    }
+
+    private void registerApp(File appBundle, AppIndex.Entry entry) {
+        String identifier = entry.manifest.getIdentifier();
+        // Swapped together so readers never pair a manifest with another version's classes
+        synchronized (this) {
+            loadedApps.put(identifier, entry.manifest);
+            appBundles.put(identifier, appBundle);
+            retireClassLoader(identifier);
+            bundleIdentifiers.put(appBundle.getName(), identifier);
+            indexEntries.put(appBundle.getName(), entry);
+        }
+    }
+
+    /**
+     * Gets the app's class loader, creating it over the JARs in the bundle's
+     * Resources directory the first time it is needed.
+     */
+    private synchronized AppClassLoader getClassLoader(String appName) throws IOException {
+        AppClassLoader loader = appClassLoaders.get(appName);
+        if (loader == null) {
+            loader = new AppClassLoader(new URLClassLoader(
+                getAppClassPath(appName).toArray(new URL[0]),
+                getClass().getClassLoader()
+            ));
+            appClassLoaders.put(appName, loader);
+        }
+        return loader;
+    }
+
+    /**
+     * Detaches the app's current loader so the next instance gets a fresh
+     * one, closing it now if nothing uses it.
+     */
+    private void retireClassLoader(String identifier) {
+        AppClassLoader loader = appClassLoaders.remove(identifier);
+        if (loader != null) {
+            loader.retired = true;
+            if (loader.instances == 0) {
+                closeClassLoader(loader);
             }
         }
-        
-        URLClassLoader classLoader = new URLClassLoader(
-            urls.toArray(new URL[0]), 
-            getClass().getClassLoader()
-        );
-        
-        // Store app info
-        loadedApps.put(manifest.getIdentifier(), manifest);
-        appClassLoaders.put(manifest.getIdentifier(), classLoader);
-        
-        System.out.println("Loaded app: " + manifest.getIdentifier() + 
-                         " with main class: " + manifest.getMainClass());
+    }
+
+    private void closeClassLoader(AppClassLoader loader) {
+        if (loader.closed) {
+            return;
+        }
+        loader.closed = true;
+        if (loader.idleClose != null) {
+            loader.idleClose.cancel(false);
+        }
+        appClassLoaders.values().remove(loader);
+        try {
+            loader.loader.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Tells the loader an instance from {@link #createAppInstance} has
+     * stopped. Calling it more than once for the same instance is harmless.
+     */
+    public synchronized void releaseAppInstance(MicrOSApp app) {
+        AppClassLoader loader = liveInstances.remove(app);
+        if (loader != null) {
+            dropInstance(loader);
+        }
+    }
+
+    private void dropInstance(AppClassLoader loader) {
+        if (--loader.instances > 0) {
+            return;
+        }
+        if (loader.retired) {
+            closeClassLoader(loader);
+            return;
+        }
+        if (loaderReaper == null) {
+            loaderReaper = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread thread = new Thread(r, "app-loader-reaper");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        loader.idleClose = loaderReaper.schedule(() -> {
+            synchronized (AppLoader.this) {
+                if (loader.instances == 0) {
+                    closeClassLoader(loader);
+                }
+            }
+        }, LOADER_IDLE_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * @return How many app class loaders are open
+     */
+    public int getOpenClassLoaderCount() {
+        Set<AppClassLoader> open = Collections.newSetFromMap(new IdentityHashMap<>());
+        synchronized (this) {
+            open.addAll(appClassLoaders.values());
+            open.addAll(liveInstances.values());
+        }
+        return open.size();
     }
 
     private AppManifest parseManifest(JSONObject json) {
@@ -83,6 +330,7 @@ public class AppLoader {
         manifest.setIcon(json.optString("icon", ""));
         manifest.setCategory(json.optString("category", "Applications"));
         manifest.setMinimumOSVersion(json.optString("minimumOSVersion", "1.0"));
+        manifest.setIsolated(json.optBoolean("isolated", false));
         
         // Parse arrays
         if (json.has("authors")) {
@@ -116,20 +364,133 @@ public class AppLoader {
         return result;
     }
 
+    /**
+     * Creates the app's class loader and loads and initializes its main
+     * class ahead of the first launch. Safe to call from any thread.
+     */
+    public void preloadApp(String appName) throws Exception {
+        preloadApp(appName, false);
+    }
+
+    /**
+     * @param allClasses Also load, without initializing, every class in the
+     *        app's JARs. Used by training boots that record classes for a
+     *        class data sharing archive.
+     * @return How many classes were loaded besides the main class
+     */
+    public int preloadApp(String appName, boolean allClasses) throws Exception {
+        AppManifest manifest;
+        AppClassLoader loader;
+        synchronized (this) {
+            manifest = loadedApps.get(appName);
+            if (manifest == null) {
+                throw new Exception("App not found: " + appName);
+            }
+            loader = getClassLoader(appName);
+            // Held like an instance so the loader can't be closed mid-load
+            loader.instances++;
+            if (loader.idleClose != null) {
+                loader.idleClose.cancel(false);
+                loader.idleClose = null;
+            }
+        }
+        try {
+            Class.forName(manifest.getMainClass(), true, loader.loader);
+            int loaded = 0;
+            if (allClasses) {
+                for (URL url : loader.loader.getURLs()) {
+                    try (JarFile jar = new JarFile(new File(url.toURI()))) {
+                        for (JarEntry entry : Collections.list(jar.entries())) {
+                            String name = entry.getName();
+                            if (!name.endsWith(".class") || name.startsWith("META-INF/")
+                                    || name.endsWith("module-info.class")) {
+                                continue;
+                            }
+                            try {
+                                // Reflecting links the class without running its
+                                // initializer; CDS only archives linked classes
+                                Class.forName(name.substring(0, name.length() - 6).replace('/', '.'),
+                                    false, loader.loader).getDeclaredMethods();
+                                loaded++;
+                            } catch (ClassNotFoundException | LinkageError e) {
+                                // Optional dependencies missing; not needed to train
+                            }
+                        }
+                    }
+                }
+            }
+            return loaded;
+        } finally {
+            synchronized (this) {
+                dropInstance(loader);
+            }
+        }
+    }
+
+    /**
+     * @return The manifest of the installed app with this identifier, or null
+     */
+    public AppManifest getManifest(String identifier) {
+        return identifier != null ? loadedApps.get(identifier) : null;
+    }
+
+    /**
+     * Creates an instance of an app. Pass it to {@link #releaseAppInstance}
+     * when it stops so the app's class loader can be reclaimed.
+     */
     public MicrOSApp createAppInstance(String appName) throws Exception {
-        AppManifest manifest = loadedApps.get(appName);
-        if (manifest == null) {
-            throw new Exception("App not found: " + appName);
+        AppManifest manifest;
+        AppClassLoader loader;
+        synchronized (this) {
+            manifest = loadedApps.get(appName);
+            if (manifest == null) {
+                throw new Exception("App not found: " + appName);
+            }
+            loader = getClassLoader(appName);
+            loader.instances++;
+            if (loader.idleClose != null) {
+                loader.idleClose.cancel(false);
+                loader.idleClose = null;
+            }
         }
 
-        ClassLoader loader = appClassLoaders.get(appName);
-        Class<?> mainClass = loader.loadClass(manifest.getMainClass());
-        
-        if (!MicrOSApp.class.isAssignableFrom(mainClass)) {
-            throw new Exception("Invalid app main class: " + manifest.getMainClass());
+        MicrOSApp app = null;
+        try {
+            Class<?> mainClass = loader.loader.loadClass(manifest.getMainClass());
+
+            if (!MicrOSApp.class.isAssignableFrom(mainClass)) {
+                throw new Exception("Invalid app main class: " + manifest.getMainClass());
+            }
+
+            app = (MicrOSApp) mainClass.getDeclaredConstructor().newInstance();
+            return app;
+        } finally {
+            synchronized (this) {
+                if (app != null) {
+                    liveInstances.put(app, loader);
+                } else {
+                    dropInstance(loader);
+                }
+            }
         }
+    }
 
-        return (MicrOSApp) mainClass.getDeclaredConstructor().newInstance();
+    /**
+     * Gets the JARs of an app, used to build the class path of an isolated app process.
+     */
+    public List<URL> getAppClassPath(String appName) throws IOException {
+        File appBundle = appBundles.get(appName);
+        if (appBundle == null) {
+            return Collections.emptyList();
+        }
+        List<URL> urls = new ArrayList<>();
+        File[] jarFiles = new File(appBundle, "Contents/Resources").listFiles((dir, name) -> name.endsWith(".jar"));
+        if (jarFiles != null) {
+            for (File jar : jarFiles) {
+                urls.add(jar.toURI().toURL());
+            }
+        }
+        return urls;
     }
 
     public Collection<AppManifest> getLoadedApps() {
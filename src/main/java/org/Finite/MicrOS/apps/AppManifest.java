@@ -18,6 +18,7 @@ public class AppManifest {
     private boolean isCLI = false;
     private String cliCommand;  // Command to invoke the app from terminal
     private String[] cliAliases = new String[0];  // Alternative command names
+    private boolean isolated = false;  // Run in a separate JVM
 
     public static class AppPermissions {
         public boolean fileSystemAccess;
@@ -86,4 +87,6 @@ public class AppManifest {
     public void setCLICommand(String command) { this.cliCommand = command; }
     public String[] getCLIAliases() { return cliAliases; }
     public void setCLIAliases(String[] aliases) { this.cliAliases = aliases; }
+    public boolean isIsolated() { return isolated; }
+    public void setIsolated(boolean isolated) { this.isolated = isolated; }
 }
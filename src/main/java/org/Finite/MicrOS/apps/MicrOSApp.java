@@ -1,6 +1,7 @@
 package org.Finite.MicrOS.apps;
 
 import javax.swing.*;
+import java.util.concurrent.CompletableFuture;
 import java.util.function.Consumer;
 
 import org.Finite.MicrOS.core.VirtualFileSystem;
@@ -93,9 +94,24 @@ public abstract class MicrOSApp {
         MessageBus.send(targetId, message);
     }
     
+    /**
+     * Sends a request to another app and returns a future for its reply.
+     */
+    protected CompletableFuture<Object> request(String targetId, Object payload, long timeoutMillis) {
+        return MessageBus.request(targetId, payload, timeoutMillis);
+    }
+    
     protected void subscribeToMessages(Consumer<Object> handler) {
         MessageBus.subscribe(getManifest().getIdentifier(), handler);
     }
+
+    /**
+     * Subscribes to messages sent to this app, choosing where the handler runs.
+     * Use {@link MessageBus.DispatchMode#EDT} for handlers that touch Swing components.
+     */
+    protected void subscribeToMessages(Consumer<Object> handler, MessageBus.DispatchMode mode) {
+        MessageBus.subscribe(getManifest().getIdentifier(), handler, mode);
+    }
     
     /**
      * Creates a MicrOSWindow for this app. Override to provide custom window decorations.
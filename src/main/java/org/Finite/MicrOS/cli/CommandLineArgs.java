@@ -27,6 +27,15 @@ public class CommandLineArgs {
     @Parameter(names = "--x11", description = "Use X11 for GUI (default is disabled, for use without a existing display server)")
     private boolean x11 = false;
 
+    @Parameter(names = "--exit-after-boot", description = "Exit once the desktop has painted, printing the startup time")
+    private boolean exitAfterBoot = false;
+
+    @Parameter(names = "--cds-training", description = "Boot, load every installed app's classes and exit, for writing a CDS archive")
+    private boolean cdsTraining = false;
+
+    @Parameter(names = "--boot-trace", description = "Print when and on which thread each boot step ran")
+    private boolean bootTrace = false;
+
     public boolean isHelp() { return help; }
     public boolean isVersion() { return version; }
     public boolean isInit() { return init; }
@@ -35,4 +44,7 @@ public class CommandLineArgs {
     public String getConfigPath() { return configPath; }
     public boolean isFullscreen() { return fullscreen; }
     public boolean isX11() { return x11; }
+    public boolean isExitAfterBoot() { return exitAfterBoot; }
+    public boolean isCdsTraining() { return cdsTraining; }
+    public boolean isBootTrace() { return bootTrace; }
 }
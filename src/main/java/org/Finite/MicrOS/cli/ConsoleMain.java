@@ -0,0 +1,75 @@
+package org.Finite.MicrOS.cli;
+
+import com.beust.jcommander.JCommander;
+import java.io.IOException;
+import org.Finite.MicrOS.core.VirtualFileSystem;
+import org.Finite.MicrOS.util.AsmRunner;
+
+/**
+ * Entry point for the headless parts of MicrOS: {@code --init} and
+ * {@code --console}. It never touches Swing or JavaFX, which keeps the
+ * native image built from it (the {@code native-console} profile) small and
+ * free of GUI toolkit metadata. {@link org.Finite.MicrOS.Main} uses the same
+ * code for these options.
+ */
+public class ConsoleMain {
+    public static final String VERSION = "1.0.0";
+
+    public static void main(String[] args) {
+        CommandLineArgs cliArgs = new CommandLineArgs();
+        JCommander commander = JCommander.newBuilder()
+                .addObject(cliArgs)
+                .build();
+        commander.setProgramName("micros-console");
+        try {
+            commander.parse(args);
+        } catch (Exception e) {
+            System.err.println(e.getMessage());
+            commander.usage();
+            System.exit(2);
+        }
+
+        if (cliArgs.isHelp()) {
+            commander.usage();
+        } else if (cliArgs.isVersion()) {
+            System.out.println("MicrOS version " + VERSION);
+        } else if (cliArgs.isInit()) {
+            initializeFilesystem(cliArgs.getConfigPath());
+        } else {
+            // The desktop isn't available here, so console mode is the default
+            startConsoleMode();
+        }
+    }
+
+    public static void initializeFilesystem(String configPath) {
+        try {
+            VirtualFileSystem vfs = VirtualFileSystem.getInstance();
+            if (configPath != null) {
+                // TODO: Load custom config
+                System.out.println("Initializing filesystem with config: " + configPath);
+            }
+            System.out.println("Filesystem initialized successfully");
+        } catch (Exception e) {
+            System.err.println("Failed to initialize filesystem: " + e.getMessage());
+            System.exit(1);
+        }
+    }
+
+    public static void startConsoleMode() {
+        // Colors are java.awt.Color; don't let AWT look for a display
+        System.setProperty("java.awt.headless", "true");
+        try {
+            VirtualFileSystem vfs = VirtualFileSystem.getInstance();
+            vfs.registerProgram("asm", args -> {
+                if (args.length > 1) {
+                    String absolutePath = vfs.resolveVirtualPath(args[1]).toAbsolutePath().toString();
+                    System.out.print(AsmRunner.RunASMFromFile(absolutePath));
+                }
+            });
+            new TerminalConsole(vfs).run();
+        } catch (IOException e) {
+            System.err.println("Console failed: " + e.getMessage());
+            System.exit(1);
+        }
+    }
+}
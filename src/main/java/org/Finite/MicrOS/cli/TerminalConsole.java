@@ -0,0 +1,78 @@
+package org.Finite.MicrOS.cli;
+
+import java.awt.Color;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import org.Finite.MicrOS.core.VirtualFileSystem;
+import org.Finite.MicrOS.ui.CommandProcessor;
+import org.Finite.MicrOS.ui.ConsoleOutput;
+
+/**
+ * The MicrOS terminal on standard input and output, for console-only mode.
+ * Colors are written as ANSI escapes when attached to a terminal.
+ */
+public class TerminalConsole implements ConsoleOutput {
+    private final CommandProcessor commandProcessor;
+    private final PrintStream out = System.out;
+    private final boolean ansi = System.console() != null && !"dumb".equals(System.getenv("TERM"));
+
+    public TerminalConsole(VirtualFileSystem vfs) {
+        this.commandProcessor = new CommandProcessor(this, vfs);
+    }
+
+    /**
+     * Reads and runs commands until {@code exit} or the end of input.
+     */
+    public void run() throws IOException {
+        appendText("MicrOS Terminal v1.0\n", Color.CYAN);
+        appendText("Type 'help' for available commands, 'exit' to quit\n\n", Color.CYAN);
+        BufferedReader in = new BufferedReader(new InputStreamReader(System.in));
+        while (true) {
+            synchronized (this) {
+                out.print(commandProcessor.getPrompt());
+                out.flush();
+            }
+            String line = in.readLine();
+            if (line == null || line.trim().equals("exit")) {
+                break;
+            }
+            if (!line.isBlank()) {
+                commandProcessor.processCommand(line);
+            }
+        }
+        out.println();
+    }
+
+    @Override
+    public synchronized void appendText(String text, Color color) {
+        if (ansi && color != null) {
+            out.print("\u001B[38;2;" + color.getRed() + ";" + color.getGreen() + ";" + color.getBlue() + "m"
+                + text + "\u001B[0m");
+        } else {
+            out.print(text);
+        }
+        out.flush();
+    }
+
+    @Override
+    public synchronized void clear() {
+        if (ansi) {
+            out.print("\u001B[H\u001B[2J");
+            out.flush();
+        }
+    }
+
+    @Override
+    public void setPrompt(String prompt) {
+        // The prompt is printed fresh before each command is read
+    }
+
+    @Override
+    public void invokeLater(Runnable output) {
+        synchronized (this) {
+            output.run();
+        }
+    }
+}
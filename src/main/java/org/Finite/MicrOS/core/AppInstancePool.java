@@ -0,0 +1,297 @@
+package org.Finite.MicrOS.core;
+
+import java.awt.Toolkit;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import javax.swing.JComponent;
+import javax.swing.Timer;
+import org.Finite.MicrOS.apps.AppLoader;
+import org.Finite.MicrOS.apps.AppManifest;
+import org.Finite.MicrOS.apps.MicrOSApp;
+
+/**
+ * Keeps initialized instances of pinned and frequently launched apps ready so
+ * their windows open without waiting for class loading, the app's
+ * {@code initialize} and its {@code createUI}. Classes are loaded on a
+ * background thread; instances are built on the EDT, one per tick and only
+ * while the event queue is empty, so warming never delays user input.
+ *
+ * <p>How many instances an app gets depends on a launch score that decays
+ * over a few days and is kept in the registry across runs. Apps launched
+ * several times in quick succession get a second instance.
+ *
+ * <p>Everything except class preloading happens on the EDT.
+ */
+class AppInstancePool {
+    private static final int IDLE_CHECK_MS = 500;
+    private static final int MAX_POOLED = 6;
+    private static final int MAX_PER_APP = 2;
+    // Roughly "launched three times in the last few days"
+    private static final double FREQUENT_SCORE = 3.0;
+    private static final long SCORE_HALF_LIFE_MS = 3L * 24 * 60 * 60 * 1000;
+    private static final long BURST_WINDOW_MS = 60 * 1000;
+    private static final String STATS_NAMESPACE = "org.finite.micros.launches";
+
+    /**
+     * An app instance that has been initialized and has built its UI, but
+     * hasn't been started.
+     */
+    static final class WarmApp {
+        final MicrOSApp app;
+        final JComponent ui;
+
+        private WarmApp(MicrOSApp app, JComponent ui) {
+            this.app = app;
+            this.ui = ui;
+        }
+    }
+
+    private static final class LaunchScore {
+        final double score;
+        final long updatedAt;
+
+        LaunchScore(double score, long updatedAt) {
+            this.score = score;
+            this.updatedAt = updatedAt;
+        }
+
+        double at(long now) {
+            return score * Math.pow(0.5, (double) Math.max(0, now - updatedAt) / SCORE_HALF_LIFE_MS);
+        }
+    }
+
+    private final WindowManager windowManager;
+    private final VirtualFileSystem vfs;
+    private final Map<String, Deque<WarmApp>> pool = new HashMap<>();
+    private final Set<String> pinned = new LinkedHashSet<>();
+    private final Map<String, Deque<Long>> recentLaunches = new HashMap<>();
+    // Apps whose instances failed to build; retried only after a reload
+    private final Set<String> failed = ConcurrentHashMap.newKeySet();
+    private final Map<String, LaunchScore> scores = new ConcurrentHashMap<>();
+    private final Set<String> preloaded = ConcurrentHashMap.newKeySet();
+    private final Set<String> preloading = ConcurrentHashMap.newKeySet();
+    private final ExecutorService preloader = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "app-prewarm");
+        thread.setDaemon(true);
+        thread.setPriority(Thread.MIN_PRIORITY);
+        return thread;
+    });
+    private final Timer idleTimer;
+    private Registry.Namespace stats;
+
+    AppInstancePool(WindowManager windowManager, VirtualFileSystem vfs) {
+        this.windowManager = windowManager;
+        this.vfs = vfs;
+        this.idleTimer = new Timer(IDLE_CHECK_MS, e -> warmNext());
+        this.idleTimer.setInitialDelay(IDLE_CHECK_MS * 4);
+    }
+
+    /**
+     * Loads the launch history and starts warming in idle time.
+     */
+    void start() {
+        preloader.execute(() -> {
+            try {
+                Registry.Namespace namespace = stats();
+                for (String key : namespace.keySet()) {
+                    Object value = namespace.get(key);
+                    if (key.startsWith("score.") && value instanceof Double) {
+                        Object updatedAt = namespace.get("at." + key.substring(6));
+                        scores.putIfAbsent(key.substring(6), new LaunchScore((Double) value,
+                            updatedAt instanceof Long ? (Long) updatedAt : System.currentTimeMillis()));
+                    }
+                }
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+        });
+        idleTimer.start();
+    }
+
+    /**
+     * Keeps at least one instance of the app warm, e.g. because it is
+     * pinned to the taskbar.
+     */
+    void pin(String identifier) {
+        pinned.add(identifier);
+    }
+
+    /**
+     * Records a launch of the app and hands out a warm instance if there is one.
+     * @return The instance, or null if the caller has to create one
+     */
+    WarmApp take(String identifier) {
+        recordLaunch(identifier);
+        Deque<WarmApp> instances = pool.get(identifier);
+        WarmApp warm = instances != null ? instances.pollFirst() : null;
+        if (instances != null && instances.isEmpty()) {
+            pool.remove(identifier);
+        }
+        return warm;
+    }
+
+    /**
+     * Discards the app's warm instances, e.g. because its bundle changed.
+     */
+    void invalidate(String identifier) {
+        Deque<WarmApp> instances = pool.remove(identifier);
+        if (instances != null) {
+            for (WarmApp warm : instances) {
+                discard(vfs.getAppLoader(), identifier, warm.app);
+            }
+        }
+        preloaded.remove(identifier);
+        failed.remove(identifier);
+    }
+
+    int getPooledCount() {
+        int count = 0;
+        for (Deque<WarmApp> instances : pool.values()) {
+            count += instances.size();
+        }
+        return count;
+    }
+
+    private void recordLaunch(String identifier) {
+        long now = System.currentTimeMillis();
+        LaunchScore score = scores.merge(identifier, new LaunchScore(1, now),
+            (old, launch) -> new LaunchScore(old.at(now) + 1, now));
+        Deque<Long> recent = recentLaunches.computeIfAbsent(identifier, k -> new ArrayDeque<>());
+        recent.addLast(now);
+        while (recent.size() > MAX_PER_APP + 1) {
+            recent.removeFirst();
+        }
+        preloader.execute(() -> {
+            try {
+                stats().put("score." + identifier, score.score);
+                stats().put("at." + identifier, score.updatedAt);
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+        });
+    }
+
+    private synchronized Registry.Namespace stats() {
+        if (stats == null) {
+            stats = Registry.forApp(STATS_NAMESPACE);
+        }
+        return stats;
+    }
+
+    /**
+     * @return How many warm instances the app should have right now
+     */
+    private int targetSize(String identifier, long now) {
+        LaunchScore score = scores.get(identifier);
+        int target = pinned.contains(identifier) || (score != null && score.at(now) >= FREQUENT_SCORE) ? 1 : 0;
+        Deque<Long> recent = recentLaunches.get(identifier);
+        if (recent != null && recent.size() >= 2 && now - recent.peekLast() < BURST_WINDOW_MS
+                && recent.peekLast() - recent.peekFirst() < BURST_WINDOW_MS) {
+            target++;
+        }
+        return Math.min(MAX_PER_APP, target);
+    }
+
+    private double priority(String identifier, long now) {
+        LaunchScore score = scores.get(identifier);
+        return (pinned.contains(identifier) ? FREQUENT_SCORE : 0) + (score != null ? score.at(now) : 0);
+    }
+
+    /**
+     * Does one step of warming: drops instances no longer wanted, or starts
+     * preloading or building an instance for the most launched app short of
+     * its target.
+     */
+    private void warmNext() {
+        if (Toolkit.getDefaultToolkit().getSystemEventQueue().peekEvent() != null) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        AppLoader loader = vfs.getAppLoader();
+        Map<String, AppManifest> installed = new HashMap<>();
+        for (AppManifest manifest : loader.getLoadedApps()) {
+            if (!manifest.isIsolated()) {
+                installed.put(manifest.getIdentifier(), manifest);
+            }
+        }
+
+        for (String identifier : new ArrayList<>(pool.keySet())) {
+            Deque<WarmApp> instances = pool.get(identifier);
+            int target = installed.containsKey(identifier) ? targetSize(identifier, now) : 0;
+            while (instances.size() > target) {
+                discard(loader, identifier, instances.pollLast().app);
+            }
+            if (instances.isEmpty()) {
+                pool.remove(identifier);
+            }
+        }
+        if (getPooledCount() >= MAX_POOLED) {
+            return;
+        }
+
+        Set<String> candidates = new HashSet<>(pinned);
+        candidates.addAll(scores.keySet());
+        String next = null;
+        for (String identifier : candidates) {
+            Deque<WarmApp> instances = pool.get(identifier);
+            int pooled = instances != null ? instances.size() : 0;
+            if (installed.containsKey(identifier) && !failed.contains(identifier)
+                    && pooled < targetSize(identifier, now)
+                    && (next == null || priority(identifier, now) > priority(next, now))) {
+                next = identifier;
+            }
+        }
+        if (next == null) {
+            return;
+        }
+
+        String identifier = next;
+        if (!preloaded.contains(identifier)) {
+            if (preloading.add(identifier)) {
+                preloader.execute(() -> {
+                    try {
+                        loader.preloadApp(identifier);
+                        preloaded.add(identifier);
+                    } catch (Throwable e) {
+                        // Left to the normal launch path to report
+                        failed.add(identifier);
+                        System.err.println("Failed to preload " + identifier + ": " + e);
+                    } finally {
+                        preloading.remove(identifier);
+                    }
+                });
+            }
+            return;
+        }
+
+        MicrOSApp app = null;
+        try {
+            app = loader.createAppInstance(identifier);
+            app.setManifest(installed.get(identifier));
+            app.initialize(windowManager, vfs);
+            JComponent ui = app.createUI();
+            pool.computeIfAbsent(identifier, k -> new ArrayDeque<>()).addLast(new WarmApp(app, ui));
+        } catch (Throwable e) {
+            failed.add(identifier);
+            if (app != null) {
+                loader.releaseAppInstance(app);
+            }
+            System.err.println("Failed to prewarm " + identifier + ": " + e);
+        }
+    }
+
+    /**
+     * Stops a warm instance that will never be shown, the same way closing
+     * its window would, and releases it.
+     */
+    private static void discard(AppLoader loader, String identifier, MicrOSApp app) {
+        try {
+            app.onStop();
+        } catch (Exception e) {
+            System.err.println("Failed to stop pooled " + identifier + ": " + e);
+        }
+        loader.releaseAppInstance(app);
+    }
+}
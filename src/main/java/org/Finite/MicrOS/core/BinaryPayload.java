@@ -0,0 +1,226 @@
+package org.Finite.MicrOS.core;
+
+import java.io.ObjectStreamException;
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Compact binary message for MessageBus and Intent extras, laid out by a
+ * {@link PayloadSchema}. This is a flyweight over the encoded bytes: fields
+ * are decoded only when they are read, and byte fields are returned as views
+ * of the underlying buffer rather than copies.
+ * <p>
+ * Payloads built by a {@link PayloadWriter} live in pooled direct memory and
+ * are reference counted. The creator owns one reference and should
+ * {@link #release()} it when done; MessageBus retains payloads for queued
+ * deliveries and releases them after the handler returns. A subscriber that
+ * keeps a payload beyond its handler must {@link #retain()} it.
+ */
+public final class BinaryPayload implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private final transient PayloadSchema schema;
+    private final transient ByteBuffer buffer;
+    private final transient int size;
+    private final transient boolean pooled;
+    private final transient AtomicInteger references = new AtomicInteger(1);
+
+    BinaryPayload(PayloadSchema schema, ByteBuffer buffer, int size, boolean pooled) {
+        this.schema = schema;
+        this.buffer = buffer;
+        this.size = size;
+        this.pooled = pooled;
+    }
+
+    /**
+     * Wraps an encoded payload, e.g. one received from another process,
+     * without copying it. The buffer is read from its current position.
+     * @throws IllegalArgumentException if the data was encoded with a different schema
+     */
+    public static BinaryPayload wrap(PayloadSchema schema, ByteBuffer data) {
+        ByteBuffer view = data.slice();
+        if (view.remaining() < PayloadSchema.HEADER_SIZE || view.getInt(0) != schema.getSchemaHash()) {
+            throw new IllegalArgumentException("Payload was not encoded with schema " + schema.getName());
+        }
+        int size = view.getInt(4);
+        if (size < schema.getFixedSize() || size > view.remaining()) {
+            throw new IllegalArgumentException("Truncated payload for schema " + schema.getName());
+        }
+        return new BinaryPayload(schema, view.limit(size).slice(), size, false);
+    }
+
+    public PayloadSchema getSchema() {
+        return schema;
+    }
+
+    /**
+     * Gets the encoded size in bytes.
+     */
+    public int size() {
+        return size;
+    }
+
+    public boolean getBoolean(String field) {
+        return getBoolean(index(field));
+    }
+
+    public boolean getBoolean(int index) {
+        return buffer().get(offset(index, PayloadSchema.FieldType.BOOLEAN)) != 0;
+    }
+
+    public int getInt(String field) {
+        return getInt(index(field));
+    }
+
+    public int getInt(int index) {
+        return buffer().getInt(offset(index, PayloadSchema.FieldType.INT));
+    }
+
+    public long getLong(String field) {
+        return getLong(index(field));
+    }
+
+    public long getLong(int index) {
+        return buffer().getLong(offset(index, PayloadSchema.FieldType.LONG));
+    }
+
+    public double getDouble(String field) {
+        return getDouble(index(field));
+    }
+
+    public double getDouble(int index) {
+        return buffer().getDouble(offset(index, PayloadSchema.FieldType.DOUBLE));
+    }
+
+    public String getString(String field) {
+        return getString(index(field));
+    }
+
+    public String getString(int index) {
+        ByteBuffer data = variable(index, PayloadSchema.FieldType.STRING);
+        return data != null ? StandardCharsets.UTF_8.decode(data).toString() : null;
+    }
+
+    public ByteBuffer getBytes(String field) {
+        return getBytes(index(field));
+    }
+
+    /**
+     * Gets a read-only view of a byte field. The view shares the payload's
+     * memory and is only valid while the payload is retained.
+     */
+    public ByteBuffer getBytes(int index) {
+        ByteBuffer data = variable(index, PayloadSchema.FieldType.BYTES);
+        return data != null ? data.asReadOnlyBuffer() : null;
+    }
+
+    /**
+     * Gets a field as a boxed value, or null if the schema has no such field.
+     */
+    public Object get(String field) {
+        int index = schema.indexOf(field);
+        if (index < 0) return null;
+        switch (schema.getFieldType(index)) {
+            case BOOLEAN: return getBoolean(index);
+            case INT: return getInt(index);
+            case LONG: return getLong(index);
+            case DOUBLE: return getDouble(index);
+            case STRING: return getString(index);
+            default: return getBytes(index);
+        }
+    }
+
+    /**
+     * Gets a read-only view of the complete encoded payload, suitable for
+     * {@link #wrap} on the receiving side.
+     */
+    public ByteBuffer asReadOnlyBuffer() {
+        return buffer().duplicate().limit(size).position(0).slice().asReadOnlyBuffer();
+    }
+
+    /**
+     * Adds a reference, keeping the payload's memory alive until a matching {@link #release()}.
+     * @throws IllegalStateException if the payload was already released
+     */
+    public BinaryPayload retain() {
+        int current;
+        do {
+            current = references.get();
+            if (current <= 0) {
+                throw new IllegalStateException("Payload has been released");
+            }
+        } while (!references.compareAndSet(current, current + 1));
+        return this;
+    }
+
+    /**
+     * Drops a reference. When the last one is released a pooled buffer goes
+     * back to the pool and the payload can no longer be read.
+     */
+    public void release() {
+        int remaining = references.decrementAndGet();
+        if (remaining == 0 && pooled) {
+            BufferPool.release(buffer);
+        } else if (remaining < 0) {
+            throw new IllegalStateException("Payload released too many times");
+        }
+    }
+
+    private ByteBuffer buffer() {
+        if (references.get() <= 0) {
+            throw new IllegalStateException("Payload has been released");
+        }
+        return buffer;
+    }
+
+    private int index(String field) {
+        int index = schema.indexOf(field);
+        if (index < 0) {
+            throw new IllegalArgumentException("Unknown field " + field + " in " + schema.getName());
+        }
+        return index;
+    }
+
+    private int offset(int index, PayloadSchema.FieldType expected) {
+        if (schema.getFieldType(index) != expected) {
+            throw new IllegalArgumentException("Field " + schema.getFieldName(index)
+                + " is " + schema.getFieldType(index) + ", not " + expected);
+        }
+        return schema.offsetOf(index);
+    }
+
+    private ByteBuffer variable(int index, PayloadSchema.FieldType expected) {
+        int slot = offset(index, expected);
+        ByteBuffer data = buffer();
+        int length = data.getInt(slot + 4);
+        if (length < 0) return null;
+        return data.slice(data.getInt(slot), length);
+    }
+
+    private Object writeReplace() throws ObjectStreamException {
+        ByteBuffer encoded = asReadOnlyBuffer();
+        byte[] bytes = new byte[encoded.remaining()];
+        encoded.get(bytes);
+        return new SerialForm(schema, bytes);
+    }
+
+    /**
+     * Java serialization form, used when payloads are written to durable topics.
+     */
+    private static final class SerialForm implements Serializable {
+        private static final long serialVersionUID = 1L;
+        private final PayloadSchema schema;
+        private final byte[] bytes;
+
+        SerialForm(PayloadSchema schema, byte[] bytes) {
+            this.schema = schema;
+            this.bytes = bytes;
+        }
+
+        private Object readResolve() throws ObjectStreamException {
+            return wrap(schema, ByteBuffer.wrap(bytes));
+        }
+    }
+}
@@ -0,0 +1,225 @@
+package org.Finite.MicrOS.core;
+
+import java.lang.management.ManagementFactory;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.BiConsumer;
+import javax.swing.SwingUtilities;
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Boot as a graph of named tasks. Each task starts as soon as the tasks it
+ * depends on have finished, so independent work runs in parallel; tasks
+ * that touch Swing are run on the EDT. A task can only depend on tasks added
+ * before it, which rules out cycles.
+ *
+ * <p>A failing task is logged and its dependents still run, since most boot
+ * steps (fonts, wallpaper) have a fallback. Every task is recorded as a
+ * {@code org.finite.micros.BootPhase} JFR event and in a timeline that
+ * {@link #formatTimeline()} renders for {@code --boot-trace}.
+ */
+public class BootSequence {
+    private final Map<String, Task> tasks = new LinkedHashMap<>();
+    private final ExecutorService workers;
+    private final long jvmStartMillis = ManagementFactory.getRuntimeMXBean().getStartTime();
+
+    @Name("org.finite.micros.BootPhase")
+    @Label("Boot Phase")
+    @Category({"MicrOS", "Boot"})
+    @Description("A task of the MicrOS boot sequence")
+    static final class BootPhaseEvent extends Event {
+        @Label("Phase")
+        String phase;
+
+        @Label("Failed")
+        boolean failed;
+    }
+
+    /**
+     * When and where one task ran. Times are milliseconds since JVM start.
+     */
+    public static final class Timing {
+        public final String name;
+        public final String thread;
+        public final long startMillis;
+        public final long endMillis;
+        public final Throwable failure;
+
+        private Timing(String name, String thread, long startMillis, long endMillis, Throwable failure) {
+            this.name = name;
+            this.thread = thread;
+            this.startMillis = startMillis;
+            this.endMillis = endMillis;
+            this.failure = failure;
+        }
+    }
+
+    private static final class Task {
+        final String name;
+        final Runnable action;
+        final boolean onEdt;
+        final List<String> dependencies;
+        volatile Timing timing;
+
+        Task(String name, Runnable action, boolean onEdt, List<String> dependencies) {
+            this.name = name;
+            this.action = action;
+            this.onEdt = onEdt;
+            this.dependencies = dependencies;
+        }
+    }
+
+    public BootSequence() {
+        int threads = Math.max(2, Math.min(4, Runtime.getRuntime().availableProcessors()));
+        this.workers = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+            private int count;
+
+            @Override
+            public synchronized Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "boot-" + (++count));
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    /**
+     * Adds a task that runs on a boot worker thread.
+     */
+    public BootSequence task(String name, Runnable action, String... dependsOn) {
+        return add(name, action, false, dependsOn);
+    }
+
+    /**
+     * Adds a task that runs on the EDT.
+     */
+    public BootSequence edtTask(String name, Runnable action, String... dependsOn) {
+        return add(name, action, true, dependsOn);
+    }
+
+    private BootSequence add(String name, Runnable action, boolean onEdt, String... dependsOn) {
+        if (tasks.containsKey(name)) {
+            throw new IllegalArgumentException("Duplicate boot task: " + name);
+        }
+        for (String dependency : dependsOn) {
+            if (!tasks.containsKey(dependency)) {
+                throw new IllegalArgumentException("Boot task " + name + " depends on unknown task " + dependency);
+            }
+        }
+        tasks.put(name, new Task(name, action, onEdt, Arrays.asList(dependsOn)));
+        return this;
+    }
+
+    /**
+     * Runs every task and waits for all of them. Must not be called on the
+     * EDT, which EDT tasks need.
+     * @param onProgress Called after each task with the number finished and the task's name
+     */
+    public void run(BiConsumer<Integer, String> onProgress) throws InterruptedException {
+        if (SwingUtilities.isEventDispatchThread()) {
+            throw new IllegalStateException("BootSequence.run would deadlock on the EDT");
+        }
+        Map<String, CompletableFuture<Void>> futures = new HashMap<>();
+        CountDownLatch remaining = new CountDownLatch(tasks.size());
+        int[] finished = {0};
+        for (Task task : tasks.values()) {
+            CompletableFuture<?>[] dependencies = task.dependencies.stream()
+                .map(futures::get)
+                .toArray(CompletableFuture[]::new);
+            Executor executor = task.onEdt ? SwingUtilities::invokeLater : workers;
+            futures.put(task.name, CompletableFuture.allOf(dependencies).thenRunAsync(() -> {
+                try {
+                    execute(task);
+                    int done;
+                    synchronized (finished) {
+                        done = ++finished[0];
+                    }
+                    if (onProgress != null) {
+                        onProgress.accept(done, task.name);
+                    }
+                } catch (RuntimeException e) {
+                    // A broken progress callback (e.g. the splash) must not hang boot
+                    System.err.println("Boot progress for " + task.name + " failed:");
+                    e.printStackTrace();
+                } finally {
+                    remaining.countDown();
+                }
+            }, executor));
+        }
+        remaining.await();
+        workers.shutdown();
+    }
+
+    public int getTaskCount() {
+        return tasks.size();
+    }
+
+    private void execute(Task task) {
+        BootPhaseEvent event = new BootPhaseEvent();
+        event.phase = task.name;
+        event.begin();
+        long start = System.currentTimeMillis();
+        Throwable failure = null;
+        try {
+            task.action.run();
+        } catch (Throwable e) {
+            failure = e;
+            System.err.println("Boot task " + task.name + " failed:");
+            e.printStackTrace();
+        }
+        event.failed = failure != null;
+        event.commit();
+        task.timing = new Timing(task.name, Thread.currentThread().getName(),
+            start - jvmStartMillis, System.currentTimeMillis() - jvmStartMillis, failure);
+    }
+
+    /**
+     * @return The tasks that have run, in the order they started
+     */
+    public List<Timing> getTimeline() {
+        List<Timing> timeline = new ArrayList<>();
+        for (Task task : tasks.values()) {
+            if (task.timing != null) {
+                timeline.add(task.timing);
+            }
+        }
+        timeline.sort(Comparator.comparingLong(timing -> timing.startMillis));
+        return timeline;
+    }
+
+    /**
+     * Renders the timeline as a table with a bar per task, spanning from the
+     * first task's start to the last task's end.
+     */
+    public String formatTimeline() {
+        List<Timing> timeline = getTimeline();
+        long begin = timeline.isEmpty() ? 0 : timeline.get(0).startMillis;
+        long end = begin + 1;
+        int nameWidth = 4;
+        for (Timing timing : timeline) {
+            end = Math.max(end, timing.endMillis);
+            nameWidth = Math.max(nameWidth, timing.name.length());
+        }
+        final int barWidth = 40;
+        long span = end - begin;
+        StringBuilder out = new StringBuilder();
+        out.append(String.format("%-" + nameWidth + "s %7s %7s  %-16s %s%n", "Task", "Start", "Took", "Thread", "Timeline"));
+        for (Timing timing : timeline) {
+            int from = (int) ((timing.startMillis - begin) * barWidth / span);
+            int to = Math.max(from + 1, (int) ((timing.endMillis - begin) * barWidth / span));
+            StringBuilder bar = new StringBuilder();
+            for (int i = 0; i < barWidth; i++) {
+                bar.append(i >= from && i < to ? '#' : '.');
+            }
+            out.append(String.format("%-" + nameWidth + "s %7d %7d  %-16s %s%s%n", timing.name,
+                timing.startMillis, timing.endMillis - timing.startMillis, timing.thread, bar,
+                timing.failure != null ? "  FAILED: " + timing.failure : ""));
+        }
+        out.append(String.format("Start is in ms since JVM start; boot finished at %d ms%n", end));
+        return out.toString();
+    }
+}
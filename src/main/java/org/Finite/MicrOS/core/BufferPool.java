@@ -0,0 +1,68 @@
+package org.Finite.MicrOS.core;
+
+import java.nio.ByteBuffer;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Pool of direct ByteBuffers in power-of-two size classes, used to encode
+ * {@link BinaryPayload}s without allocating native memory per message.
+ * Requests larger than the biggest size class get an unpooled buffer.
+ */
+final class BufferPool {
+    private static final int MIN_SHIFT = 8;    // 256 bytes
+    private static final int MAX_SHIFT = 20;   // 1 MB
+    private static final int MAX_BUFFERS_PER_CLASS = 32;
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static final Queue<ByteBuffer>[] pools = new Queue[MAX_SHIFT - MIN_SHIFT + 1];
+    private static final AtomicInteger[] counts = new AtomicInteger[pools.length];
+
+    static {
+        for (int i = 0; i < pools.length; i++) {
+            pools[i] = new ConcurrentLinkedQueue<>();
+            counts[i] = new AtomicInteger();
+        }
+    }
+
+    private BufferPool() {
+    }
+
+    /**
+     * Gets a cleared direct buffer with at least the requested capacity.
+     */
+    static ByteBuffer acquire(int size) {
+        int sizeClass = sizeClassOf(size);
+        if (sizeClass >= pools.length) {
+            return ByteBuffer.allocateDirect(size);
+        }
+        ByteBuffer buffer = pools[sizeClass].poll();
+        if (buffer == null) {
+            return ByteBuffer.allocateDirect(1 << (sizeClass + MIN_SHIFT));
+        }
+        counts[sizeClass].decrementAndGet();
+        buffer.clear();
+        return buffer;
+    }
+
+    /**
+     * Returns a buffer to the pool. The caller must not touch it afterwards.
+     */
+    static void release(ByteBuffer buffer) {
+        int capacity = buffer.capacity();
+        if (!buffer.isDirect() || Integer.bitCount(capacity) != 1 || capacity < 1 << MIN_SHIFT) return;
+        int sizeClass = sizeClassOf(capacity);
+        if (sizeClass >= pools.length) return;
+        if (counts[sizeClass].incrementAndGet() <= MAX_BUFFERS_PER_CLASS) {
+            pools[sizeClass].offer(buffer);
+        } else {
+            counts[sizeClass].decrementAndGet();
+        }
+    }
+
+    private static int sizeClassOf(int size) {
+        int shift = 32 - Integer.numberOfLeadingZeros(Math.max(size, 1 << MIN_SHIFT) - 1);
+        return shift - MIN_SHIFT;
+    }
+}
@@ -0,0 +1,386 @@
+package org.Finite.MicrOS.core;
+
+import java.io.*;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+/**
+ * Append-only, segmented message log backing a durable MessageBus topic.
+ * Segments are fixed-size memory-mapped files named after the offset of their
+ * first record. Each record is a 4-byte length followed by the serialized
+ * message; the length is written last, so a zero length marks the end of the
+ * valid data even after a crash. Consumers persist their position in small
+ * mapped offset files and resume from it when they subscribe again. A
+ * consumer's offset moves past a message only once its handler has returned,
+ * so a crash mid-handler redelivers that message: delivery is at-least-once.
+ */
+class DurableTopicLog {
+    static final String BUS_DIRECTORY = "/system/bus";
+
+    private static final int SEGMENT_SIZE = 4 * 1024 * 1024;
+    private static final String SEGMENT_SUFFIX = ".seg";
+    private static final String OFFSET_SUFFIX = ".offset";
+    private static final Reader[] NO_READERS = new Reader[0];
+
+    private final Path directory;
+    private final long retentionBytes;
+    private final Executor executor;
+    private final ConcurrentSkipListMap<Long, Segment> segments = new ConcurrentSkipListMap<>();
+    private Segment active;
+    private volatile long nextOffset;
+    private volatile Reader[] readers = NO_READERS;
+
+    DurableTopicLog(String topic, long retentionBytes, Executor executor) throws IOException {
+        this.directory = VirtualFileSystem.getInstance()
+            .resolveVirtualPath(BUS_DIRECTORY + "/" + fileName(topic));
+        this.retentionBytes = retentionBytes;
+        this.executor = executor;
+        Files.createDirectories(directory.resolve("consumers"));
+        recover();
+    }
+
+    /**
+     * Maps existing segments and finds the end of the last one.
+     */
+    private void recover() throws IOException {
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "*" + SEGMENT_SUFFIX)) {
+            for (Path path : stream) {
+                String name = path.getFileName().toString();
+                long base = Long.parseLong(name.substring(0, name.length() - SEGMENT_SUFFIX.length()));
+                segments.put(base, Segment.open(path, base, 0));
+            }
+        }
+        if (segments.isEmpty()) {
+            active = createSegment(0, SEGMENT_SIZE);
+            nextOffset = 0;
+            return;
+        }
+        active = segments.lastEntry().getValue();
+        int position = 0;
+        long offset = active.baseOffset;
+        int length;
+        while ((length = active.lengthAt(position)) > 0) {
+            position += 4 + length;
+            offset++;
+        }
+        active.writePosition = position;
+        nextOffset = offset;
+    }
+
+    /**
+     * Appends a message to the log and wakes durable consumers.
+     * @return The number of consumers that will receive it
+     * @throws IllegalArgumentException if the message is not serializable
+     */
+    int append(Object message) {
+        byte[] data = serialize(message);
+        synchronized (this) {
+            if (!active.hasRoomFor(data.length)) {
+                roll(data.length);
+            }
+            active.write(data);
+            nextOffset++;
+        }
+        Reader[] current = readers;
+        for (Reader reader : current) {
+            reader.schedule();
+        }
+        return current.length;
+    }
+
+    synchronized void subscribe(String consumerId, Consumer<Object> handler) throws IOException {
+        unsubscribe(consumerId);
+        Path offsetFile = directory.resolve("consumers").resolve(fileName(consumerId) + OFFSET_SUFFIX);
+        Reader reader = new Reader(consumerId, handler, offsetFile);
+        Reader[] updated = Arrays.copyOf(readers, readers.length + 1);
+        updated[readers.length] = reader;
+        readers = updated;
+        reader.schedule();
+    }
+
+    synchronized void unsubscribe(String consumerId) {
+        Reader[] current = readers;
+        for (int i = 0; i < current.length; i++) {
+            if (current[i].consumerId.equals(consumerId)) {
+                current[i].active = false;
+                current[i].offsetStore.force();
+                Reader[] updated = new Reader[current.length - 1];
+                System.arraycopy(current, 0, updated, 0, i);
+                System.arraycopy(current, i + 1, updated, i, current.length - i - 1);
+                readers = updated;
+                return;
+            }
+        }
+    }
+
+    /**
+     * Gets the number of unread messages of the slowest consumer.
+     */
+    long getBacklog() {
+        long end = nextOffset;
+        long min = end;
+        for (Reader reader : readers) {
+            min = Math.min(min, reader.offset);
+        }
+        return end - min;
+    }
+
+    /**
+     * Stops every consumer and writes the log and their offsets to disk.
+     * Called on shutdown; the log can't be used afterwards.
+     */
+    synchronized void close() {
+        for (Reader reader : readers) {
+            reader.active = false;
+            reader.offsetStore.force();
+        }
+        readers = NO_READERS;
+        for (Segment segment : segments.values()) {
+            segment.close();
+        }
+    }
+
+    long getStartOffset() {
+        return segments.firstKey();
+    }
+
+    long getEndOffset() {
+        return nextOffset;
+    }
+
+    private void roll(int recordLength) {
+        active.buffer.force();
+        try {
+            active = createSegment(nextOffset, Math.max(SEGMENT_SIZE, recordLength + 8));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to roll segment in " + directory, e);
+        }
+        enforceRetention();
+    }
+
+    private Segment createSegment(long baseOffset, int size) throws IOException {
+        Path path = directory.resolve(String.format("%020d%s", baseOffset, SEGMENT_SUFFIX));
+        Segment segment = Segment.open(path, baseOffset, size);
+        segments.put(baseOffset, segment);
+        return segment;
+    }
+
+    /**
+     * Deletes the oldest segments until the log fits its retention size.
+     * The active segment is always kept.
+     */
+    private void enforceRetention() {
+        long total = 0;
+        for (Segment segment : segments.values()) {
+            total += segment.capacity();
+        }
+        while (total > retentionBytes && segments.size() > 1) {
+            Map.Entry<Long, Segment> oldest = segments.pollFirstEntry();
+            total -= oldest.getValue().capacity();
+            oldest.getValue().delete();
+        }
+    }
+
+    /**
+     * Turns a topic or consumer name into a safe file name. Names that had to
+     * be changed get their hash appended so that two of them can't collide.
+     */
+    private static String fileName(String name) {
+        String safe = name.replaceAll("[^A-Za-z0-9._-]", "_");
+        if (safe.equals(name) && !safe.startsWith(".")) {
+            return safe;
+        }
+        return safe + "-" + Integer.toHexString(name.hashCode());
+    }
+
+    private static byte[] serialize(Object message) {
+        if (!(message instanceof Serializable)) {
+            throw new IllegalArgumentException("Durable topic messages must be Serializable: "
+                + (message == null ? "null" : message.getClass().getName()));
+        }
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+                out.writeObject(message);
+            }
+            return bytes.toByteArray();
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Failed to serialize message", e);
+        }
+    }
+
+    private static Object deserialize(byte[] data) throws IOException, ClassNotFoundException {
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(data))) {
+            return in.readObject();
+        }
+    }
+
+    private static class Segment {
+        final Path path;
+        final long baseOffset;
+        final FileChannel channel;
+        final MappedByteBuffer buffer;
+        /** Only touched by the writer, under the log lock */
+        int writePosition;
+
+        private Segment(Path path, long baseOffset, FileChannel channel, MappedByteBuffer buffer) {
+            this.path = path;
+            this.baseOffset = baseOffset;
+            this.channel = channel;
+            this.buffer = buffer;
+        }
+
+        /**
+         * Maps a segment file, creating it with the given size if it doesn't exist.
+         */
+        static Segment open(Path path, long baseOffset, int size) throws IOException {
+            FileChannel channel = FileChannel.open(path,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            long length = Math.max(channel.size(), size);
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, length);
+            return new Segment(path, baseOffset, channel, buffer);
+        }
+
+        int capacity() {
+            return buffer.capacity();
+        }
+
+        boolean hasRoomFor(int length) {
+            return writePosition + 4 + length <= buffer.capacity();
+        }
+
+        /**
+         * Gets the length of the record at a position, or 0 at the end of the data.
+         */
+        int lengthAt(int position) {
+            return position + 4 <= buffer.capacity() ? buffer.getInt(position) : 0;
+        }
+
+        void write(byte[] data) {
+            buffer.put(writePosition + 4, data);
+            // Publishing the length last makes the record visible atomically
+            buffer.putInt(writePosition, data.length);
+            writePosition += 4 + data.length;
+        }
+
+        byte[] read(int position, int length) {
+            byte[] data = new byte[length];
+            buffer.get(position + 4, data);
+            return data;
+        }
+
+        void close() {
+            try {
+                buffer.force();
+                channel.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+
+        void delete() {
+            try {
+                channel.close();
+                Files.deleteIfExists(path);
+            } catch (IOException e) {
+                // Mapped files can't be deleted on some platforms until the mapping is collected
+                e.printStackTrace();
+            }
+        }
+    }
+
+    private class Reader {
+        final String consumerId;
+        final Consumer<Object> handler;
+        final MappedByteBuffer offsetStore;
+        volatile long offset;
+        volatile boolean active = true;
+        private Segment segment;
+        private int position;
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+
+        Reader(String consumerId, Consumer<Object> handler, Path offsetFile) throws IOException {
+            this.consumerId = consumerId;
+            this.handler = handler;
+            boolean exists = Files.exists(offsetFile);
+            try (FileChannel channel = FileChannel.open(offsetFile,
+                    StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                this.offsetStore = channel.map(FileChannel.MapMode.READ_WRITE, 0, Long.BYTES);
+            }
+            this.offset = exists ? Math.min(offsetStore.getLong(0), nextOffset) : getStartOffset();
+        }
+
+        void schedule() {
+            if (active && scheduled.compareAndSet(false, true)) {
+                executor.execute(this::drain);
+            }
+        }
+
+        private void drain() {
+            while (active && offset < nextOffset) {
+                Object message = readNext();
+                if (message != null) {
+                    try {
+                        handler.accept(message);
+                    } catch (Exception e) {
+                        e.printStackTrace();
+                    }
+                }
+                // Only now is the message handled; a crash before this redelivers it
+                offset++;
+                offsetStore.putLong(0, offset);
+            }
+            offsetStore.force();
+            scheduled.set(false);
+            if (active && offset < nextOffset) {
+                schedule();
+            }
+        }
+
+        /**
+         * Reads the record at the current offset, or null if it can't be decoded.
+         */
+        private Object readNext() {
+            if (segment == null || !segments.containsKey(segment.baseOffset)) {
+                seek();
+            }
+            int length = segment.lengthAt(position);
+            if (length == 0) {
+                // End of this segment; the record lives in the next one
+                seek();
+                length = segment.lengthAt(position);
+            }
+            byte[] data = segment.read(position, length);
+            position += 4 + length;
+            try {
+                return deserialize(data);
+            } catch (IOException | ClassNotFoundException e) {
+                System.err.println("Skipping undecodable message " + offset + " for " + consumerId + ": " + e);
+                return null;
+            }
+        }
+
+        /**
+         * Positions the reader on the segment holding its offset, skipping
+         * ahead if that data has already been deleted by retention.
+         */
+        private void seek() {
+            Map.Entry<Long, Segment> entry = segments.floorEntry(offset);
+            if (entry == null) {
+                entry = segments.firstEntry();
+                offset = entry.getKey();
+            }
+            segment = entry.getValue();
+            position = 0;
+            for (long skip = offset - segment.baseOffset; skip > 0; skip--) {
+                position += 4 + segment.lengthAt(position);
+            }
+        }
+    }
+}
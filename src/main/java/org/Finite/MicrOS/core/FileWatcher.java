@@ -1,48 +1,378 @@
 package org.Finite.MicrOS.core;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.nio.file.*;
-import java.util.HashMap;
-import java.util.Map;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
+import java.util.*;
 import java.util.concurrent.TimeUnit;
 import java.util.function.Consumer;
+import java.util.stream.Stream;
 
+/**
+ * Watches files and directory trees for changes using the platform's native
+ * {@link WatchService}, all from one dispatcher thread. Events are debounced
+ * per watched path: callbacks run once the path has been quiet for the
+ * debounce window (or has been changing for ten windows) and receive every
+ * path that changed in that time. Paths that can't be watched natively, such
+ * as some network mounts or files whose directory doesn't exist yet, are
+ * polled instead.
+ *
+ * <p>Each path has at most one watch; watching it again replaces the old one.
+ * Callbacks run on the dispatcher thread and should hand off slow work.
+ */
 public class FileWatcher {
     private static final FileWatcher instance = new FileWatcher();
-    private final Map<String, WatchInfo> watchers = new HashMap<>();
-    private final ScheduledExecutorService executor = Executors.newScheduledThreadPool(1);
-    
-    private static class WatchInfo {
+    public static final long DEFAULT_DEBOUNCE_MS = 50;
+    private static final long POLL_INTERVAL_MS = 1000;
+    private static final int MAX_DEBOUNCE_WINDOWS = 10;
+
+    private final Object lock = new Object();
+    private final Map<Path, Watch> watches = new HashMap<>();
+    private final Map<Path, Directory> directories = new HashMap<>();
+    private final Map<WatchKey, Directory> keys = new HashMap<>();
+    private final WatchService watchService;
+    private Thread dispatcher;
+    private long nextPollNanos;
+
+    private static class Watch {
         final Path path;
-        final Consumer<Path> callback;
-        long lastModified;
-        
-        WatchInfo(Path path, Consumer<Path> callback) {
+        final boolean directory;
+        final boolean recursive;
+        final long debounceNanos;
+        final Consumer<Set<Path>> callback;
+        final Set<Path> registeredDirectories = new HashSet<>();
+        Map<Path, Long> polledState;
+        final Set<Path> pending = new LinkedHashSet<>();
+        long firstEventNanos;
+        long deadlineNanos;
+
+        Watch(Path path, boolean directory, boolean recursive, long debounceMillis, Consumer<Set<Path>> callback) {
             this.path = path;
+            this.directory = directory;
+            this.recursive = recursive;
+            this.debounceNanos = TimeUnit.MILLISECONDS.toNanos(debounceMillis);
             this.callback = callback;
-            this.lastModified = path.toFile().lastModified();
         }
     }
-    
+
+    /**
+     * A directory registered with the watch service and the watches that need it.
+     */
+    private static class Directory {
+        final Path path;
+        final WatchKey key;
+        final Set<Watch> watches = new HashSet<>();
+
+        Directory(Path path, WatchKey key) {
+            this.path = path;
+            this.key = key;
+        }
+    }
+
+    private FileWatcher() {
+        WatchService service = null;
+        try {
+            service = FileSystems.getDefault().newWatchService();
+        } catch (IOException | UnsupportedOperationException e) {
+            System.err.println("Native file watching unavailable, falling back to polling: " + e.getMessage());
+        }
+        this.watchService = service;
+    }
+
+    /**
+     * Calls {@code onChange} when the file is created, modified or deleted.
+     */
     public static void watchFile(String path, Consumer<Path> onChange) {
-        Path filePath = Paths.get(path);
-        instance.watchers.put(path, new WatchInfo(filePath, onChange));
-        
-        // Check for changes every second
-        instance.executor.scheduleAtFixedRate(() -> {
-            WatchInfo info = instance.watchers.get(path);
-            if (info != null) {
-                long currentModified = info.path.toFile().lastModified();
-                if (currentModified > info.lastModified) {
-                    info.lastModified = currentModified;
-                    info.callback.accept(info.path);
-                }
-            }
-        }, 0, 1, TimeUnit.SECONDS);
-    }
-    
+        Path filePath = normalize(path);
+        instance.add(new Watch(filePath, false, false, DEFAULT_DEBOUNCE_MS, changed -> onChange.accept(filePath)));
+    }
+
+    public static void watchDirectory(String path, boolean recursive, Consumer<Set<Path>> onChanges) {
+        watchDirectory(path, recursive, DEFAULT_DEBOUNCE_MS, onChanges);
+    }
+
+    /**
+     * Calls {@code onChanges} with the files and directories that were
+     * created, modified or deleted in a directory.
+     * @param recursive Whether to include subdirectories, including ones created later
+     * @param debounceMillis How long the directory must be quiet before the callback runs
+     */
+    public static void watchDirectory(String path, boolean recursive, long debounceMillis, Consumer<Set<Path>> onChanges) {
+        instance.add(new Watch(normalize(path), true, recursive, debounceMillis, onChanges));
+    }
+
     public static void stopWatching(String path) {
-        instance.watchers.remove(path);
+        synchronized (instance.lock) {
+            Watch watch = instance.watches.remove(normalize(path));
+            if (watch != null) {
+                instance.unregister(watch);
+            }
+        }
+    }
+
+    /**
+     * @return How many directories are registered with the native watch service
+     */
+    public static int getRegisteredDirectoryCount() {
+        synchronized (instance.lock) {
+            return instance.directories.size();
+        }
+    }
+
+    private static Path normalize(String path) {
+        return Paths.get(path).toAbsolutePath().normalize();
+    }
+
+    private void add(Watch watch) {
+        synchronized (lock) {
+            Watch previous = watches.put(watch.path, watch);
+            if (previous != null) {
+                unregister(previous);
+            }
+            register(watch);
+            if (dispatcher == null) {
+                dispatcher = new Thread(this::dispatchLoop, "file-watcher");
+                dispatcher.setDaemon(true);
+                dispatcher.start();
+            }
+        }
+    }
+
+    private void register(Watch watch) {
+        try {
+            if (watchService == null) {
+                throw new IOException("No watch service");
+            }
+            if (!watch.directory) {
+                registerDirectory(watch.path.getParent(), watch);
+            } else if (watch.recursive) {
+                registerTree(watch.path, watch);
+            } else {
+                registerDirectory(watch.path, watch);
+            }
+        } catch (IOException | UnsupportedOperationException e) {
+            unregister(watch);
+            watch.polledState = scan(watch);
+        }
+    }
+
+    private void registerTree(Path root, Watch watch) throws IOException {
+        try (Stream<Path> tree = Files.walk(root)) {
+            for (Path directory : (Iterable<Path>) tree.filter(Files::isDirectory)::iterator) {
+                registerDirectory(directory, watch);
+            }
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    private void registerDirectory(Path path, Watch watch) throws IOException {
+        Directory directory = directories.get(path);
+        if (directory == null) {
+            WatchKey key = path.register(watchService,
+                StandardWatchEventKinds.ENTRY_CREATE,
+                StandardWatchEventKinds.ENTRY_DELETE,
+                StandardWatchEventKinds.ENTRY_MODIFY);
+            directory = new Directory(path, key);
+            directories.put(path, directory);
+            keys.put(key, directory);
+        }
+        directory.watches.add(watch);
+        watch.registeredDirectories.add(path);
+    }
+
+    /**
+     * Releases every directory registration the watch holds, cancelling
+     * those no other watch needs.
+     */
+    private void unregister(Watch watch) {
+        for (Path path : watch.registeredDirectories) {
+            Directory directory = directories.get(path);
+            if (directory != null) {
+                directory.watches.remove(watch);
+                if (directory.watches.isEmpty()) {
+                    directory.key.cancel();
+                    directories.remove(path);
+                    keys.remove(directory.key);
+                }
+            }
+        }
+        watch.registeredDirectories.clear();
+        watch.polledState = null;
+    }
+
+    private void dispatchLoop() {
+        List<Watch> due = new ArrayList<>();
+        while (true) {
+            try {
+                long timeoutMillis;
+                synchronized (lock) {
+                    timeoutMillis = nextTimeoutMillis(System.nanoTime());
+                }
+                WatchKey key = null;
+                if (watchService != null) {
+                    key = watchService.poll(timeoutMillis, TimeUnit.MILLISECONDS);
+                } else {
+                    Thread.sleep(timeoutMillis);
+                }
+
+                Map<Watch, Set<Path>> batches = new LinkedHashMap<>();
+                synchronized (lock) {
+                    long now = System.nanoTime();
+                    for (; key != null; key = watchService.poll()) {
+                        processKey(key, now);
+                    }
+                    if (now - nextPollNanos >= 0) {
+                        pollWatches(now);
+                        nextPollNanos = now + TimeUnit.MILLISECONDS.toNanos(POLL_INTERVAL_MS);
+                    }
+                    for (Watch watch : watches.values()) {
+                        if (!watch.pending.isEmpty() && isDue(watch, now)) {
+                            batches.put(watch, new LinkedHashSet<>(watch.pending));
+                            watch.pending.clear();
+                        }
+                    }
+                }
+                for (Map.Entry<Watch, Set<Path>> batch : batches.entrySet()) {
+                    try {
+                        batch.getKey().callback.accept(Collections.unmodifiableSet(batch.getValue()));
+                    } catch (Exception e) {
+                        e.printStackTrace();
+                    }
+                }
+            } catch (InterruptedException e) {
+                return;
+            } catch (ClosedWatchServiceException e) {
+                return;
+            }
+        }
+    }
+
+    private long nextTimeoutMillis(long now) {
+        long next = nextPollNanos;
+        for (Watch watch : watches.values()) {
+            if (!watch.pending.isEmpty()) {
+                long deadline = Math.min(watch.deadlineNanos,
+                    watch.firstEventNanos + watch.debounceNanos * MAX_DEBOUNCE_WINDOWS);
+                if (deadline - next < 0) {
+                    next = deadline;
+                }
+            }
+        }
+        return Math.max(1, Math.min(POLL_INTERVAL_MS, TimeUnit.NANOSECONDS.toMillis(next - now) + 1));
+    }
+
+    private static boolean isDue(Watch watch, long now) {
+        return now - watch.deadlineNanos >= 0
+            || now - watch.firstEventNanos >= watch.debounceNanos * MAX_DEBOUNCE_WINDOWS;
+    }
+
+    private void processKey(WatchKey key, long now) {
+        Directory directory = keys.get(key);
+        List<WatchEvent<?>> events = key.pollEvents();
+        if (directory == null) {
+            return;
+        }
+        for (WatchEvent<?> event : events) {
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                // Events were lost; report the directory (or the watched file) as changed
+                for (Watch watch : directory.watches) {
+                    markChanged(watch, watch.directory ? directory.path : watch.path, now);
+                }
+                continue;
+            }
+            Path changed = directory.path.resolve((Path) event.context());
+            for (Watch watch : new ArrayList<>(directory.watches)) {
+                if (!watch.directory) {
+                    if (changed.equals(watch.path)) {
+                        markChanged(watch, changed, now);
+                    }
+                    continue;
+                }
+                markChanged(watch, changed, now);
+                if (watch.recursive && event.kind() == StandardWatchEventKinds.ENTRY_CREATE
+                        && Files.isDirectory(changed, LinkOption.NOFOLLOW_LINKS)) {
+                    watchNewSubtree(changed, watch, now);
+                }
+            }
+        }
+        if (!key.reset()) {
+            // The directory is gone; watches that relied on it fall back to polling
+            keys.remove(key);
+            directories.remove(directory.path);
+            for (Watch watch : directory.watches) {
+                watch.registeredDirectories.remove(directory.path);
+                if (watch.registeredDirectories.isEmpty() && watches.get(watch.path) == watch) {
+                    watch.polledState = scan(watch);
+                }
+            }
+        }
+    }
+
+    /**
+     * Registers a directory created inside a recursive watch. Files may be
+     * created in it before the registration takes effect, so they are
+     * reported as changed too.
+     */
+    private void watchNewSubtree(Path root, Watch watch, long now) {
+        try {
+            registerTree(root, watch);
+            try (Stream<Path> tree = Files.walk(root)) {
+                tree.forEach(path -> markChanged(watch, path, now));
+            }
+        } catch (IOException | UncheckedIOException e) {
+            // Deleted again before we got to it
+        }
+    }
+
+    private void pollWatches(long now) {
+        for (Watch watch : watches.values()) {
+            if (watch.polledState == null) {
+                continue;
+            }
+            Map<Path, Long> current = scan(watch);
+            for (Map.Entry<Path, Long> entry : current.entrySet()) {
+                if (!entry.getValue().equals(watch.polledState.get(entry.getKey()))) {
+                    markChanged(watch, entry.getKey(), now);
+                }
+            }
+            for (Path path : watch.polledState.keySet()) {
+                if (!current.containsKey(path)) {
+                    markChanged(watch, path, now);
+                }
+            }
+            watch.polledState = current;
+            // Switch back to native watching once the directory exists again
+            Path directory = watch.directory ? watch.path : watch.path.getParent();
+            if (watchService != null && Files.isDirectory(directory)) {
+                watch.polledState = null;
+                register(watch);
+            }
+        }
+    }
+
+    /**
+     * Modification times of everything a polled watch covers.
+     */
+    private static Map<Path, Long> scan(Watch watch) {
+        Map<Path, Long> state = new HashMap<>();
+        if (!watch.directory) {
+            state.put(watch.path, watch.path.toFile().lastModified());
+            return state;
+        }
+        try (Stream<Path> entries = watch.recursive ? Files.walk(watch.path) : Files.list(watch.path)) {
+            entries.forEach(path -> state.put(path, path.toFile().lastModified()));
+        } catch (IOException | UncheckedIOException e) {
+            // Missing directory: everything in it counts as deleted
+        }
+        return state;
+    }
+
+    private static void markChanged(Watch watch, Path path, long now) {
+        if (watch.pending.isEmpty()) {
+            watch.firstEventNanos = now;
+        }
+        watch.pending.add(path);
+        watch.deadlineNanos = now + watch.debounceNanos;
     }
 }
@@ -0,0 +1,120 @@
+package org.Finite.MicrOS.core;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Approximate timer for large numbers of short timeouts, such as MessageBus
+ * request deadlines. Timeouts are hashed into a fixed wheel of buckets that a
+ * single daemon thread advances once per tick, so scheduling and cancelling
+ * are O(1) and no thread is created per timeout. Tasks run on the timer
+ * thread and must be short.
+ */
+class HashedWheelTimer {
+    private final long tickNanos;
+    private final List<Timeout>[] wheel;
+    private final int mask;
+    private final String threadName;
+    private final Queue<Timeout> pending = new ConcurrentLinkedQueue<>();
+    private volatile long startTime;
+    private Thread worker;
+
+    HashedWheelTimer(String threadName, long tickDuration, TimeUnit unit, int wheelSize) {
+        int size = wheelSize <= 2 ? 2 : Integer.highestOneBit(wheelSize - 1) << 1;
+        this.threadName = threadName;
+        this.tickNanos = unit.toNanos(tickDuration);
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        List<Timeout>[] buckets = new List[size];
+        this.wheel = buckets;
+        for (int i = 0; i < size; i++) {
+            wheel[i] = new ArrayList<>();
+        }
+        this.mask = size - 1;
+    }
+
+    /**
+     * Schedules a task to run once after the given delay, rounded up to the next tick.
+     * @return A handle that can cancel the task
+     */
+    Timeout schedule(Runnable task, long delay, TimeUnit unit) {
+        start();
+        long deadline = System.nanoTime() + unit.toNanos(delay) - startTime;
+        Timeout timeout = new Timeout(task, deadline);
+        pending.add(timeout);
+        return timeout;
+    }
+
+    private synchronized void start() {
+        if (worker == null) {
+            startTime = System.nanoTime();
+            worker = new Thread(this::run, threadName);
+            worker.setDaemon(true);
+            worker.start();
+        }
+    }
+
+    private void run() {
+        long tick = 0;
+        while (true) {
+            long wakeUp = startTime + tickNanos * (tick + 1);
+            long sleep;
+            while ((sleep = wakeUp - System.nanoTime()) > 0) {
+                LockSupport.parkNanos(sleep);
+            }
+            transferPending(tick);
+            expire(wheel[(int) (tick & mask)]);
+            tick++;
+        }
+    }
+
+    private void transferPending(long currentTick) {
+        Timeout timeout;
+        while ((timeout = pending.poll()) != null) {
+            if (timeout.cancelled) continue;
+            // Round up so a timeout never fires early
+            long ticks = Math.max((timeout.deadline + tickNanos - 1) / tickNanos - 1, currentTick);
+            timeout.remainingRounds = (ticks - currentTick) / wheel.length;
+            wheel[(int) (ticks & mask)].add(timeout);
+        }
+    }
+
+    private void expire(List<Timeout> bucket) {
+        Iterator<Timeout> iterator = bucket.iterator();
+        while (iterator.hasNext()) {
+            Timeout timeout = iterator.next();
+            if (timeout.cancelled) {
+                iterator.remove();
+            } else if (timeout.remainingRounds <= 0) {
+                iterator.remove();
+                try {
+                    timeout.task.run();
+                } catch (Exception e) {
+                    e.printStackTrace();
+                }
+            } else {
+                timeout.remainingRounds--;
+            }
+        }
+    }
+
+    static class Timeout {
+        private final Runnable task;
+        private final long deadline;
+        private long remainingRounds;
+        private volatile boolean cancelled;
+
+        Timeout(Runnable task, long deadline) {
+            this.task = task;
+            this.deadline = deadline;
+        }
+
+        void cancel() {
+            cancelled = true;
+        }
+    }
+}
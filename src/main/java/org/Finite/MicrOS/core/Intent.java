@@ -6,17 +6,53 @@ import java.util.Map;
 public class Intent {
     private final String targetAppId;
     private final Map<String, Object> extras = new HashMap<>();
+    /** Binary extras, decoded lazily field by field; explicit extras take precedence */
+    private BinaryPayload payload;
     
     public Intent(String targetAppId) {
         this.targetAppId = targetAppId;
     }
     
+    /**
+     * Creates an intent whose extras are read on demand from a binary payload.
+     * The payload must stay retained for as long as the intent is in use.
+     */
+    public static Intent fromPayload(String targetAppId, BinaryPayload payload) {
+        Intent intent = new Intent(targetAppId);
+        intent.payload = payload;
+        return intent;
+    }
+    
     public void putExtra(String key, Object value) {
         extras.put(key, value);
     }
     
     public Object getExtra(String key) {
-        return extras.get(key);
+        Object value = extras.get(key);
+        if (value == null && payload != null && !extras.containsKey(key)) {
+            value = payload.get(key);
+        }
+        return value;
+    }
+    
+    public BinaryPayload getPayload() {
+        return payload;
+    }
+    
+    /**
+     * Encodes the extras named by a schema into a binary payload.
+     * Fields without a matching extra are left at their default.
+     */
+    public BinaryPayload toPayload(PayloadSchema schema) {
+        PayloadWriter writer = schema.newWriter();
+        for (int i = 0; i < schema.getFieldCount(); i++) {
+            String field = schema.getFieldName(i);
+            Object value = getExtra(field);
+            if (value != null) {
+                writer.put(field, value);
+            }
+        }
+        return writer.build();
     }
     
     public String getTargetAppId() {
@@ -24,6 +60,14 @@ public class Intent {
     }
     
     public Map<String, Object> getExtras() {
-        return new HashMap<>(extras);
+        Map<String, Object> all = new HashMap<>();
+        if (payload != null) {
+            PayloadSchema schema = payload.getSchema();
+            for (int i = 0; i < schema.getFieldCount(); i++) {
+                all.put(schema.getFieldName(i), payload.get(schema.getFieldName(i)));
+            }
+        }
+        all.putAll(extras);
+        return all;
     }
 }
@@ -1,29 +1,655 @@
 package org.Finite.MicrOS.core;
 
+import java.io.IOException;
+import java.io.Serializable;
+import java.lang.reflect.InvocationTargetException;
 import java.util.*;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Consumer;
+import javax.swing.SwingUtilities;
 
+/**
+ * System-wide publish/subscribe bus used for inter-app messaging.
+ * Subscriber lists are copy-on-write arrays, so sending never locks and a
+ * concurrent subscribe cannot corrupt an in-flight delivery. Each subscription
+ * chooses where its handler runs, see {@link DispatchMode}.
+ * <p>
+ * Topics are hierarchical, with levels separated by '.'. Subscriptions may use
+ * '*' to match exactly one level and a trailing '#' to match any number of
+ * levels, e.g. {@code org.finite.*} or {@code org.finite.#}.
+ */
 public class MessageBus {
+
+    /**
+     * Where a subscriber's handler is invoked.
+     */
+    public enum DispatchMode {
+        /** Synchronously on the sender's thread */
+        CALLER,
+        /** On the Swing event dispatch thread */
+        EDT,
+        /** On the shared bus executor, in order per subscription */
+        ASYNC
+    }
+
+    /**
+     * What a bounded topic does when its slowest subscriber is a full buffer behind.
+     */
+    public enum OverflowPolicy {
+        /**
+         * Make the sender wait until space is available. Senders on the EDT
+         * don't wait; their message is dropped as with {@link #DROP_NEWEST}
+         */
+        BLOCK,
+        /** Overwrite the oldest unread message */
+        DROP_OLDEST,
+        /** Discard the message being sent */
+        DROP_NEWEST
+    }
+
+    /**
+     * Links this bus to the bus of another process. An isolated app process
+     * installs one so that everything it sends is routed through the MicrOS
+     * host, which delivers messages for the app's topics back through
+     * {@link #deliverFromBridge}.
+     */
+    public interface Bridge {
+        /** Called instead of local delivery for every message sent in this process */
+        void forward(String targetId, Object message);
+        /** Called when a topic gains a local subscriber */
+        void subscribed(String messageType);
+        /** Called when a topic loses its last local subscriber */
+        void unsubscribed(String messageType);
+    }
+
+    private static final int EXECUTOR_QUEUE_CAPACITY = 1024;
+    private static final int MAX_CACHED_ROUTES = 4096;
+    private static final long DEFAULT_RETENTION_BYTES = 64L * 1024 * 1024;
+    private static final Subscription[] NO_SUBSCRIBERS = new Subscription[0];
+
     private static final MessageBus instance = new MessageBus();
-    private final Map<String, List<Consumer<Object>>> subscribers = new ConcurrentHashMap<>();
-    
+    private final Map<String, Topic> topics = new ConcurrentHashMap<>();
+    private final Map<String, RingBufferTopic> boundedTopics = new ConcurrentHashMap<>();
+    private final Map<String, DurableTopicLog> durableTopics = new ConcurrentHashMap<>();
+    private final TopicTrie<Topic> patterns = new TopicTrie<>();
+    /** Wildcard subscribers resolved per concrete topic, replaced whenever a pattern subscription changes */
+    private volatile Map<String, Subscription[]> routeCache = new ConcurrentHashMap<>();
+    private final AtomicInteger patternSubscriptions = new AtomicInteger();
+    private final Map<Long, CompletableFuture<Object>> pendingRequests = new ConcurrentHashMap<>();
+    private final AtomicLong nextCorrelationId = new AtomicLong(1);
+    private final HashedWheelTimer requestTimer = new HashedWheelTimer("message-bus-timer", 10, TimeUnit.MILLISECONDS, 512);
+    private final ExecutorService executor;
+    private volatile Bridge bridge;
+
+    private MessageBus() {
+        int threads = Math.max(2, Runtime.getRuntime().availableProcessors() / 2);
+        AtomicInteger threadCount = new AtomicInteger();
+        // Bounded queue; when it fills up the sender runs the delivery itself
+        this.executor = new ThreadPoolExecutor(
+            threads, threads, 30, TimeUnit.SECONDS,
+            new ArrayBlockingQueue<>(EXECUTOR_QUEUE_CAPACITY),
+            r -> {
+                Thread thread = new Thread(r, "message-bus-" + threadCount.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            },
+            new ThreadPoolExecutor.CallerRunsPolicy()
+        );
+    }
+
     public static void send(String targetId, Object message) {
-        instance.subscribers
-            .getOrDefault(targetId, Collections.emptyList())
-            .forEach(handler -> handler.accept(message));
+        Bridge current = instance.bridge;
+        if (current != null) {
+            current.forward(targetId, message);
+            return;
+        }
+        instance.deliver(targetId, message);
+    }
+
+    /**
+     * Routes this process's bus through another process, see {@link Bridge}.
+     * Bounded and durable topics stay local.
+     */
+    public static void setBridge(Bridge bridge) {
+        instance.bridge = bridge;
+    }
+
+    /**
+     * Delivers a message received over a {@link Bridge} to the local
+     * subscribers of exactly one topic or pattern. The other process has
+     * already done the routing, so each subscription receives the message once.
+     * @param messageType The topic or pattern reported to {@link Bridge#subscribed}
+     */
+    public static void deliverFromBridge(String messageType, Object message) {
+        Topic topic = TopicTrie.isPattern(messageType)
+            ? instance.patterns.get(messageType)
+            : instance.topics.get(messageType);
+        if (topic != null) {
+            for (Subscription subscription : topic.subscribers) {
+                subscription.deliver(message);
+            }
+        }
+    }
+
+    /**
+     * Sends a {@link Request} to a topic and waits asynchronously for a reply.
+     * Subscribers answer by calling {@link Request#reply} on the message they receive.
+     * @param targetId The topic to send the request to
+     * @param payload The request payload
+     * @param timeoutMillis How long to wait for a reply
+     * @return A future completed with the reply, or exceptionally with a
+     *         {@link TimeoutException} or the error the responder reported.
+     *         On a durable topic a payload that isn't Serializable fails it
+     *         with an {@link IllegalArgumentException}. In a process with a
+     *         {@link Bridge}, such as an isolated app, it fails with an
+     *         {@link UnsupportedOperationException}: replies are completed in
+     *         the process that answers, so they can't reach this one.
+     */
+    public static CompletableFuture<Object> request(String targetId, Object payload, long timeoutMillis) {
+        if (instance.bridge != null) {
+            CompletableFuture<Object> unsupported = new CompletableFuture<>();
+            unsupported.completeExceptionally(new UnsupportedOperationException(
+                "Requests can't cross the bridge to " + targetId + "; send a reply topic with the message instead"));
+            return unsupported;
+        }
+        long correlationId = instance.nextCorrelationId.getAndIncrement();
+        CompletableFuture<Object> future = new CompletableFuture<>();
+        instance.pendingRequests.put(correlationId, future);
+
+        HashedWheelTimer.Timeout timeout = instance.requestTimer.schedule(
+            () -> future.completeExceptionally(new TimeoutException(
+                "No reply from " + targetId + " within " + timeoutMillis + "ms")),
+            timeoutMillis, TimeUnit.MILLISECONDS);
+        future.whenComplete((result, error) -> {
+            instance.pendingRequests.remove(correlationId);
+            timeout.cancel();
+        });
+
+        try {
+            if (instance.deliver(targetId, new Request(correlationId, targetId, payload)) == 0) {
+                future.completeExceptionally(new IllegalStateException("No subscribers for " + targetId));
+            }
+        } catch (IllegalArgumentException e) {
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+
+    /**
+     * Completes a pending request.
+     * @param correlationId The ID from {@link Request#getCorrelationId()}
+     * @param response The reply
+     * @return false if the request already completed or timed out
+     */
+    public static boolean reply(long correlationId, Object response) {
+        CompletableFuture<Object> future = instance.pendingRequests.get(correlationId);
+        return future != null && future.complete(response);
     }
-    
+
+    /**
+     * Fails a pending request with an error.
+     * @param correlationId The ID from {@link Request#getCorrelationId()}
+     * @param error The error to report to the requester
+     * @return false if the request already completed or timed out
+     */
+    public static boolean replyWithError(long correlationId, Throwable error) {
+        CompletableFuture<Object> future = instance.pendingRequests.get(correlationId);
+        return future != null && future.completeExceptionally(error);
+    }
+
+    /**
+     * Delivers a message to every matching subscriber.
+     * @return The number of subscriptions the message was handed to
+     */
+    private int deliver(String targetId, Object message) {
+        RingBufferTopic bounded = boundedTopics.get(targetId);
+        if (bounded != null) {
+            return bounded.publish(message) ? 1 : 0;
+        }
+        int delivered = 0;
+        DurableTopicLog durable = durableTopics.get(targetId);
+        if (durable != null) {
+            delivered += durable.append(message);
+        }
+        Topic topic = topics.get(targetId);
+        if (topic != null) {
+            for (Subscription subscription : topic.subscribers) {
+                subscription.deliver(message);
+                delivered++;
+            }
+        }
+        for (Subscription subscription : resolvePatterns(targetId)) {
+            subscription.deliver(message);
+            delivered++;
+        }
+        return delivered;
+    }
+
+    /**
+     * Subscribes a handler that runs on the sender's thread, or on the bus
+     * executor for a bounded topic.
+     */
     public static void subscribe(String messageType, Consumer<Object> handler) {
-        instance.subscribers
-            .computeIfAbsent(messageType, k -> new ArrayList<>())
-            .add(handler);
+        subscribe(messageType, handler,
+            instance.boundedTopics.containsKey(messageType) ? DispatchMode.ASYNC : DispatchMode.CALLER);
     }
-    
+
+    /**
+     * Subscribes a handler to a topic.
+     * @param messageType The topic (usually an app identifier)
+     * @param handler The handler to invoke for each message
+     * @param mode Where the handler runs
+     * @throws IllegalArgumentException if the topic is bounded and the mode is
+     *         {@link DispatchMode#CALLER}; bounded topics always deliver from a buffer
+     */
+    public static void subscribe(String messageType, Consumer<Object> handler, DispatchMode mode) {
+        RingBufferTopic bounded = instance.boundedTopics.get(messageType);
+        if (bounded != null) {
+            switch (mode) {
+                case CALLER:
+                    throw new IllegalArgumentException("Bounded topic " + messageType
+                        + " can't deliver on the sender's thread; use ASYNC or EDT");
+                case EDT:
+                    bounded.subscribe(handler, batch -> invokeOnEventThread(() -> batch.forEach(handler)));
+                    break;
+                default:
+                    bounded.subscribe(handler, batch -> batch.forEach(handler));
+            }
+            return;
+        }
+        if (TopicTrie.isPattern(messageType)) {
+            synchronized (instance.patterns) {
+                Topic topic = instance.patterns.computeIfAbsent(messageType, k -> new Topic());
+                topic.add(new Subscription(topic, handler, mode));
+                instance.patternSubscriptions.incrementAndGet();
+            }
+            instance.invalidateRoutes();
+        } else {
+            instance.topics.compute(messageType, (k, topic) -> {
+                Topic target = topic != null ? topic : new Topic();
+                target.add(new Subscription(target, handler, mode));
+                return target;
+            });
+        }
+        Bridge current = instance.bridge;
+        if (current != null) {
+            current.subscribed(messageType);
+        }
+    }
+
     public static void unsubscribe(String messageType, Consumer<Object> handler) {
-        instance.subscribers.computeIfPresent(messageType, (k, handlers) -> {
-            handlers.remove(handler);
-            return handlers.isEmpty() ? null : handlers;
-        });
+        RingBufferTopic bounded = instance.boundedTopics.get(messageType);
+        if (bounded != null) {
+            bounded.unsubscribe(handler);
+            return;
+        }
+        if (TopicTrie.isPattern(messageType)) {
+            synchronized (instance.patterns) {
+                Topic topic = instance.patterns.get(messageType);
+                if (topic != null && topic.remove(handler)) {
+                    instance.patternSubscriptions.decrementAndGet();
+                    instance.patterns.removeIf(messageType, t -> t.subscribers.length == 0);
+                }
+            }
+            instance.invalidateRoutes();
+        } else {
+            instance.topics.computeIfPresent(messageType, (k, topic) -> {
+                topic.remove(handler);
+                return topic.subscribers.length == 0 ? null : topic;
+            });
+        }
+        Bridge current = instance.bridge;
+        if (current != null && !hasLocalSubscribers(messageType)) {
+            current.unsubscribed(messageType);
+        }
+    }
+
+    /**
+     * Creates a bounded topic for high-rate traffic. Messages sent to it are
+     * stored in a preallocated ring buffer and delivered to subscribers in
+     * batches on the bus executor, or on the EDT for {@link DispatchMode#EDT}
+     * subscribers. Creating a topic that already exists has no effect.
+     * @param messageType The topic
+     * @param capacity Buffer size, rounded up to a power of two
+     * @param policy What to do when the slowest subscriber falls a full buffer behind
+     */
+    public static void createBoundedTopic(String messageType, int capacity, OverflowPolicy policy) {
+        instance.boundedTopics.computeIfAbsent(messageType,
+            k -> new RingBufferTopic(capacity, policy, instance.executor));
+    }
+
+    /**
+     * Subscribes to a bounded topic, receiving messages in batches.
+     * @param messageType A topic created with {@link #createBoundedTopic}
+     * @param handler Receives each batch in send order
+     * @throws IllegalArgumentException if the topic is not bounded
+     */
+    public static void subscribeBatch(String messageType, Consumer<List<Object>> handler) {
+        RingBufferTopic bounded = instance.boundedTopics.get(messageType);
+        if (bounded == null) {
+            throw new IllegalArgumentException("Not a bounded topic: " + messageType);
+        }
+        bounded.subscribe(handler, handler);
+    }
+
+    public static void unsubscribeBatch(String messageType, Consumer<List<Object>> handler) {
+        RingBufferTopic bounded = instance.boundedTopics.get(messageType);
+        if (bounded != null) {
+            bounded.unsubscribe(handler);
+        }
+    }
+
+    public static void createDurableTopic(String messageType) throws IOException {
+        createDurableTopic(messageType, DEFAULT_RETENTION_BYTES);
+    }
+
+    /**
+     * Makes a topic durable. Every message sent to it is appended to a
+     * segmented log under /system/bus/ before normal delivery, so consumers
+     * subscribed with {@link #subscribeDurable} can catch up after a restart.
+     * Messages must be {@link Serializable}; JDK types such as
+     * strings, numbers and maps are safest because apps use separate class loaders.
+     * Opening a topic that already has a log on disk resumes that log.
+     * @param messageType The topic
+     * @param retentionBytes Size above which the oldest segments are deleted
+     */
+    public static void createDurableTopic(String messageType, long retentionBytes) throws IOException {
+        synchronized (instance.durableTopics) {
+            if (!instance.durableTopics.containsKey(messageType)) {
+                instance.durableTopics.put(messageType,
+                    new DurableTopicLog(messageType, retentionBytes, instance.executor));
+            }
+        }
+    }
+
+    /**
+     * Subscribes a named consumer to a durable topic. Delivery starts at the
+     * consumer's stored offset (or the oldest retained message the first
+     * time), replays everything it missed and then continues with new
+     * messages on the bus executor. The offset is saved after the handler
+     * returns, so delivery is at-least-once: a message whose handler was
+     * running when MicrOS stopped is delivered again on the next subscribe.
+     * @param messageType A topic created with {@link #createDurableTopic}
+     * @param consumerId Stable name used to store the consumer's offset
+     * @param handler Receives each message in log order
+     * @throws IllegalArgumentException if the topic is not durable
+     */
+    public static void subscribeDurable(String messageType, String consumerId, Consumer<Object> handler) throws IOException {
+        DurableTopicLog durable = instance.durableTopics.get(messageType);
+        if (durable == null) {
+            throw new IllegalArgumentException("Not a durable topic: " + messageType);
+        }
+        durable.subscribe(consumerId, handler);
+    }
+
+    public static void unsubscribeDurable(String messageType, String consumerId) {
+        DurableTopicLog durable = instance.durableTopics.get(messageType);
+        if (durable != null) {
+            durable.unsubscribe(consumerId);
+        }
+    }
+
+    /**
+     * Writes every durable topic and consumer offset to disk and closes the
+     * logs. Called on shutdown.
+     */
+    public static void closeDurableTopics() {
+        synchronized (instance.durableTopics) {
+            for (DurableTopicLog durable : instance.durableTopics.values()) {
+                durable.close();
+            }
+            instance.durableTopics.clear();
+        }
+    }
+
+    /**
+     * Gets the number of messages a bounded topic has discarded because of its overflow policy.
+     * @param messageType The topic
+     * @return Dropped message count, 0 for unbounded or unknown topics
+     */
+    public static long getDroppedCount(String messageType) {
+        RingBufferTopic bounded = instance.boundedTopics.get(messageType);
+        return bounded != null ? bounded.getDroppedCount() : 0;
+    }
+
+    /**
+     * Gets the number of messages queued on a topic that have not yet been
+     * handled. For bounded topics this is the backlog of the slowest subscriber.
+     * @param messageType The topic
+     * @return Pending delivery count, 0 for unknown topics
+     */
+    public static int getQueueDepth(String messageType) {
+        RingBufferTopic bounded = instance.boundedTopics.get(messageType);
+        if (bounded != null) {
+            return bounded.getQueueDepth();
+        }
+        Topic topic = TopicTrie.isPattern(messageType)
+            ? instance.patterns.get(messageType)
+            : instance.topics.get(messageType);
+        return topic != null ? topic.pending.get() : 0;
+    }
+
+    /**
+     * Gets a snapshot of the queue depth of every topic with subscribers.
+     * @return Map of topic to pending delivery count
+     */
+    public static Map<String, Integer> getQueueDepths() {
+        Map<String, Integer> depths = new TreeMap<>();
+        instance.topics.forEach((name, topic) -> depths.put(name, topic.pending.get()));
+        instance.boundedTopics.forEach((name, topic) -> depths.put(name, topic.getQueueDepth()));
+        instance.patterns.forEach((pattern, topic) -> depths.put(pattern, topic.pending.get()));
+        instance.durableTopics.forEach((name, log) ->
+            depths.merge(name, (int) Math.min(Integer.MAX_VALUE, log.getBacklog()), Integer::sum));
+        return depths;
+    }
+
+    /**
+     * Gets the wildcard subscribers for a concrete topic, resolving them
+     * through the pattern trie on the first send and caching the result.
+     */
+    private Subscription[] resolvePatterns(String targetId) {
+        if (patternSubscriptions.get() == 0) {
+            return NO_SUBSCRIBERS;
+        }
+        Map<String, Subscription[]> cache = routeCache;
+        Subscription[] resolved = cache.get(targetId);
+        if (resolved == null) {
+            List<Subscription> matches = new ArrayList<>();
+            for (Topic topic : patterns.match(targetId)) {
+                Collections.addAll(matches, topic.subscribers);
+            }
+            resolved = matches.toArray(NO_SUBSCRIBERS);
+            if (cache.size() >= MAX_CACHED_ROUTES) {
+                cache.clear();
+            }
+            cache.put(targetId, resolved);
+        }
+        return resolved;
+    }
+
+    private void invalidateRoutes() {
+        // Swap rather than clear so a resolve racing with this change caches into the discarded map
+        routeCache = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * A message sent with {@link #request}. Responders reply through it.
+     * It is Serializable so that requests can be sent to durable topics; a
+     * request replayed after a restart can no longer be answered, and its
+     * {@link #reply} returns false.
+     */
+    public static final class Request implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        private final long correlationId;
+        private final String targetId;
+        private final Object payload;
+
+        Request(long correlationId, String targetId, Object payload) {
+            this.correlationId = correlationId;
+            this.targetId = targetId;
+            this.payload = payload;
+        }
+
+        public long getCorrelationId() {
+            return correlationId;
+        }
+
+        public String getTargetId() {
+            return targetId;
+        }
+
+        public Object getPayload() {
+            return payload;
+        }
+
+        public boolean reply(Object response) {
+            return MessageBus.reply(correlationId, response);
+        }
+
+        public boolean replyWithError(Throwable error) {
+            return MessageBus.replyWithError(correlationId, error);
+        }
+    }
+
+    private static class Topic {
+        volatile Subscription[] subscribers = NO_SUBSCRIBERS;
+        final AtomicInteger pending = new AtomicInteger();
+
+        synchronized void add(Subscription subscription) {
+            Subscription[] updated = Arrays.copyOf(subscribers, subscribers.length + 1);
+            updated[subscribers.length] = subscription;
+            subscribers = updated;
+        }
+
+        synchronized boolean remove(Consumer<Object> handler) {
+            Subscription[] current = subscribers;
+            for (int i = 0; i < current.length; i++) {
+                if (current[i].handler.equals(handler)) {
+                    Subscription[] updated = new Subscription[current.length - 1];
+                    System.arraycopy(current, 0, updated, 0, i);
+                    System.arraycopy(current, i + 1, updated, i, current.length - i - 1);
+                    subscribers = updated;
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Runs a batch on the EDT and waits for it, so the ring buffer slots and
+     * payloads it refers to are not released while it is still queued.
+     */
+    private static void invokeOnEventThread(Runnable batch) {
+        if (SwingUtilities.isEventDispatchThread()) {
+            batch.run();
+            return;
+        }
+        try {
+            SwingUtilities.invokeAndWait(batch);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (InvocationTargetException e) {
+            e.getCause().printStackTrace();
+        }
+    }
+
+    private static boolean hasLocalSubscribers(String messageType) {
+        return TopicTrie.isPattern(messageType)
+            ? instance.patterns.get(messageType) != null
+            : instance.topics.containsKey(messageType);
+    }
+
+    /**
+     * Keeps a binary payload alive while it waits in a queue, since the sender
+     * may release its own reference as soon as send returns.
+     */
+    static void retainPayload(Object message) {
+        if (message instanceof BinaryPayload) {
+            ((BinaryPayload) message).retain();
+        }
+    }
+
+    static void releasePayload(Object message) {
+        if (message instanceof BinaryPayload) {
+            ((BinaryPayload) message).release();
+        }
+    }
+
+    private static class Subscription {
+        final Topic topic;
+        final Consumer<Object> handler;
+        final DispatchMode mode;
+        private final Queue<Object> mailbox = new ConcurrentLinkedQueue<>();
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+
+        Subscription(Topic topic, Consumer<Object> handler, DispatchMode mode) {
+            this.topic = topic;
+            this.handler = handler;
+            this.mode = mode;
+        }
+
+        void deliver(Object message) {
+            switch (mode) {
+                case CALLER:
+                    invoke(message);
+                    break;
+                case EDT:
+                    topic.pending.incrementAndGet();
+                    retainPayload(message);
+                    SwingUtilities.invokeLater(() -> {
+                        try {
+                            invoke(message);
+                        } finally {
+                            releasePayload(message);
+                            topic.pending.decrementAndGet();
+                        }
+                    });
+                    break;
+                case ASYNC:
+                    topic.pending.incrementAndGet();
+                    retainPayload(message);
+                    mailbox.offer(message);
+                    schedule();
+                    break;
+            }
+        }
+
+        private void schedule() {
+            // At most one drain task per subscription keeps delivery ordered
+            if (scheduled.compareAndSet(false, true)) {
+                instance.executor.execute(this::drain);
+            }
+        }
+
+        private void drain() {
+            Object message;
+            while ((message = mailbox.poll()) != null) {
+                try {
+                    invoke(message);
+                } finally {
+                    releasePayload(message);
+                    topic.pending.decrementAndGet();
+                }
+            }
+            scheduled.set(false);
+            // A sender may have enqueued after the last poll but before the flag cleared
+            if (!mailbox.isEmpty()) {
+                schedule();
+            }
+        }
+
+        private void invoke(Object message) {
+            try {
+                handler.accept(message);
+            } catch (Exception e) {
+                // One failing subscriber must not break delivery to the rest
+                e.printStackTrace();
+            }
+        }
     }
 }
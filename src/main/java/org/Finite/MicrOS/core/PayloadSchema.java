@@ -0,0 +1,154 @@
+package org.Finite.MicrOS.core;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Describes the layout of a {@link BinaryPayload}. Fields are encoded in
+ * declaration order: fixed-width values (and offset/length slots for strings
+ * and byte arrays) sit at offsets known from the schema alone, followed by the
+ * variable-length data. Because the layout only depends on core types, apps
+ * loaded by different class loaders can exchange payloads without sharing
+ * any app classes.
+ */
+public final class PayloadSchema implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    /** Bytes reserved at the start of every payload for the schema hash and total size */
+    static final int HEADER_SIZE = 8;
+
+    public enum FieldType {
+        BOOLEAN(1),
+        INT(4),
+        LONG(8),
+        DOUBLE(8),
+        STRING(8),
+        BYTES(8);
+
+        final int width;
+
+        FieldType(int width) {
+            this.width = width;
+        }
+
+        boolean isVariable() {
+            return this == STRING || this == BYTES;
+        }
+    }
+
+    private final String name;
+    private final String[] fieldNames;
+    private final FieldType[] fieldTypes;
+    private transient int[] offsets;
+    private transient Map<String, Integer> indexes;
+    private transient int fixedSize;
+    private transient int hash;
+
+    private PayloadSchema(String name, String[] fieldNames, FieldType[] fieldTypes) {
+        this.name = name;
+        this.fieldNames = fieldNames;
+        this.fieldTypes = fieldTypes;
+        computeLayout();
+    }
+
+    private void computeLayout() {
+        offsets = new int[fieldNames.length];
+        indexes = new HashMap<>();
+        int offset = HEADER_SIZE;
+        int h = name.hashCode();
+        for (int i = 0; i < fieldNames.length; i++) {
+            offsets[i] = offset;
+            offset += fieldTypes[i].width;
+            indexes.put(fieldNames[i], i);
+            h = 31 * (31 * h + fieldNames[i].hashCode()) + fieldTypes[i].ordinal();
+        }
+        fixedSize = offset;
+        hash = h;
+    }
+
+    private Object readResolve() {
+        return new PayloadSchema(name, fieldNames, fieldTypes);
+    }
+
+    public static Builder builder(String name) {
+        return new Builder(name);
+    }
+
+    public PayloadWriter newWriter() {
+        return new PayloadWriter(this);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getFieldCount() {
+        return fieldNames.length;
+    }
+
+    public String getFieldName(int index) {
+        return fieldNames[index];
+    }
+
+    public FieldType getFieldType(int index) {
+        return fieldTypes[index];
+    }
+
+    /**
+     * Gets the index of a field, for use with the index-based accessors.
+     * @return The field index, or -1 if the schema has no such field
+     */
+    public int indexOf(String field) {
+        Integer index = indexes.get(field);
+        return index != null ? index : -1;
+    }
+
+    public boolean hasField(String field) {
+        return indexes.containsKey(field);
+    }
+
+    int offsetOf(int index) {
+        return offsets[index];
+    }
+
+    int getFixedSize() {
+        return fixedSize;
+    }
+
+    int getSchemaHash() {
+        return hash;
+    }
+
+    public static final class Builder {
+        private final String name;
+        private final List<String> names = new ArrayList<>();
+        private final List<FieldType> types = new ArrayList<>();
+
+        private Builder(String name) {
+            this.name = name;
+        }
+
+        public Builder field(String fieldName, FieldType type) {
+            if (names.contains(fieldName)) {
+                throw new IllegalArgumentException("Duplicate field: " + fieldName);
+            }
+            names.add(fieldName);
+            types.add(type);
+            return this;
+        }
+
+        public Builder booleanField(String fieldName) { return field(fieldName, FieldType.BOOLEAN); }
+        public Builder intField(String fieldName) { return field(fieldName, FieldType.INT); }
+        public Builder longField(String fieldName) { return field(fieldName, FieldType.LONG); }
+        public Builder doubleField(String fieldName) { return field(fieldName, FieldType.DOUBLE); }
+        public Builder stringField(String fieldName) { return field(fieldName, FieldType.STRING); }
+        public Builder bytesField(String fieldName) { return field(fieldName, FieldType.BYTES); }
+
+        public PayloadSchema build() {
+            return new PayloadSchema(name, names.toArray(new String[0]), types.toArray(new FieldType[0]));
+        }
+    }
+}
@@ -0,0 +1,148 @@
+package org.Finite.MicrOS.core;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Encodes one {@link BinaryPayload} directly into a pooled direct buffer.
+ * Obtain one from {@link PayloadSchema#newWriter()}; a writer can build a
+ * single payload. Fields that are never set read back as zero, false or null.
+ */
+public final class PayloadWriter {
+    private static final int INITIAL_VARIABLE_SPACE = 64;
+
+    private final PayloadSchema schema;
+    private ByteBuffer buffer;
+    private int limit;
+
+    PayloadWriter(PayloadSchema schema) {
+        this.schema = schema;
+        this.buffer = BufferPool.acquire(schema.getFixedSize() + INITIAL_VARIABLE_SPACE);
+        this.limit = schema.getFixedSize();
+        // Pooled buffers hold old data, so reset the fixed section
+        for (int i = 0; i < limit; i++) {
+            buffer.put(i, (byte) 0);
+        }
+        for (int i = 0; i < schema.getFieldCount(); i++) {
+            if (schema.getFieldType(i).isVariable()) {
+                buffer.putInt(schema.offsetOf(i) + 4, -1);
+            }
+        }
+    }
+
+    public PayloadWriter putBoolean(String field, boolean value) {
+        buffer().put(slot(field, PayloadSchema.FieldType.BOOLEAN), (byte) (value ? 1 : 0));
+        return this;
+    }
+
+    public PayloadWriter putInt(String field, int value) {
+        buffer().putInt(slot(field, PayloadSchema.FieldType.INT), value);
+        return this;
+    }
+
+    public PayloadWriter putLong(String field, long value) {
+        buffer().putLong(slot(field, PayloadSchema.FieldType.LONG), value);
+        return this;
+    }
+
+    public PayloadWriter putDouble(String field, double value) {
+        buffer().putDouble(slot(field, PayloadSchema.FieldType.DOUBLE), value);
+        return this;
+    }
+
+    public PayloadWriter putString(String field, String value) {
+        int slot = slot(field, PayloadSchema.FieldType.STRING);
+        if (value != null) {
+            putVariable(slot, ByteBuffer.wrap(value.getBytes(StandardCharsets.UTF_8)));
+        }
+        return this;
+    }
+
+    public PayloadWriter putBytes(String field, byte[] value) {
+        return putBytes(field, value != null ? ByteBuffer.wrap(value) : null);
+    }
+
+    /**
+     * Copies the remaining bytes of a buffer into the payload without changing its position.
+     */
+    public PayloadWriter putBytes(String field, ByteBuffer value) {
+        int slot = slot(field, PayloadSchema.FieldType.BYTES);
+        if (value != null) {
+            putVariable(slot, value.duplicate());
+        }
+        return this;
+    }
+
+    /**
+     * Sets a field from a boxed value, as stored in {@link Intent} extras.
+     * @throws IllegalArgumentException if the value doesn't match the field type
+     */
+    public PayloadWriter put(String field, Object value) {
+        int index = schema.indexOf(field);
+        if (index < 0) {
+            throw new IllegalArgumentException("Unknown field " + field + " in " + schema.getName());
+        }
+        try {
+            switch (schema.getFieldType(index)) {
+                case BOOLEAN: return putBoolean(field, (Boolean) value);
+                case INT: return putInt(field, ((Number) value).intValue());
+                case LONG: return putLong(field, ((Number) value).longValue());
+                case DOUBLE: return putDouble(field, ((Number) value).doubleValue());
+                case STRING: return putString(field, (String) value);
+                default:
+                    return value instanceof ByteBuffer
+                        ? putBytes(field, (ByteBuffer) value)
+                        : putBytes(field, (byte[]) value);
+            }
+        } catch (ClassCastException | NullPointerException e) {
+            throw new IllegalArgumentException("Invalid value for " + field + ": " + value, e);
+        }
+    }
+
+    /**
+     * Finishes encoding. The writer can't be used afterwards.
+     */
+    public BinaryPayload build() {
+        ByteBuffer encoded = buffer();
+        encoded.putInt(0, schema.getSchemaHash());
+        encoded.putInt(4, limit);
+        buffer = null;
+        return new BinaryPayload(schema, encoded, limit, true);
+    }
+
+    private ByteBuffer buffer() {
+        if (buffer == null) {
+            throw new IllegalStateException("Payload already built");
+        }
+        return buffer;
+    }
+
+    private int slot(String field, PayloadSchema.FieldType expected) {
+        int index = schema.indexOf(field);
+        if (index < 0) {
+            throw new IllegalArgumentException("Unknown field " + field + " in " + schema.getName());
+        }
+        if (schema.getFieldType(index) != expected) {
+            throw new IllegalArgumentException("Field " + field + " is " + schema.getFieldType(index) + ", not " + expected);
+        }
+        return schema.offsetOf(index);
+    }
+
+    private void putVariable(int slot, ByteBuffer data) {
+        int length = data.remaining();
+        ensureCapacity(limit + length);
+        buffer.put(limit, data, data.position(), length);
+        buffer.putInt(slot, limit);
+        buffer.putInt(slot + 4, length);
+        limit += length;
+    }
+
+    private void ensureCapacity(int size) {
+        ByteBuffer current = buffer();
+        if (size <= current.capacity()) return;
+        ByteBuffer larger = BufferPool.acquire(Math.max(size, current.capacity() * 2));
+        larger.put(0, current, 0, limit);
+        BufferPool.release(current);
+        buffer = larger;
+    }
+}
@@ -0,0 +1,322 @@
+package org.Finite.MicrOS.core;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.regex.Pattern;
+
+/**
+ * Captures native process output into rotating log files under /var/log.
+ * Each process gets its own buffered writer; a single shared flusher thread
+ * drains all buffers to disk so output readers never block on file I/O.
+ * Process IDs start again at 1 every boot, so the first time a log is opened
+ * in a run it replaces whatever an earlier run left under that ID.
+ */
+public class ProcessLogger {
+    public static final String LOG_DIRECTORY = "/var/log";
+
+    private static final int BUFFER_SIZE = 8192;
+    private static final int READ_CHUNK_SIZE = 4096;
+    private static final long MAX_LOG_SIZE = 1024 * 1024;
+    private static final int MAX_ROTATED_FILES = 3;
+    private static final long FLUSH_INTERVAL_MS = 500;
+
+    private static final ProcessLogger instance = new ProcessLogger();
+    private final Map<Integer, LogWriter> writers = new ConcurrentHashMap<>();
+    /** Process IDs whose logs have been started in this run */
+    private final Set<Integer> openedThisRun = ConcurrentHashMap.newKeySet();
+    private final ScheduledExecutorService flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "process-log-flusher");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private ProcessLogger() {
+        flusher.scheduleWithFixedDelay(this::flushAll, FLUSH_INTERVAL_MS, FLUSH_INTERVAL_MS, TimeUnit.MILLISECONDS);
+    }
+
+    public static ProcessLogger getInstance() {
+        return instance;
+    }
+
+    /**
+     * Opens (or reopens) the log file for a process and writes a start marker.
+     * The first open of a process ID in this run truncates the log and deletes
+     * its rotated segments; later opens append.
+     * @param processId The process ID
+     * @param command The command being run
+     */
+    public void open(int processId, String command) throws IOException {
+        Path directory = getLogDirectory();
+        Files.createDirectories(directory);
+        LogWriter writer = new LogWriter(directory, processId, openedThisRun.add(processId));
+        LogWriter previous = writers.put(processId, writer);
+        if (previous != null) {
+            previous.close();
+        }
+        writer.append("=== " + new Date() + " started: " + command);
+    }
+
+    /**
+     * Buffers a line of output for a process. Lines for processes without an
+     * open log are ignored.
+     */
+    public void append(int processId, String line) {
+        LogWriter writer = writers.get(processId);
+        if (writer != null) {
+            writer.append(line);
+        }
+    }
+
+    /**
+     * Flushes and closes the log of a process.
+     */
+    public void close(int processId) {
+        LogWriter writer = writers.remove(processId);
+        if (writer != null) {
+            writer.close();
+        }
+    }
+
+    /**
+     * Flushes and closes every open log. Called on shutdown.
+     */
+    public void closeAll() {
+        for (Integer processId : new ArrayList<>(writers.keySet())) {
+            close(processId);
+        }
+    }
+
+    public Path getLogDirectory() {
+        return VirtualFileSystem.getInstance().resolveVirtualPath(LOG_DIRECTORY);
+    }
+
+    public Path getLogPath(int processId) {
+        return getLogDirectory().resolve(processId + ".log");
+    }
+
+    /**
+     * Lists the current (non-rotated) log files.
+     * @return Log file paths sorted by name
+     */
+    public List<Path> listLogs() throws IOException {
+        Path directory = getLogDirectory();
+        if (!Files.isDirectory(directory)) {
+            return Collections.emptyList();
+        }
+        List<Path> logs = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "*.log")) {
+            for (Path path : stream) {
+                logs.add(path);
+            }
+        }
+        logs.sort(Comparator.comparing(Path::toString));
+        return logs;
+    }
+
+    /**
+     * Reads the last lines of a process log by scanning backwards from the end
+     * of the file, so only the requested tail is ever held in memory.
+     * @param processId The process ID
+     * @param lines Number of lines to return
+     * @return The last lines of the log, oldest first
+     */
+    public List<String> tail(int processId, int lines) throws IOException {
+        flush(processId);
+        Path path = getLogPath(processId);
+        if (lines <= 0) {
+            return Collections.emptyList();
+        }
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long end = channel.size();
+            long start = 0;
+            int newlines = 0;
+            long position = end;
+            ByteBuffer chunk = ByteBuffer.allocate(READ_CHUNK_SIZE);
+
+            search:
+            while (position > 0) {
+                int length = (int) Math.min(READ_CHUNK_SIZE, position);
+                position -= length;
+                readFully(channel, chunk, position, length);
+                for (int i = length - 1; i >= 0; i--) {
+                    // The newline terminating the last line doesn't start a new one
+                    if (chunk.get(i) == '\n' && position + i != end - 1 && ++newlines == lines) {
+                        start = position + i + 1;
+                        break search;
+                    }
+                }
+            }
+
+            ByteBuffer tail = ByteBuffer.allocate((int) (end - start));
+            readFully(channel, tail, start, tail.capacity());
+            String text = new String(tail.array(), StandardCharsets.UTF_8);
+            if (text.isEmpty()) {
+                return Collections.emptyList();
+            }
+            return Arrays.asList(text.split("\n"));
+        }
+    }
+
+    /**
+     * Streams a process log and its rotated segments line by line, oldest
+     * first, reporting every line that matches the given regular expression.
+     * @param processId The process ID
+     * @param regex Pattern to search for
+     * @param onMatch Receives each matching line
+     * @return Number of matching lines
+     */
+    public int search(int processId, String regex, Consumer<String> onMatch) throws IOException {
+        flush(processId);
+        Pattern pattern = Pattern.compile(regex);
+        int matches = 0;
+
+        List<Path> segments = new ArrayList<>();
+        for (int i = MAX_ROTATED_FILES; i >= 1; i--) {
+            segments.add(rotatedPath(getLogPath(processId), i));
+        }
+        segments.add(getLogPath(processId));
+
+        for (Path segment : segments) {
+            if (!Files.exists(segment)) continue;
+            try (BufferedReader reader = Files.newBufferedReader(segment, StandardCharsets.UTF_8)) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    if (pattern.matcher(line).find()) {
+                        onMatch.accept(line);
+                        matches++;
+                    }
+                }
+            }
+        }
+        return matches;
+    }
+
+    private void flush(int processId) {
+        LogWriter writer = writers.get(processId);
+        if (writer != null) {
+            writer.flush();
+        }
+    }
+
+    private void flushAll() {
+        for (LogWriter writer : writers.values()) {
+            writer.flush();
+        }
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position, int length) throws IOException {
+        buffer.clear().limit(length);
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position + buffer.position());
+            if (read < 0) break;
+        }
+    }
+
+    private static Path rotatedPath(Path path, int index) {
+        return path.resolveSibling(path.getFileName() + "." + index);
+    }
+
+    /**
+     * Buffered append-only writer for a single process log. The channel is
+     * null after a failed rotation and is reopened by the next write.
+     */
+    private static class LogWriter {
+        private final Path path;
+        private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+        private FileChannel channel;
+        private boolean closed;
+
+        LogWriter(Path directory, int processId, boolean fresh) throws IOException {
+            this.path = directory.resolve(processId + ".log");
+            if (fresh) {
+                for (int i = 1; i <= MAX_ROTATED_FILES; i++) {
+                    Files.deleteIfExists(rotatedPath(path, i));
+                }
+            }
+            this.channel = openChannel(fresh);
+        }
+
+        synchronized void append(String line) {
+            if (closed) return;
+            byte[] bytes = (line + "\n").getBytes(StandardCharsets.UTF_8);
+            if (bytes.length > buffer.remaining()) {
+                flush();
+            }
+            if (bytes.length > buffer.capacity()) {
+                write(ByteBuffer.wrap(bytes));
+            } else {
+                buffer.put(bytes);
+            }
+        }
+
+        synchronized void flush() {
+            if (closed || buffer.position() == 0) return;
+            buffer.flip();
+            write(buffer);
+            buffer.clear();
+        }
+
+        synchronized void close() {
+            flush();
+            closed = true;
+            if (channel != null) {
+                try {
+                    channel.close();
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+                channel = null;
+            }
+        }
+
+        private void write(ByteBuffer data) {
+            try {
+                if (channel == null) {
+                    channel = openChannel(false);
+                }
+                while (data.hasRemaining()) {
+                    channel.write(data);
+                }
+                if (channel.size() >= MAX_LOG_SIZE) {
+                    rotate();
+                }
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+
+        private void rotate() throws IOException {
+            FileChannel current = channel;
+            channel = null;
+            current.close();
+            Files.deleteIfExists(rotatedPath(path, MAX_ROTATED_FILES));
+            for (int i = MAX_ROTATED_FILES - 1; i >= 1; i--) {
+                Path source = rotatedPath(path, i);
+                if (Files.exists(source)) {
+                    Files.move(source, rotatedPath(path, i + 1), StandardCopyOption.REPLACE_EXISTING);
+                }
+            }
+            Files.move(path, rotatedPath(path, 1), StandardCopyOption.REPLACE_EXISTING);
+            channel = openChannel(false);
+        }
+
+        private FileChannel openChannel(boolean truncate) throws IOException {
+            return truncate
+                ? FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING)
+                : FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.APPEND);
+        }
+    }
+}
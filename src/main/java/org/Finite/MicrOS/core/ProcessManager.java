@@ -22,6 +22,8 @@ public class ProcessManager {
     private final Map<Integer, String> threadAppIds = new HashMap<>(); // Add this field
     private int nextThreadId = 1;
 
+    private final ProcessLogger processLogger = ProcessLogger.getInstance();
+
     private static ProcessManager instance;
 
     public static ProcessManager getInstance() {
@@ -35,21 +37,46 @@ public class ProcessManager {
     }
 
     public int startProcess(String command) {
+        return startProcess(command, true);
+    }
+
+    /**
+     * Starts a native process, optionally teeing its output into /var/log/&lt;pid&gt;.log
+     * @param command The command to run
+     * @param captureOutput Whether to write the output to a log file
+     * @return The process ID, or -1 if the process could not be started
+     */
+    public int startProcess(String command, boolean captureOutput) {
+        ProcessBuilder pb = new ProcessBuilder();
+        
+        // Handle different OS shells and native binaries
+        if (command.startsWith("./") || command.startsWith("/")) {
+            // Direct binary execution
+            pb.command(command.split("\\s+"));
+        } else if (System.getProperty("os.name").toLowerCase().contains("windows")) {
+            pb.command("cmd.exe", "/c", command);
+        } else {
+            pb.command("sh", "-c", command);
+        }
+        return startProcess(pb, command, captureOutput);
+    }
+
+    /**
+     * Starts a process from an argument list without going through a shell,
+     * e.g. a child JVM for an isolated app.
+     * @param command The program and its arguments
+     * @param description Shown in the console and the log header
+     * @param captureOutput Whether to write the output to a log file
+     * @return The process ID, or -1 if the process could not be started
+     */
+    public int startProcess(List<String> command, String description, boolean captureOutput) {
+        return startProcess(new ProcessBuilder(command), description, captureOutput);
+    }
+
+    private int startProcess(ProcessBuilder pb, String command, boolean captureOutput) {
         int processId = nextProcessId++;
         
         try {
-            ProcessBuilder pb = new ProcessBuilder();
-            
-            // Handle different OS shells and native binaries
-            if (command.startsWith("./") || command.startsWith("/")) {
-                // Direct binary execution
-                pb.command(command.split("\\s+"));
-            } else if (System.getProperty("os.name").toLowerCase().contains("windows")) {
-                pb.command("cmd.exe", "/c", command);
-            } else {
-                pb.command("sh", "-c", command);
-            }
-            
             // Set working directory
             pb.directory(new File(System.getProperty("user.dir")));
             
@@ -60,14 +87,29 @@ public class ProcessManager {
             
             Process process = pb.start();
             activeProcesses.put(processId, process);
+
+            if (captureOutput) {
+                try {
+                    processLogger.open(processId, command);
+                } catch (IOException e) {
+                    console.appendText(
+                        "[" + processId + "] Output will not be logged: " + e.getMessage() + "\n",
+                        Color.YELLOW
+                    );
+                }
+            }
             
             // Handle process output
-            startOutputReader(process.getInputStream(), Color.WHITE, processId);
+            Thread outputReader = startOutputReader(process.getInputStream(), Color.WHITE, processId);
             
             // Monitor process completion
             new Thread(() -> {
                 try {
                     int exitCode = process.waitFor();
+                    // Let the reader drain remaining output before the log is closed
+                    outputReader.join();
+                    processLogger.append(processId, "=== exited with code " + exitCode);
+                    processLogger.close(processId);
                     SwingUtilities.invokeLater(() -> {
                         console.appendText(
                             "[" + processId + "] Process exited with code " + exitCode + "\n",
@@ -90,12 +132,12 @@ public class ProcessManager {
         }
     }
 
-    private void startOutputReader(
+    private Thread startOutputReader(
         InputStream inputStream,
         Color color,
         int processId
     ) {
-        new Thread(() -> {
+        Thread readerThread = new Thread(() -> {
             try (
                 BufferedReader reader = new BufferedReader(
                     new InputStreamReader(inputStream)
@@ -104,6 +146,7 @@ public class ProcessManager {
                 String line;
                 while ((line = reader.readLine()) != null) {
                     final String output = line;
+                    processLogger.append(processId, output);
                     SwingUtilities.invokeLater(() -> 
                         console.appendText(
                             "[" + processId + "] " + output + "\n",
@@ -119,7 +162,14 @@ public class ProcessManager {
                     )
                 );
             }
-        }).start();
+        });
+        readerThread.start();
+        return readerThread;
+    }
+
+    public boolean isProcessAlive(int processId) {
+        Process process = activeProcesses.get(processId);
+        return process != null && process.isAlive();
     }
 
     public void killProcess(int processId) {
@@ -293,6 +343,7 @@ public class ProcessManager {
             entry.getValue().destroyForcibly();
         }
         activeProcesses.clear();
+        processLogger.closeAll();
         
         logShutdown("All processes terminated");
     }
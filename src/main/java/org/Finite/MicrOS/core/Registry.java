@@ -1,25 +1,408 @@
 package org.Finite.MicrOS.core;
 
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Consumer;
 
+/**
+ * System-wide key/value store. Every write bumps a global revision and
+ * stamps the written keys with it, so each key carries a version that
+ * {@link #compareAndSet} can check against. The whole map is immutable
+ * between writes, which makes {@link #snapshot()} a consistent view across
+ * keys at no cost to readers.
+ *
+ * <p>Watchers are notified on a background thread. Several writes to a key
+ * before its watchers run are coalesced into one notification carrying the
+ * latest value.
+ *
+ * <p>Keys written through {@link #forApp} are also persisted under
+ * {@code /system/registry/<appId>/}. Each app's namespace is loaded from disk
+ * the first time it is asked for, so nothing is read at boot.
+ */
 public class Registry {
     private static final Registry instance = new Registry();
-    private final ConcurrentHashMap<String, Object> data = new ConcurrentHashMap<>();
-    private final ConcurrentHashMap<String, Consumer<Object>> watchers = new ConcurrentHashMap<>();
-    
+    public static final String STORE_DIRECTORY = "/system/registry";
+
+    private final AtomicReference<Snapshot> state = new AtomicReference<>(new Snapshot(Collections.emptyMap(), 0));
+    private final ConcurrentHashMap<String, CopyOnWriteArrayList<Watch>> watchers = new ConcurrentHashMap<>();
+    private final Set<String> changedKeys = ConcurrentHashMap.newKeySet();
+    private final AtomicBoolean dispatchScheduled = new AtomicBoolean();
+    private final ConcurrentHashMap<String, Namespace> namespaces = new ConcurrentHashMap<>();
+    private final ExecutorService notifier = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "registry-notifier");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * Receives the key, its new value (null once removed) and its version.
+     */
+    @FunctionalInterface
+    public interface Watcher {
+        void changed(String key, Object value, long version);
+    }
+
+    /**
+     * Handle returned by {@link #watch(String, Watcher)}; cancel it to stop notifications.
+     */
+    public static final class Watch {
+        private final String key;
+        private final Watcher watcher;
+        private long lastVersion;
+
+        private Watch(String key, Watcher watcher, long version) {
+            this.key = key;
+            this.watcher = watcher;
+            this.lastVersion = version;
+        }
+
+        public void cancel() {
+            instance.watchers.computeIfPresent(key, (k, list) -> {
+                list.remove(this);
+                return list.isEmpty() ? null : list;
+            });
+        }
+    }
+
+    /**
+     * Immutable view of the registry as of one revision.
+     */
+    public static final class Snapshot {
+        private final Map<String, Entry> entries;
+        private final long revision;
+
+        private Snapshot(Map<String, Entry> entries, long revision) {
+            this.entries = entries;
+            this.revision = revision;
+        }
+
+        public Object get(String key) {
+            Entry entry = entries.get(key);
+            return entry != null ? entry.value : null;
+        }
+
+        /**
+         * @return The revision at which the key was last written, or 0 if absent
+         */
+        public long getVersion(String key) {
+            Entry entry = entries.get(key);
+            return entry != null ? entry.version : 0;
+        }
+
+        public boolean contains(String key) {
+            return entries.containsKey(key);
+        }
+
+        public Set<String> keySet() {
+            return entries.keySet();
+        }
+
+        /**
+         * @return The revision of the last write included in this snapshot
+         */
+        public long getRevision() {
+            return revision;
+        }
+    }
+
+    /**
+     * An app's persistent slice of the registry. Its keys live in the shared
+     * registry as {@code appId + "/" + key}, so snapshots and watchers see them
+     * like any other key, but they must be written through the namespace to
+     * be persisted. Versions restart when the namespace is loaded again.
+     */
+    public static final class Namespace {
+        private final String prefix;
+        private final RegistryStore store;
+        private int liveKeys;
+
+        private Namespace(String appId, RegistryStore store, int liveKeys) {
+            this.prefix = appId + "/";
+            this.store = store;
+            this.liveKeys = liveKeys;
+        }
+
+        public Object get(String key) {
+            return Registry.get(prefix + key);
+        }
+
+        public long getVersion(String key) {
+            return Registry.getVersion(prefix + key);
+        }
+
+        /**
+         * @return The keys of this namespace, without the app prefix
+         */
+        public Set<String> keySet() {
+            Set<String> keys = new HashSet<>();
+            for (String key : snapshot().keySet()) {
+                if (key.startsWith(prefix)) {
+                    keys.add(key.substring(prefix.length()));
+                }
+            }
+            return keys;
+        }
+
+        /**
+         * @throws IllegalArgumentException if the value can't be persisted
+         */
+        public void put(String key, Object value) {
+            putVersioned(key, value);
+        }
+
+        /**
+         * Same as {@link #put}, returning the key's new version.
+         * @throws IllegalArgumentException if the value can't be persisted
+         */
+        public synchronized long putVersioned(String key, Object value) {
+            byte[] record = RegistryStore.encodePut(key, value);
+            boolean added = Registry.getVersion(prefix + key) == 0;
+            long version = Registry.putVersioned(prefix + key, value);
+            persist(record, added ? 1 : 0);
+            return version;
+        }
+
+        public synchronized boolean compareAndSet(String key, long expectedVersion, Object value) {
+            byte[] record = RegistryStore.encodePut(key, value);
+            if (!Registry.compareAndSet(prefix + key, expectedVersion, value)) {
+                return false;
+            }
+            persist(record, expectedVersion == 0 ? 1 : 0);
+            return true;
+        }
+
+        public synchronized boolean remove(String key) {
+            if (!Registry.remove(prefix + key)) {
+                return false;
+            }
+            persist(RegistryStore.encodeRemove(key), -1);
+            return true;
+        }
+
+        public Watch watch(String key, Watcher watcher) {
+            return Registry.watch(prefix + key, (k, value, version) -> watcher.changed(key, value, version));
+        }
+
+        public void watch(String key, Consumer<Object> onChange) {
+            Registry.watch(prefix + key, onChange);
+        }
+
+        private void persist(byte[] record, int keyDelta) {
+            liveKeys += keyDelta;
+            if (store == null) {
+                return;
+            }
+            try {
+                if (store.append(record, liveKeys)) {
+                    Map<String, Object> entries = new HashMap<>();
+                    Snapshot current = snapshot();
+                    for (String key : current.keySet()) {
+                        if (key.startsWith(prefix)) {
+                            entries.put(key.substring(prefix.length()), current.get(key));
+                        }
+                    }
+                    store.compact(entries);
+                }
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    private static final class Entry {
+        final Object value;
+        final long version;
+
+        Entry(Object value, long version) {
+            this.value = value;
+            this.version = version;
+        }
+    }
+
     public static void put(String key, Object value) {
-        instance.data.put(key, value);
-        if (instance.watchers.containsKey(key)) {
-            instance.watchers.get(key).accept(value);
+        putVersioned(key, value);
+    }
+
+    /**
+     * Same as {@link #put}, returning the key's new version.
+     */
+    public static long putVersioned(String key, Object value) {
+        return putAll(Collections.singletonMap(key, value));
+    }
+
+    /**
+     * Writes several keys atomically; readers see either none or all of them.
+     * @return The version the keys were written at
+     */
+    public static long putAll(Map<String, ?> values) {
+        for (Map.Entry<String, ?> value : values.entrySet()) {
+            Objects.requireNonNull(value.getKey(), "key");
+            Objects.requireNonNull(value.getValue(), "value");
         }
+        return instance.update(values, null);
+    }
+
+    /**
+     * Writes the key only if it is still at the expected version.
+     * @param expectedVersion Version from {@link #getVersion}, or 0 to require that the key is absent
+     * @return Whether the value was written
+     */
+    public static boolean compareAndSet(String key, long expectedVersion, Object value) {
+        Objects.requireNonNull(key, "key");
+        Objects.requireNonNull(value, "value");
+        return instance.update(Collections.singletonMap(key, value),
+            Collections.singletonMap(key, expectedVersion)) != 0;
     }
-    
+
+    /**
+     * @return Whether the key was present
+     */
+    public static boolean remove(String key) {
+        return instance.update(Collections.singletonMap(key, null), null) != 0;
+    }
+
     public static Object get(String key) {
-        return instance.data.get(key);
+        return instance.state.get().get(key);
+    }
+
+    public static long getVersion(String key) {
+        return instance.state.get().getVersion(key);
     }
-    
+
+    public static Snapshot snapshot() {
+        return instance.state.get();
+    }
+
+    /**
+     * Gets an app's persistent namespace, loading it from disk on first use.
+     * If the store can't be read the namespace still works, but in memory only.
+     * @param appId App identifier, e.g. {@code org.finite.texteditor}
+     */
+    public static Namespace forApp(String appId) {
+        if (!appId.matches("[A-Za-z0-9._-]+") || appId.equals(".") || appId.equals("..")) {
+            throw new IllegalArgumentException("Invalid app ID: " + appId);
+        }
+        return instance.namespaces.computeIfAbsent(appId, Registry::loadNamespace);
+    }
+
+    private static Namespace loadNamespace(String appId) {
+        Map<String, Object> stored = new HashMap<>();
+        RegistryStore store = null;
+        try {
+            store = RegistryStore.open(VirtualFileSystem.getInstance()
+                .resolveVirtualPath(STORE_DIRECTORY + "/" + appId), stored);
+        } catch (IOException | RuntimeException e) {
+            e.printStackTrace();
+            stored.clear();
+        }
+        Map<String, Object> prefixed = new HashMap<>();
+        for (Map.Entry<String, Object> entry : stored.entrySet()) {
+            prefixed.put(appId + "/" + entry.getKey(), entry.getValue());
+        }
+        if (!prefixed.isEmpty()) {
+            putAll(prefixed);
+        }
+        return new Namespace(appId, store, stored.size());
+    }
+
+    /**
+     * Adds a watcher for a key. Any number of watchers can watch the same key.
+     * @return A handle to stop watching with
+     */
+    public static Watch watch(String key, Watcher watcher) {
+        Watch watch = new Watch(key, watcher, getVersion(key));
+        instance.watchers.computeIfAbsent(key, k -> new CopyOnWriteArrayList<>()).add(watch);
+        return watch;
+    }
+
+    /**
+     * Adds a watcher that only receives the new value. Use
+     * {@link #watch(String, Watcher)} to be able to cancel it.
+     */
     public static void watch(String key, Consumer<Object> onChange) {
-        instance.watchers.put(key, onChange);
+        watch(key, (k, value, version) -> onChange.accept(value));
+    }
+
+    /**
+     * Applies the writes (null values remove) if every expected version
+     * matches, retrying if another writer got in first.
+     * @return The new revision, or 0 if an expectation failed or nothing changed
+     */
+    private long update(Map<String, ?> values, Map<String, Long> expectedVersions) {
+        while (true) {
+            Snapshot current = state.get();
+            if (expectedVersions != null) {
+                for (Map.Entry<String, Long> expected : expectedVersions.entrySet()) {
+                    if (current.getVersion(expected.getKey()) != expected.getValue()) {
+                        return 0;
+                    }
+                }
+            }
+
+            long revision = current.revision + 1;
+            Map<String, Entry> entries = new HashMap<>(current.entries);
+            boolean changed = false;
+            for (Map.Entry<String, ?> value : values.entrySet()) {
+                if (value.getValue() != null) {
+                    entries.put(value.getKey(), new Entry(value.getValue(), revision));
+                    changed = true;
+                } else if (entries.remove(value.getKey()) != null) {
+                    changed = true;
+                }
+            }
+            if (!changed) {
+                return 0;
+            }
+
+            if (state.compareAndSet(current, new Snapshot(Collections.unmodifiableMap(entries), revision))) {
+                for (String key : values.keySet()) {
+                    if (watchers.containsKey(key)) {
+                        changedKeys.add(key);
+                    }
+                }
+                if (!changedKeys.isEmpty() && dispatchScheduled.compareAndSet(false, true)) {
+                    notifier.execute(this::dispatch);
+                }
+                return revision;
+            }
+        }
+    }
+
+    private void dispatch() {
+        dispatchScheduled.set(false);
+        for (String key : changedKeys) {
+            changedKeys.remove(key);
+            CopyOnWriteArrayList<Watch> keyWatchers = watchers.get(key);
+            if (keyWatchers == null) {
+                continue;
+            }
+            // Read after clearing the mark so a concurrent write is either seen here or re-marked
+            Snapshot current = state.get();
+            Object value = current.get(key);
+            // A removal has no version of its own; use the revision that observed it
+            long version = value != null ? current.getVersion(key) : current.getRevision();
+            for (Watch watch : keyWatchers) {
+                if (version <= watch.lastVersion) {
+                    continue;
+                }
+                watch.lastVersion = version;
+                try {
+                    watch.watcher.changed(key, value, version);
+                } catch (Exception e) {
+                    e.printStackTrace();
+                }
+            }
+        }
     }
 }
@@ -0,0 +1,272 @@
+package org.Finite.MicrOS.core;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * On-disk form of one registry namespace: a snapshot file holding every key
+ * as of the last compaction, plus an append-only log of the writes since.
+ * Records carry a length and CRC32 so a write torn by a crash is detected and
+ * cut off when the namespace is next loaded. Every append is synced to disk,
+ * and a new snapshot is synced before it replaces the old one.
+ *
+ * <p>Only Strings, Integers, Longs, Doubles, Booleans and byte arrays can be
+ * stored. Objects of an app's own classes would have to be read back through
+ * its bundle's class loader, and keeping them in the shared registry would
+ * stop that loader from being closed when the bundle is reloaded.
+ */
+class RegistryStore implements Closeable {
+    private static final String SNAPSHOT_FILE = "snapshot.dat";
+    private static final String LOG_FILE = "registry.log";
+    private static final int SNAPSHOT_MAGIC = 0x4D524731; // "MRG1"
+    private static final int MIN_COMPACT_RECORDS = 256;
+    private static final int RECORD_HEADER_SIZE = 8;
+
+    private static final byte OP_PUT = 1;
+    private static final byte OP_REMOVE = 2;
+
+    private static final byte TYPE_STRING = 0;
+    private static final byte TYPE_INT = 1;
+    private static final byte TYPE_LONG = 2;
+    private static final byte TYPE_DOUBLE = 3;
+    private static final byte TYPE_BOOLEAN = 4;
+    private static final byte TYPE_BYTES = 5;
+
+    private final Path directory;
+    private final FileChannel log;
+    private int logRecords;
+
+    private RegistryStore(Path directory, FileChannel log, int logRecords) {
+        this.directory = directory;
+        this.log = log;
+        this.logRecords = logRecords;
+    }
+
+    /**
+     * Opens the namespace stored in a directory, creating it if needed, and
+     * reads its current contents into {@code entries}.
+     */
+    static RegistryStore open(Path directory, Map<String, Object> entries) throws IOException {
+        Files.createDirectories(directory);
+        Path snapshot = directory.resolve(SNAPSHOT_FILE);
+        if (Files.exists(snapshot)) {
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(snapshot)))) {
+                if (in.readInt() != SNAPSHOT_MAGIC) {
+                    throw new IOException("Not a registry snapshot: " + snapshot);
+                }
+                int count = in.readInt();
+                long remaining = Files.size(snapshot) - 8;
+                for (int i = 0; i < count; i++) {
+                    byte[] record = readRecord(in, remaining);
+                    if (record == null) {
+                        throw new IOException("Corrupt registry snapshot: " + snapshot);
+                    }
+                    applyRecord(record, entries);
+                    remaining -= RECORD_HEADER_SIZE + record.length;
+                }
+            }
+        }
+
+        FileChannel log = FileChannel.open(directory.resolve(LOG_FILE),
+            StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        int records = 0;
+        long validLength = 0;
+        long logSize = log.size();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(directory.resolve(LOG_FILE))))) {
+            byte[] record;
+            while ((record = readRecord(in, logSize - validLength)) != null) {
+                applyRecord(record, entries);
+                validLength += RECORD_HEADER_SIZE + record.length;
+                records++;
+            }
+        }
+        // Drop a partially written record so new ones aren't appended after it
+        log.truncate(validLength);
+        log.position(validLength);
+        return new RegistryStore(directory, log, records);
+    }
+
+    static byte[] encodePut(String key, Object value) {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeByte(OP_PUT);
+            out.writeUTF(key);
+            writeValue(out, value);
+            return bytes.toByteArray();
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Failed to encode registry value for " + key, e);
+        }
+    }
+
+    static byte[] encodeRemove(String key) {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeByte(OP_REMOVE);
+            out.writeUTF(key);
+            return bytes.toByteArray();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Appends an encoded record to the log.
+     * @param liveKeys Number of keys now in the namespace, used to decide when to compact
+     * @return Whether the log has grown enough that it should be compacted
+     */
+    boolean append(byte[] record, int liveKeys) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(RECORD_HEADER_SIZE + record.length);
+        buffer.putInt(record.length).putInt(checksum(record)).put(record).flip();
+        while (buffer.hasRemaining()) {
+            log.write(buffer);
+        }
+        log.force(false);
+        logRecords++;
+        return logRecords > Math.max(MIN_COMPACT_RECORDS, liveKeys * 2);
+    }
+
+    /**
+     * Writes a new snapshot of the namespace and empties the log.
+     */
+    void compact(Map<String, Object> entries) throws IOException {
+        Path temp = directory.resolve(SNAPSHOT_FILE + ".tmp");
+        try (FileOutputStream file = new FileOutputStream(temp.toFile());
+                DataOutputStream out = new DataOutputStream(new BufferedOutputStream(file))) {
+            out.writeInt(SNAPSHOT_MAGIC);
+            out.writeInt(entries.size());
+            for (Map.Entry<String, Object> entry : entries.entrySet()) {
+                writeRecord(out, encodePut(entry.getKey(), entry.getValue()));
+            }
+            out.flush();
+            // Otherwise the rename can reach the disk before the data it names
+            file.getChannel().force(true);
+        }
+        Files.move(temp, directory.resolve(SNAPSHOT_FILE),
+            StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        syncDirectory();
+        // A crash before this point just replays the log over the new snapshot
+        log.truncate(0);
+        log.position(0);
+        logRecords = 0;
+    }
+
+    @Override
+    public void close() throws IOException {
+        log.close();
+    }
+
+    private static void writeRecord(DataOutputStream out, byte[] record) throws IOException {
+        out.writeInt(record.length);
+        out.writeInt(checksum(record));
+        out.write(record);
+    }
+
+    /**
+     * Makes the snapshot rename durable. Not every platform can open a
+     * directory to sync it, and there the rename is left to the OS.
+     */
+    private void syncDirectory() {
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            // Windows can't open directories as files
+        }
+    }
+
+    /**
+     * @param available Bytes left in the file
+     * @return The record, or null at the end of the file or at a torn or corrupt record
+     */
+    private static byte[] readRecord(DataInputStream in, long available) throws IOException {
+        if (available < RECORD_HEADER_SIZE) {
+            return null;
+        }
+        int length = in.readInt();
+        int crc = in.readInt();
+        if (length < 0 || length > available - RECORD_HEADER_SIZE) {
+            return null;
+        }
+        byte[] record = new byte[length];
+        in.readFully(record);
+        return checksum(record) == crc ? record : null;
+    }
+
+    private static int checksum(byte[] record) {
+        CRC32 crc = new CRC32();
+        crc.update(record);
+        return (int) crc.getValue();
+    }
+
+    private static void applyRecord(byte[] record, Map<String, Object> entries) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(record));
+        byte op = in.readByte();
+        String key = in.readUTF();
+        if (op == OP_PUT) {
+            entries.put(key, readValue(in));
+        } else if (op == OP_REMOVE) {
+            entries.remove(key);
+        } else {
+            throw new IOException("Unknown registry record type " + op);
+        }
+    }
+
+    private static void writeValue(DataOutputStream out, Object value) throws IOException {
+        if (value instanceof String) {
+            byte[] utf8 = ((String) value).getBytes(StandardCharsets.UTF_8);
+            out.writeByte(TYPE_STRING);
+            out.writeInt(utf8.length);
+            out.write(utf8);
+        } else if (value instanceof Integer) {
+            out.writeByte(TYPE_INT);
+            out.writeInt((Integer) value);
+        } else if (value instanceof Long) {
+            out.writeByte(TYPE_LONG);
+            out.writeLong((Long) value);
+        } else if (value instanceof Double) {
+            out.writeByte(TYPE_DOUBLE);
+            out.writeDouble((Double) value);
+        } else if (value instanceof Boolean) {
+            out.writeByte(TYPE_BOOLEAN);
+            out.writeBoolean((Boolean) value);
+        } else if (value instanceof byte[]) {
+            out.writeByte(TYPE_BYTES);
+            out.writeInt(((byte[]) value).length);
+            out.write((byte[]) value);
+        } else {
+            throw new IllegalArgumentException("Registry values must be Strings, Integers, Longs, Doubles, Booleans or byte arrays: "
+                + (value == null ? "null" : value.getClass().getName()));
+        }
+    }
+
+    private static Object readValue(DataInputStream in) throws IOException {
+        byte type = in.readByte();
+        switch (type) {
+            case TYPE_STRING: {
+                byte[] utf8 = new byte[in.readInt()];
+                in.readFully(utf8);
+                return new String(utf8, StandardCharsets.UTF_8);
+            }
+            case TYPE_INT: return in.readInt();
+            case TYPE_LONG: return in.readLong();
+            case TYPE_DOUBLE: return in.readDouble();
+            case TYPE_BOOLEAN: return in.readBoolean();
+            case TYPE_BYTES: {
+                byte[] value = new byte[in.readInt()];
+                in.readFully(value);
+                return value;
+            }
+            default: throw new IOException("Unknown registry value type " + type);
+        }
+    }
+}
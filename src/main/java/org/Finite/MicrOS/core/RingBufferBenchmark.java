@@ -0,0 +1,107 @@
+package org.Finite.MicrOS.core;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Measures how many messages per second one sender can push through a
+ * bounded MessageBus topic under each overflow policy, with one and with
+ * several subscribers. A run ends when every message has been either
+ * delivered to every subscriber or counted as dropped, and is compared with
+ * the bounded topic's target of {@value #TARGET_MESSAGES_PER_SECOND} messages/s.
+ * Run with the {@code busbench} console command or
+ * {@code java -cp MicrOS.jar org.Finite.MicrOS.core.RingBufferBenchmark [messages]}.
+ */
+public final class RingBufferBenchmark {
+    static final long TARGET_MESSAGES_PER_SECOND = 1_000_000;
+    private static final int CAPACITY = 4096;
+    private static final int WARMUP_MESSAGES = 1_000_000;
+    private static final int[] SUBSCRIBERS = {1, 4};
+    private static final long TIMEOUT_NANOS = TimeUnit.SECONDS.toNanos(60);
+
+    private RingBufferBenchmark() {
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        int messages = args.length > 0 ? Integer.parseInt(args[0]) : 5_000_000;
+        run(messages, System.out::println);
+    }
+
+    /**
+     * Runs the benchmark and reports results line by line.
+     * @param messages Number of messages to send for each measurement
+     */
+    public static void run(int messages, Consumer<String> output) throws InterruptedException {
+        AtomicInteger threadCount = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(SUBSCRIBERS[SUBSCRIBERS.length - 1], r -> {
+            Thread thread = new Thread(r, "ring-bench-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            output.accept("Bounded topic benchmark (" + messages + " messages, capacity " + CAPACITY
+                + ", target " + TARGET_MESSAGES_PER_SECOND / 1_000_000.0 + "M messages/s)");
+            for (MessageBus.OverflowPolicy policy : MessageBus.OverflowPolicy.values()) {
+                for (int subscribers : SUBSCRIBERS) {
+                    measure(policy, subscribers, WARMUP_MESSAGES, executor);
+                    Result result = measure(policy, subscribers, messages, executor);
+                    double rate = messages / result.seconds;
+                    output.accept(String.format("  %-11s %d subscriber%s: %.2fM messages/s, %.1f%% dropped%s",
+                        policy, subscribers, subscribers == 1 ? " " : "s", rate / 1e6,
+                        100.0 * result.dropped / ((long) messages * subscribers),
+                        rate >= TARGET_MESSAGES_PER_SECOND ? "" : "  (below target)"));
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static Result measure(MessageBus.OverflowPolicy policy, int subscribers, int messages,
+            ExecutorService executor) throws InterruptedException {
+        RingBufferTopic topic = new RingBufferTopic(CAPACITY, policy, executor);
+        AtomicLong delivered = new AtomicLong();
+        for (int i = 0; i < subscribers; i++) {
+            topic.subscribe(new Object(), batch -> delivered.addAndGet(batch.size()));
+        }
+        Object message = new Object();
+        long expected = (long) messages * subscribers;
+        long start = System.nanoTime();
+        for (int i = 0; i < messages; i++) {
+            topic.publish(message);
+        }
+        long deadline = start + TIMEOUT_NANOS;
+        while (delivered.get() + droppedDeliveries(topic, policy, subscribers) < expected) {
+            if (System.nanoTime() > deadline) {
+                throw new IllegalStateException(policy + " run did not finish: " + delivered.get()
+                    + " of " + expected + " deliveries");
+            }
+            Thread.sleep(1);
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        return new Result(seconds, droppedDeliveries(topic, policy, subscribers));
+    }
+
+    /**
+     * A message dropped when sent is lost to every subscriber, one skipped by
+     * a lapped reader to that reader only.
+     */
+    private static long droppedDeliveries(RingBufferTopic topic, MessageBus.OverflowPolicy policy, int subscribers) {
+        long dropped = topic.getDroppedCount();
+        return policy == MessageBus.OverflowPolicy.DROP_OLDEST ? dropped : dropped * subscribers;
+    }
+
+    private static final class Result {
+        final double seconds;
+        final long dropped;
+
+        Result(double seconds, long dropped) {
+            this.seconds = seconds;
+            this.dropped = dropped;
+        }
+    }
+}
@@ -0,0 +1,216 @@
+package org.Finite.MicrOS.core;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+import javax.swing.SwingUtilities;
+
+/**
+ * A bounded MessageBus topic backed by a preallocated ring buffer.
+ * Publishing is serialized so the buffer has a single writer; every subscriber
+ * is an independent reader with its own cursor and receives messages in
+ * batches on the bus executor.
+ */
+class RingBufferTopic {
+    private static final int MAX_BATCH_SIZE = 256;
+    private static final long BLOCK_PARK_NANOS = 50_000;
+    private static final Reader[] NO_READERS = new Reader[0];
+
+    private final Object[] slots;
+    private final int mask;
+    private final MessageBus.OverflowPolicy policy;
+    private final Executor executor;
+    private final Object writeLock = new Object();
+    private final AtomicLong dropped = new AtomicLong();
+
+    /** Highest sequence (exclusive) the writer has started to overwrite */
+    private volatile long claimed;
+    /** Highest sequence (exclusive) visible to readers */
+    private volatile long published;
+    /** Writer-only cache of the slowest reader cursor */
+    private long gatingSequence;
+    private volatile Reader[] readers = NO_READERS;
+
+    RingBufferTopic(int capacity, MessageBus.OverflowPolicy policy, Executor executor) {
+        int size = capacity <= 2 ? 2 : Integer.highestOneBit(capacity - 1) << 1;
+        this.slots = new Object[size];
+        this.mask = size - 1;
+        this.policy = policy;
+        this.executor = executor;
+    }
+
+    /**
+     * Publishes a message to every reader. Under {@link MessageBus.OverflowPolicy#BLOCK}
+     * a full buffer makes the caller wait without holding the write lock, so
+     * other senders and subscription changes aren't stalled behind it. A
+     * sender on the EDT never waits: readers with EDT subscribers need the
+     * EDT to drain, so its message is dropped and counted as under
+     * {@link MessageBus.OverflowPolicy#DROP_NEWEST}.
+     * @return false if there were no readers or the overflow policy dropped the message
+     */
+    boolean publish(Object message) {
+        Reader[] current;
+        while (true) {
+            synchronized (writeLock) {
+                current = readers;
+                if (current.length == 0) return false;
+
+                long sequence = published;
+                if (hasRoom(current, sequence)) {
+                    claimed = sequence + 1;
+                    // One reference per reader; payloads that get overwritten or skipped are
+                    // never released and fall back to the garbage collector instead of the pool
+                    for (int i = 0; i < current.length; i++) {
+                        MessageBus.retainPayload(message);
+                    }
+                    slots[(int) (sequence & mask)] = message;
+                    published = sequence + 1;
+                    break;
+                }
+                if (policy == MessageBus.OverflowPolicy.DROP_NEWEST || Thread.currentThread().isInterrupted()
+                        || SwingUtilities.isEventDispatchThread()) {
+                    dropped.incrementAndGet();
+                    return false;
+                }
+            }
+            // BLOCK: wait for the slowest reader, then check again under the lock
+            LockSupport.parkNanos(BLOCK_PARK_NANOS);
+        }
+        for (Reader reader : current) {
+            reader.schedule();
+        }
+        return true;
+    }
+
+    /**
+     * Checks whether the slot for a sequence is free to write. Called under the write lock.
+     */
+    private boolean hasRoom(Reader[] current, long sequence) {
+        if (policy == MessageBus.OverflowPolicy.DROP_OLDEST || sequence - gatingSequence < slots.length) {
+            return true;
+        }
+        gatingSequence = minCursor(current, sequence);
+        return sequence - gatingSequence < slots.length;
+    }
+
+    void subscribe(Object key, Consumer<List<Object>> handler) {
+        synchronized (writeLock) {
+            Reader reader = new Reader(key, handler, published);
+            Reader[] updated = Arrays.copyOf(readers, readers.length + 1);
+            updated[readers.length] = reader;
+            readers = updated;
+        }
+    }
+
+    void unsubscribe(Object key) {
+        synchronized (writeLock) {
+            Reader[] current = readers;
+            for (int i = 0; i < current.length; i++) {
+                if (current[i].key.equals(key)) {
+                    current[i].active = false;
+                    Reader[] updated = new Reader[current.length - 1];
+                    System.arraycopy(current, 0, updated, 0, i);
+                    System.arraycopy(current, i + 1, updated, i, current.length - i - 1);
+                    readers = updated;
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Gets the number of messages the slowest reader has yet to consume.
+     */
+    int getQueueDepth() {
+        long available = published;
+        return (int) Math.min(slots.length, available - minCursor(readers, available));
+    }
+
+    long getDroppedCount() {
+        return dropped.get();
+    }
+
+    int getCapacity() {
+        return slots.length;
+    }
+
+    private static long minCursor(Reader[] readers, long defaultValue) {
+        long min = defaultValue;
+        for (Reader reader : readers) {
+            min = Math.min(min, reader.cursor);
+        }
+        return min;
+    }
+
+    private class Reader {
+        final Object key;
+        final Consumer<List<Object>> handler;
+        /** Next sequence this reader will consume */
+        volatile long cursor;
+        volatile boolean active = true;
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+
+        Reader(Object key, Consumer<List<Object>> handler, long start) {
+            this.key = key;
+            this.handler = handler;
+            this.cursor = start;
+        }
+
+        void schedule() {
+            if (active && scheduled.compareAndSet(false, true)) {
+                executor.execute(this::drain);
+            }
+        }
+
+        private void drain() {
+            while (active) {
+                long next = cursor;
+                long available = published;
+                if (next >= available) break;
+
+                // With DROP_OLDEST the writer may have lapped this reader
+                if (available - next > slots.length) {
+                    long skipTo = available - slots.length;
+                    dropped.addAndGet(skipTo - next);
+                    next = skipTo;
+                }
+
+                long end = Math.min(available, next + MAX_BATCH_SIZE);
+                List<Object> batch = new ArrayList<>((int) (end - next));
+                for (long sequence = next; sequence < end; sequence++) {
+                    batch.add(slots[(int) (sequence & mask)]);
+                }
+
+                // Discard any slots the writer overwrote while they were being copied
+                long oldestValid = claimed - slots.length;
+                if (oldestValid > next) {
+                    int overwritten = (int) Math.min(oldestValid - next, batch.size());
+                    batch.subList(0, overwritten).clear();
+                    dropped.addAndGet(overwritten);
+                }
+
+                cursor = end;
+                if (!batch.isEmpty()) {
+                    try {
+                        handler.accept(batch);
+                    } catch (Exception e) {
+                        e.printStackTrace();
+                    } finally {
+                        for (Object message : batch) {
+                            MessageBus.releasePayload(message);
+                        }
+                    }
+                }
+            }
+            scheduled.set(false);
+            if (active && cursor < published) {
+                schedule();
+            }
+        }
+    }
+}
@@ -0,0 +1,148 @@
+package org.Finite.MicrOS.core;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * Trie of hierarchical topic patterns, split into levels on '.'.
+ * A '*' level matches exactly one level and a trailing '#' matches any
+ * number of remaining levels, including none. Matching walks one trie level
+ * per topic level, so its cost depends on topic depth rather than on how many
+ * patterns are registered.
+ */
+class TopicTrie<T> {
+    static final String SINGLE_LEVEL = "*";
+    static final String MULTI_LEVEL = "#";
+
+    private final Node<T> root = new Node<>();
+
+    /**
+     * Checks whether a topic contains wildcard levels.
+     * @throws IllegalArgumentException if '#' is used anywhere but the last level
+     */
+    static boolean isPattern(String topic) {
+        String[] levels = split(topic);
+        boolean pattern = false;
+        for (int i = 0; i < levels.length; i++) {
+            if (levels[i].equals(MULTI_LEVEL)) {
+                if (i != levels.length - 1) {
+                    throw new IllegalArgumentException("'#' must be the last level: " + topic);
+                }
+                pattern = true;
+            } else if (levels[i].equals(SINGLE_LEVEL)) {
+                pattern = true;
+            }
+        }
+        return pattern;
+    }
+
+    synchronized T computeIfAbsent(String pattern, Function<String, T> factory) {
+        Node<T> node = root;
+        for (String level : split(pattern)) {
+            node = node.children.computeIfAbsent(level, k -> new Node<>());
+        }
+        if (node.value == null) {
+            node.pattern = pattern;
+            node.value = factory.apply(pattern);
+        }
+        return node.value;
+    }
+
+    synchronized T get(String pattern) {
+        Node<T> node = find(pattern);
+        return node != null ? node.value : null;
+    }
+
+    /**
+     * Removes the value stored for a pattern if it satisfies the predicate,
+     * pruning nodes that no longer lead anywhere.
+     */
+    synchronized void removeIf(String pattern, Predicate<T> condition) {
+        String[] levels = split(pattern);
+        List<Node<T>> path = new ArrayList<>();
+        Node<T> node = root;
+        path.add(node);
+        for (String level : levels) {
+            node = node.children.get(level);
+            if (node == null) return;
+            path.add(node);
+        }
+        if (node.value == null || !condition.test(node.value)) return;
+
+        node.value = null;
+        node.pattern = null;
+        for (int i = levels.length; i > 0; i--) {
+            Node<T> current = path.get(i);
+            if (current.value != null || !current.children.isEmpty()) break;
+            path.get(i - 1).children.remove(levels[i - 1]);
+        }
+    }
+
+    /**
+     * Collects the values of every pattern that matches a concrete topic.
+     */
+    List<T> match(String topic) {
+        List<T> matches = new ArrayList<>();
+        collect(root, split(topic), 0, matches);
+        return matches;
+    }
+
+    void forEach(BiConsumer<String, T> action) {
+        visit(root, action);
+    }
+
+    private Node<T> find(String pattern) {
+        Node<T> node = root;
+        for (String level : split(pattern)) {
+            node = node.children.get(level);
+            if (node == null) return null;
+        }
+        return node;
+    }
+
+    private void collect(Node<T> node, String[] levels, int index, List<T> matches) {
+        Node<T> multi = node.children.get(MULTI_LEVEL);
+        if (multi != null && multi.value != null) {
+            matches.add(multi.value);
+        }
+        if (index == levels.length) {
+            if (node.value != null) {
+                matches.add(node.value);
+            }
+            return;
+        }
+        Node<T> exact = node.children.get(levels[index]);
+        if (exact != null) {
+            collect(exact, levels, index + 1, matches);
+        }
+        Node<T> single = node.children.get(SINGLE_LEVEL);
+        if (single != null) {
+            collect(single, levels, index + 1, matches);
+        }
+    }
+
+    private void visit(Node<T> node, BiConsumer<String, T> action) {
+        T value = node.value;
+        if (value != null) {
+            action.accept(node.pattern, value);
+        }
+        for (Node<T> child : node.children.values()) {
+            visit(child, action);
+        }
+    }
+
+    private static String[] split(String topic) {
+        return topic.split("\\.", -1);
+    }
+
+    private static class Node<T> {
+        final Map<String, Node<T>> children = new ConcurrentHashMap<>();
+        volatile String pattern;
+        volatile T value;
+    }
+}
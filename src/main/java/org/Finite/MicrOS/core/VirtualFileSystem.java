@@ -38,6 +38,22 @@ public class VirtualFileSystem {
         void execute(String[] args) throws IOException;
     }
 
+    /**
+     * File operations served by another process. Isolated apps install one
+     * before first use so their file access goes through the MicrOS host.
+     */
+    public interface RemoteStorage {
+        byte[] read(String virtualPath) throws IOException;
+        boolean write(String virtualPath, byte[] content);
+        boolean delete(String virtualPath);
+        boolean exists(String virtualPath);
+        String[] list(String virtualPath);
+        boolean createDirectory(String virtualPath);
+    }
+
+    private static RemoteStorage remoteStorage;
+    private static boolean deferAppLoading;
+
     private AppLoader appLoader;
 
     /**
@@ -62,7 +78,10 @@ public class VirtualFileSystem {
         this.mimeTypes = new HashMap<>();
         this.fileIcons = new HashMap<>();
         this.extensionRunners = new HashMap<>();
-        initializeFileSystem();
+        // With remote storage the host owns the file system and its apps
+        if (remoteStorage == null) {
+            initializeFileSystem();
+        }
         initializeMimeTypes();
         registerDefaultRunners();
     }
@@ -122,8 +141,11 @@ public class VirtualFileSystem {
             }
 
             // Initialize app directory
-            appLoader = new AppLoader(resolveVirtualPath("/apps").toString());
-            appLoader.loadApps();
+            appLoader = new AppLoader(resolveVirtualPath("/apps").toString(),
+                resolveVirtualPath("/system/app-index.bin").toString());
+            if (!deferAppLoading) {
+                appLoader.loadApps();
+            }
             
         } catch (IOException e) {
             e.printStackTrace();
@@ -300,6 +322,29 @@ public class VirtualFileSystem {
         return instance;
     }
 
+    /**
+     * Routes all file operations of this process to another process.
+     * Must be called before the first {@link #getInstance()}.
+     */
+    public static void useRemoteStorage(RemoteStorage storage) {
+        if (instance != null) {
+            throw new IllegalStateException("VirtualFileSystem already initialized");
+        }
+        remoteStorage = storage;
+    }
+
+    /**
+     * Leaves indexing the app bundles to the caller, who must call
+     * {@code getAppLoader().loadApps()}, so boot can do it in parallel with
+     * other work. Must be called before the first {@link #getInstance()}.
+     */
+    public static void deferAppLoading() {
+        if (instance != null) {
+            throw new IllegalStateException("VirtualFileSystem already initialized");
+        }
+        deferAppLoading = true;
+    }
+
     /**
      * Resolves a virtual path to an actual filesystem path.
      *
@@ -315,6 +360,14 @@ public class VirtualFileSystem {
         return rootDirectory.resolve(normalizedPath);
     }
     
+    /**
+     * @return Whether files are on this machine's disk, at
+     *         {@link #resolveVirtualPath(String)}, rather than in another process
+     */
+    public boolean isLocal() {
+        return remoteStorage == null;
+    }
+
     /**
      * Gets the virtual path from an actual filesystem path.
      *
@@ -334,6 +387,9 @@ public class VirtualFileSystem {
      * @return true if the directory was created successfully, false otherwise
      */
     public boolean createDirectory(String virtualPath) {
+        if (remoteStorage != null) {
+            return remoteStorage.createDirectory(virtualPath);
+        }
         try {
             Files.createDirectories(resolveVirtualPath(virtualPath));
             return true;
@@ -351,6 +407,9 @@ public class VirtualFileSystem {
      * @return true if the file was created successfully, false otherwise
      */
     public boolean createFile(String virtualPath, byte[] content) {
+        if (remoteStorage != null) {
+            return remoteStorage.write(virtualPath, content);
+        }
         try {
             Path path = resolveVirtualPath(virtualPath);
             Files.createDirectories(path.getParent());
@@ -370,6 +429,9 @@ public class VirtualFileSystem {
      * @throws IOException If an error occurs while reading the file
      */
     public byte[] readFile(String virtualPath) throws IOException {
+        if (remoteStorage != null) {
+            return remoteStorage.read(virtualPath);
+        }
         return Files.readAllBytes(resolveVirtualPath(virtualPath));
     }
 
@@ -380,6 +442,9 @@ public class VirtualFileSystem {
      * @return true if the file was deleted successfully, false otherwise
      */
     public boolean deleteFile(String virtualPath) {
+        if (remoteStorage != null) {
+            return remoteStorage.delete(virtualPath);
+        }
         try {
             return Files.deleteIfExists(resolveVirtualPath(virtualPath));
         } catch (IOException e) {
@@ -395,6 +460,12 @@ public class VirtualFileSystem {
      * @return Array of files in the directory
      */
     public File[] listFiles(String virtualPath) {
+        if (remoteStorage != null) {
+            Path dir = resolveVirtualPath(virtualPath);
+            return Arrays.stream(remoteStorage.list(virtualPath))
+                       .map(name -> dir.resolve(name).toFile())
+                       .toArray(File[]::new);
+        }
         try {
             Path dir = resolveVirtualPath(virtualPath);
             return Files.list(dir)
@@ -414,6 +485,9 @@ public class VirtualFileSystem {
      * @return true if the file or directory exists, false otherwise
      */
     public boolean exists(String virtualPath) {
+        if (remoteStorage != null) {
+            return remoteStorage.exists(virtualPath);
+        }
         return Files.exists(resolveVirtualPath(virtualPath));
     }
 
@@ -6,10 +6,18 @@ package org.Finite.MicrOS.core;
 
 import java.awt.*;
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Consumer;
 import javax.swing.*;
 import javax.swing.event.InternalFrameAdapter;
@@ -20,11 +28,14 @@ import org.Finite.MicrOS.Desktop.Taskbar;
 import org.Finite.MicrOS.Files.FileManager;
 import org.Finite.MicrOS.apps.MicrOSApp;
 import org.Finite.MicrOS.ui.Console;
+import org.Finite.MicrOS.ui.LargeFileEditor;
+import org.Finite.MicrOS.ui.PieceTableDocument;
 import org.Finite.MicrOS.ui.SettingsDialog;
 import org.Finite.MicrOS.ui.WebViewer;
 import org.Finite.MicrOS.util.AsmRunner;
 import org.Finite.MicrOS.x11.X11WindowContainer;
 import org.Finite.MicrOS.apps.AppManifest;
+import org.Finite.MicrOS.ipc.IsolatedAppHost;
 import org.Finite.MicrOS.ui.ErrorDialog;
 
 import org.Finite.MicrOS.ui.SettingsDialog;
@@ -44,6 +55,15 @@ public class WindowManager {
     /** Map of window IDs to window instances */
     private final Map<String, JInternalFrame> windows;
 
+    /** Map of app identifiers to their open windows */
+    private final Map<String, List<JInternalFrame>> appWindows = new ConcurrentHashMap<>();
+
+    /** Map of app windows to the identifier of the app they show */
+    private final Map<JInternalFrame, String> windowApps = new ConcurrentHashMap<>();
+
+    /** Source of generated window IDs */
+    private final AtomicLong nextWindowId = new AtomicLong();
+
     /** Map of window type names to their factory implementations */
     private final Map<String, WindowFactory> windowFactories;
 
@@ -58,6 +78,15 @@ public class WindowManager {
 
     private final ProcessManager processManager;
 
+    /** Warm instances of pinned and frequently launched apps */
+    private final AppInstancePool appPool;
+
+    /** Files from this size on open in a {@link LargeFileEditor} instead of the Text Editor */
+    private static final long LARGE_FILE_THRESHOLD = 8L * 1024 * 1024;
+
+    /** Large files opened by {@link #openFileWith}, by the ID of the window about to show them */
+    private final Map<String, PieceTableDocument> pendingLargeFiles = new ConcurrentHashMap<>();
+
     private final Set<String> startupApps = new HashSet<>();
     private final Map<String, String> startupWindows = new HashMap<>(); // windowId -> type
 
@@ -70,10 +99,14 @@ public class WindowManager {
     public WindowManager(JDesktopPane desktop, VirtualFileSystem vfs) {
         this.desktop = desktop;
         this.vfs = vfs;
-        this.windows = new HashMap<>();
+        this.windows = new ConcurrentHashMap<>();
         this.windowFactories = new HashMap<>();
         this.processManager = new ProcessManager(null); // Initialize ProcessManager
+        this.appPool = new AppInstancePool(this, vfs);
         registerDefaultFactories();
+        // The Text Editor is pinned to the taskbar
+        appPool.pin("org.finite.texteditor");
+        appPool.start();
     }
 
     /**
@@ -102,13 +135,48 @@ public class WindowManager {
         // Update texteditor factory to use app ID
         registerWindowFactory("org.finite.texteditor", (windowId, title) -> {
             JInternalFrame frame = createBaseFrame(title);
+            PieceTableDocument largeFile = pendingLargeFiles.get(windowId);
+            if (largeFile != null) {
+                LargeFileEditor editor = new LargeFileEditor(largeFile);
+                // Taken only now, so a failure leaves it for openLargeFile to close
+                pendingLargeFiles.remove(windowId);
+                frame.add(editor);
+                frame.putClientProperty("largeFileEditor", editor);
+                frame.addInternalFrameListener(new InternalFrameAdapter() {
+                    @Override
+                    public void internalFrameClosed(InternalFrameEvent e) {
+                        editor.close();
+                    }
+                });
+                return frame;
+            }
+            MicrOSApp app = null;
             try {
-                MicrOSApp app = vfs.getAppLoader().createAppInstance("org.finite.texteditor");
-                app.initialize(this, vfs);
-                frame.add(app.createUI());
-                frame.putClientProperty("app", app);
+                AppInstancePool.WarmApp warm = appPool.take("org.finite.texteditor");
+                if (warm != null) {
+                    app = warm.app;
+                    frame.add(warm.ui);
+                } else {
+                    app = vfs.getAppLoader().createAppInstance("org.finite.texteditor");
+                    app.initialize(this, vfs);
+                    frame.add(app.createUI());
+                }
+                MicrOSApp editor = app;
+                frame.putClientProperty("app", editor);
+                // A file window, so launching the editor opens a new window instead of focusing this one
+                frame.putClientProperty("fileWindow", Boolean.TRUE);
+                frame.addInternalFrameListener(new InternalFrameAdapter() {
+                    @Override
+                    public void internalFrameClosed(InternalFrameEvent e) {
+                        vfs.getAppLoader().releaseAppInstance(editor);
+                    }
+                });
                 return frame;
             } catch (Exception e) {
+                if (app != null) {
+                    // Otherwise its class loader is never closed
+                    vfs.getAppLoader().releaseAppInstance(app);
+                }
                 reportError("Failed to create text editor", e, "org.finite.texteditor");
                 return createBaseFrame(title); // Fallback to basic frame
             }
@@ -127,6 +195,13 @@ public class WindowManager {
             WebViewer webViewer = new WebViewer(vfs);
             frame.add(webViewer);
             frame.putClientProperty("webviewer", webViewer);
+            // Hands the pooled web engine to the next viewer
+            frame.addInternalFrameListener(new InternalFrameAdapter() {
+                @Override
+                public void internalFrameClosed(InternalFrameEvent e) {
+                    webViewer.dispose();
+                }
+            });
             return frame;
         });
 
@@ -419,7 +494,7 @@ public class WindowManager {
             }
 
             desktop.add(frame);
-            windows.put(windowId, frame);
+            trackWindow(windowId, frame);
             frame.setVisible(true); // Ensure the frame is visible
             System.out.println("Window created and added to desktop: " + windowId);
             return frame;
@@ -455,6 +530,72 @@ public class WindowManager {
         return windows.get(windowId);
     }
 
+    /**
+     * @return The open windows of an app, oldest first
+     */
+    public List<JInternalFrame> getAppWindows(String appId) {
+        List<JInternalFrame> frames = appWindows.get(appId);
+        return frames != null ? Collections.unmodifiableList(frames) : Collections.emptyList();
+    }
+
+    /**
+     * @return The identifier of the app shown in a window, or null if it isn't an app window
+     */
+    public String getWindowAppId(JInternalFrame frame) {
+        return windowApps.get(frame);
+    }
+
+    /**
+     * Generates a window ID that is unique for this session.
+     *
+     * @param prefix Kind of window, e.g. "app"
+     */
+    public String generateWindowId(String prefix) {
+        return prefix + "-" + nextWindowId.incrementAndGet();
+    }
+
+    /**
+     * Adds a window to the lookup indexes. Replacing a window that has the
+     * same ID leaves the old one indexed by app until it closes. Windows
+     * showing a file are not indexed by app, since the app index is what
+     * keeps an app to a single instance.
+     */
+    private void trackWindow(String windowId, JInternalFrame frame) {
+        windows.put(windowId, frame);
+        frame.putClientProperty("windowId", windowId);
+        String appId = frame.getClientProperty("fileWindow") == null ? appIdOf(frame) : null;
+        if (appId != null) {
+            windowApps.put(frame, appId);
+            appWindows.computeIfAbsent(appId, k -> new CopyOnWriteArrayList<>()).add(frame);
+        }
+        frame.addInternalFrameListener(new InternalFrameAdapter() {
+            @Override
+            public void internalFrameClosed(InternalFrameEvent e) {
+                untrackWindow(windowId, frame);
+            }
+        });
+    }
+
+    private void untrackWindow(String windowId, JInternalFrame frame) {
+        windows.remove(windowId, frame);
+        String appId = windowApps.remove(frame);
+        if (appId != null) {
+            appWindows.computeIfPresent(appId, (k, frames) -> {
+                frames.remove(frame);
+                return frames.isEmpty() ? null : frames;
+            });
+        }
+    }
+
+    private static String appIdOf(JInternalFrame frame) {
+        MicrOSApp app = (MicrOSApp) frame.getClientProperty("app");
+        if (app != null && app.getManifest() != null) {
+            return app.getManifest().getIdentifier();
+        }
+        IsolatedAppHost host = (IsolatedAppHost) frame.getClientProperty("isolatedApp");
+        return host != null ? host.getManifest().getIdentifier() : null;
+    }
+
 
 
     // get window manager
@@ -521,8 +662,9 @@ public class WindowManager {
      * @param windowId Window identifier to close
      */
     public void closeWindow(String windowId) {
-        JInternalFrame frame = windows.remove(windowId);
+        JInternalFrame frame = windows.get(windowId);
         if (frame != null) {
+            untrackWindow(windowId, frame);
             // Fire closing event before disposal
             frame.doDefaultCloseAction();
             frame.dispose();
@@ -545,10 +687,12 @@ public class WindowManager {
      * Closes all windows managed by this WindowManager.
      */
     public void closeAllWindows() {
-        for (JInternalFrame frame : windows.values()) {
+        for (JInternalFrame frame : new ArrayList<>(windows.values())) {
             frame.dispose();
         }
         windows.clear();
+        appWindows.clear();
+        windowApps.clear();
     }
 
     /**
@@ -617,6 +761,19 @@ public class WindowManager {
      */
     public void openFileWith(String virtualPath, String windowType) {
         String windowId = windowType + "-" + virtualPath.hashCode();
+        if (windowType.equals("org.finite.texteditor") && vfs.isLocal()) {
+            // Too big to read into the editor, so it gets mapped instead
+            Path path = vfs.resolveVirtualPath(virtualPath);
+            try {
+                if (Files.isRegularFile(path) && Files.size(path) >= LARGE_FILE_THRESHOLD) {
+                    openLargeFile(windowId, virtualPath, path);
+                    return;
+                }
+            } catch (IOException e) {
+                reportError("Failed to open " + virtualPath, e, windowType);
+                return;
+            }
+        }
         JInternalFrame frame = createWindow(windowId, virtualPath, windowType);
         
         if (windowType.equals("org.finite.texteditor")) {
@@ -629,10 +786,44 @@ public class WindowManager {
             } catch (Exception e) {
                 e.printStackTrace();
             }
+        } else if (windowType.equals("webviewer")) {
+            setWebViewerUrl(windowId, virtualPath);
         }
         // ...rest of existing switch cases...
     }
 
+    /**
+     * Maps a large file on a background thread, since that reads the whole
+     * file once, then shows it in a text editor window on the EDT.
+     */
+    private void openLargeFile(String windowId, String virtualPath, Path path) {
+        Thread opener = new Thread(() -> {
+            PieceTableDocument document;
+            try {
+                document = PieceTableDocument.open(path);
+            } catch (IOException e) {
+                SwingUtilities.invokeLater(() ->
+                    reportError("Failed to open " + virtualPath, e, "org.finite.texteditor"));
+                return;
+            }
+            SwingUtilities.invokeLater(() -> {
+                pendingLargeFiles.put(windowId, document);
+                createWindow(windowId, virtualPath, "org.finite.texteditor");
+                // Still pending if the window failed before the factory took it
+                PieceTableDocument unused = pendingLargeFiles.remove(windowId);
+                if (unused != null) {
+                    try {
+                        unused.close();
+                    } catch (IOException e) {
+                        e.printStackTrace();
+                    }
+                }
+            });
+        }, "large-file-open");
+        opener.setDaemon(true);
+        opener.start();
+    }
+
     /**
      * Updates the Look and Feel for all windows
      */
@@ -692,7 +883,7 @@ public class WindowManager {
      * @return The created internal frame
      */
     public JInternalFrame launchApp(MicrOSApp app) {
-        String windowId = "app-" + System.currentTimeMillis();
+        String windowId = generateWindowId("app");
         String title = app.getManifest() != null ? app.getManifest().getName() : "Application";
         JInternalFrame frame = createBaseFrame(title);
         
@@ -715,7 +906,7 @@ public class WindowManager {
         }
 
         desktop.add(frame);
-        windows.put(windowId, frame);
+        trackWindow(windowId, frame);
         frame.setVisible(true);
         
         return frame;
@@ -733,38 +924,38 @@ public class WindowManager {
             }
             
             // Check if app is already running
-            for (JInternalFrame frame : windows.values()) {
-                MicrOSApp existingApp = (MicrOSApp) frame.getClientProperty("app");
-                if (existingApp != null && 
-                    existingApp.getManifest() != null && 
-                    identifier.equals(existingApp.getManifest().getIdentifier())) {
+            for (JInternalFrame frame : getAppWindows(identifier)) {
+                IsolatedAppHost existingHost = (IsolatedAppHost) frame.getClientProperty("isolatedApp");
+                if (existingHost == null || existingHost.isRunning()) {
                     frame.toFront();
                     return frame;
                 }
             }
             
-            MicrOSApp app = vfs.getAppLoader().createAppInstance(identifier);
+            AppManifest manifest = vfs.getAppLoader().getManifest(identifier);
+            if (manifest != null && manifest.isIsolated()) {
+                return launchIsolatedApp(manifest);
+            }
+            
+            AppInstancePool.WarmApp warm = appPool.take(identifier);
+            MicrOSApp app = warm != null ? warm.app : vfs.getAppLoader().createAppInstance(identifier);
             if (app == null) {
                 ErrorDialog.showError(desktop, "Failed to create app instance", 
                     new RuntimeException("Could not create instance of app: " + identifier));
                 return null;
             }
             
-            AppManifest manifest = vfs.getAppLoader().getLoadedApps()
-                .stream()
-                .filter(m -> identifier.equals(m.getIdentifier()))
-                .findFirst()
-                .orElse(null);
-                
-            if (manifest != null) {
+            if (manifest != null && warm == null) {
                 app.setManifest(manifest);
             }
             
-            app.initialize(this, vfs);
+            if (warm == null) {
+                app.initialize(this, vfs);
+            }
             
             // Create window and start app
             JInternalFrame frame = createBaseFrame(app.getManifest().getName());
-            JComponent ui = app.createUI();
+            JComponent ui = warm != null ? warm.ui : app.createUI();
             frame.add(ui);
             frame.putClientProperty("app", app);
             
@@ -786,12 +977,13 @@ public class WindowManager {
                     app.onStop();
                     app.setThreadId(-1);
                     processManager.killAppThread(threadId);
+                    vfs.getAppLoader().releaseAppInstance(app);
                 }
             });
             
             frame.setVisible(true);
             desktop.add(frame);
-            windows.put("app-" + System.currentTimeMillis(), frame);
+            trackWindow(generateWindowId("app"), frame);
             return frame;
             
         } catch (Exception e) {
@@ -800,10 +992,60 @@ public class WindowManager {
         }
     }
 
+    /**
+     * Closes an app's windows and, if it is still installed, launches it
+     * again. Used when the app's bundle changes on disk; does nothing if the
+     * app isn't running.
+     */
+    public void restartApp(String identifier) {
+        appPool.invalidate(identifier);
+        List<JInternalFrame> frames = new ArrayList<>(getAppWindows(identifier));
+        for (JInternalFrame frame : frames) {
+            // Untracked first in case the app keeps its window open
+            untrackWindow((String) frame.getClientProperty("windowId"), frame);
+            frame.doDefaultCloseAction();
+        }
+        if (!frames.isEmpty() && vfs.getAppLoader().getManifest(identifier) != null) {
+            launchAppById(identifier);
+        }
+    }
+
+    /**
+     * Keeps a warm instance of the app ready so it opens instantly, e.g.
+     * because it is pinned to the taskbar. Isolated apps are not pooled.
+     */
+    public void keepWarm(String identifier) {
+        if (identifier != null) {
+            appPool.pin(identifier);
+        }
+    }
+
+    /**
+     * Launches an app in its own JVM. The window shows what the app renders
+     * and survives the app process crashing.
+     */
+    private JInternalFrame launchIsolatedApp(AppManifest manifest) throws IOException {
+        IsolatedAppHost host = IsolatedAppHost.launch(manifest,
+            vfs.getAppLoader().getAppClassPath(manifest.getIdentifier()), processManager);
+        JInternalFrame frame = createBaseFrame(manifest.getName());
+        frame.add(host.getView());
+        frame.putClientProperty("isolatedApp", host);
+        frame.addInternalFrameListener(new InternalFrameAdapter() {
+            @Override
+            public void internalFrameClosing(InternalFrameEvent e) {
+                host.stop();
+            }
+        });
+        frame.setVisible(true);
+        desktop.add(frame);
+        trackWindow(generateWindowId("app"), frame);
+        return frame;
+    }
+
     // Add method to launch native apps
     public JInternalFrame launchNativeApp(String command) {
         try {
-            String windowId = "native-" + System.currentTimeMillis();
+            String windowId = generateWindowId("native");
             String title = "Native App: " + command;
             return createWindow(windowId, title, "native");
         } catch (Exception e) {
@@ -880,8 +1122,11 @@ public class WindowManager {
             JInternalFrame frame = launchAppById(intent.getTargetAppId());
             if (frame != null) {
                 MicrOSApp app = (MicrOSApp) frame.getClientProperty("app");
+                IsolatedAppHost host = (IsolatedAppHost) frame.getClientProperty("isolatedApp");
                 if (app != null) {
                     app.handleIntent(intent);
+                } else if (host != null) {
+                    host.sendIntent(intent);
                 }
             }
             return frame;
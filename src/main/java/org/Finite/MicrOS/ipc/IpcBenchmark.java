@@ -0,0 +1,155 @@
+package org.Finite.MicrOS.ipc;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+
+/**
+ * Measures the shared-memory IPC transport: ping-pong round-trip latency and
+ * pipelined throughput. The echo side runs either on a thread of this JVM
+ * with its own mapping of the channel file, or in a child JVM, which is what
+ * isolated apps use. Run with the {@code ipcbench} console command or
+ * {@code java -cp MicrOS.jar org.Finite.MicrOS.ipc.IpcBenchmark [--process] [messages]}.
+ */
+public final class IpcBenchmark {
+    private static final int LATENCY_MESSAGE_SIZE = 64;
+    private static final int THROUGHPUT_MESSAGE_SIZE = 256;
+    private static final int WARMUP_ROUND_TRIPS = 20_000;
+    private static final long READY_TIMEOUT_MILLIS = 10_000;
+    private static final boolean SINGLE_CPU = Runtime.getRuntime().availableProcessors() == 1;
+
+    private IpcBenchmark() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        boolean process = args.length > 0 && args[0].equals("--process");
+        int messages = args.length > (process ? 1 : 0) ? Integer.parseInt(args[process ? 1 : 0]) : 100_000;
+        run(messages, process, System.out::println);
+    }
+
+    /**
+     * Runs the benchmark and reports results line by line.
+     * @param messages Number of round trips for each measurement
+     * @param process Whether to echo from a child JVM instead of a thread
+     */
+    public static void run(int messages, boolean process, Consumer<String> output) throws IOException, InterruptedException {
+        AtomicLong received = new AtomicLong();
+        try (IpcChannel channel = IpcChannel.create(IpcChannel.DEFAULT_RING_CAPACITY)) {
+            Process child = null;
+            IpcChannel echo = null;
+            BooleanSupplier peerAlive;
+            if (process) {
+                child = new ProcessBuilder(
+                    Paths.get(System.getProperty("java.home"), "bin", "java").toString(),
+                    "-cp", System.getProperty("java.class.path"),
+                    IsolatedAppRunner.class.getName(), "--echo", channel.getFile().toString())
+                    .inheritIO()
+                    .start();
+                peerAlive = child::isAlive;
+            } else {
+                echo = IpcChannel.open(channel.getFile());
+                IpcChannel echoChannel = echo;
+                echoChannel.start("ipc-bench-echo", (type, callId, body) -> {
+                    if (type == IpcProtocol.PING) {
+                        echoChannel.send(IpcProtocol.PONG, body);
+                    }
+                }, () -> true, null);
+                echoChannel.send(IpcProtocol.READY, new byte[0]);
+                peerAlive = () -> true;
+            }
+
+            channel.start("ipc-bench", (type, callId, body) -> received.incrementAndGet(), peerAlive, null);
+            try {
+                awaitCount(received, 1, peerAlive, READY_TIMEOUT_MILLIS);
+                received.set(0);
+
+                output.accept("IPC benchmark (" + (process ? "child JVM" : "in-process") + ", "
+                    + messages + " messages, ring " + IpcChannel.DEFAULT_RING_CAPACITY / 1024 + " KB)");
+                measureLatency(channel, received, WARMUP_ROUND_TRIPS, peerAlive);
+                long[] samples = measureLatency(channel, received, messages, peerAlive);
+                Arrays.sort(samples);
+                output.accept(String.format("  round trip (%d B): mean %.2f us, p50 %.2f us, p99 %.2f us, p99.9 %.2f us",
+                    LATENCY_MESSAGE_SIZE,
+                    Arrays.stream(samples).average().orElse(0) / 1000.0,
+                    percentile(samples, 0.50) / 1000.0,
+                    percentile(samples, 0.99) / 1000.0,
+                    percentile(samples, 0.999) / 1000.0));
+
+                double seconds = measureThroughput(channel, received, messages, peerAlive);
+                double rate = messages / seconds;
+                output.accept(String.format("  pipelined (%d B): %.0f round trips/s, %.1f MB/s each way",
+                    THROUGHPUT_MESSAGE_SIZE, rate, rate * THROUGHPUT_MESSAGE_SIZE / (1024.0 * 1024.0)));
+            } finally {
+                if (child != null) {
+                    channel.send(IpcProtocol.STOP, new byte[0]);
+                    if (!child.waitFor(2, TimeUnit.SECONDS)) {
+                        child.destroyForcibly();
+                    }
+                }
+                if (echo != null) {
+                    echo.close();
+                }
+            }
+        }
+    }
+
+    private static long[] measureLatency(IpcChannel channel, AtomicLong received, int count, BooleanSupplier peerAlive)
+            throws IOException {
+        ByteBuffer body = ByteBuffer.allocateDirect(LATENCY_MESSAGE_SIZE);
+        long[] samples = new long[count];
+        for (int i = 0; i < count; i++) {
+            long expected = received.get() + 1;
+            long start = System.nanoTime();
+            channel.send(IpcProtocol.PING, body.duplicate());
+            for (int spins = 1; received.get() < expected; spins++) {
+                // Checking liveness on every spin would distort the measurement
+                if ((spins & 0xFFFFF) == 0 && !peerAlive.getAsBoolean()) {
+                    throw new IOException("Echo side exited");
+                }
+                waitBriefly();
+            }
+            samples[i] = System.nanoTime() - start;
+        }
+        return samples;
+    }
+
+    private static double measureThroughput(IpcChannel channel, AtomicLong received, int count, BooleanSupplier peerAlive)
+            throws IOException {
+        ByteBuffer body = ByteBuffer.allocateDirect(THROUGHPUT_MESSAGE_SIZE);
+        long target = received.get() + count;
+        long start = System.nanoTime();
+        for (int i = 0; i < count; i++) {
+            channel.send(IpcProtocol.PING, body.duplicate());
+        }
+        awaitCount(received, target, peerAlive, Long.MAX_VALUE);
+        return (System.nanoTime() - start) / 1e9;
+    }
+
+    private static void awaitCount(AtomicLong counter, long target, BooleanSupplier peerAlive, long timeoutMillis)
+            throws IOException {
+        long deadline = timeoutMillis == Long.MAX_VALUE ? Long.MAX_VALUE : System.currentTimeMillis() + timeoutMillis;
+        while (counter.get() < target) {
+            if (!peerAlive.getAsBoolean() || System.currentTimeMillis() > deadline) {
+                throw new IOException("Echo side did not respond");
+            }
+            waitBriefly();
+        }
+    }
+
+    private static void waitBriefly() {
+        if (SINGLE_CPU) {
+            Thread.yield();
+        } else {
+            Thread.onSpinWait();
+        }
+    }
+
+    private static long percentile(long[] sorted, double fraction) {
+        return sorted[Math.min(sorted.length - 1, (int) (sorted.length * fraction))];
+    }
+}
@@ -0,0 +1,256 @@
+package org.Finite.MicrOS.ipc;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Bidirectional message channel between the MicrOS host and an isolated app
+ * process, built from two {@link SharedMemoryRing}s in one memory-mapped file.
+ * The host creates the file and the child opens it; each side writes to one
+ * ring and reads the other on a dedicated receiver thread.
+ * <p>
+ * Besides one-way messages the channel supports calls: {@link #call} tags the
+ * request with a correlation ID and blocks until the peer answers it with
+ * {@link #reply}.
+ */
+public final class IpcChannel implements Closeable {
+    public static final int DEFAULT_RING_CAPACITY = 4 * 1024 * 1024;
+
+    private static final int MAGIC = 0x4D495043; // "MIPC"
+    private static final int FILE_HEADER = 128;
+    private static final int MESSAGE_REPLY = -1;
+    private static final int MESSAGE_REPLY_ERROR = -2;
+
+    /** Receives messages on the channel's receiver thread */
+    @FunctionalInterface
+    public interface Handler {
+        /**
+         * @param type Message type chosen by the sender
+         * @param callId Correlation ID to pass to {@link #reply}, or 0 for one-way messages
+         * @param body Message body, a view of shared memory valid only during the call
+         */
+        void onMessage(int type, int callId, ByteBuffer body);
+    }
+
+    private final Path file;
+    private final FileChannel fileChannel;
+    private final SharedMemoryRing outbound;
+    private final SharedMemoryRing inbound;
+    private final boolean owner;
+    private final Object writeLock = new Object();
+    private final AtomicInteger nextCallId = new AtomicInteger(1);
+    private final Map<Integer, CompletableFuture<byte[]>> pendingCalls = new ConcurrentHashMap<>();
+    private volatile BooleanSupplier peerAlive = () -> true;
+    private Thread receiver;
+
+    private IpcChannel(Path file, FileChannel fileChannel, MappedByteBuffer buffer, int ringCapacity, boolean owner) {
+        this.file = file;
+        this.fileChannel = fileChannel;
+        this.owner = owner;
+        int ringSize = SharedMemoryRing.HEADER_SIZE + ringCapacity;
+        SharedMemoryRing hostToChild = new SharedMemoryRing(buffer.slice(FILE_HEADER, ringSize));
+        SharedMemoryRing childToHost = new SharedMemoryRing(buffer.slice(FILE_HEADER + ringSize, ringSize));
+        this.outbound = owner ? hostToChild : childToHost;
+        this.inbound = owner ? childToHost : hostToChild;
+    }
+
+    /**
+     * Creates the channel file on the host side. On Linux the file lives in
+     * /dev/shm so the mapping is never written back to disk.
+     * @param ringCapacity Size of each direction's buffer, a power of two
+     */
+    public static IpcChannel create(int ringCapacity) throws IOException {
+        if (Integer.bitCount(ringCapacity) != 1) {
+            throw new IllegalArgumentException("Ring capacity must be a power of two: " + ringCapacity);
+        }
+        Path file = Files.createTempFile(sharedMemoryDirectory(), "micros-ipc-", ".ring");
+        long size = FILE_HEADER + 2L * (SharedMemoryRing.HEADER_SIZE + ringCapacity);
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        buffer.putInt(4, ringCapacity);
+        buffer.putInt(0, MAGIC);
+        return new IpcChannel(file, channel, buffer, ringCapacity, true);
+    }
+
+    /**
+     * Opens a channel created by the host.
+     */
+    public static IpcChannel open(Path file) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, channel.size());
+        if (buffer.getInt(0) != MAGIC) {
+            channel.close();
+            throw new IOException("Not an IPC channel: " + file);
+        }
+        return new IpcChannel(file, channel, buffer, buffer.getInt(4), false);
+    }
+
+    static Path sharedMemoryDirectory() {
+        Path shm = Paths.get("/dev/shm");
+        return Files.isDirectory(shm) && Files.isWritable(shm) ? shm : Paths.get(System.getProperty("java.io.tmpdir"));
+    }
+
+    public Path getFile() {
+        return file;
+    }
+
+    /**
+     * Gets the largest message body this channel can carry.
+     */
+    public int getMaxMessageSize() {
+        return outbound.maxMessageSize();
+    }
+
+    /**
+     * Starts the receiver thread. It stops when the thread is interrupted by
+     * {@link #close()} or when the peer is found dead while the channel is idle.
+     * @param peerAlive Liveness check for the other side, polled only while idle
+     * @param onDisconnect Run on the receiver thread after it stops, may be null
+     */
+    public synchronized void start(String threadName, Handler handler, BooleanSupplier peerAlive, Runnable onDisconnect) {
+        if (receiver != null) {
+            throw new IllegalStateException("Channel already started");
+        }
+        this.peerAlive = peerAlive;
+        receiver = new Thread(() -> {
+            try {
+                inbound.readLoop((type, callId, body) -> dispatch(handler, type, callId, body), peerAlive);
+            } finally {
+                failPendingCalls(new IOException("IPC peer disconnected"));
+                if (onDisconnect != null) {
+                    onDisconnect.run();
+                }
+            }
+        }, threadName);
+        receiver.setDaemon(true);
+        receiver.start();
+    }
+
+    private void dispatch(Handler handler, int type, int callId, ByteBuffer body) {
+        if (type == MESSAGE_REPLY || type == MESSAGE_REPLY_ERROR) {
+            CompletableFuture<byte[]> future = pendingCalls.remove(callId);
+            if (future != null) {
+                byte[] result = new byte[body.remaining()];
+                body.get(result);
+                if (type == MESSAGE_REPLY) {
+                    future.complete(result);
+                } else {
+                    future.completeExceptionally(new IOException(new String(result, StandardCharsets.UTF_8)));
+                }
+            }
+            return;
+        }
+        try {
+            handler.onMessage(type, callId, body);
+        } catch (Exception e) {
+            // A bad message must not stop the receiver
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Sends a one-way message.
+     * @param type Message type, must not be negative
+     * @return false if the peer is gone
+     */
+    public boolean send(int type, ByteBuffer body) {
+        return write(type, 0, body);
+    }
+
+    public boolean send(int type, byte[] body) {
+        return send(type, ByteBuffer.wrap(body));
+    }
+
+    /**
+     * Sends a message and waits for the peer's {@link #reply}.
+     * @return The reply body
+     * @throws IOException if the peer reported an error, disconnected or didn't answer in time
+     */
+    public byte[] call(int type, byte[] body, long timeoutMillis) throws IOException {
+        int callId = nextCallId.getAndIncrement();
+        if (callId == 0) {
+            callId = nextCallId.getAndIncrement();
+        }
+        CompletableFuture<byte[]> future = new CompletableFuture<>();
+        pendingCalls.put(callId, future);
+        try {
+            if (!write(type, callId, ByteBuffer.wrap(body))) {
+                throw new IOException("IPC peer disconnected");
+            }
+            return future.get(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof IOException ? (IOException) e.getCause() : new IOException(e.getCause());
+        } catch (TimeoutException e) {
+            throw new IOException("IPC call timed out after " + timeoutMillis + "ms");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for IPC reply");
+        } finally {
+            pendingCalls.remove(callId);
+        }
+    }
+
+    /**
+     * Answers a call received by the handler.
+     */
+    public void reply(int callId, byte[] result) {
+        write(MESSAGE_REPLY, callId, ByteBuffer.wrap(result));
+    }
+
+    public void replyWithError(int callId, String message) {
+        write(MESSAGE_REPLY_ERROR, callId, ByteBuffer.wrap(message.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private boolean write(int type, int callId, ByteBuffer body) {
+        // The ring has a single producer; this lock serializes threads on this side
+        synchronized (writeLock) {
+            return outbound.write(type, callId, body, peerAlive);
+        }
+    }
+
+    private void failPendingCalls(IOException error) {
+        for (CompletableFuture<byte[]> future : pendingCalls.values()) {
+            future.completeExceptionally(error);
+        }
+        pendingCalls.clear();
+    }
+
+    /**
+     * Stops the receiver and unmaps the channel. The host also deletes the file.
+     */
+    @Override
+    public void close() throws IOException {
+        Thread current;
+        synchronized (this) {
+            current = receiver;
+        }
+        if (current != null && current != Thread.currentThread()) {
+            current.interrupt();
+            try {
+                current.join(1000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        fileChannel.close();
+        if (owner) {
+            Files.deleteIfExists(file);
+        }
+    }
+}
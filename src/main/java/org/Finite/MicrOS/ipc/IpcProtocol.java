@@ -0,0 +1,174 @@
+package org.Finite.MicrOS.ipc;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Message types and encoding helpers shared by {@link IsolatedAppHost} and
+ * {@link IsolatedAppRunner}. Bodies are big-endian; strings are an int byte
+ * length followed by UTF-8.
+ */
+final class IpcProtocol {
+    // Host to child
+    static final int START = 1;
+    static final int STOP = 2;
+    static final int RESIZE = 3;
+    static final int MOUSE = 4;
+    static final int KEY = 5;
+    static final int INTENT = 6;
+    static final int BUS_DELIVER = 7;
+    static final int FRAME_ACK = 8;
+
+    // Child to host
+    static final int READY = 20;
+    static final int FRAME = 21;
+    static final int BUS_SEND = 22;
+    static final int BUS_SUBSCRIBE = 23;
+    static final int BUS_UNSUBSCRIBE = 24;
+    static final int VFS = 25;
+
+    // Either direction, used by the benchmark
+    static final int PING = 40;
+    static final int PONG = 41;
+
+    // VFS operations
+    static final int VFS_READ = 1;
+    static final int VFS_WRITE = 2;
+    static final int VFS_DELETE = 3;
+    static final int VFS_EXISTS = 4;
+    static final int VFS_LIST = 5;
+    static final int VFS_MKDIR = 6;
+
+    private static final byte VALUE_NULL = 0;
+    private static final byte VALUE_STRING = 1;
+    private static final byte VALUE_BYTES = 2;
+    private static final byte VALUE_SERIALIZED = 3;
+
+    private IpcProtocol() {
+    }
+
+    /**
+     * Growable big-endian message body.
+     */
+    static final class Writer {
+        private ByteBuffer buffer = ByteBuffer.allocate(64);
+
+        Writer putInt(int value) {
+            ensure(4).putInt(value);
+            return this;
+        }
+
+        Writer putBoolean(boolean value) {
+            ensure(1).put((byte) (value ? 1 : 0));
+            return this;
+        }
+
+        Writer putString(String value) {
+            return putBytes(value.getBytes(StandardCharsets.UTF_8));
+        }
+
+        Writer putBytes(byte[] value) {
+            ensure(4 + value.length).putInt(value.length).put(value);
+            return this;
+        }
+
+        /**
+         * Writes a bus message or intent extra. Strings and byte arrays are
+         * written directly, anything else with Java serialization.
+         * @throws IllegalArgumentException if the value can't be serialized
+         */
+        Writer putValue(Object value) {
+            if (value == null) {
+                ensure(1).put(VALUE_NULL);
+            } else if (value instanceof String) {
+                ensure(1).put(VALUE_STRING);
+                putString((String) value);
+            } else if (value instanceof byte[]) {
+                ensure(1).put(VALUE_BYTES);
+                putBytes((byte[]) value);
+            } else {
+                ensure(1).put(VALUE_SERIALIZED);
+                putBytes(serialize(value));
+            }
+            return this;
+        }
+
+        ByteBuffer toBuffer() {
+            return buffer.duplicate().flip();
+        }
+
+        byte[] toByteArray() {
+            return Arrays.copyOf(buffer.array(), buffer.position());
+        }
+
+        private ByteBuffer ensure(int bytes) {
+            if (buffer.remaining() < bytes) {
+                ByteBuffer larger = ByteBuffer.allocate(Math.max(buffer.capacity() * 2, buffer.position() + bytes));
+                larger.put(buffer.flip());
+                buffer = larger;
+            }
+            return buffer;
+        }
+    }
+
+    static boolean getBoolean(ByteBuffer body) {
+        return body.get() != 0;
+    }
+
+    static String getString(ByteBuffer body) {
+        return new String(getBytes(body), StandardCharsets.UTF_8);
+    }
+
+    static byte[] getBytes(ByteBuffer body) {
+        byte[] value = new byte[body.getInt()];
+        body.get(value);
+        return value;
+    }
+
+    /**
+     * Reads a value written by {@link Writer#putValue}.
+     */
+    static Object getValue(ByteBuffer body) throws IOException, ClassNotFoundException {
+        switch (body.get()) {
+            case VALUE_NULL: return null;
+            case VALUE_STRING: return getString(body);
+            case VALUE_BYTES: return getBytes(body);
+            case VALUE_SERIALIZED: return deserialize(getBytes(body));
+            default: throw new IOException("Unknown value tag");
+        }
+    }
+
+    private static byte[] serialize(Object value) {
+        if (!(value instanceof Serializable)) {
+            throw new IllegalArgumentException("Messages to or from isolated apps must be Serializable: "
+                + value.getClass().getName());
+        }
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+                out.writeObject(value);
+            }
+            return bytes.toByteArray();
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Failed to serialize " + value.getClass().getName(), e);
+        }
+    }
+
+    private static Object deserialize(byte[] data) throws IOException, ClassNotFoundException {
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(data)) {
+            @Override
+            protected Class<?> resolveClass(ObjectStreamClass desc) throws IOException, ClassNotFoundException {
+                // App classes are only visible through the context loader
+                try {
+                    return Class.forName(desc.getName(), false, Thread.currentThread().getContextClassLoader());
+                } catch (ClassNotFoundException e) {
+                    return super.resolveClass(desc);
+                }
+            }
+        }) {
+            return in.readObject();
+        }
+    }
+}
@@ -0,0 +1,538 @@
+package org.Finite.MicrOS.ipc;
+
+import java.awt.*;
+import java.awt.event.*;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.io.File;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+import javax.swing.JComponent;
+import javax.swing.SwingUtilities;
+
+import org.Finite.MicrOS.apps.AppManifest;
+import org.Finite.MicrOS.core.Intent;
+import org.Finite.MicrOS.core.MessageBus;
+import org.Finite.MicrOS.core.ProcessManager;
+import org.Finite.MicrOS.core.VirtualFileSystem;
+
+/**
+ * Host side of an isolated app: starts the app in a child JVM through
+ * {@link ProcessManager}, shows the frames it renders and forwards input,
+ * intents, MessageBus traffic and file system calls over an {@link IpcChannel}.
+ * If the child crashes only its window is affected.
+ */
+public class IsolatedAppHost {
+    private static final long STOP_TIMEOUT_MILLIS = 2000;
+    /** Input events queued for an app that has stopped reading them before new ones are dropped */
+    private static final int MAX_QUEUED_INPUT = 1024;
+
+    private final AppManifest manifest;
+    private final ProcessManager processManager;
+    private final IpcChannel channel;
+    private final SharedFrameBuffer frameBuffer;
+    private final View view;
+    private final Map<String, Consumer<Object>> forwarders = new ConcurrentHashMap<>();
+    /** Messages to the app, sent by the writer thread so a full ring never blocks the UI or the receiver */
+    private final LinkedBlockingDeque<Outgoing> outgoing = new LinkedBlockingDeque<>();
+    private Thread writer;
+    private boolean droppingInput;
+    private volatile int processId = -1;
+    private volatile boolean running;
+
+    private IsolatedAppHost(AppManifest manifest, ProcessManager processManager,
+                            IpcChannel channel, SharedFrameBuffer frameBuffer) {
+        this.manifest = manifest;
+        this.processManager = processManager;
+        this.channel = channel;
+        this.frameBuffer = frameBuffer;
+        this.view = new View();
+    }
+
+    /**
+     * Starts an app in its own JVM.
+     * @param manifest The app's manifest
+     * @param appClassPath The app's JARs
+     * @param processManager Used to start and supervise the child process
+     * @throws IOException if the channel or the process could not be created
+     */
+    public static IsolatedAppHost launch(AppManifest manifest, List<URL> appClassPath,
+                                         ProcessManager processManager) throws IOException {
+        IpcChannel channel = IpcChannel.create(IpcChannel.DEFAULT_RING_CAPACITY);
+        SharedFrameBuffer frameBuffer;
+        try {
+            frameBuffer = SharedFrameBuffer.create();
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+        IsolatedAppHost host = new IsolatedAppHost(manifest, processManager, channel, frameBuffer);
+        try {
+            host.start(appClassPath);
+        } catch (IOException e) {
+            host.dispose();
+            throw e;
+        }
+        return host;
+    }
+
+    private void start(List<URL> appClassPath) throws IOException {
+        List<String> command = new ArrayList<>();
+        command.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+        command.add("-Djava.awt.headless=true");
+        command.add("-cp");
+        command.add(buildClassPath(appClassPath));
+        command.add(IsolatedAppRunner.class.getName());
+        command.add(channel.getFile().toString());
+        command.add(frameBuffer.getFile().toString());
+        command.add(manifest.getIdentifier());
+        command.add(manifest.getMainClass());
+        command.add(manifest.getName());
+
+        running = true;
+        processId = processManager.startProcess(command, "isolated app " + manifest.getIdentifier(), true);
+        if (processId == -1) {
+            running = false;
+            throw new IOException("Failed to start process for " + manifest.getIdentifier());
+        }
+        writer = new Thread(this::writeOutgoing, "ipc-writer-" + manifest.getIdentifier());
+        writer.setDaemon(true);
+        writer.start();
+        channel.start("ipc-host-" + manifest.getIdentifier(), this::onMessage,
+            () -> processManager.isProcessAlive(processId), this::onDisconnect);
+    }
+
+    private static String buildClassPath(List<URL> appClassPath) throws IOException {
+        StringBuilder classPath = new StringBuilder(System.getProperty("java.class.path"));
+        for (URL url : appClassPath) {
+            try {
+                classPath.append(File.pathSeparator).append(Paths.get(url.toURI()));
+            } catch (URISyntaxException e) {
+                throw new IOException("Invalid app class path entry: " + url, e);
+            }
+        }
+        return classPath.toString();
+    }
+
+    /**
+     * Gets the component that displays the app and captures its input.
+     */
+    public JComponent getView() {
+        return view;
+    }
+
+    public AppManifest getManifest() {
+        return manifest;
+    }
+
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * Passes an intent to the app. Extras must be strings, byte arrays or
+     * Serializable JDK types.
+     */
+    public void sendIntent(Intent intent) {
+        IpcProtocol.Writer body = new IpcProtocol.Writer().putString(intent.getTargetAppId());
+        Map<String, Object> extras = intent.getExtras();
+        body.putInt(extras.size());
+        for (Map.Entry<String, Object> extra : extras.entrySet()) {
+            body.putString(extra.getKey()).putValue(extra.getValue());
+        }
+        post(IpcProtocol.INTENT, body.toBuffer());
+    }
+
+    /**
+     * Asks the app to stop, killing the process if it doesn't exit in time.
+     * STOP is queued behind everything already posted, and the writer exits
+     * once it has sent it.
+     */
+    public void stop() {
+        if (running) {
+            // Cleared first so the disconnect that follows isn't reported as a crash
+            running = false;
+            enqueue(new Outgoing(() -> channel.send(IpcProtocol.STOP, new byte[0]), 0, false, true));
+            Thread reaper = new Thread(() -> {
+                long deadline = System.currentTimeMillis() + STOP_TIMEOUT_MILLIS;
+                try {
+                    writer.join(STOP_TIMEOUT_MILLIS);
+                } catch (InterruptedException e) {
+                    return;
+                }
+                while (processManager.isProcessAlive(processId) && System.currentTimeMillis() < deadline) {
+                    try {
+                        Thread.sleep(50);
+                    } catch (InterruptedException e) {
+                        break;
+                    }
+                }
+                if (processManager.isProcessAlive(processId)) {
+                    processManager.killProcess(processId);
+                }
+                dispose();
+            }, "ipc-stop-" + manifest.getIdentifier());
+            reaper.setDaemon(true);
+            reaper.start();
+        } else {
+            dispose();
+        }
+    }
+
+    private void dispose() {
+        running = false;
+        stopWriter();
+        forwarders.forEach(MessageBus::unsubscribe);
+        forwarders.clear();
+        try {
+            channel.close();
+            frameBuffer.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private void onDisconnect() {
+        boolean crashed = running;
+        running = false;
+        stopWriter();
+        forwarders.forEach(MessageBus::unsubscribe);
+        forwarders.clear();
+        if (crashed) {
+            SwingUtilities.invokeLater(() -> view.showExited());
+        }
+    }
+
+    /**
+     * Queues a message for the writer thread without waiting for room in the
+     * ring. Every message to the app goes this way, so neither the EDT nor
+     * the receiver thread ever waits on the channel; if both sides did, two
+     * full rings would deadlock the processes.
+     */
+    private void post(int type, ByteBuffer body) {
+        enqueue(new Outgoing(() -> channel.send(type, body), 0, false, false));
+    }
+
+    /**
+     * Queues an input event. Input is dropped while the app is too far behind
+     * to read it, and an event with a coalesce key replaces the last queued
+     * one with the same key, so a stalled app gets only the latest move or size.
+     * @param coalesceKey Key of events that supersede each other, or 0
+     */
+    private void postInput(int type, ByteBuffer body, int coalesceKey) {
+        enqueue(new Outgoing(() -> channel.send(type, body), coalesceKey, true, false));
+    }
+
+    private void postReply(int callId, byte[] result) {
+        enqueue(new Outgoing(() -> {
+            channel.reply(callId, result);
+            return true;
+        }, 0, false, false));
+    }
+
+    private void postError(int callId, String message) {
+        enqueue(new Outgoing(() -> {
+            channel.replyWithError(callId, message);
+            return true;
+        }, 0, false, false));
+    }
+
+    private void enqueue(Outgoing message) {
+        synchronized (outgoing) {
+            if (message.input) {
+                if (outgoing.size() >= MAX_QUEUED_INPUT) {
+                    if (!droppingInput) {
+                        droppingInput = true;
+                        System.err.println("[" + manifest.getIdentifier() + "] App isn't reading input, dropping events");
+                    }
+                    return;
+                }
+                droppingInput = false;
+                if (message.coalesceKey != 0) {
+                    Outgoing last = outgoing.pollLast();
+                    if (last != null && last.coalesceKey != message.coalesceKey) {
+                        outgoing.offerLast(last);
+                    }
+                }
+            }
+            outgoing.offerLast(message);
+        }
+    }
+
+    private void writeOutgoing() {
+        try {
+            while (true) {
+                Outgoing message = outgoing.take();
+                boolean connected;
+                try {
+                    connected = message.write.getAsBoolean();
+                } catch (IllegalArgumentException e) {
+                    // Too large for the ring; the message is lost but the writer carries on
+                    System.err.println("[" + manifest.getIdentifier() + "] Cannot send message: " + e.getMessage());
+                    connected = true;
+                }
+                if (!connected || message.last) {
+                    break;
+                }
+            }
+        } catch (InterruptedException e) {
+            // Stopped by dispose or disconnect
+        }
+        outgoing.clear();
+    }
+
+    private void stopWriter() {
+        if (writer != null) {
+            writer.interrupt();
+        }
+    }
+
+    private void onMessage(int type, int callId, ByteBuffer body) {
+        switch (type) {
+            case IpcProtocol.READY:
+                post(IpcProtocol.START, new IpcProtocol.Writer()
+                    .putInt(SharedFrameBuffer.clampWidth(view.getWidth()))
+                    .putInt(SharedFrameBuffer.clampHeight(view.getHeight()))
+                    .toBuffer());
+                break;
+            case IpcProtocol.FRAME:
+                view.receiveFrame(body.getInt(), body.getInt());
+                break;
+            case IpcProtocol.BUS_SEND:
+                onBusSend(body);
+                break;
+            case IpcProtocol.BUS_SUBSCRIBE:
+                subscribe(IpcProtocol.getString(body));
+                break;
+            case IpcProtocol.BUS_UNSUBSCRIBE:
+                unsubscribe(IpcProtocol.getString(body));
+                break;
+            case IpcProtocol.VFS:
+                onFileSystemCall(callId, body);
+                break;
+            case IpcProtocol.PING:
+                // The body is a view of the ring, so copy it before it is queued
+                post(IpcProtocol.PONG, ByteBuffer.allocate(body.remaining()).put(body).flip());
+                break;
+            default:
+                System.err.println("[" + manifest.getIdentifier() + "] Unknown IPC message type " + type);
+        }
+    }
+
+    private void onBusSend(ByteBuffer body) {
+        String targetId = IpcProtocol.getString(body);
+        try {
+            MessageBus.send(targetId, IpcProtocol.getValue(body));
+        } catch (IOException | ClassNotFoundException e) {
+            System.err.println("[" + manifest.getIdentifier() + "] Dropping message to " + targetId + ": " + e);
+        }
+    }
+
+    /**
+     * Subscribes on behalf of the app. Forwarders run on the bus executor and
+     * queue to the writer thread, so a busy channel never blocks the sender.
+     */
+    private void subscribe(String messageType) {
+        forwarders.computeIfAbsent(messageType, topic -> {
+            Consumer<Object> forwarder = message -> {
+                if (message instanceof MessageBus.Request) {
+                    // A reply from the app would complete a future in its own process
+                    ((MessageBus.Request) message).replyWithError(new UnsupportedOperationException(
+                        "Isolated app " + manifest.getIdentifier() + " can't answer requests on " + topic));
+                    return;
+                }
+                try {
+                    post(IpcProtocol.BUS_DELIVER,
+                        new IpcProtocol.Writer().putString(topic).putValue(message).toBuffer());
+                } catch (IllegalArgumentException e) {
+                    System.err.println("[" + manifest.getIdentifier() + "] Cannot forward message: " + e.getMessage());
+                }
+            };
+            MessageBus.subscribe(topic, forwarder, MessageBus.DispatchMode.ASYNC);
+            return forwarder;
+        });
+    }
+
+    private void unsubscribe(String messageType) {
+        Consumer<Object> forwarder = forwarders.remove(messageType);
+        if (forwarder != null) {
+            MessageBus.unsubscribe(messageType, forwarder);
+        }
+    }
+
+    private void onFileSystemCall(int callId, ByteBuffer body) {
+        VirtualFileSystem vfs = VirtualFileSystem.getInstance();
+        int operation = body.getInt();
+        String path = IpcProtocol.getString(body);
+        IpcProtocol.Writer result = new IpcProtocol.Writer();
+        try {
+            switch (operation) {
+                case IpcProtocol.VFS_READ:
+                    result.putBytes(vfs.readFile(path));
+                    break;
+                case IpcProtocol.VFS_WRITE:
+                    result.putBoolean(vfs.createFile(path, IpcProtocol.getBytes(body)));
+                    break;
+                case IpcProtocol.VFS_DELETE:
+                    result.putBoolean(vfs.deleteFile(path));
+                    break;
+                case IpcProtocol.VFS_EXISTS:
+                    result.putBoolean(vfs.exists(path));
+                    break;
+                case IpcProtocol.VFS_LIST:
+                    File[] files = vfs.listFiles(path);
+                    result.putInt(files.length);
+                    for (File file : files) {
+                        result.putString(file.getName());
+                    }
+                    break;
+                case IpcProtocol.VFS_MKDIR:
+                    result.putBoolean(vfs.createDirectory(path));
+                    break;
+                default:
+                    postError(callId, "Unknown file operation " + operation);
+                    return;
+            }
+            postReply(callId, result.toByteArray());
+        } catch (IOException | IllegalArgumentException e) {
+            // Includes files too large for a single message
+            postError(callId, e.toString());
+        }
+    }
+
+    private static final class Outgoing {
+        /** Sends the message; false if the app is gone */
+        final BooleanSupplier write;
+        final int coalesceKey;
+        final boolean input;
+        /** Whether the writer stops after this message */
+        final boolean last;
+
+        Outgoing(BooleanSupplier write, int coalesceKey, boolean input, boolean last) {
+            this.write = write;
+            this.coalesceKey = coalesceKey;
+            this.input = input;
+            this.last = last;
+        }
+    }
+
+    /**
+     * Displays the latest frame and forwards input events to the app. Events
+     * go through {@link #postInput} so the EDT never waits on the channel.
+     */
+    private class View extends JComponent {
+        private BufferedImage frame;
+        /** Image the next frame is copied into, only touched by the channel thread until swapped */
+        private BufferedImage spare;
+        private String status = "Starting " + manifest.getName() + "...";
+
+        View() {
+            setFocusable(true);
+            setPreferredSize(new Dimension(640, 480));
+            MouseAdapter mouse = new MouseAdapter() {
+                @Override
+                public void mousePressed(MouseEvent e) {
+                    requestFocusInWindow();
+                    sendMouse(e);
+                }
+                @Override public void mouseReleased(MouseEvent e) { sendMouse(e); }
+                @Override public void mouseClicked(MouseEvent e) { sendMouse(e); }
+                @Override public void mouseMoved(MouseEvent e) { sendMouse(e); }
+                @Override public void mouseDragged(MouseEvent e) { sendMouse(e); }
+                @Override public void mouseEntered(MouseEvent e) { sendMouse(e); }
+                @Override public void mouseExited(MouseEvent e) { sendMouse(e); }
+                @Override public void mouseWheelMoved(MouseWheelEvent e) { sendMouse(e); }
+            };
+            addMouseListener(mouse);
+            addMouseMotionListener(mouse);
+            addMouseWheelListener(mouse);
+            addKeyListener(new KeyListener() {
+                @Override public void keyPressed(KeyEvent e) { sendKey(e); }
+                @Override public void keyReleased(KeyEvent e) { sendKey(e); }
+                @Override public void keyTyped(KeyEvent e) { sendKey(e); }
+            });
+            // Let Tab reach the app instead of moving focus out of the view
+            setFocusTraversalKeysEnabled(false);
+            addComponentListener(new ComponentAdapter() {
+                @Override
+                public void componentResized(ComponentEvent e) {
+                    if (running) {
+                        postInput(IpcProtocol.RESIZE, new IpcProtocol.Writer()
+                            .putInt(SharedFrameBuffer.clampWidth(getWidth()))
+                            .putInt(SharedFrameBuffer.clampHeight(getHeight()))
+                            .toBuffer(), IpcProtocol.RESIZE);
+                    }
+                }
+            });
+        }
+
+        private void sendMouse(MouseEvent e) {
+            if (!running) return;
+            int rotation = e instanceof MouseWheelEvent ? ((MouseWheelEvent) e).getWheelRotation() : 0;
+            // Only the latest position of a run of moves or drags matters
+            boolean motion = e.getID() == MouseEvent.MOUSE_MOVED || e.getID() == MouseEvent.MOUSE_DRAGGED;
+            postInput(IpcProtocol.MOUSE, new IpcProtocol.Writer()
+                .putInt(e.getID()).putInt(e.getX()).putInt(e.getY()).putInt(e.getButton())
+                .putInt(e.getModifiersEx()).putInt(e.getClickCount()).putInt(rotation)
+                .toBuffer(), motion ? -e.getID() : 0);
+        }
+
+        private void sendKey(KeyEvent e) {
+            if (!running) return;
+            postInput(IpcProtocol.KEY, new IpcProtocol.Writer()
+                .putInt(e.getID()).putInt(e.getKeyCode()).putInt(e.getKeyChar())
+                .putInt(e.getModifiersEx()).putInt(e.getKeyLocation())
+                .toBuffer(), 0);
+        }
+
+        /**
+         * Called on the channel thread. The frame is acknowledged only after
+         * the images are swapped on the EDT, so neither the child nor this
+         * thread can overwrite pixels that are still being painted.
+         */
+        void receiveFrame(int width, int height) {
+            BufferedImage image = spare;
+            if (image == null || image.getWidth() != width || image.getHeight() != height) {
+                image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+            }
+            frameBuffer.read(((DataBufferInt) image.getRaster().getDataBuffer()).getData(), width, height);
+            BufferedImage received = image;
+            SwingUtilities.invokeLater(() -> {
+                spare = frame;
+                frame = received;
+                status = null;
+                repaint();
+                post(IpcProtocol.FRAME_ACK, ByteBuffer.allocate(0));
+            });
+        }
+
+        void showExited() {
+            status = manifest.getName() + " has stopped responding or exited";
+            repaint();
+        }
+
+        @Override
+        protected void paintComponent(Graphics g) {
+            g.setColor(getBackground() != null ? getBackground() : Color.DARK_GRAY);
+            g.fillRect(0, 0, getWidth(), getHeight());
+            if (frame != null) {
+                g.drawImage(frame, 0, 0, null);
+            }
+            if (status != null) {
+                g.setColor(Color.LIGHT_GRAY);
+                FontMetrics metrics = g.getFontMetrics();
+                g.drawString(status, (getWidth() - metrics.stringWidth(status)) / 2, getHeight() / 2);
+            }
+        }
+    }
+}
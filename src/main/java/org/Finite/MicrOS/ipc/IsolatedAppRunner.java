@@ -0,0 +1,395 @@
+package org.Finite.MicrOS.ipc;
+
+import java.awt.*;
+import java.awt.event.KeyEvent;
+import java.awt.event.MouseEvent;
+import java.awt.event.MouseWheelEvent;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.BooleanSupplier;
+import javax.swing.*;
+
+import org.Finite.MicrOS.apps.AppManifest;
+import org.Finite.MicrOS.apps.MicrOSApp;
+import org.Finite.MicrOS.core.Intent;
+import org.Finite.MicrOS.core.MessageBus;
+import org.Finite.MicrOS.core.VirtualFileSystem;
+
+/**
+ * Entry point of an isolated app process, started by {@link IsolatedAppHost}.
+ * The app's Swing UI is laid out and painted offscreen (the process runs
+ * headless) into the shared frame buffer, and input from the host is
+ * dispatched straight to the component under the pointer or the component
+ * that was last clicked. MessageBus and VirtualFileSystem calls are routed
+ * to the host over the channel.
+ * <p>
+ * Arguments: channel file, frame buffer file, app identifier, main class and
+ * app name. {@code --echo <channel file>} answers pings instead, for
+ * {@link IpcBenchmark}.
+ */
+public final class IsolatedAppRunner {
+    private static final int FRAME_INTERVAL_MILLIS = 16;
+    private static final long FILE_CALL_TIMEOUT_MILLIS = 30_000;
+
+    private final IpcChannel channel;
+    private final SharedFrameBuffer frameBuffer;
+    private final AppManifest manifest;
+    /**
+     * Runs bus handlers in order off the channel thread, which must stay free
+     * to receive replies in case a handler makes a file system call.
+     */
+    private final ExecutorService busDelivery = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "ipc-bus-delivery");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private MicrOSApp app;
+    private JPanel root;
+    private Component focusOwner;
+    private BufferedImage image;
+    /** Intents that arrived before the app was started */
+    private final List<Intent> pendingIntents = new ArrayList<>();
+    private volatile boolean dirty = true;
+    private volatile boolean frameInFlight;
+
+    private IsolatedAppRunner(IpcChannel channel, SharedFrameBuffer frameBuffer, AppManifest manifest) {
+        this.channel = channel;
+        this.frameBuffer = frameBuffer;
+        this.manifest = manifest;
+    }
+
+    public static void main(String[] args) throws Exception {
+        BooleanSupplier parentAlive = () -> ProcessHandle.current().parent().map(ProcessHandle::isAlive).orElse(false);
+        if (args.length == 2 && args[0].equals("--echo")) {
+            runEcho(IpcChannel.open(Paths.get(args[1])), parentAlive);
+            return;
+        }
+        if (args.length < 5) {
+            System.err.println("Usage: IsolatedAppRunner <channel> <frame buffer> <app id> <main class> <name>");
+            System.exit(2);
+        }
+
+        AppManifest manifest = new AppManifest();
+        manifest.setIdentifier(args[2]);
+        manifest.setMainClass(args[3]);
+        manifest.setName(args[4]);
+
+        IpcChannel channel = IpcChannel.open(Paths.get(args[0]));
+        IsolatedAppRunner runner = new IsolatedAppRunner(channel, SharedFrameBuffer.open(Paths.get(args[1])), manifest);
+        runner.installBridges();
+        SwingUtilities.invokeAndWait(runner::installOffscreenSwing);
+        channel.start("ipc-app", runner::onMessage, parentAlive, () -> System.exit(0));
+        channel.send(IpcProtocol.READY, new byte[0]);
+    }
+
+    private static void runEcho(IpcChannel channel, BooleanSupplier parentAlive) throws InterruptedException {
+        CountDownLatch done = new CountDownLatch(1);
+        channel.start("ipc-echo", (type, callId, body) -> {
+            if (type == IpcProtocol.PING) {
+                channel.send(IpcProtocol.PONG, body);
+            } else if (type == IpcProtocol.STOP) {
+                done.countDown();
+            }
+        }, parentAlive, done::countDown);
+        channel.send(IpcProtocol.READY, new byte[0]);
+        done.await();
+    }
+
+    /**
+     * Routes the bus and the file system of this process to the host.
+     */
+    private void installBridges() {
+        MessageBus.setBridge(new MessageBus.Bridge() {
+            @Override
+            public void forward(String targetId, Object message) {
+                channel.send(IpcProtocol.BUS_SEND, new IpcProtocol.Writer().putString(targetId).putValue(message).toBuffer());
+            }
+
+            @Override
+            public void subscribed(String messageType) {
+                channel.send(IpcProtocol.BUS_SUBSCRIBE, new IpcProtocol.Writer().putString(messageType).toBuffer());
+            }
+
+            @Override
+            public void unsubscribed(String messageType) {
+                channel.send(IpcProtocol.BUS_UNSUBSCRIBE, new IpcProtocol.Writer().putString(messageType).toBuffer());
+            }
+        });
+
+        VirtualFileSystem.useRemoteStorage(new VirtualFileSystem.RemoteStorage() {
+            @Override
+            public byte[] read(String virtualPath) throws IOException {
+                return IpcProtocol.getBytes(call(IpcProtocol.VFS_READ, virtualPath, null));
+            }
+
+            @Override
+            public boolean write(String virtualPath, byte[] content) {
+                return callForBoolean(IpcProtocol.VFS_WRITE, virtualPath, content);
+            }
+
+            @Override
+            public boolean delete(String virtualPath) {
+                return callForBoolean(IpcProtocol.VFS_DELETE, virtualPath, null);
+            }
+
+            @Override
+            public boolean exists(String virtualPath) {
+                return callForBoolean(IpcProtocol.VFS_EXISTS, virtualPath, null);
+            }
+
+            @Override
+            public String[] list(String virtualPath) {
+                try {
+                    ByteBuffer result = call(IpcProtocol.VFS_LIST, virtualPath, null);
+                    String[] names = new String[result.getInt()];
+                    for (int i = 0; i < names.length; i++) {
+                        names[i] = IpcProtocol.getString(result);
+                    }
+                    return names;
+                } catch (IOException e) {
+                    e.printStackTrace();
+                    return new String[0];
+                }
+            }
+
+            @Override
+            public boolean createDirectory(String virtualPath) {
+                return callForBoolean(IpcProtocol.VFS_MKDIR, virtualPath, null);
+            }
+
+            private boolean callForBoolean(int operation, String virtualPath, byte[] content) {
+                try {
+                    return IpcProtocol.getBoolean(call(operation, virtualPath, content));
+                } catch (IOException e) {
+                    e.printStackTrace();
+                    return false;
+                }
+            }
+
+            private ByteBuffer call(int operation, String virtualPath, byte[] content) throws IOException {
+                IpcProtocol.Writer request = new IpcProtocol.Writer().putInt(operation).putString(virtualPath);
+                if (content != null) {
+                    request.putBytes(content);
+                }
+                return ByteBuffer.wrap(channel.call(IpcProtocol.VFS, request.toByteArray(), FILE_CALL_TIMEOUT_MILLIS));
+            }
+        });
+    }
+
+    /**
+     * Replaces the repaint and focus managers, which normally only work for
+     * components inside a displayable window.
+     */
+    private void installOffscreenSwing() {
+        RepaintManager.setCurrentManager(new RepaintManager() {
+            {
+                // Painting goes straight into the frame image
+                setDoubleBufferingEnabled(false);
+            }
+
+            @Override
+            public void addDirtyRegion(JComponent c, int x, int y, int w, int h) {
+                dirty = true;
+            }
+
+            @Override
+            public void addInvalidComponent(JComponent invalidComponent) {
+                dirty = true;
+            }
+        });
+        // Input is targeted by the runner; keep the focus manager from swallowing it
+        KeyboardFocusManager.setCurrentKeyboardFocusManager(new DefaultKeyboardFocusManager() {
+            @Override
+            public boolean dispatchEvent(AWTEvent e) {
+                return false;
+            }
+        });
+    }
+
+    private void onMessage(int type, int callId, ByteBuffer body) {
+        switch (type) {
+            case IpcProtocol.START: {
+                int width = body.getInt();
+                int height = body.getInt();
+                SwingUtilities.invokeLater(() -> startApp(width, height));
+                break;
+            }
+            case IpcProtocol.RESIZE: {
+                int width = body.getInt();
+                int height = body.getInt();
+                SwingUtilities.invokeLater(() -> {
+                    if (root != null) {
+                        root.setSize(width, height);
+                        root.invalidate();
+                        dirty = true;
+                    }
+                });
+                break;
+            }
+            case IpcProtocol.MOUSE: {
+                int id = body.getInt(), x = body.getInt(), y = body.getInt(), button = body.getInt();
+                int modifiers = body.getInt(), clickCount = body.getInt(), rotation = body.getInt();
+                SwingUtilities.invokeLater(() -> dispatchMouse(id, x, y, button, modifiers, clickCount, rotation));
+                break;
+            }
+            case IpcProtocol.KEY: {
+                int id = body.getInt(), keyCode = body.getInt(), keyChar = body.getInt();
+                int modifiers = body.getInt(), location = body.getInt();
+                SwingUtilities.invokeLater(() -> dispatchKey(id, keyCode, (char) keyChar, modifiers, location));
+                break;
+            }
+            case IpcProtocol.INTENT:
+                onIntent(body);
+                break;
+            case IpcProtocol.BUS_DELIVER:
+                onBusDeliver(body);
+                break;
+            case IpcProtocol.FRAME_ACK:
+                frameInFlight = false;
+                break;
+            case IpcProtocol.STOP:
+                SwingUtilities.invokeLater(this::stopApp);
+                break;
+            case IpcProtocol.PING:
+                channel.send(IpcProtocol.PONG, body);
+                break;
+            default:
+                System.err.println("Unknown IPC message type " + type);
+        }
+    }
+
+    private void startApp(int width, int height) {
+        try {
+            Class<?> mainClass = Class.forName(manifest.getMainClass());
+            app = (MicrOSApp) mainClass.getDeclaredConstructor().newInstance();
+            app.setManifest(manifest);
+            // There is no WindowManager in this process
+            app.initialize(null, VirtualFileSystem.getInstance());
+
+            root = new JPanel(new BorderLayout());
+            root.add(app.createUI(), BorderLayout.CENTER);
+            root.setSize(width, height);
+            dirty = true;
+
+            Thread starter = new Thread(app::onStart, "app-" + manifest.getIdentifier());
+            starter.start();
+            new Timer(FRAME_INTERVAL_MILLIS, e -> renderFrame()).start();
+            pendingIntents.forEach(app::handleIntent);
+            pendingIntents.clear();
+        } catch (Exception e) {
+            System.err.println("Failed to start " + manifest.getIdentifier() + ": " + e);
+            e.printStackTrace();
+            System.exit(1);
+        }
+    }
+
+    private void stopApp() {
+        try {
+            if (app != null) {
+                app.onStop();
+            }
+        } finally {
+            System.exit(0);
+        }
+    }
+
+    /**
+     * Paints the UI into the shared frame buffer if anything changed and
+     * the host has picked up the previous frame.
+     */
+    private void renderFrame() {
+        if (!dirty || frameInFlight || root == null) return;
+        dirty = false;
+        layoutTree(root);
+
+        int width = SharedFrameBuffer.clampWidth(root.getWidth());
+        int height = SharedFrameBuffer.clampHeight(root.getHeight());
+        if (image == null || image.getWidth() != width || image.getHeight() != height) {
+            image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        }
+        Graphics2D g = image.createGraphics();
+        try {
+            g.setClip(0, 0, width, height);
+            root.paint(g);
+        } finally {
+            g.dispose();
+        }
+
+        frameBuffer.write(((DataBufferInt) image.getRaster().getDataBuffer()).getData(), width, height);
+        frameInFlight = true;
+        channel.send(IpcProtocol.FRAME, new IpcProtocol.Writer().putInt(width).putInt(height).toBuffer());
+    }
+
+    /**
+     * Lays out the component tree. {@link Container#validate()} does nothing
+     * without a native peer, which headless components never get.
+     */
+    private static void layoutTree(Container container) {
+        container.doLayout();
+        for (Component child : container.getComponents()) {
+            if (child instanceof Container) {
+                layoutTree((Container) child);
+            }
+        }
+    }
+
+    private void dispatchMouse(int id, int x, int y, int button, int modifiers, int clickCount, int rotation) {
+        if (root == null) return;
+        Component target = SwingUtilities.getDeepestComponentAt(root, x, y);
+        if (target == null) return;
+        Point point = SwingUtilities.convertPoint(root, x, y, target);
+        long when = System.currentTimeMillis();
+        MouseEvent event = id == MouseEvent.MOUSE_WHEEL
+            ? new MouseWheelEvent(target, id, when, modifiers, point.x, point.y, clickCount, false,
+                MouseWheelEvent.WHEEL_UNIT_SCROLL, 3, rotation)
+            : new MouseEvent(target, id, when, modifiers, point.x, point.y, clickCount, false, button);
+        if (id == MouseEvent.MOUSE_PRESSED && target.isFocusable()) {
+            focusOwner = target;
+        }
+        target.dispatchEvent(event);
+    }
+
+    private void dispatchKey(int id, int keyCode, char keyChar, int modifiers, int location) {
+        if (focusOwner == null) return;
+        focusOwner.dispatchEvent(new KeyEvent(focusOwner, id, System.currentTimeMillis(),
+            modifiers, keyCode, keyChar, location));
+    }
+
+    private void onIntent(ByteBuffer body) {
+        Intent intent = new Intent(IpcProtocol.getString(body));
+        int count = body.getInt();
+        try {
+            for (int i = 0; i < count; i++) {
+                intent.putExtra(IpcProtocol.getString(body), IpcProtocol.getValue(body));
+            }
+        } catch (IOException | ClassNotFoundException e) {
+            System.err.println("Dropping undecodable intent: " + e);
+            return;
+        }
+        SwingUtilities.invokeLater(() -> {
+            if (app != null) {
+                app.handleIntent(intent);
+            } else {
+                pendingIntents.add(intent);
+            }
+        });
+    }
+
+    private void onBusDeliver(ByteBuffer body) {
+        String messageType = IpcProtocol.getString(body);
+        try {
+            Object message = IpcProtocol.getValue(body);
+            busDelivery.execute(() -> MessageBus.deliverFromBridge(messageType, message));
+        } catch (IOException | ClassNotFoundException e) {
+            System.err.println("Dropping undecodable message for " + messageType + ": " + e);
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package org.Finite.MicrOS.ipc;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Memory-mapped ARGB pixel buffer through which an isolated app hands its
+ * rendered UI to the host. The child paints a frame, sends
+ * {@link IpcProtocol#FRAME} and doesn't touch the buffer again until the host
+ * answers with {@link IpcProtocol#FRAME_ACK}, so frames are never torn and
+ * pixels cross the process boundary without going through the channel.
+ */
+final class SharedFrameBuffer implements Closeable {
+    static final int MAX_WIDTH = 2560;
+    static final int MAX_HEIGHT = 1600;
+
+    private final Path file;
+    private final FileChannel channel;
+    private final IntBuffer pixels;
+    private final boolean owner;
+
+    private SharedFrameBuffer(Path file, FileChannel channel, boolean owner) throws IOException {
+        this.file = file;
+        this.channel = channel;
+        this.owner = owner;
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, (long) MAX_WIDTH * MAX_HEIGHT * 4);
+        this.pixels = buffer.order(ByteOrder.nativeOrder()).asIntBuffer();
+    }
+
+    static SharedFrameBuffer create() throws IOException {
+        Path file = Files.createTempFile(IpcChannel.sharedMemoryDirectory(), "micros-frame-", ".fb");
+        return new SharedFrameBuffer(file,
+            FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE), true);
+    }
+
+    static SharedFrameBuffer open(Path file) throws IOException {
+        return new SharedFrameBuffer(file,
+            FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE), false);
+    }
+
+    Path getFile() {
+        return file;
+    }
+
+    /**
+     * Copies rows of ARGB pixels into the buffer.
+     */
+    void write(int[] source, int width, int height) {
+        pixels.put(0, source, 0, width * height);
+    }
+
+    /**
+     * Copies a frame out of the buffer, e.g. straight into an image raster.
+     */
+    void read(int[] target, int width, int height) {
+        pixels.get(0, target, 0, width * height);
+    }
+
+    static int clampWidth(int width) {
+        return Math.max(1, Math.min(width, MAX_WIDTH));
+    }
+
+    static int clampHeight(int height) {
+        return Math.max(1, Math.min(height, MAX_HEIGHT));
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+        if (owner) {
+            Files.deleteIfExists(file);
+        }
+    }
+}
@@ -0,0 +1,187 @@
+package org.Finite.MicrOS.ipc;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Single-producer, single-consumer ring buffer over a region of shared memory.
+ * The write and read positions are byte counters that only ever grow; each
+ * lives on its own cache line and is published with release/acquire ordering,
+ * so the two sides never lock and never write the same memory.
+ * <p>
+ * Records are an int length, an int type, an int tag, padding and the body,
+ * rounded up to 8 bytes.
+ * A record never wraps: if it doesn't fit before the end of the buffer, a
+ * padding record fills the rest and the record starts again at offset 0.
+ */
+final class SharedMemoryRing {
+    static final int HEADER_SIZE = 128;
+    private static final int WRITE_POSITION = 0;
+    private static final int READ_POSITION = 64;
+    private static final int RECORD_HEADER = 16;
+    private static final int PADDING = -1;
+
+    /**
+     * Busy-spin iterations before backing off; keeps round trips in the
+     * microsecond range. Spinning on a single CPU only delays the peer.
+     */
+    private static final int SPIN_LIMIT = Runtime.getRuntime().availableProcessors() > 1 ? 20_000 : 0;
+    private static final int YIELD_LIMIT = 100;
+    private static final long MAX_PARK_NANOS = 200_000;
+    private static final int IDLE_CAP = SPIN_LIMIT + YIELD_LIMIT + 8;
+
+    private static final VarHandle LONGS =
+        MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.nativeOrder());
+
+    /** Receives records; the body is a view of shared memory, valid only during the call */
+    @FunctionalInterface
+    interface RecordHandler {
+        void onRecord(int type, int tag, ByteBuffer body);
+    }
+
+    private final ByteBuffer control;
+    private final ByteBuffer data;
+    private final int capacity;
+    private final int mask;
+
+    /**
+     * @param region Memory holding the header followed by the data area,
+     *               whose size must be a power of two
+     */
+    SharedMemoryRing(ByteBuffer region) {
+        this.control = region.duplicate().order(ByteOrder.nativeOrder());
+        this.control.limit(HEADER_SIZE);
+        this.data = region.duplicate().position(HEADER_SIZE).slice().order(ByteOrder.nativeOrder());
+        this.capacity = data.capacity();
+        if (Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("Ring capacity must be a power of two: " + capacity);
+        }
+        this.mask = capacity - 1;
+    }
+
+    int capacity() {
+        return capacity;
+    }
+
+    /**
+     * Gets the largest body a single record can carry.
+     */
+    int maxMessageSize() {
+        return capacity / 2 - RECORD_HEADER;
+    }
+
+    /**
+     * Writes a record, waiting for the consumer to make room if necessary.
+     * Only one thread may write to a ring.
+     * @param tag Free-form value carried alongside the type
+     * @param peerAlive Checked while waiting, so a dead consumer can't block the writer forever
+     * @return false if the consumer went away before there was room
+     */
+    boolean write(int type, int tag, ByteBuffer body, BooleanSupplier peerAlive) {
+        int length = body.remaining();
+        if (length > maxMessageSize()) {
+            throw new IllegalArgumentException("Message of " + length + " bytes exceeds ring limit of " + maxMessageSize());
+        }
+        int recordSize = align(RECORD_HEADER + length);
+        long position = (long) LONGS.getOpaque(control, WRITE_POSITION);
+        int index = (int) (position & mask);
+        int padding = index + recordSize > capacity ? capacity - index : 0;
+
+        long required = position + padding + recordSize - capacity;
+        int idle = 0;
+        while ((long) LONGS.getAcquire(control, READ_POSITION) < required) {
+            if (!idle(idle, peerAlive)) {
+                return false;
+            }
+            idle = Math.min(idle + 1, IDLE_CAP);
+        }
+
+        if (padding > 0) {
+            data.putInt(index, PADDING);
+            position += padding;
+            index = 0;
+        }
+        data.putInt(index + 4, type);
+        data.putInt(index + 8, tag);
+        data.put(index + RECORD_HEADER, body, body.position(), length);
+        data.putInt(index, length);
+        LONGS.setRelease(control, WRITE_POSITION, position + recordSize);
+        return true;
+    }
+
+    /**
+     * Hands every available record to the handler. Space is only given back
+     * to the writer after the handler returns, so bodies are read in place.
+     * @return The number of records read
+     */
+    int read(RecordHandler handler) {
+        long limit = (long) LONGS.getAcquire(control, WRITE_POSITION);
+        long position = (long) LONGS.getOpaque(control, READ_POSITION);
+        int count = 0;
+        while (position < limit) {
+            int index = (int) (position & mask);
+            int length = data.getInt(index);
+            if (length == PADDING) {
+                position += capacity - index;
+                continue;
+            }
+            int type = data.getInt(index + 4);
+            int tag = data.getInt(index + 8);
+            try {
+                handler.onRecord(type, tag, data.slice(index + RECORD_HEADER, length).order(ByteOrder.BIG_ENDIAN));
+            } finally {
+                position += align(RECORD_HEADER + length);
+                LONGS.setRelease(control, READ_POSITION, position);
+            }
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * Reads records until the ring is idle and the peer has gone away, or the thread is interrupted.
+     */
+    void readLoop(RecordHandler handler, BooleanSupplier peerAlive) {
+        int idle = 0;
+        while (!Thread.currentThread().isInterrupted()) {
+            if (read(handler) > 0) {
+                idle = 0;
+            } else if (!idle(idle, peerAlive)) {
+                // Drain anything written just before the peer exited
+                read(handler);
+                return;
+            } else {
+                idle = Math.min(idle + 1, IDLE_CAP);
+            }
+        }
+    }
+
+    /**
+     * Spins, then yields, then parks with growing timeouts.
+     * @return false if the peer is no longer alive
+     */
+    private static boolean idle(int iteration, BooleanSupplier peerAlive) {
+        if (iteration < SPIN_LIMIT) {
+            Thread.onSpinWait();
+            return true;
+        }
+        if (Thread.currentThread().isInterrupted() || !peerAlive.getAsBoolean()) {
+            return false;
+        }
+        if (iteration < SPIN_LIMIT + YIELD_LIMIT) {
+            Thread.yield();
+        } else {
+            long backoff = 1_000L << Math.min(iteration - SPIN_LIMIT - YIELD_LIMIT, 8);
+            LockSupport.parkNanos(Math.min(backoff, MAX_PARK_NANOS));
+        }
+        return true;
+    }
+
+    private static int align(int size) {
+        return (size + 7) & ~7;
+    }
+}
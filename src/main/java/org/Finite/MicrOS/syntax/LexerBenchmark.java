@@ -0,0 +1,125 @@
+package org.Finite.MicrOS.syntax;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import org.json.JSONObject;
+
+/**
+ * Compares the combined single-pass {@link SyntaxLexer} with running each
+ * pattern of a syntax definition over the whole text on its own, which is
+ * how highlighting used to work. Only tokenizing is timed, not applying
+ * styles. Run with the {@code lexbench} console command or
+ * {@code java -cp MicrOS.jar org.Finite.MicrOS.syntax.LexerBenchmark <syntax.json> [file]}.
+ */
+public final class LexerBenchmark {
+    private static final int WARMUP_PASSES = 20;
+    private static final int MEASURED_PASSES = 30;
+    private static final String SAMPLE =
+        "/*\n * Sample input for the lexer benchmark.\n */\n"
+        + "package org.example;\n\n"
+        + "import java.util.List;\n\n"
+        + "public class Sample extends Object implements Runnable {\n"
+        + "    private static final int LIMIT = 42; // upper bound\n"
+        + "    private final List<String> names = new ArrayList<>();\n\n"
+        + "    @Override\n"
+        + "    public void run() {\n"
+        + "        for (int i = 0; i < LIMIT; i++) {\n"
+        + "            names.add(\"name \" + i + \" of \" + 3.5);\n"
+        + "        }\n"
+        + "        if (names.isEmpty()) throw new IllegalStateException(\"empty\");\n"
+        + "    }\n"
+        + "}\n\n";
+
+    private LexerBenchmark() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.err.println("Usage: LexerBenchmark <syntax.json> [file]");
+            System.exit(1);
+        }
+        JSONObject syntax = new JSONObject(new String(Files.readAllBytes(Paths.get(args[0])), StandardCharsets.UTF_8));
+        String text = args.length > 1
+            ? new String(Files.readAllBytes(Paths.get(args[1])), StandardCharsets.UTF_8)
+            : sampleText(5000);
+        run(syntax, text, System.out::println);
+    }
+
+    /**
+     * @return Roughly the given number of lines of Java
+     */
+    public static String sampleText(int lines) {
+        int sampleLines = SAMPLE.split("\n", -1).length - 1;
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < lines; i += sampleLines) {
+            text.append(SAMPLE);
+        }
+        return text.toString();
+    }
+
+    /**
+     * Runs the benchmark and reports results line by line.
+     */
+    public static void run(JSONObject syntax, String text, Consumer<String> output) {
+        List<Pattern> patterns = new ArrayList<>();
+        JSONObject definitions = syntax.getJSONObject("patterns");
+        for (String key : definitions.keySet()) {
+            patterns.add(Pattern.compile(definitions.getJSONObject(key).getString("regex"), Pattern.MULTILINE));
+        }
+        SyntaxLexer lexer = new SyntaxLexer(syntax);
+        String[] lines = text.split("\n", -1);
+
+        int[] matches = new int[1];
+        Runnable separate = () -> {
+            matches[0] = 0;
+            for (Pattern pattern : patterns) {
+                Matcher matcher = pattern.matcher(text);
+                while (matcher.find()) {
+                    matches[0]++;
+                }
+            }
+        };
+        int[] tokens = new int[1];
+        SyntaxLexer.TokenSink count = (start, end, rule) -> tokens[0]++;
+        Runnable combined = () -> {
+            tokens[0] = 0;
+            int state = SyntaxLexer.PLAIN;
+            for (String line : lines) {
+                state = lexer.lexLine(line, state, count);
+            }
+        };
+
+        output.accept("Lexer benchmark (" + lines.length + " lines, " + text.length() / 1024 + " KB, "
+            + patterns.size() + " patterns)");
+        long separateNanos = measure(separate);
+        long combinedNanos = measure(combined);
+        output.accept(String.format("  separate patterns: %.2f ms per pass, %d matches", separateNanos / 1e6, matches[0]));
+        output.accept(String.format("  combined lexer:    %.2f ms per pass, %d tokens (%.1fx)", combinedNanos / 1e6, tokens[0],
+            (double) separateNanos / Math.max(1, combinedNanos)));
+    }
+
+    /**
+     * @return The median time of a pass in nanoseconds
+     */
+    private static long measure(Runnable pass) {
+        for (int i = 0; i < WARMUP_PASSES; i++) {
+            pass.run();
+        }
+        long[] samples = new long[MEASURED_PASSES];
+        for (int i = 0; i < MEASURED_PASSES; i++) {
+            long start = System.nanoTime();
+            pass.run();
+            samples[i] = System.nanoTime() - start;
+        }
+        Arrays.sort(samples);
+        return samples[MEASURED_PASSES / 2];
+    }
+}
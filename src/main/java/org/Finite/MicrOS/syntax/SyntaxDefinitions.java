@@ -0,0 +1,196 @@
+package org.Finite.MicrOS.syntax;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+import java.util.stream.Stream;
+import org.Finite.MicrOS.core.FileWatcher;
+import org.Finite.MicrOS.core.VirtualFileSystem;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * The syntax definitions in {@code /system/texteditor/syntax} and the editor
+ * themes in {@code /system/texteditor/themes.json}, shared by every
+ * {@link SyntaxHighlighter}. Once {@link #watchForChanges()} is called, only
+ * the edited files are re-read, in the background, and the new set is
+ * swapped in whole so readers never see a half-applied change. A file that
+ * fails to parse keeps its previous definition.
+ */
+public class SyntaxDefinitions {
+    public static final String SYNTAX_DIRECTORY = "/system/texteditor/syntax";
+    public static final String THEMES_FILE = "/system/texteditor/themes.json";
+
+    private static SyntaxDefinitions instance;
+
+    private final Path syntaxDirectory;
+    private final Path themesFile;
+    private final List<Runnable> listeners = new CopyOnWriteArrayList<>();
+    private volatile Map<Path, JSONObject> syntaxConfigs = Collections.emptyMap();
+    private volatile JSONObject themes = new JSONObject();
+    private boolean watching;
+
+    private SyntaxDefinitions() {
+        VirtualFileSystem vfs = VirtualFileSystem.getInstance();
+        this.syntaxDirectory = vfs.resolveVirtualPath(SYNTAX_DIRECTORY).toAbsolutePath().normalize();
+        this.themesFile = vfs.resolveVirtualPath(THEMES_FILE).toAbsolutePath().normalize();
+        loadAll();
+    }
+
+    public static synchronized SyntaxDefinitions getInstance() {
+        if (instance == null) {
+            instance = new SyntaxDefinitions();
+        }
+        return instance;
+    }
+
+    /**
+     * @return The parsed syntax definitions, one per file
+     */
+    public Collection<JSONObject> getSyntaxConfigs() {
+        return syntaxConfigs.values();
+    }
+
+    /**
+     * @return The syntax definition for files with the extension, e.g.
+     *         "java", or null
+     */
+    public JSONObject getSyntaxConfig(String extension) {
+        for (JSONObject config : syntaxConfigs.values()) {
+            for (Object configExtension : config.getJSONArray("extensions").toList()) {
+                if (extension.equalsIgnoreCase(String.valueOf(configExtension))) {
+                    return config;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return The theme with the given name, e.g. "dark", or null
+     */
+    public JSONObject getTheme(String name) {
+        return themes.optJSONObject(name);
+    }
+
+    /**
+     * Adds a listener called on the watcher thread after definitions or
+     * themes change.
+     */
+    public void addChangeListener(Runnable listener) {
+        listeners.add(listener);
+    }
+
+    public void removeChangeListener(Runnable listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Starts reloading syntax definitions and themes when they change on disk.
+     */
+    public synchronized void watchForChanges() {
+        if (watching) {
+            return;
+        }
+        watching = true;
+        FileWatcher.watchDirectory(syntaxDirectory.getParent().toString(), true, changed -> {
+            if (reload(changed)) {
+                for (Runnable listener : listeners) {
+                    listener.run();
+                }
+            }
+        });
+    }
+
+    private void loadAll() {
+        Map<Path, JSONObject> configs = new HashMap<>();
+        try (Stream<Path> files = Files.list(syntaxDirectory)) {
+            files.filter(path -> path.toString().endsWith(".json")).forEach(path -> {
+                JSONObject config = parseSyntax(path);
+                if (config != null) {
+                    configs.put(path, config);
+                }
+            });
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        syntaxConfigs = Collections.unmodifiableMap(configs);
+        JSONObject loadedThemes = parse(themesFile);
+        if (loadedThemes != null) {
+            themes = loadedThemes;
+        }
+    }
+
+    /**
+     * Re-reads only the changed files.
+     * @return Whether anything was swapped in
+     */
+    private synchronized boolean reload(Set<Path> changed) {
+        Map<Path, JSONObject> configs = null;
+        boolean themesChanged = false;
+        for (Path path : changed) {
+            if (path.equals(themesFile)) {
+                JSONObject loadedThemes = parse(themesFile);
+                if (loadedThemes != null) {
+                    themes = loadedThemes;
+                    themesChanged = true;
+                }
+            } else if (syntaxDirectory.equals(path.getParent()) && path.toString().endsWith(".json")) {
+                if (configs == null) {
+                    configs = new HashMap<>(syntaxConfigs);
+                }
+                if (!Files.exists(path)) {
+                    configs.remove(path);
+                } else {
+                    JSONObject config = parseSyntax(path);
+                    if (config != null) {
+                        configs.put(path, config);
+                    }
+                }
+            }
+        }
+        if (configs != null) {
+            syntaxConfigs = Collections.unmodifiableMap(configs);
+        }
+        return configs != null || themesChanged;
+    }
+
+    /**
+     * Parses a syntax definition and checks that its patterns compile,
+     * together as well as on their own.
+     */
+    private static JSONObject parseSyntax(Path path) {
+        JSONObject config = parse(path);
+        if (config == null) {
+            return null;
+        }
+        try {
+            JSONObject patterns = config.getJSONObject("patterns");
+            for (String key : patterns.keySet()) {
+                JSONObject pattern = patterns.getJSONObject(key);
+                Pattern.compile(pattern.getString("regex"));
+                pattern.getString("color");
+            }
+            new SyntaxLexer(config);
+            config.getJSONArray("extensions");
+            return config;
+        } catch (JSONException | PatternSyntaxException e) {
+            System.err.println("Invalid syntax definition " + path.getFileName() + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    private static JSONObject parse(Path path) {
+        try {
+            return new JSONObject(new String(Files.readAllBytes(path), StandardCharsets.UTF_8));
+        } catch (IOException | JSONException e) {
+            System.err.println("Failed to load " + path.getFileName() + ": " + e.getMessage());
+            return null;
+        }
+    }
+}
@@ -1,24 +1,175 @@
 package org.Finite.MicrOS.syntax;
 
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
 import javax.swing.text.*;
 import javax.swing.JTextPane;
+import javax.swing.SwingUtilities;
 import org.json.JSONObject;
 import java.awt.Color;
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.awt.event.ComponentAdapter;
+import java.awt.event.ComponentEvent;
+import java.awt.event.ComponentListener;
+import java.beans.PropertyChangeListener;
 import java.util.*;
-import java.util.regex.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
+/**
+ * Colors the text of a {@link JTextPane} by the syntax definition for its
+ * file type. Only the lines on screen, and a few around them, are colored;
+ * the rest are colored as they are scrolled into view. Edits are tracked
+ * with a {@link DocumentListener} and only the edited lines are re-lexed,
+ * continuing past them only as far as a multi-line construct such as a
+ * block comment was opened or closed.
+ *
+ * <p>The start state of every line is kept to know where that is, and so
+ * that lines in the middle of a file can be lexed without lexing everything
+ * above them again. Once the visible lines are colored, the start states of
+ * the rest of the file are worked out in the background, a chunk at a time,
+ * without coloring anything.
+ *
+ * <p>Lexing runs on a background thread, over a copy of the lines it needs
+ * taken on the EDT, and turns the lines into a flat array of colored runs.
+ * The EDT then applies the runs to the document in one batch. Each edit
+ * bumps a version number, and runs lexed from an older version are thrown
+ * away and the lines lexed again.
+ */
 public class SyntaxHighlighter {
+    // Start state of a line that was inserted and not lexed yet
+    private static final int UNKNOWN_STATE = -1;
+    // Lines colored above and below the visible ones, so short scrolls show
+    // colored text straight away
+    private static final int VIEW_MARGIN = 50;
+    // Lines colored while the text pane has no size yet
+    private static final int HIDDEN_VIEW_LINES = 100;
+    // Most lines lexed in one pass, and so copied on the EDT for it
+    private static final int MAX_PASS_LINES = 10000;
+    private static final SyntaxLexer.TokenSink NO_TOKENS = (start, end, rule) -> { };
+    // Every highlighter lexes on this one thread, so lexers are never shared
+    // between threads
+    private static final ExecutorService LEXER_THREAD = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "syntax-lexer");
+        thread.setDaemon(true);
+        return thread;
+    });
+
     private final JTextPane textPane;
     private final StyleContext styleContext;
-    private final Map<String, SyntaxConfig> syntaxConfigs;
+    private volatile Map<String, SyntaxLexer> syntaxConfigs;
     private final Map<String, Color> themeColors;
-    private SyntaxConfig currentConfig;
-    
+    private SyntaxLexer currentConfig;
+    private String currentExtension = "";
+    private Runnable definitionsListener;
+
+    private final DocumentListener damageListener;
+    private final PropertyChangeListener documentChangeListener;
+    private final ComponentListener scrollListener;
+    // The lines to color, worked out again only when they may have changed
+    // other than by typing, because that can make Swing lay out all the text
+    private int[] viewLines;
+    private Document document;
+    private int lineCount;
+    private int[] lineStates = new int[0];
+    private boolean[] lineColored = new boolean[0];
+    // How many lines, from the top, have known start states; past the
+    // damage they only hold if the edits turn out not to reach them
+    private int knownStates;
+    // Lines edited since they were lexed; -1 when there are none
+    private int damageFirstLine = -1;
+    private int damageLastLine = -1;
+    private boolean needsFullPass = true;
+    private boolean passScheduled;
+    private int documentVersion;
+    // The pass being lexed, or null
+    private Pass runningPass;
+
     public SyntaxHighlighter(JTextPane textPane) {
         this.textPane = textPane;
         this.styleContext = StyleContext.getDefaultStyleContext();
         this.syntaxConfigs = new HashMap<>();
         this.themeColors = new HashMap<>();
+        this.damageListener = new DocumentListener() {
+            @Override
+            public void insertUpdate(DocumentEvent e) {
+                linesChanged(e);
+            }
+
+            @Override
+            public void removeUpdate(DocumentEvent e) {
+                linesChanged(e);
+            }
+
+            @Override
+            public void changedUpdate(DocumentEvent e) {
+                // Attribute changes, including our own
+            }
+        };
+        this.documentChangeListener = e -> attach(textPane.getDocument());
+        // A scroll pane scrolls by moving the text pane
+        this.scrollListener = new ComponentAdapter() {
+            @Override
+            public void componentMoved(ComponentEvent e) {
+                viewChanged();
+            }
+
+            @Override
+            public void componentResized(ComponentEvent e) {
+                viewChanged();
+            }
+
+            @Override
+            public void componentShown(ComponentEvent e) {
+                viewChanged();
+            }
+        };
+        textPane.addPropertyChangeListener("document", documentChangeListener);
+        textPane.addComponentListener(scrollListener);
+        attach(textPane.getDocument());
+    }
+
+    /**
+     * Loads the system syntax definitions and the named theme's syntax
+     * colors, and keeps them up to date as the files change. Call
+     * {@link #dispose()} when the editor closes.
+     * @param themeName Theme in themes.json, e.g. {@code Settings.getTheme()}
+     */
+    public void useSystemDefinitions(String themeName) {
+        SyntaxDefinitions definitions = SyntaxDefinitions.getInstance();
+        applySystemDefinitions(definitions, themeName);
+        if (definitionsListener == null) {
+            definitionsListener = () -> SwingUtilities.invokeLater(() -> applySystemDefinitions(definitions, themeName));
+            definitions.addChangeListener(definitionsListener);
+        }
+    }
+
+    public void dispose() {
+        if (definitionsListener != null) {
+            SyntaxDefinitions.getInstance().removeChangeListener(definitionsListener);
+            definitionsListener = null;
+        }
+        textPane.removePropertyChangeListener("document", documentChangeListener);
+        textPane.removeComponentListener(scrollListener);
+        attach(null);
+    }
+
+    private void applySystemDefinitions(SyntaxDefinitions definitions, String themeName) {
+        // Build the new set aside and swap it in whole
+        Map<String, SyntaxLexer> configs = new HashMap<>();
+        for (JSONObject config : definitions.getSyntaxConfigs()) {
+            addSyntaxConfig(configs, config);
+        }
+        syntaxConfigs = configs;
+        currentConfig = configs.get(currentExtension);
+        needsFullPass = true;
+        JSONObject theme = definitions.getTheme(themeName);
+        if (theme != null && theme.has("syntax")) {
+            updateTheme(theme.getJSONObject("syntax"));
+        } else {
+            highlightSyntax();
+        }
     }
 
     public void updateTheme(JSONObject syntaxTheme) {
@@ -26,54 +177,282 @@ public class SyntaxHighlighter {
         for (String key : syntaxTheme.keySet()) {
             themeColors.put("${syntax." + key + "}", Color.decode(syntaxTheme.getString(key)));
         }
+        needsFullPass = true;
         highlightSyntax(); // Reapply with new colors
     }
 
     public void loadSyntaxConfig(JSONObject config) {
-        SyntaxConfig syntaxConfig = new SyntaxConfig();
-        syntaxConfig.patterns = new HashMap<>();
-
-        JSONObject patterns = config.getJSONObject("patterns");
-        for (String key : patterns.keySet()) {
-            JSONObject pattern = patterns.getJSONObject(key);
-            String regex = pattern.getString("regex");
-            String colorVar = pattern.getString("color");
-            syntaxConfig.patterns.put(Pattern.compile(regex, Pattern.MULTILINE), colorVar);
-        }
+        Map<String, SyntaxLexer> configs = new HashMap<>(syntaxConfigs);
+        addSyntaxConfig(configs, config);
+        syntaxConfigs = configs;
+    }
 
+    private static void addSyntaxConfig(Map<String, SyntaxLexer> configs, JSONObject config) {
+        SyntaxLexer lexer = new SyntaxLexer(config);
         for (String ext : config.getJSONArray("extensions").toList().toArray(new String[0])) {
-            syntaxConfigs.put(ext.toLowerCase(), syntaxConfig);
+            configs.put(ext.toLowerCase(), lexer);
         }
     }
 
     public void setFileType(String filename) {
-        String ext = getFileExtension(filename);
-        currentConfig = syntaxConfigs.get(ext.toLowerCase());
+        currentExtension = getFileExtension(filename).toLowerCase();
+        currentConfig = syntaxConfigs.get(currentExtension);
+        needsFullPass = true;
+        schedulePass();
     }
 
+    /**
+     * Starts highlighting whatever needs it first: the lines edited since
+     * they were lexed, then visible lines that aren't colored, then the
+     * start states of lines never lexed. Nothing counts as colored after the
+     * file type, definitions or theme changed. The colors are applied on the
+     * EDT once the lines are lexed, and the next pass starts then. Cheap
+     * when nothing needs doing.
+     */
     public void highlightSyntax() {
-        if (currentConfig == null) return;
+        passScheduled = false;
+        if (runningPass != null || currentConfig == null || !(document instanceof StyledDocument)) {
+            // A running pass schedules the next one when it is done
+            return;
+        }
+        if (needsFullPass || lineStates.length < lineCount) {
+            needsFullPass = false;
+            lineStates = new int[Math.max(16, lineCount + lineCount / 2)];
+            lineColored = new boolean[lineStates.length];
+            Arrays.fill(lineStates, UNKNOWN_STATE);
+            lineStates[0] = SyntaxLexer.PLAIN;
+            knownStates = 1;
+            damageFirstLine = -1;
+            damageLastLine = -1;
+        }
+
+        if (viewLines == null) {
+            viewLines = visibleLines();
+        }
+        int[] view = {Math.min(viewLines[0], lineCount), Math.min(viewLines[1], lineCount)};
+        int firstLine;
+        int reachLine;
+        if (damageFirstLine >= 0) {
+            firstLine = damageFirstLine;
+            reachLine = damageLastLine + 1;
+        } else {
+            int firstUncolored = -1;
+            int lastUncolored = -1;
+            for (int line = view[0]; line < view[1]; line++) {
+                if (!lineColored[line]) {
+                    firstUncolored = firstUncolored < 0 ? line : firstUncolored;
+                    lastUncolored = line;
+                }
+            }
+            if (firstUncolored >= 0) {
+                firstLine = Math.min(firstUncolored, knownStates - 1);
+                reachLine = lastUncolored + 1;
+            } else if (knownStates < lineCount) {
+                firstLine = knownStates - 1;
+                reachLine = lineCount;
+            } else {
+                return;
+            }
+        }
+        int endLine = Math.min(lineCount, firstLine + MAX_PASS_LINES);
+
+        Element root = document.getDefaultRootElement();
+        int startOffset = root.getElement(firstLine).getStartOffset();
+        int endOffset = Math.min(root.getElement(endLine - 1).getEndOffset() - 1, document.getLength());
+        Segment text = new Segment();
+        try {
+            document.getText(startOffset, endOffset - startOffset, text);
+        } catch (BadLocationException e) {
+            needsFullPass = true;
+            return;
+        }
+        // The segment may share the document's own array
+        char[] snapshot = Arrays.copyOfRange(text.array, text.offset, text.offset + text.count);
+        int[] oldStates = Arrays.copyOfRange(lineStates, firstLine, Math.min(knownStates, endLine + 1));
+        runningPass = new Pass(documentVersion, currentConfig, snapshot, startOffset, firstLine, endLine, lineCount,
+            reachLine, knownStates, oldStates, view[0], view[1]);
+        LEXER_THREAD.execute(runningPass);
+    }
+
+    /**
+     * @return Whether no pass is running or waiting to start. EDT only.
+     */
+    boolean isIdle() {
+        return runningPass == null && !passScheduled;
+    }
+
+    /**
+     * @return The first and past-the-last line to color: the visible lines
+     *         and {@link #VIEW_MARGIN} more on either side
+     */
+    private int[] visibleLines() {
+        Rectangle visible = textPane.getVisibleRect();
+        if (visible.isEmpty()) {
+            return new int[] {0, Math.min(lineCount, HIDDEN_VIEW_LINES)};
+        }
+        Element root = document.getDefaultRootElement();
+        int first = textPane.viewToModel2D(new Point(visible.x, visible.y));
+        int last = textPane.viewToModel2D(new Point(visible.x + visible.width, visible.y + visible.height));
+        int firstLine = first < 0 ? 0 : root.getElementIndex(first);
+        int lastLine = last < 0 ? lineCount - 1 : root.getElementIndex(last);
+        return new int[] {Math.max(0, firstLine - VIEW_MARGIN), Math.min(lineCount, lastLine + 1 + VIEW_MARGIN)};
+    }
+
+    private void viewChanged() {
+        viewLines = null;
+        schedulePass();
+    }
 
-        String text = textPane.getText();
-        StyledDocument doc = textPane.getStyledDocument();
-        
-        // Reset styles
+    /**
+     * Applies a lexed pass, unless the document changed since its text was
+     * copied, in which case the lines are lexed again.
+     */
+    private void finishPass(Pass pass) {
+        runningPass = null;
+        if (pass.version != documentVersion || needsFullPass) {
+            // The damage has been kept up to date with the edits
+            schedulePass();
+            return;
+        }
+        if (pass.states == null) {
+            // The lexer failed; leave the colors as they are
+            damageFirstLine = -1;
+            damageLastLine = -1;
+            return;
+        }
+
+        System.arraycopy(pass.states, 0, lineStates, pass.firstLine, Math.min(pass.states.length, lineCount - pass.firstLine));
+        // Lexed lines out of view may have changed, so color them when seen
+        Arrays.fill(lineColored, pass.firstLine, pass.lexedEnd, false);
+        Arrays.fill(lineColored, pass.colorFirst, pass.colorEnd, true);
+        if (!pass.converged) {
+            knownStates = Math.max(knownStates, Math.min(lineCount, pass.lexedEnd + 1));
+        }
+        if (damageFirstLine >= 0) {
+            if (pass.finished) {
+                damageFirstLine = -1;
+                damageLastLine = -1;
+            } else {
+                // The pass ran out of text; carry on from there
+                damageFirstLine = pass.lexedEnd;
+            }
+        }
+
+        if (pass.colorFirst < pass.colorEnd) {
+            StyledDocument doc = (StyledDocument) document;
+            AttributeSet[] styles = resolveStyles(pass.lexer);
+            Style defaultStyle = styleContext.getStyle(StyleContext.DEFAULT_STYLE);
+            doc.setCharacterAttributes(pass.colorStartOffset, pass.colorEndOffset - pass.colorStartOffset, defaultStyle, true);
+            int[] runs = pass.runs;
+            for (int i = 0; i < pass.runsLength; i += 3) {
+                AttributeSet style = styles[runs[i + 2]];
+                if (style != null) {
+                    doc.setCharacterAttributes(runs[i], runs[i + 1], style, false);
+                }
+            }
+        }
+        schedulePass();
+    }
+
+    /**
+     * @return The attributes for each rule of the syntax, null where the
+     *         color is an unknown theme variable
+     */
+    private AttributeSet[] resolveStyles(SyntaxLexer lexer) {
+        List<String> colors = lexer.getColors();
+        AttributeSet[] styles = new AttributeSet[colors.size()];
         Style defaultStyle = styleContext.getStyle(StyleContext.DEFAULT_STYLE);
-        doc.setCharacterAttributes(0, doc.getLength(), defaultStyle, true);
+        for (int i = 0; i < styles.length; i++) {
+            Color color = resolveColor(colors.get(i));
+            if (color != null) {
+                styles[i] = styleContext.addAttribute(defaultStyle, StyleConstants.Foreground, color);
+            }
+        }
+        return styles;
+    }
+
+    private Color resolveColor(String color) {
+        Color themed = themeColors.get(color);
+        if (themed != null || !color.startsWith("#")) {
+            return themed;
+        }
+        try {
+            return Color.decode(color);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private void attach(Document newDocument) {
+        if (document != null) {
+            document.removeDocumentListener(damageListener);
+        }
+        document = newDocument;
+        documentVersion++;
+        needsFullPass = true;
+        viewLines = null;
+        if (document != null) {
+            document.addDocumentListener(damageListener);
+            lineCount = document.getDefaultRootElement().getElementCount();
+            schedulePass();
+        }
+    }
 
-        // Apply each pattern
-        for (Map.Entry<Pattern, String> entry : currentConfig.patterns.entrySet()) {
-            Matcher matcher = entry.getKey().matcher(text);
-            Color color = themeColors.get(entry.getValue());
-            if (color == null) continue;
+    /**
+     * Keeps the line states lined up with the document's lines and records
+     * which lines need lexing again.
+     */
+    private void linesChanged(DocumentEvent e) {
+        Element root = document.getDefaultRootElement();
+        int newCount = root.getElementCount();
+        int delta = newCount - lineCount;
+        int firstLine = root.getElementIndex(e.getOffset());
+        lineCount = newCount;
+        documentVersion++;
+        if (delta < 0 || viewLines != null && viewLines[1] >= newCount - delta) {
+            // Lines not colored may have moved into view, from below the
+            // colored ones or past the end of the text
+            viewLines = null;
+        }
+        if (needsFullPass) {
+            schedulePass();
+            return;
+        }
 
-            AttributeSet attrs = styleContext.addAttribute(defaultStyle, 
-                StyleConstants.Foreground, color);
+        if (delta > 0) {
+            if (lineStates.length < newCount) {
+                lineStates = Arrays.copyOf(lineStates, newCount + newCount / 2);
+                lineColored = Arrays.copyOf(lineColored, lineStates.length);
+            }
+            int moved = newCount - delta - firstLine - 1;
+            System.arraycopy(lineStates, firstLine + 1, lineStates, firstLine + 1 + delta, moved);
+            System.arraycopy(lineColored, firstLine + 1, lineColored, firstLine + 1 + delta, moved);
+            Arrays.fill(lineStates, firstLine + 1, firstLine + 1 + delta, UNKNOWN_STATE);
+            Arrays.fill(lineColored, firstLine + 1, firstLine + 1 + delta, false);
+        } else if (delta < 0) {
+            int moved = newCount - firstLine - 1;
+            System.arraycopy(lineStates, firstLine + 1 - delta, lineStates, firstLine + 1, moved);
+            System.arraycopy(lineColored, firstLine + 1 - delta, lineColored, firstLine + 1, moved);
+        }
+        lineColored[firstLine] = false;
 
-            while (matcher.find()) {
-                doc.setCharacterAttributes(matcher.start(), 
-                    matcher.end() - matcher.start(), attrs, false);
+        if (firstLine < knownStates) {
+            knownStates = Math.max(firstLine + 1, knownStates + delta);
+            if (damageFirstLine >= 0 && damageLastLine > firstLine) {
+                damageLastLine = Math.max(firstLine, damageLastLine + delta);
             }
+            int lastLine = firstLine + Math.max(0, delta);
+            damageFirstLine = damageFirstLine < 0 ? firstLine : Math.min(damageFirstLine, firstLine);
+            damageLastLine = Math.max(damageLastLine, lastLine);
+        }
+        schedulePass();
+    }
+
+    private void schedulePass() {
+        if (!passScheduled) {
+            passScheduled = true;
+            // Attributes can't be changed while the document notifies listeners
+            SwingUtilities.invokeLater(this::highlightSyntax);
         }
     }
 
@@ -82,7 +461,135 @@ public class SyntaxHighlighter {
         return lastDot > 0 ? filename.substring(lastDot + 1) : "";
     }
 
-    private static class SyntaxConfig {
-        Map<Pattern, String> patterns;
+    /**
+     * Lexes lines of a copy of the text on the lexer thread and hands the
+     * result back to the EDT. It lexes from the first line until it has
+     * lexed the lines it must, then until the start states come out the
+     * same as before or aren't known from before, or until its copy of the
+     * text ends. Only lines in the view range get colored runs.
+     */
+    private final class Pass implements Runnable, SyntaxLexer.TokenSink {
+        final int version;
+        final SyntaxLexer lexer;
+        final int firstLine;
+        private final char[] text;
+        // Document offset of the first line, where the text copy starts
+        private final int startOffset;
+        // Past the last line in the text copy, and in the document
+        private final int endLine;
+        private final int lineCount;
+        // Past the last line that must be lexed
+        private final int reachLine;
+        private final int knownStates;
+        // Start states from before, from the first line on, as far as known
+        private final int[] oldStates;
+        private final int viewFirst;
+        private final int viewEnd;
+        private final Segment line = new Segment();
+        private int lineOffset;
+
+        // Results: past the last line lexed; the start states of the lines
+        // lexed and of the one after; whether the lines after needed no
+        // lexing, and whether that is because their states came out the
+        // same; the lines colored and their offsets; and runs of
+        // {document offset, length, rule} for them
+        int lexedEnd;
+        int[] states;
+        boolean finished;
+        boolean converged;
+        int colorFirst;
+        int colorEnd;
+        int colorStartOffset;
+        int colorEndOffset;
+        int[] runs = new int[96];
+        int runsLength;
+
+        Pass(int version, SyntaxLexer lexer, char[] text, int startOffset, int firstLine, int endLine, int lineCount,
+                int reachLine, int knownStates, int[] oldStates, int viewFirst, int viewEnd) {
+            this.version = version;
+            this.lexer = lexer;
+            this.text = text;
+            this.startOffset = startOffset;
+            this.firstLine = firstLine;
+            this.endLine = endLine;
+            this.lineCount = lineCount;
+            this.reachLine = reachLine;
+            this.knownStates = knownStates;
+            this.oldStates = oldStates;
+            this.viewFirst = viewFirst;
+            this.viewEnd = viewEnd;
+        }
+
+        @Override
+        public void run() {
+            try {
+                lex();
+            } catch (RuntimeException | StackOverflowError e) {
+                e.printStackTrace();
+                states = null;
+            }
+            SwingUtilities.invokeLater(() -> finishPass(this));
+        }
+
+        private void lex() {
+            int[] newStates = new int[Math.max(16, Math.min(reachLine, endLine) - firstLine + 1)];
+            int state = oldStates[0];
+            int pos = 0;
+            int current = firstLine;
+            colorFirst = Math.max(firstLine, viewFirst);
+            colorEnd = colorFirst;
+            for (; current < endLine; current++) {
+                if (current > firstLine && current >= reachLine
+                        && (current >= knownStates || oldStates[current - firstLine] == state)) {
+                    // Nothing after this line changes, or it will be lexed
+                    // when it is needed
+                    finished = true;
+                    converged = current < knownStates;
+                    break;
+                }
+                if (current - firstLine == newStates.length) {
+                    newStates = Arrays.copyOf(newStates, newStates.length * 2);
+                }
+                newStates[current - firstLine] = state;
+                int lineEnd = pos;
+                while (lineEnd < text.length && text[lineEnd] != '\n') {
+                    lineEnd++;
+                }
+                line.array = text;
+                line.offset = pos;
+                line.count = lineEnd - pos;
+                lineOffset = startOffset + pos;
+                boolean colored = current >= viewFirst && current < viewEnd;
+                if (colored) {
+                    if (current == colorFirst) {
+                        colorStartOffset = lineOffset;
+                    }
+                    colorEnd = current + 1;
+                    colorEndOffset = startOffset + lineEnd;
+                }
+                state = lexer.lexLine(line, state, colored ? this : NO_TOKENS);
+                pos = lineEnd + 1;
+            }
+            finished |= current == lineCount;
+            lexedEnd = current;
+            states = Arrays.copyOf(newStates, current - firstLine + 1);
+            states[current - firstLine] = state;
+        }
+
+        @Override
+        public void token(int start, int end, int rule) {
+            int offset = lineOffset + start;
+            int last = runsLength - 3;
+            if (last >= 0 && runs[last + 2] == rule && runs[last] + runs[last + 1] == offset) {
+                runs[last + 1] += end - start;
+                return;
+            }
+            if (runsLength == runs.length) {
+                runs = Arrays.copyOf(runs, runs.length * 2);
+            }
+            runs[runsLength++] = offset;
+            runs[runsLength++] = end - start;
+            runs[runsLength++] = rule;
+        }
     }
 }
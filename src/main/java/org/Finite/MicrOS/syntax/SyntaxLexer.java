@@ -0,0 +1,298 @@
+package org.Finite.MicrOS.syntax;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import org.json.JSONObject;
+
+/**
+ * Splits text into tokens one line at a time, following one syntax
+ * definition. All of the definition's patterns are compiled into a single
+ * alternation with a named group per rule, so each line is scanned once
+ * however many patterns there are. Tokens don't overlap: the match that
+ * starts first wins, and of matches starting at the same place, the rule
+ * listed first. Rules are listed by their optional {@code priority},
+ * highest first, then by name.
+ *
+ * <p>Only block rules cross lines. A pattern alternative of the form
+ * {@code BEGIN[\s\S]*?END}, such as {@code /\*[\s\S]*?\*\/}, becomes a block
+ * rule; every other pattern is matched within a single line. The state
+ * passed from line to line is {@link #PLAIN}, or which block the line
+ * starts inside of, so a changed line only affects the lines after it until
+ * their start states come out the same as before. A block that is never
+ * closed runs to the end of the text.
+ *
+ * <p>Not thread-safe; it reuses its matchers.
+ */
+final class SyntaxLexer {
+    /**
+     * The state of a line that doesn't start inside a block.
+     */
+    static final int PLAIN = 0;
+
+    interface TokenSink {
+        /**
+         * @param start Offset in the line
+         * @param end Offset in the line, exclusive
+         * @param rule Index into {@link #getColors()}
+         */
+        void token(int start, int end, int rule);
+    }
+
+    private static final String[] BLOCK_BODIES = {"[\\s\\S]*?", "[\\S\\s]*?"};
+    private static final String GROUP_PREFIX = "microsRule";
+
+    private final List<String> colors = new ArrayList<>();
+    private final Matcher combined;
+    // Per alternative of the combined pattern: its group number, its rule,
+    // and the block it begins or -1
+    private final int[] groups;
+    private final int[] groupRules;
+    private final int[] groupBlocks;
+    private final List<Matcher> blockEnds = new ArrayList<>();
+    private final List<Integer> blockRules = new ArrayList<>();
+
+    /**
+     * @param config A syntax definition with a {@code patterns} object
+     */
+    SyntaxLexer(JSONObject config) {
+        JSONObject patterns = config.getJSONObject("patterns");
+        List<String> keys = new ArrayList<>(patterns.keySet());
+        keys.sort(Comparator.<String>comparingInt(key -> -patterns.getJSONObject(key).optInt("priority", 0))
+            .thenComparing(Comparator.naturalOrder()));
+
+        StringBuilder regex = new StringBuilder();
+        List<int[]> alternatives = new ArrayList<>();
+        int groupCount = 0;
+        for (String key : keys) {
+            JSONObject pattern = patterns.getJSONObject(key);
+            int rule = colors.size();
+            colors.add(pattern.getString("color"));
+
+            // Back references count groups from the start of the whole pattern
+            int ruleGroups = 0;
+            for (String alternative : splitAlternatives(pattern.getString("regex"))) {
+                int ruleGroupsAfter = ruleGroups + countGroups(alternative);
+                int body = findBlockBody(alternative);
+                int block = -1;
+                if (body > 0 && body + BLOCK_BODIES[0].length() < alternative.length()) {
+                    block = blockEnds.size();
+                    String end = alternative.substring(body + BLOCK_BODIES[0].length());
+                    blockEnds.add(Pattern.compile(end, Pattern.MULTILINE).matcher(""));
+                    blockRules.add(rule);
+                    alternative = alternative.substring(0, body);
+                }
+                int group = ++groupCount;
+                if (regex.length() > 0) {
+                    regex.append('|');
+                }
+                regex.append("(?<").append(GROUP_PREFIX).append(alternatives.size()).append('>')
+                    .append(renumberBackReferences(alternative, group, ruleGroups)).append(')');
+                groupCount += countGroups(alternative);
+                ruleGroups = ruleGroupsAfter;
+                alternatives.add(new int[] {group, rule, block});
+            }
+        }
+        combined = Pattern.compile(regex.toString(), Pattern.MULTILINE).matcher("");
+        groups = new int[alternatives.size()];
+        groupRules = new int[alternatives.size()];
+        groupBlocks = new int[alternatives.size()];
+        for (int i = 0; i < alternatives.size(); i++) {
+            groups[i] = alternatives.get(i)[0];
+            groupRules[i] = alternatives.get(i)[1];
+            groupBlocks[i] = alternatives.get(i)[2];
+        }
+    }
+
+    /**
+     * @return The color of each rule, a theme variable like
+     *         {@code ${syntax.keywords}} or a literal like {@code #569CD6}
+     */
+    List<String> getColors() {
+        return colors;
+    }
+
+    /**
+     * Reports the tokens of one line.
+     * @param line The line, without its line separator
+     * @param state The state the line starts in
+     * @return The state the next line starts in
+     */
+    int lexLine(CharSequence line, int state, TokenSink sink) {
+        int length = line.length();
+        int pos = 0;
+        if (state != PLAIN) {
+            int block = state - 1;
+            Matcher end = blockEnds.get(block).reset(line);
+            if (!end.find()) {
+                sink.token(0, length, blockRules.get(block));
+                return state;
+            }
+            sink.token(0, end.end(), blockRules.get(block));
+            pos = end.end();
+        }
+
+        Matcher matcher = combined.reset(line);
+        while (pos < length && matcher.find(pos)) {
+            int alternative = 0;
+            while (matcher.start(groups[alternative]) < 0) {
+                alternative++;
+            }
+            int start = matcher.start();
+            int block = groupBlocks[alternative];
+            if (block >= 0) {
+                Matcher end = blockEnds.get(block).reset(line);
+                if (!end.find(matcher.end())) {
+                    sink.token(start, length, blockRules.get(block));
+                    return block + 1;
+                }
+                sink.token(start, end.end(), blockRules.get(block));
+                pos = end.end();
+            } else if (matcher.end() > start) {
+                sink.token(start, matcher.end(), groupRules[alternative]);
+                pos = matcher.end();
+            } else {
+                // Skip empty matches
+                pos = start + 1;
+            }
+        }
+        return PLAIN;
+    }
+
+    /**
+     * Splits a regex at its top-level {@code |}s.
+     */
+    static List<String> splitAlternatives(String regex) {
+        List<String> alternatives = new ArrayList<>();
+        int depth = 0;
+        int classDepth = 0;
+        int start = 0;
+        for (int i = 0; i < regex.length(); i++) {
+            char c = regex.charAt(i);
+            if (c == '\\') {
+                if (i + 1 < regex.length() && regex.charAt(i + 1) == 'Q') {
+                    int quoteEnd = regex.indexOf("\\E", i + 2);
+                    i = quoteEnd < 0 ? regex.length() : quoteEnd + 1;
+                } else {
+                    i++;
+                }
+            } else if (c == '[') {
+                classDepth++;
+            } else if (c == ']' && classDepth > 0) {
+                classDepth--;
+            } else if (classDepth == 0 && c == '(') {
+                depth++;
+            } else if (classDepth == 0 && c == ')') {
+                depth--;
+            } else if (classDepth == 0 && depth == 0 && c == '|') {
+                alternatives.add(regex.substring(start, i));
+                start = i + 1;
+            }
+        }
+        alternatives.add(regex.substring(start));
+        return alternatives;
+    }
+
+    /**
+     * @return How many capturing groups the regex has
+     */
+    private static int countGroups(String regex) {
+        int count = 0;
+        int classDepth = 0;
+        for (int i = 0; i < regex.length(); i++) {
+            char c = regex.charAt(i);
+            if (c == '\\') {
+                if (i + 1 < regex.length() && regex.charAt(i + 1) == 'Q') {
+                    int quoteEnd = regex.indexOf("\\E", i + 2);
+                    i = quoteEnd < 0 ? regex.length() : quoteEnd + 1;
+                } else {
+                    i++;
+                }
+            } else if (c == '[') {
+                classDepth++;
+            } else if (c == ']' && classDepth > 0) {
+                classDepth--;
+            } else if (classDepth == 0 && c == '(') {
+                boolean plain = i + 1 >= regex.length() || regex.charAt(i + 1) != '?';
+                boolean named = regex.startsWith("?<", i + 1) && i + 3 < regex.length()
+                    && Character.isLetter(regex.charAt(i + 3));
+                if (plain || named) {
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Shifts numbered back references such as {@code \1} by the groups that
+     * come before the regex once it is part of the combined pattern.
+     * @param offset The alternative's own group number
+     * @param earlierGroups Groups in the rule's earlier alternatives. A
+     *        reference to one of those can never match, as in the rule itself.
+     */
+    private static String renumberBackReferences(String regex, int offset, int earlierGroups) {
+        StringBuilder out = new StringBuilder(regex.length());
+        int classDepth = 0;
+        for (int i = 0; i < regex.length(); i++) {
+            char c = regex.charAt(i);
+            if (c == '\\' && i + 1 < regex.length()) {
+                char next = regex.charAt(i + 1);
+                if (classDepth == 0 && next >= '1' && next <= '9') {
+                    int reference = next - '0' - earlierGroups;
+                    if (reference > 0) {
+                        out.append('\\').append(reference + offset);
+                    } else {
+                        out.append("(?!)");
+                    }
+                } else {
+                    out.append(c).append(next);
+                }
+                i++;
+                continue;
+            }
+            if (c == '[') {
+                classDepth++;
+            } else if (c == ']' && classDepth > 0) {
+                classDepth--;
+            }
+            out.append(c);
+        }
+        return out.toString();
+    }
+
+    /**
+     * @return Where a top-level "anything, lazily" body starts in the
+     *         alternative, or -1
+     */
+    private static int findBlockBody(String alternative) {
+        int depth = 0;
+        for (int i = 0; i < alternative.length(); i++) {
+            char c = alternative.charAt(i);
+            if (depth == 0) {
+                for (String body : BLOCK_BODIES) {
+                    if (alternative.startsWith(body, i)) {
+                        return i;
+                    }
+                }
+            }
+            if (c == '\\') {
+                i++;
+            } else if (c == '[') {
+                // Skip the class, which may contain ( or )
+                int close = i + 1;
+                while (close < alternative.length() && alternative.charAt(close) != ']') {
+                    close += alternative.charAt(close) == '\\' ? 2 : 1;
+                }
+                i = close;
+            } else if (c == '(') {
+                depth++;
+            } else if (c == ')') {
+                depth--;
+            }
+        }
+        return -1;
+    }
+}
@@ -2,17 +2,29 @@ package org.Finite.MicrOS.ui;
 
 import java.io.File;
 import java.io.IOException;
-
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.regex.PatternSyntaxException;
+
+import org.Finite.MicrOS.core.ProcessLogger;
+import org.Finite.MicrOS.core.RingBufferBenchmark;
 import org.Finite.MicrOS.core.VirtualFileSystem;
+import org.Finite.MicrOS.ipc.IpcBenchmark;
+import org.Finite.MicrOS.syntax.LexerBenchmark;
+import org.Finite.MicrOS.syntax.SyntaxDefinitions;
+import org.json.JSONObject;
 
 import java.awt.Color;
 
 public class CommandProcessor {
-    private final Console console;
+    private final ConsoleOutput console;
     private final VirtualFileSystem vfs;
     private String currentDir = "/";
 
-    public CommandProcessor(Console console, VirtualFileSystem vfs) {
+    public CommandProcessor(ConsoleOutput console, VirtualFileSystem vfs) {
         this.console = console;
         this.vfs = vfs;
     }
@@ -50,6 +62,18 @@ public class CommandProcessor {
             case "rm":
                 removeFile(parts);
                 break;
+            case "logs":
+                showLogs(parts);
+                break;
+            case "ipcbench":
+                runIpcBenchmark(parts);
+                break;
+            case "lexbench":
+                runLexerBenchmark(parts);
+                break;
+            case "busbench":
+                runBusBenchmark(parts);
+                break;
             case "help":
                 showHelp();
                 break;
@@ -162,6 +186,114 @@ public class CommandProcessor {
         }
     }
 
+    private void showLogs(String[] parts) {
+        ProcessLogger logger = ProcessLogger.getInstance();
+        try {
+            if (parts.length == 1) {
+                List<Path> logs = logger.listLogs();
+                if (logs.isEmpty()) {
+                    console.appendText("No process logs\n", Color.YELLOW);
+                }
+                for (Path log : logs) {
+                    console.appendText(log.getFileName() + " (" + Files.size(log) + " bytes)\n", Color.CYAN);
+                }
+                return;
+            }
+
+            if (parts[1].equals("tail") && parts.length >= 3) {
+                int pid = Integer.parseInt(parts[2]);
+                int lines = parts.length > 3 ? Integer.parseInt(parts[3]) : 20;
+                for (String line : logger.tail(pid, lines)) {
+                    console.appendText(line + "\n", Color.WHITE);
+                }
+            } else if (parts[1].equals("search") && parts.length >= 4) {
+                int pid = Integer.parseInt(parts[2]);
+                int matches = logger.search(pid, parts[3], line -> console.appendText(line + "\n", Color.WHITE));
+                console.appendText(matches + " matching line(s)\n", Color.CYAN);
+            } else {
+                console.appendText("Usage: logs [tail <pid> [lines] | search <pid> <regex>]\n", Color.RED);
+            }
+        } catch (NumberFormatException e) {
+            console.appendText("Invalid number: " + e.getMessage() + "\n", Color.RED);
+        } catch (NoSuchFileException e) {
+            console.appendText("No log found: " + e.getMessage() + "\n", Color.RED);
+        } catch (IOException | PatternSyntaxException e) {
+            console.appendText("Error reading log: " + e.getMessage() + "\n", Color.RED);
+        }
+    }
+
+    private void runIpcBenchmark(String[] parts) {
+        boolean process = parts.length > 1 && parts[1].equals("--process");
+        int messages;
+        try {
+            messages = parts.length > (process ? 2 : 1) ? Integer.parseInt(parts[process ? 2 : 1]) : 100000;
+        } catch (NumberFormatException e) {
+            console.appendText("Usage: ipcbench [--process] [messages]\n", Color.RED);
+            return;
+        }
+        // Takes a few seconds; keep the console responsive
+        Thread benchmark = new Thread(() -> {
+            try {
+                IpcBenchmark.run(messages, process, line ->
+                    console.invokeLater(() -> console.appendText(line + "\n", Color.CYAN)));
+            } catch (IOException | InterruptedException e) {
+                console.invokeLater(() ->
+                    console.appendText("Benchmark failed: " + e.getMessage() + "\n", Color.RED));
+            }
+        }, "ipc-benchmark");
+        benchmark.setDaemon(true);
+        benchmark.start();
+    }
+
+    private void runLexerBenchmark(String[] parts) {
+        String text;
+        String extension;
+        if (parts.length > 1) {
+            String path = resolvePath(parts[1]);
+            try {
+                text = new String(vfs.readFile(path), StandardCharsets.UTF_8);
+            } catch (IOException e) {
+                console.appendText("Error reading file: " + e.getMessage() + "\n", Color.RED);
+                return;
+            }
+            extension = vfs.getFileExtension(path);
+        } else {
+            text = LexerBenchmark.sampleText(5000);
+            extension = "java";
+        }
+        JSONObject syntax = SyntaxDefinitions.getInstance().getSyntaxConfig(extension);
+        if (syntax == null) {
+            console.appendText("No syntax definition for ." + extension + " files\n", Color.RED);
+            return;
+        }
+        Thread benchmark = new Thread(() -> LexerBenchmark.run(syntax, text, line ->
+            console.invokeLater(() -> console.appendText(line + "\n", Color.CYAN))), "lexer-benchmark");
+        benchmark.setDaemon(true);
+        benchmark.start();
+    }
+
+    private void runBusBenchmark(String[] parts) {
+        int messages;
+        try {
+            messages = parts.length > 1 ? Integer.parseInt(parts[1]) : 5000000;
+        } catch (NumberFormatException e) {
+            console.appendText("Usage: busbench [messages]\n", Color.RED);
+            return;
+        }
+        // Takes a few seconds; keep the console responsive
+        Thread benchmark = new Thread(() -> {
+            try {
+                RingBufferBenchmark.run(messages, line ->
+                    console.invokeLater(() -> console.appendText(line + "\n", Color.CYAN)));
+            } catch (InterruptedException | IllegalStateException e) {
+                console.invokeLater(() ->
+                    console.appendText("Benchmark failed: " + e.getMessage() + "\n", Color.RED));
+            }
+        }, "bus-benchmark");
+        benchmark.setDaemon(true);
+        benchmark.start();
+    }
+
     private void executeFile(String path, String[] originalArgs) {
         String fullPath = resolvePath(path);
         if (!vfs.exists(fullPath)) {
@@ -256,6 +388,10 @@ public class CommandProcessor {
         console.appendText("  clear          - Clear screen\n", Color.YELLOW);
         console.appendText("  help           - Show this help\n", Color.YELLOW);
         console.appendText("  run <file>     - Execute file with shebang\n", Color.YELLOW);
+        console.appendText("  logs [tail|search] - List, tail or search process logs\n", Color.YELLOW);
+        console.appendText("  ipcbench [--process] [n] - Measure isolated app IPC latency\n", Color.YELLOW);
+        console.appendText("  lexbench [file] - Compare syntax highlighting lexers\n", Color.YELLOW);
+        console.appendText("  busbench [n]   - Measure bounded topic throughput\n", Color.YELLOW);
     }
 
     private String resolvePath(String path) {
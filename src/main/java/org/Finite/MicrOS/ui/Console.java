@@ -10,7 +10,7 @@ import java.awt.event.*;
 import java.util.*;
 import java.util.List;
 
-public class Console extends JTextPane {
+public class Console extends JTextPane implements ConsoleOutput {
     private final CommandProcessor commandProcessor;
     private final StyleContext styleContext;
     private final List<String> commandHistory;
@@ -0,0 +1,23 @@
+package org.Finite.MicrOS.ui;
+
+import java.awt.Color;
+import javax.swing.SwingUtilities;
+
+/**
+ * Where a {@link CommandProcessor} writes: the desktop {@link Console}, or the
+ * terminal when MicrOS runs in console-only mode.
+ */
+public interface ConsoleOutput {
+    void appendText(String text, Color color);
+
+    void clear();
+
+    void setPrompt(String prompt);
+
+    /**
+     * Runs output produced on a background thread on the thread that owns the console.
+     */
+    default void invokeLater(Runnable output) {
+        SwingUtilities.invokeLater(output);
+    }
+}
@@ -33,21 +33,28 @@ public class FontLoader {
     
     public static void initializeDefaultFonts() {
         // Create fonts directory if it doesn't exist
-        try {
-            if (!vfs.exists("/system/fonts")) {
-                vfs.createDirectory("/system/fonts");
+        if (!vfs.exists("/system/fonts") && !vfs.createDirectory("/system/fonts")) {
+            System.err.println("Error initializing fonts: could not create /system/fonts");
+            return;
+        }
+
+        // Extract default fonts from resources to VFS, each on its own so one
+        // missing font doesn't stop the rest
+        String[] fonts = {"JetBrainsMono-Regular.ttf", "SegoeUI.ttf", "SegoeUI-Bold.ttf"};
+        for (String font : fonts) {
+            try {
+                copyResourceToVFS("/fonts/" + font, "/system/fonts/" + font);
+            } catch (IOException e) {
+                System.err.println("Error initializing fonts: " + e.getMessage());
             }
-            
-            // Extract default fonts from resources to VFS
-            copyResourceToVFS("/fonts/JetBrainsMono-Regular.ttf", "/system/fonts/JetBrainsMono-Regular.ttf");
-            copyResourceToVFS("/fonts/SegoeUI.ttf", "/system/fonts/SegoeUI.ttf");
-            copyResourceToVFS("/fonts/SegoeUI-Bold.ttf", "/system/fonts/SegoeUI-Bold.ttf");
-        } catch (IOException e) {
-            System.err.println("Error initializing fonts: " + e.getMessage());
         }
     }
     
     private static void copyResourceToVFS(String resourcePath, String vfsPath) throws IOException {
+        if (vfs.exists(vfsPath)) {
+            // Already extracted on an earlier boot
+            return;
+        }
         try (var is = FontLoader.class.getResourceAsStream(resourcePath)) {
             if (is == null) {
                 throw new IOException("Font resource not found: " + resourcePath);
@@ -0,0 +1,74 @@
+package org.Finite.MicrOS.ui;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import org.Finite.MicrOS.core.VirtualFileSystem;
+
+/**
+ * Decoded HTML pages from the VFS, so navigating back to a page doesn't read
+ * it again. A page is re-read when its size or modification time changes.
+ * The least recently used pages are dropped past {@link #MAX_CHARS}.
+ */
+class HtmlCache {
+    private static final long MAX_CHARS = 4 * 1024 * 1024;
+
+    private static final class Page {
+        final String html;
+        final long modified;
+        final long size;
+
+        Page(String html, long modified, long size) {
+            this.html = html;
+            this.modified = modified;
+            this.size = size;
+        }
+    }
+
+    private final VirtualFileSystem vfs;
+    private final Map<String, Page> pages = new LinkedHashMap<>(16, 0.75f, true);
+    private long cachedChars;
+
+    HtmlCache(VirtualFileSystem vfs) {
+        this.vfs = vfs;
+    }
+
+    synchronized String read(String virtualPath) throws IOException {
+        BasicFileAttributes attributes = stat(virtualPath);
+        if (attributes == null) {
+            // Remote storage has no modification times to check against
+            return new String(vfs.readFile(virtualPath), StandardCharsets.UTF_8);
+        }
+        long modified = attributes.lastModifiedTime().toMillis();
+        Page page = pages.get(virtualPath);
+        if (page != null && page.modified == modified && page.size == attributes.size()) {
+            return page.html;
+        }
+        String html = new String(vfs.readFile(virtualPath), StandardCharsets.UTF_8);
+        if (page != null) {
+            cachedChars -= page.html.length();
+        }
+        pages.put(virtualPath, new Page(html, modified, attributes.size()));
+        cachedChars += html.length();
+        Iterator<Page> oldest = pages.values().iterator();
+        while (cachedChars > MAX_CHARS && oldest.hasNext()) {
+            cachedChars -= oldest.next().html.length();
+            oldest.remove();
+        }
+        return html;
+    }
+
+    private BasicFileAttributes stat(String virtualPath) {
+        try {
+            Path path = vfs.resolveVirtualPath(virtualPath);
+            return Files.readAttributes(path, BasicFileAttributes.class);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+}
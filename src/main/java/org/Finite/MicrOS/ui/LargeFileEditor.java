@@ -0,0 +1,325 @@
+package org.Finite.MicrOS.ui;
+
+import java.awt.*;
+import java.awt.event.ActionEvent;
+import java.awt.event.InputEvent;
+import java.awt.event.KeyEvent;
+import java.io.IOException;
+import javax.swing.*;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
+import javax.swing.plaf.basic.BasicTextAreaUI;
+import javax.swing.text.*;
+import javax.swing.undo.UndoManager;
+
+/**
+ * Views and edits a text file too large to open in the Text Editor. The
+ * file stays on disk behind a {@link PieceTableDocument}, and only the lines
+ * on screen are read, measured and painted, so opening takes one pass over
+ * the file and scrolling or typing costs the same anywhere in it. There are
+ * no syntax colors and no line wrapping.
+ */
+public class LargeFileEditor extends JPanel {
+    private final PieceTableDocument document;
+    private final JTextArea textArea;
+    private final JLabel status = new JLabel();
+    private final UndoManager undoManager = new UndoManager();
+    private final Action undoAction;
+    private final Action redoAction;
+    private boolean modified;
+    private boolean saving;
+
+    public LargeFileEditor(PieceTableDocument document) {
+        super(new BorderLayout());
+        this.document = document;
+        textArea = new JTextArea(document) {
+            @Override
+            public void updateUI() {
+                // Keeps the line view when the look and feel changes
+                setUI(new LinesUI());
+            }
+        };
+        textArea.setFont(new Font(Font.MONOSPACED, Font.PLAIN, 13));
+        // Saving would turn what can't be decoded into U+FFFD for good
+        textArea.setEditable(!document.hasMalformedInput());
+        add(new JScrollPane(textArea), BorderLayout.CENTER);
+        status.setBorder(BorderFactory.createEmptyBorder(2, 6, 2, 6));
+        add(status, BorderLayout.SOUTH);
+
+        document.addUndoableEditListener(undoManager);
+        document.addDocumentListener(new DocumentListener() {
+            @Override
+            public void insertUpdate(DocumentEvent e) {
+                modified = true;
+                updateStatus();
+            }
+
+            @Override
+            public void removeUpdate(DocumentEvent e) {
+                modified = true;
+                updateStatus();
+            }
+
+            @Override
+            public void changedUpdate(DocumentEvent e) {
+            }
+        });
+        bind(KeyEvent.VK_S, "save", this::save);
+        undoAction = bind(KeyEvent.VK_Z, "undo", () -> {
+            if (undoManager.canUndo()) {
+                undoManager.undo();
+            }
+        });
+        redoAction = bind(KeyEvent.VK_Y, "redo", () -> {
+            if (undoManager.canRedo()) {
+                undoManager.redo();
+            }
+        });
+        updateStatus();
+    }
+
+    /**
+     * Writes the file in the background. The text can't be edited meanwhile,
+     * nor undone or redone, which would wait on the EDT for the save to let
+     * go of the document.
+     */
+    public void save() {
+        if (saving) {
+            return;
+        }
+        saving = true;
+        textArea.setEditable(false);
+        undoAction.setEnabled(false);
+        redoAction.setEnabled(false);
+        updateStatus();
+        Thread saver = new Thread(() -> {
+            IOException error = null;
+            try {
+                document.save();
+            } catch (IOException e) {
+                e.printStackTrace();
+                error = e;
+            }
+            IOException failure = error;
+            SwingUtilities.invokeLater(() -> {
+                saving = false;
+                textArea.setEditable(!document.hasMalformedInput());
+                undoAction.setEnabled(true);
+                redoAction.setEnabled(true);
+                if (failure == null) {
+                    modified = false;
+                } else {
+                    JOptionPane.showMessageDialog(this, "Could not save file: " + failure.getMessage(),
+                        "Error", JOptionPane.ERROR_MESSAGE);
+                }
+                updateStatus();
+            });
+        }, "large-file-save");
+        saver.setDaemon(true);
+        saver.start();
+    }
+
+    /**
+     * Unmaps the file. Call when the window closes.
+     */
+    public void close() {
+        try {
+            document.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private Action bind(int key, String name, Runnable action) {
+        Action bound = new AbstractAction() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                action.run();
+            }
+        };
+        textArea.getInputMap().put(KeyStroke.getKeyStroke(key, InputEvent.CTRL_DOWN_MASK), name);
+        textArea.getActionMap().put(name, bound);
+        return bound;
+    }
+
+    private void updateStatus() {
+        status.setText((modified ? "* " : "") + document.getFile().getFileName()
+            + "  |  " + document.getDefaultRootElement().getElementCount() + " lines"
+            + (saving ? "  |  Saving..." : "  |  Large file: no syntax colors")
+            + (document.hasMalformedInput() ? "  |  Read only: not valid UTF-8" : "")
+            + (document.hasMixedLineBreaks() ? "  |  Mixed line breaks: saving uses the first line's" : ""));
+    }
+
+    /**
+     * Has the text area use a {@link LineView} instead of a {@link PlainView},
+     * which measures every line of the document before first painting.
+     */
+    private static final class LinesUI extends BasicTextAreaUI {
+        @Override
+        public View create(Element elem) {
+            return new LineView(elem);
+        }
+    }
+
+    /**
+     * Paints the lines of the document that are in the clip, one font
+     * height apart. Its width is that of the widest line painted so far.
+     */
+    private static final class LineView extends View implements TabExpander {
+        private final Segment text = new Segment();
+        private FontMetrics metrics;
+        private int tabBase;
+        private int widest;
+
+        LineView(Element elem) {
+            super(elem);
+        }
+
+        @Override
+        public float getPreferredSpan(int axis) {
+            updateMetrics();
+            return axis == X_AXIS ? widest : getElement().getElementCount() * metrics.getHeight();
+        }
+
+        @Override
+        public void paint(Graphics g, Shape a) {
+            updateMetrics();
+            Rectangle alloc = a.getBounds();
+            tabBase = alloc.x;
+            JTextComponent host = (JTextComponent) getContainer();
+            Highlighter highlighter = host.getHighlighter();
+            LayeredHighlighter layered = highlighter instanceof LayeredHighlighter
+                ? (LayeredHighlighter) highlighter : null;
+            Color foreground = host.isEnabled() ? host.getForeground() : host.getDisabledTextColor();
+            Color selected = host.getSelectedTextColor() != null ? host.getSelectedTextColor() : foreground;
+            int selectionStart = host.getSelectionStart();
+            int selectionEnd = host.getSelectionEnd();
+            g.setFont(host.getFont());
+
+            Element root = getElement();
+            int count = root.getElementCount();
+            int height = metrics.getHeight();
+            Rectangle clip = g.getClipBounds() != null ? g.getClipBounds() : alloc;
+            int first = Math.max(0, (clip.y - alloc.y) / height);
+            int last = Math.min(count - 1, (clip.y + clip.height - alloc.y) / height);
+            int widened = widest;
+            for (int i = first; i <= last; i++) {
+                Element line = root.getElement(i);
+                int start = line.getStartOffset();
+                int end = line.getEndOffset() - 1;
+                if (layered != null) {
+                    layered.paintLayeredHighlights(g, start, i == count - 1 ? end : end + 1, a, host, this);
+                }
+                int from = Math.max(start, Math.min(end, selectionStart));
+                int to = Math.max(start, Math.min(end, selectionEnd));
+                int y = alloc.y + i * height + metrics.getAscent();
+                int x = drawText(g, start, from, alloc.x, y, foreground);
+                x = drawText(g, from, to, x, y, selected);
+                x = drawText(g, to, end, x, y, foreground);
+                widened = Math.max(widened, x - alloc.x);
+            }
+            if (widened > widest) {
+                widest = widened;
+                SwingUtilities.invokeLater(() -> preferenceChanged(null, true, false));
+            }
+        }
+
+        @Override
+        public Shape modelToView(int pos, Shape a, Position.Bias b) throws BadLocationException {
+            if (pos < 0 || pos > getDocument().getLength() + 1) {
+                throw new BadLocationException("Invalid position", pos);
+            }
+            updateMetrics();
+            Rectangle alloc = a.getBounds();
+            tabBase = alloc.x;
+            Element root = getElement();
+            int index = root.getElementIndex(pos);
+            int start = root.getElement(index).getStartOffset();
+            getDocument().getText(start, Math.min(pos, getEndOffset() - 1) - start, text);
+            float x = Utilities.getTabbedTextWidth(text, metrics, (float) alloc.x, this, start);
+            return new Rectangle(alloc.x + Math.round(x), alloc.y + index * metrics.getHeight(), 1, metrics.getHeight());
+        }
+
+        @Override
+        public int viewToModel(float fx, float fy, Shape a, Position.Bias[] bias) {
+            updateMetrics();
+            bias[0] = Position.Bias.Forward;
+            Rectangle alloc = a.getBounds();
+            tabBase = alloc.x;
+            Element root = getElement();
+            int height = metrics.getHeight();
+            if (fy < alloc.y) {
+                return getStartOffset();
+            }
+            if (fy >= alloc.y + root.getElementCount() * height) {
+                return getEndOffset() - 1;
+            }
+            Element line = root.getElement((int) (fy - alloc.y) / height);
+            int start = line.getStartOffset();
+            if (fx < alloc.x) {
+                return start;
+            }
+            try {
+                getDocument().getText(start, line.getEndOffset() - 1 - start, text);
+            } catch (BadLocationException e) {
+                return start;
+            }
+            return start + Utilities.getTabbedTextOffset(text, metrics, (float) alloc.x, fx, this, start, true);
+        }
+
+        @Override
+        public float nextTabStop(float x, int tabOffset) {
+            Object size = getDocument().getProperty(PlainDocument.tabSizeAttribute);
+            int tabWidth = (size instanceof Integer ? (Integer) size : 8) * metrics.charWidth('m');
+            if (tabWidth == 0) {
+                return x;
+            }
+            int tabs = ((int) x - tabBase) / tabWidth;
+            return tabBase + (tabs + 1) * tabWidth;
+        }
+
+        @Override
+        public void insertUpdate(DocumentEvent e, Shape a, ViewFactory f) {
+            changed(e);
+        }
+
+        @Override
+        public void removeUpdate(DocumentEvent e, Shape a, ViewFactory f) {
+            changed(e);
+        }
+
+        @Override
+        public void changedUpdate(DocumentEvent e, Shape a, ViewFactory f) {
+            changed(e);
+        }
+
+        private void changed(DocumentEvent e) {
+            if (e.getChange(getElement()) != null) {
+                // Lines came or went, so the height changed
+                preferenceChanged(null, false, true);
+            }
+            Container host = getContainer();
+            if (host != null) {
+                host.repaint();
+            }
+        }
+
+        private int drawText(Graphics g, int start, int end, int x, int y, Color color) {
+            if (end <= start) {
+                return x;
+            }
+            try {
+                getDocument().getText(start, end - start, text);
+            } catch (BadLocationException e) {
+                return x;
+            }
+            g.setColor(color);
+            return Math.round(Utilities.drawTabbedText(text, (float) x, (float) y, (Graphics2D) g, this, start));
+        }
+
+        private void updateMetrics() {
+            Component host = getContainer();
+            metrics = host.getFontMetrics(host.getFont());
+        }
+    }
+}
@@ -0,0 +1,233 @@
+package org.Finite.MicrOS.ui;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * A UTF-8 text file mapped into memory and read as chars, without decoding
+ * it onto the heap. Line breaks read as {@code \n} whether they are
+ * {@code \r\n}, {@code \r} or {@code \n} in the file, like Swing's editor
+ * kits read them; which of those the file uses is kept for writing it back.
+ * Malformed bytes read as U+FFFD, one per byte, and the first of them is
+ * noted, since writing the text back would not restore them.
+ *
+ * <p>Opening scans the file once, noting where every line break is and
+ * where every {@link #CHECKPOINT_CHARS}th char starts, so a read only
+ * decodes from the checkpoint before it. Reads are thread-safe.
+ */
+final class MappedText implements Closeable {
+    private static final int CHECKPOINT_CHARS = 1024;
+    private static final int REPLACEMENT = 0xFFFD;
+
+    private final FileChannel channel;
+    private final MappedByteBuffer bytes;
+    private final int byteLength;
+    private final int length;
+    // The char offset and byte offset of the code point that holds each
+    // CHECKPOINT_CHARSth char; the char offset is one less when that char
+    // is the second half of a surrogate pair
+    private final int[] checkpointChars;
+    private final int[] checkpointBytes;
+    // Char offset of each line break, ascending
+    private final int[] lineBreaks;
+    private final String lineBreak;
+    private final boolean mixedLineBreaks;
+    private final int firstMalformedByte;
+
+    private MappedText(FileChannel channel, MappedByteBuffer bytes, int byteLength) throws IOException {
+        this.channel = channel;
+        this.bytes = bytes;
+        this.byteLength = byteLength;
+
+        int[] cpChars = new int[byteLength / CHECKPOINT_CHARS + 2];
+        int[] cpBytes = new int[cpChars.length];
+        int[] breaks = new int[Math.max(16, byteLength / 64)];
+        int checkpoints = 0;
+        int breakCount = 0;
+        int chars = 0;
+        String firstBreak = null;
+        boolean mixed = false;
+        int malformed = -1;
+        for (int pos = 0; pos < byteLength; ) {
+            int unit = decode(pos);
+            int width = unit >>> 3 >= 0x10000 ? 2 : 1;
+            if (chars + width > checkpoints * CHECKPOINT_CHARS) {
+                cpChars[checkpoints] = chars;
+                cpBytes[checkpoints++] = pos;
+            }
+            if (unit >>> 3 == '\n') {
+                if (breakCount == breaks.length) {
+                    breaks = Arrays.copyOf(breaks, breaks.length * 2);
+                }
+                breaks[breakCount++] = chars;
+                String style = bytes.get(pos) != '\r' ? "\n" : (unit & 7) == 2 ? "\r\n" : "\r";
+                if (firstBreak == null) {
+                    firstBreak = style;
+                } else if (!firstBreak.equals(style)) {
+                    mixed = true;
+                }
+            } else if (unit == (REPLACEMENT << 3 | 1) && malformed < 0) {
+                // A U+FFFD that is really in the file takes three bytes
+                malformed = pos;
+            }
+            chars += width;
+            if (chars < 0) {
+                throw new IOException("Too many characters for a document");
+            }
+            pos += unit & 7;
+        }
+        this.length = chars;
+        this.checkpointChars = Arrays.copyOf(cpChars, checkpoints);
+        this.checkpointBytes = Arrays.copyOf(cpBytes, checkpoints);
+        this.lineBreaks = Arrays.copyOf(breaks, breakCount);
+        this.lineBreak = firstBreak != null ? firstBreak : System.lineSeparator();
+        this.mixedLineBreaks = mixed;
+        this.firstMalformedByte = malformed;
+    }
+
+    /**
+     * Maps and scans a file. Files of 2 GB or more can't be mapped in one
+     * piece and are refused.
+     */
+    static MappedText open(Path file) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+        try {
+            long size = channel.size();
+            if (size >= Integer.MAX_VALUE) {
+                throw new IOException("File too large to open: " + file);
+            }
+            MappedByteBuffer bytes = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            return new MappedText(channel, bytes, (int) size);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * @return The length in chars
+     */
+    int length() {
+        return length;
+    }
+
+    /**
+     * @return Char offsets of the line breaks, ascending; not to be modified
+     */
+    int[] lineBreaks() {
+        return lineBreaks;
+    }
+
+    /**
+     * @return The file's first line break, {@code \r\n}, {@code \r} or
+     *         {@code \n}; the system's if it has none
+     */
+    String lineBreak() {
+        return lineBreak;
+    }
+
+    /**
+     * @return Whether some lines end differently from the first
+     */
+    boolean hasMixedLineBreaks() {
+        return mixedLineBreaks;
+    }
+
+    /**
+     * @return Byte offset of the first byte that isn't valid UTF-8, or -1
+     */
+    int firstMalformedByte() {
+        return firstMalformedByte;
+    }
+
+    /**
+     * Decodes {@code count} chars starting at char {@code offset}.
+     */
+    void read(int offset, char[] dest, int destOffset, int count) {
+        if (count == 0) {
+            return;
+        }
+        int checkpoint = offset / CHECKPOINT_CHARS;
+        int chars = checkpointChars[checkpoint];
+        int pos = checkpointBytes[checkpoint];
+        int end = destOffset + count;
+        while (destOffset < end) {
+            int unit = decode(pos);
+            int codePoint = unit >>> 3;
+            pos += unit & 7;
+            if (codePoint < 0x10000) {
+                if (chars >= offset) {
+                    dest[destOffset++] = (char) codePoint;
+                }
+                chars++;
+            } else {
+                if (chars >= offset) {
+                    dest[destOffset++] = Character.highSurrogate(codePoint);
+                }
+                if (chars + 1 >= offset && destOffset < end) {
+                    dest[destOffset++] = Character.lowSurrogate(codePoint);
+                }
+                chars += 2;
+            }
+        }
+    }
+
+    /**
+     * @return The code point at a byte offset shifted left by 3, or'd with
+     *         how many bytes it takes up
+     */
+    private int decode(int pos) {
+        int b0 = bytes.get(pos) & 0xFF;
+        if (b0 < 0x80) {
+            if (b0 == '\r') {
+                boolean pair = pos + 1 < byteLength && bytes.get(pos + 1) == '\n';
+                return '\n' << 3 | (pair ? 2 : 1);
+            }
+            return b0 << 3 | 1;
+        }
+        int need;
+        int codePoint;
+        int min;
+        if ((b0 & 0xE0) == 0xC0) {
+            need = 1;
+            codePoint = b0 & 0x1F;
+            min = 0x80;
+        } else if ((b0 & 0xF0) == 0xE0) {
+            need = 2;
+            codePoint = b0 & 0x0F;
+            min = 0x800;
+        } else if ((b0 & 0xF8) == 0xF0) {
+            need = 3;
+            codePoint = b0 & 0x07;
+            min = 0x10000;
+        } else {
+            return REPLACEMENT << 3 | 1;
+        }
+        if (pos + need >= byteLength) {
+            return REPLACEMENT << 3 | 1;
+        }
+        for (int i = 1; i <= need; i++) {
+            int b = bytes.get(pos + i) & 0xFF;
+            if ((b & 0xC0) != 0x80) {
+                return REPLACEMENT << 3 | 1;
+            }
+            codePoint = codePoint << 6 | (b & 0x3F);
+        }
+        if (codePoint < min || codePoint > Character.MAX_CODE_POINT
+                || codePoint >= Character.MIN_SURROGATE && codePoint <= Character.MAX_SURROGATE) {
+            return REPLACEMENT << 3 | 1;
+        }
+        return codePoint << 3 | (need + 1);
+    }
+
+    @Override
+    public void close() throws IOException {
+        // The mapping itself goes when the buffer is collected
+        channel.close();
+    }
+}
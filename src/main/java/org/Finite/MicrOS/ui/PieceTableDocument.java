@@ -0,0 +1,856 @@
+package org.Finite.MicrOS.ui;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.ref.WeakReference;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import javax.swing.event.DocumentEvent;
+import javax.swing.text.AbstractDocument;
+import javax.swing.text.AttributeSet;
+import javax.swing.text.BadLocationException;
+import javax.swing.text.DefaultEditorKit;
+import javax.swing.text.Document;
+import javax.swing.text.Element;
+import javax.swing.text.PlainDocument;
+import javax.swing.text.Position;
+import javax.swing.text.Segment;
+import javax.swing.text.SimpleAttributeSet;
+import javax.swing.undo.AbstractUndoableEdit;
+import javax.swing.undo.UndoableEdit;
+
+/**
+ * A plain text {@link Document} for files too big to load into a styled
+ * document. The text is a piece table: the file stays memory-mapped and is
+ * never copied, inserted text is appended to a buffer, and the document is
+ * a sequence of pieces of one or the other, kept in a balanced tree. Each
+ * piece knows how many line breaks it holds, so finding where a line starts
+ * or which line an offset is on takes O(log n), and line {@link Element}s
+ * are made when asked for instead of kept for every line.
+ *
+ * <p>Meant for a {@link javax.swing.JTextArea}, whose view only asks for the
+ * lines it paints. There are no character attributes.
+ */
+public class PieceTableDocument extends AbstractDocument implements Closeable {
+    // Lines handed out since the last edit, so repainting doesn't make new ones
+    private static final int MAX_CACHED_LINES = 4096;
+
+    private final Path file;
+    private final MappedText original;
+    private final PieceContent content;
+    private final LineRoot root = new LineRoot();
+
+    private PieceTableDocument(Path file, MappedText original, PieceContent content) {
+        super(content);
+        this.file = file;
+        this.original = original;
+        this.content = content;
+        // After the constructor above, which marks out the empty document
+        content.insertOriginal();
+        putProperty(PlainDocument.tabSizeAttribute, 8);
+        putProperty(DefaultEditorKit.EndOfLineStringProperty, original.lineBreak());
+    }
+
+    /**
+     * Maps a UTF-8 text file and indexes its lines. Takes one pass over the
+     * file; nothing of it is kept on the heap but the index.
+     */
+    public static PieceTableDocument open(Path file) throws IOException {
+        MappedText original = MappedText.open(file);
+        return new PieceTableDocument(file, original, new PieceContent(original));
+    }
+
+    public Path getFile() {
+        return file;
+    }
+
+    /**
+     * @return Whether the file isn't valid UTF-8. Bytes that aren't are read
+     *         as U+FFFD, so {@link #save()} refuses to write the text back.
+     */
+    public boolean hasMalformedInput() {
+        return original.firstMalformedByte() >= 0;
+    }
+
+    /**
+     * @return Whether the file's lines don't all end the same way. Saving
+     *         ends every line like the first.
+     */
+    public boolean hasMixedLineBreaks() {
+        return original.hasMixedLineBreaks();
+    }
+
+    /**
+     * Writes the text back to the file, with the line break style it was
+     * read with. It is written to a file beside it first, which then
+     * replaces it, so the mapped original can still be read while writing.
+     *
+     * <p>The original stays mapped after saving, since the document's pieces
+     * still point into it. Windows won't replace a file that is mapped, so
+     * there the replace fails until the document is closed, and the text is
+     * left in the file beside it.
+     * @throws IOException if the file isn't valid UTF-8, see {@link #hasMalformedInput()},
+     *         or it couldn't be replaced
+     */
+    public void save() throws IOException {
+        if (hasMalformedInput()) {
+            throw new IOException(file.getFileName() + " is not valid UTF-8 (at byte "
+                + original.firstMalformedByte() + "); saving would replace the bytes that can't be read");
+        }
+        Path temp = file.resolveSibling(file.getFileName() + ".saving");
+        String lineBreak = (String) getProperty(DefaultEditorKit.EndOfLineStringProperty);
+        readLock();
+        try (Writer writer = new BufferedWriter(new OutputStreamWriter(Files.newOutputStream(temp), StandardCharsets.UTF_8))) {
+            char[] chunk = new char[64 * 1024];
+            int length = getLength();
+            for (int offset = 0; offset < length; offset += chunk.length) {
+                int count = Math.min(chunk.length, length - offset);
+                content.copy(offset, count, chunk);
+                int start = 0;
+                for (int i = 0; i < count && !"\n".equals(lineBreak); i++) {
+                    if (chunk[i] == '\n') {
+                        writer.write(chunk, start, i - start);
+                        writer.write(lineBreak);
+                        start = i + 1;
+                    }
+                }
+                writer.write(chunk, start, count - start);
+            }
+        } finally {
+            readUnlock();
+        }
+        try {
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            throw new IOException("Could not replace " + file.getFileName() + " (" + e
+                + "); the text was saved to " + temp.getFileName(), e);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        original.close();
+    }
+
+    @Override
+    public Element getDefaultRootElement() {
+        return root;
+    }
+
+    @Override
+    public Element getParagraphElement(int pos) {
+        return root.getElement(root.getElementIndex(pos));
+    }
+
+    @Override
+    protected void insertUpdate(DefaultDocumentEvent chng, AttributeSet attr) {
+        int offset = chng.getOffset();
+        int breaks = content.lineOf(offset + chng.getLength()) - content.lineOf(offset);
+        if (breaks > 0) {
+            int first = content.lineOf(offset);
+            Element[] added = new Element[breaks + 1];
+            for (int i = 0; i < added.length; i++) {
+                added[i] = new Line(first + i);
+            }
+            chng.addEdit(new LineChange(first, new Element[] {added[0]}, added));
+        }
+        super.insertUpdate(chng, attr);
+    }
+
+    @Override
+    protected void removeUpdate(DefaultDocumentEvent chng) {
+        int offset = chng.getOffset();
+        int first = content.lineOf(offset);
+        int last = content.lineOf(offset + chng.getLength());
+        if (last > first) {
+            Element[] removed = new Element[last - first + 1];
+            for (int i = 0; i < removed.length; i++) {
+                removed[i] = new Line(first + i);
+            }
+            chng.addEdit(new LineChange(first, removed, new Element[] {removed[0]}));
+        }
+        super.removeUpdate(chng);
+    }
+
+    /**
+     * The lines of the document. Its children are made on demand.
+     */
+    private final class LineRoot implements Element {
+        private final Line[] cached = new Line[MAX_CACHED_LINES];
+        private int cachedEdit = -1;
+
+        @Override
+        public Document getDocument() {
+            return PieceTableDocument.this;
+        }
+
+        @Override
+        public Element getParentElement() {
+            return null;
+        }
+
+        @Override
+        public String getName() {
+            return AbstractDocument.SectionElementName;
+        }
+
+        @Override
+        public AttributeSet getAttributes() {
+            return SimpleAttributeSet.EMPTY;
+        }
+
+        @Override
+        public int getStartOffset() {
+            return 0;
+        }
+
+        @Override
+        public int getEndOffset() {
+            return content.length();
+        }
+
+        @Override
+        public int getElementIndex(int offset) {
+            return Math.min(content.lineOf(Math.max(0, offset)), getElementCount() - 1);
+        }
+
+        @Override
+        public int getElementCount() {
+            return content.lineCount();
+        }
+
+        @Override
+        public Element getElement(int index) {
+            if (index < 0 || index >= getElementCount()) {
+                return null;
+            }
+            synchronized (cached) {
+                if (cachedEdit != content.edits) {
+                    Arrays.fill(cached, null);
+                    cachedEdit = content.edits;
+                }
+                int slot = index % MAX_CACHED_LINES;
+                if (cached[slot] == null || cached[slot].index != index) {
+                    cached[slot] = new Line(index);
+                }
+                return cached[slot];
+            }
+        }
+
+        @Override
+        public boolean isLeaf() {
+            return false;
+        }
+    }
+
+    /**
+     * One line, by its index. Unlike the elements of other documents it
+     * doesn't follow its text through edits above it: held across such an
+     * edit, it stands for whichever line has its index afterwards.
+     */
+    private final class Line implements Element {
+        final int index;
+
+        Line(int index) {
+            this.index = index;
+        }
+
+        @Override
+        public Document getDocument() {
+            return PieceTableDocument.this;
+        }
+
+        @Override
+        public Element getParentElement() {
+            return root;
+        }
+
+        @Override
+        public String getName() {
+            return AbstractDocument.ParagraphElementName;
+        }
+
+        @Override
+        public AttributeSet getAttributes() {
+            return SimpleAttributeSet.EMPTY;
+        }
+
+        @Override
+        public int getStartOffset() {
+            return content.lineStart(Math.min(index, content.lineCount() - 1));
+        }
+
+        @Override
+        public int getEndOffset() {
+            return index + 1 < content.lineCount() ? content.lineStart(index + 1) : content.length();
+        }
+
+        @Override
+        public int getElementIndex(int offset) {
+            return -1;
+        }
+
+        @Override
+        public int getElementCount() {
+            return 0;
+        }
+
+        @Override
+        public Element getElement(int index) {
+            return null;
+        }
+
+        @Override
+        public boolean isLeaf() {
+            return true;
+        }
+    }
+
+    /**
+     * Which lines an edit replaced, for the views.
+     */
+    private final class LineChange extends AbstractUndoableEdit implements DocumentEvent.ElementChange {
+        private final int index;
+        private Element[] removed;
+        private Element[] added;
+
+        LineChange(int index, Element[] removed, Element[] added) {
+            this.index = index;
+            this.removed = removed;
+            this.added = added;
+        }
+
+        @Override
+        public Element getElement() {
+            return root;
+        }
+
+        @Override
+        public int getIndex() {
+            return index;
+        }
+
+        @Override
+        public Element[] getChildrenRemoved() {
+            return removed;
+        }
+
+        @Override
+        public Element[] getChildrenAdded() {
+            return added;
+        }
+
+        @Override
+        public void undo() {
+            super.undo();
+            swap();
+        }
+
+        @Override
+        public void redo() {
+            super.redo();
+            swap();
+        }
+
+        private void swap() {
+            Element[] swapped = removed;
+            removed = added;
+            added = swapped;
+        }
+    }
+
+    /**
+     * The text as a balanced tree of pieces of the original file and of an
+     * append-only buffer of inserted text. Each node holds one piece and
+     * the total length and line breaks of its subtree; nodes are kept in
+     * order of the text and balanced by random priority (a treap). Always
+     * ends with the {@code \n} that {@link AbstractDocument} expects.
+     */
+    private static final class PieceContent implements AbstractDocument.Content {
+        private final MappedText original;
+        private final int[] originalBreaks;
+        private char[] added = new char[4096];
+        private int addedLength;
+        private int[] addedBreaks = new int[64];
+        private int addedBreakCount;
+        private Node root;
+        // Counts changes to the text
+        private volatile int edits;
+        private final List<WeakReference<Mark>> marks = new ArrayList<>();
+        private int purgeMarksAt = 64;
+
+        PieceContent(MappedText original) {
+            this.original = original;
+            this.originalBreaks = original.lineBreaks();
+            int start = append("\n");
+            root = new Node(false, start, 1, 1);
+        }
+
+        /**
+         * Puts the whole original file before the closing line break.
+         */
+        void insertOriginal() {
+            if (original.length() > 0) {
+                root = merge(new Node(true, 0, original.length(), originalBreaks.length), root);
+                shiftMarks(0, original.length());
+            }
+        }
+
+        @Override
+        public int length() {
+            return root.totalLength;
+        }
+
+        int lineCount() {
+            return root.totalBreaks;
+        }
+
+        /**
+         * @return The line the offset is on; {@link #lineCount()} at the very end
+         */
+        int lineOf(int offset) {
+            int line = 0;
+            Node node = root;
+            while (node != null) {
+                int leftLength = lengthOf(node.left);
+                if (offset < leftLength) {
+                    node = node.left;
+                    continue;
+                }
+                line += breaksOf(node.left);
+                offset -= leftLength;
+                if (offset < node.length) {
+                    return line + node.breaksBefore(node.start + offset);
+                }
+                line += node.breaks;
+                offset -= node.length;
+                node = node.right;
+            }
+            return line;
+        }
+
+        /**
+         * @return Where a line starts, for a line below {@link #lineCount()}
+         */
+        int lineStart(int line) {
+            int remaining = line;
+            int offset = 0;
+            Node node = root;
+            while (node != null && remaining > 0) {
+                int leftBreaks = breaksOf(node.left);
+                if (remaining <= leftBreaks) {
+                    node = node.left;
+                    continue;
+                }
+                remaining -= leftBreaks;
+                offset += lengthOf(node.left);
+                if (remaining <= node.breaks) {
+                    int[] breaks = node.original ? originalBreaks : addedBreaks;
+                    int count = node.original ? originalBreaks.length : addedBreakCount;
+                    int at = breaks[lowerBound(breaks, count, node.start) + remaining - 1];
+                    return offset + at - node.start + 1;
+                }
+                remaining -= node.breaks;
+                offset += node.length;
+                node = node.right;
+            }
+            return offset;
+        }
+
+        @Override
+        public Position createPosition(int offset) throws BadLocationException {
+            Mark mark = new Mark(offset);
+            synchronized (marks) {
+                marks.add(new WeakReference<>(mark));
+                if (marks.size() > purgeMarksAt) {
+                    marks.removeIf(ref -> ref.get() == null);
+                    purgeMarksAt = Math.max(64, marks.size() * 2);
+                }
+            }
+            return mark;
+        }
+
+        @Override
+        public UndoableEdit insertString(int where, String str) throws BadLocationException {
+            if (where < 0 || where >= length()) {
+                throw new BadLocationException("Invalid insert", length());
+            }
+            int start = append(str);
+            int breaks = lowerBound(addedBreaks, addedBreakCount, addedLength)
+                - lowerBound(addedBreaks, addedBreakCount, start);
+            if (!extend(root, where, start, str.length(), breaks)) {
+                paste(where, new Node(false, start, str.length(), breaks));
+            } else {
+                edited(where, str.length());
+            }
+            return new InsertUndo(where, str.length());
+        }
+
+        @Override
+        public UndoableEdit remove(int where, int nitems) throws BadLocationException {
+            if (where < 0 || where + nitems >= length()) {
+                throw new BadLocationException("Invalid remove", length());
+            }
+            // Marks in the text go back where they were if the removal is undone
+            List<Mark> inside = new ArrayList<>();
+            synchronized (marks) {
+                for (WeakReference<Mark> ref : marks) {
+                    Mark mark = ref.get();
+                    if (mark != null && mark.offset > where && mark.offset <= where + nitems) {
+                        inside.add(mark);
+                    }
+                }
+            }
+            int[] offsets = new int[inside.size()];
+            for (int i = 0; i < offsets.length; i++) {
+                offsets[i] = inside.get(i).offset;
+            }
+            return new RemoveUndo(where, cut(where, nitems), inside, offsets);
+        }
+
+        @Override
+        public String getString(int where, int len) throws BadLocationException {
+            Segment segment = new Segment();
+            getChars(where, len, segment);
+            return new String(segment.array, segment.offset, segment.count);
+        }
+
+        @Override
+        public void getChars(int where, int len, Segment txt) throws BadLocationException {
+            if (where < 0 || len < 0 || where + len > length()) {
+                throw new BadLocationException("Invalid range", length());
+            }
+            // Inserted text in one piece can be handed out as it is
+            Node node = root;
+            int offset = where;
+            while (node != null) {
+                int leftLength = lengthOf(node.left);
+                if (offset < leftLength) {
+                    node = node.left;
+                } else if (offset < leftLength + node.length) {
+                    offset -= leftLength;
+                    break;
+                } else {
+                    offset -= leftLength + node.length;
+                    node = node.right;
+                }
+            }
+            if (node != null && !node.original && offset + len <= node.length) {
+                txt.array = added;
+                txt.offset = node.start + offset;
+                txt.count = len;
+                return;
+            }
+            char[] chars = new char[len];
+            copy(where, len, chars);
+            txt.array = chars;
+            txt.offset = 0;
+            txt.count = len;
+        }
+
+        void copy(int where, int len, char[] dest) {
+            copy(root, where, where + len, dest, 0);
+        }
+
+        private void copy(Node node, int from, int to, char[] dest, int destOffset) {
+            if (node == null || from >= to) {
+                return;
+            }
+            int leftLength = lengthOf(node.left);
+            int pieceEnd = leftLength + node.length;
+            if (from < leftLength) {
+                copy(node.left, from, Math.min(to, leftLength), dest, destOffset);
+            }
+            int pieceFrom = Math.max(from, leftLength);
+            int pieceTo = Math.min(to, pieceEnd);
+            if (pieceFrom < pieceTo) {
+                int start = node.start + pieceFrom - leftLength;
+                int at = destOffset + pieceFrom - from;
+                if (node.original) {
+                    original.read(start, dest, at, pieceTo - pieceFrom);
+                } else {
+                    System.arraycopy(added, start, dest, at, pieceTo - pieceFrom);
+                }
+            }
+            if (to > pieceEnd) {
+                copy(node.right, Math.max(0, from - pieceEnd), to - pieceEnd, dest,
+                    destOffset + Math.max(0, pieceEnd - from));
+            }
+        }
+
+        /**
+         * @return Where the text starts in the inserted text buffer
+         */
+        private int append(String str) {
+            int start = addedLength;
+            if (addedLength + str.length() > added.length) {
+                added = Arrays.copyOf(added, Math.max(added.length * 2, addedLength + str.length()));
+            }
+            str.getChars(0, str.length(), added, addedLength);
+            for (int i = 0; i < str.length(); i++) {
+                if (str.charAt(i) == '\n') {
+                    if (addedBreakCount == addedBreaks.length) {
+                        addedBreaks = Arrays.copyOf(addedBreaks, addedBreaks.length * 2);
+                    }
+                    addedBreaks[addedBreakCount++] = start + i;
+                }
+            }
+            addedLength += str.length();
+            return start;
+        }
+
+        /**
+         * Grows the piece ending at {@code where} instead of adding one, when
+         * it ends where the new text starts in the buffer, as it does while
+         * typing.
+         */
+        private boolean extend(Node node, int where, int start, int length, int breaks) {
+            if (node == null) {
+                return false;
+            }
+            int leftLength = lengthOf(node.left);
+            boolean extended;
+            if (where <= leftLength) {
+                extended = extend(node.left, where, start, length, breaks);
+            } else if (where < leftLength + node.length) {
+                extended = false;
+            } else if (where == leftLength + node.length && !node.original && node.start + node.length == start) {
+                node.length += length;
+                node.breaks += breaks;
+                extended = true;
+            } else {
+                extended = extend(node.right, where - leftLength - node.length, start, length, breaks);
+            }
+            if (extended) {
+                node.update();
+            }
+            return extended;
+        }
+
+        private void paste(int where, Node pieces) {
+            int length = pieces.totalLength;
+            Node[] parts = split(root, where);
+            root = merge(merge(parts[0], pieces), parts[1]);
+            edited(where, length);
+        }
+
+        /**
+         * @return The pieces cut out
+         */
+        private Node cut(int where, int length) {
+            Node[] head = split(root, where);
+            Node[] tail = split(head[1], length);
+            root = merge(head[0], tail[1]);
+            edited(where, -length);
+            return tail[0];
+        }
+
+        private void edited(int where, int change) {
+            edits++;
+            shiftMarks(where, change);
+        }
+
+        private void shiftMarks(int where, int change) {
+            synchronized (marks) {
+                Iterator<WeakReference<Mark>> refs = marks.iterator();
+                while (refs.hasNext()) {
+                    Mark mark = refs.next().get();
+                    if (mark == null) {
+                        refs.remove();
+                    } else if (change > 0 && mark.offset > where) {
+                        mark.offset += change;
+                    } else if (change < 0 && mark.offset > where) {
+                        mark.offset = Math.max(where, mark.offset + change);
+                    }
+                }
+            }
+        }
+
+        private Node[] split(Node node, int offset) {
+            if (node == null) {
+                return new Node[2];
+            }
+            int leftLength = lengthOf(node.left);
+            if (offset <= leftLength) {
+                Node[] parts = split(node.left, offset);
+                node.left = parts[1];
+                node.update();
+                return new Node[] {parts[0], node};
+            }
+            if (offset >= leftLength + node.length) {
+                Node[] parts = split(node.right, offset - leftLength - node.length);
+                node.right = parts[0];
+                node.update();
+                return new Node[] {node, parts[1]};
+            }
+            // The offset is inside this node's piece
+            int cut = offset - leftLength;
+            Node tail = new Node(node.original, node.start + cut, node.length - cut, 0);
+            tail.breaks = node.breaks - node.breaksBefore(node.start + cut);
+            node.breaks -= tail.breaks;
+            node.length = cut;
+            tail.update();
+            Node right = node.right;
+            node.right = null;
+            node.update();
+            return new Node[] {node, merge(tail, right)};
+        }
+
+        private Node merge(Node left, Node right) {
+            if (left == null) {
+                return right;
+            }
+            if (right == null) {
+                return left;
+            }
+            if (left.priority > right.priority) {
+                left.right = merge(left.right, right);
+                left.update();
+                return left;
+            }
+            right.left = merge(left, right.left);
+            right.update();
+            return right;
+        }
+
+        private int lengthOf(Node node) {
+            return node == null ? 0 : node.totalLength;
+        }
+
+        private int breaksOf(Node node) {
+            return node == null ? 0 : node.totalBreaks;
+        }
+
+        /**
+         * @return The index of the first value not below {@code key}
+         */
+        private static int lowerBound(int[] values, int count, int key) {
+            int low = 0;
+            int high = count;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (values[mid] < key) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+
+        private final class Node {
+            final boolean original;
+            final int start;
+            int length;
+            int breaks;
+            final int priority = ThreadLocalRandom.current().nextInt();
+            Node left;
+            Node right;
+            int totalLength;
+            int totalBreaks;
+
+            Node(boolean original, int start, int length, int breaks) {
+                this.original = original;
+                this.start = start;
+                this.length = length;
+                this.breaks = breaks;
+                update();
+            }
+
+            /**
+             * @return The line breaks in this piece before a buffer offset
+             */
+            int breaksBefore(int bufferOffset) {
+                int[] values = original ? originalBreaks : addedBreaks;
+                int count = original ? originalBreaks.length : addedBreakCount;
+                return lowerBound(values, count, bufferOffset) - lowerBound(values, count, start);
+            }
+
+            void update() {
+                totalLength = length + lengthOf(left) + lengthOf(right);
+                totalBreaks = breaks + breaksOf(left) + breaksOf(right);
+            }
+        }
+
+        private static final class Mark implements Position {
+            int offset;
+
+            Mark(int offset) {
+                this.offset = offset;
+            }
+
+            @Override
+            public int getOffset() {
+                return offset;
+            }
+        }
+
+        private final class InsertUndo extends AbstractUndoableEdit {
+            private final int where;
+            private final int length;
+            // The pieces taken out while undone
+            private Node pieces;
+
+            InsertUndo(int where, int length) {
+                this.where = where;
+                this.length = length;
+            }
+
+            @Override
+            public void undo() {
+                super.undo();
+                pieces = cut(where, length);
+            }
+
+            @Override
+            public void redo() {
+                super.redo();
+                paste(where, pieces);
+                pieces = null;
+            }
+        }
+
+        private final class RemoveUndo extends AbstractUndoableEdit {
+            private final int where;
+            private final int length;
+            // The pieces taken out while done
+            private Node pieces;
+            private final List<Mark> marksInside;
+            private final int[] markOffsets;
+
+            RemoveUndo(int where, Node pieces, List<Mark> marksInside, int[] markOffsets) {
+                this.where = where;
+                this.length = pieces.totalLength;
+                this.pieces = pieces;
+                this.marksInside = marksInside;
+                this.markOffsets = markOffsets;
+            }
+
+            @Override
+            public void undo() {
+                super.undo();
+                paste(where, pieces);
+                pieces = null;
+                for (int i = 0; i < markOffsets.length; i++) {
+                    marksInside.get(i).offset = markOffsets[i];
+                }
+            }
+
+            @Override
+            public void redo() {
+                super.redo();
+                pieces = cut(where, length);
+            }
+        }
+    }
+}
@@ -68,6 +68,22 @@ public class SplashScreen extends JPanel {
         }
     }
 
+    /**
+     * Switches the bar from indeterminate to showing how many boot steps are done.
+     */
+    public void setProgress(int done, int total) {
+        Runnable update = () -> {
+            progressBar.setIndeterminate(false);
+            progressBar.setMaximum(total);
+            progressBar.setValue(done);
+        };
+        if (SwingUtilities.isEventDispatchThread()) {
+            update.run();
+        } else {
+            SwingUtilities.invokeLater(update);
+        }
+    }
+
     public void setShutdownMode() {
         logoLabel.setText("Shutting Down");
         logoLabel.setForeground(new Color(255, 100, 100)); // Reddish color
@@ -89,7 +105,7 @@ public class SplashScreen extends JPanel {
         splashFrame.setUndecorated(true);
         splashFrame.add(this);
         splashFrame.pack();
-        splashFrame.setLocationRelativeTo(mainWindow); // Position relative to main window
+        splashFrame.setLocationRelativeTo(mainWindow); // Position relative to main window, or centered during boot
     }
 
     public void show() {
@@ -0,0 +1,139 @@
+package org.Finite.MicrOS.ui;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import javafx.application.Platform;
+import javafx.scene.web.WebEngine;
+import javafx.scene.web.WebHistory;
+import javafx.scene.web.WebView;
+
+/**
+ * Shares a few {@link WebView}s, and the {@link WebEngine} each one owns,
+ * between web viewer windows. Starting WebKit and building an engine are
+ * what make the first HTML window slow and every further one expensive, so
+ * the JavaFX runtime is started and one view built in the background after
+ * boot, views of closed windows are reused, and at most
+ * {@link #MAX_ENGINES} engines exist at a time. When a window needs one and
+ * all are in use, the window that was used longest ago gives its view up
+ * and gets another when it is used again.
+ *
+ * <p>Everything except {@link #startInBackground()} must be called on the
+ * JavaFX application thread.
+ */
+public final class WebEnginePool {
+    public static final int MAX_ENGINES = 3;
+    private static final int MAX_IDLE = 1;
+    private static final int HISTORY_SIZE = 100;
+
+    /**
+     * A window using a pooled view.
+     */
+    public interface Holder {
+        /**
+         * Called when the pool takes the view back to give it to another
+         * window. The holder must stop using it.
+         */
+        void onEvicted(WebView view);
+    }
+
+    private static final AtomicBoolean started = new AtomicBoolean();
+    // Least recently used first
+    private static final Map<WebView, Holder> leased = new LinkedHashMap<>(16, 0.75f, true);
+    private static final Deque<WebView> idle = new ArrayDeque<>();
+
+    private WebEnginePool() {
+    }
+
+    /**
+     * Starts the JavaFX runtime on a background thread and builds a view
+     * ready for the first web viewer. Does nothing after the first call.
+     */
+    public static void startInBackground() {
+        if (!started.compareAndSet(false, true)) {
+            return;
+        }
+        Thread starter = new Thread(() -> {
+            try {
+                Platform.startup(WebEnginePool::prewarm);
+            } catch (IllegalStateException e) {
+                // A JFXPanel already started the runtime
+                Platform.runLater(WebEnginePool::prewarm);
+            } catch (Throwable e) {
+                System.err.println("Failed to start JavaFX: " + e.getMessage());
+            }
+        }, "javafx-start");
+        starter.setDaemon(true);
+        starter.setPriority(Thread.MIN_PRIORITY);
+        starter.start();
+    }
+
+    private static void prewarm() {
+        // Web viewers come and go; closing the last one must not end the runtime
+        Platform.setImplicitExit(false);
+        if (leased.isEmpty() && idle.isEmpty()) {
+            WebView view = new WebView();
+            // Loads WebKit itself, not just the Java side of the engine
+            view.getEngine().loadContent("");
+            idle.push(view);
+        }
+    }
+
+    /**
+     * Hands out a view, reusing an idle one or taking the least recently
+     * used one from its holder if {@link #MAX_ENGINES} are in use.
+     */
+    public static WebView acquire(Holder holder) {
+        Platform.setImplicitExit(false);
+        WebView view = idle.poll();
+        if (view == null && leased.size() >= MAX_ENGINES) {
+            Iterator<Map.Entry<WebView, Holder>> oldest = leased.entrySet().iterator();
+            Map.Entry<WebView, Holder> entry = oldest.next();
+            oldest.remove();
+            entry.getValue().onEvicted(entry.getKey());
+            view = reset(entry.getKey());
+        }
+        if (view == null) {
+            view = new WebView();
+        }
+        leased.put(view, holder);
+        return view;
+    }
+
+    /**
+     * Marks the view as just used, so it is the last to be evicted.
+     */
+    public static void touch(WebView view) {
+        leased.get(view);
+    }
+
+    /**
+     * Takes back a view whose window closed.
+     */
+    public static void release(WebView view) {
+        if (leased.remove(view) == null) {
+            return;
+        }
+        reset(view);
+        if (idle.size() < MAX_IDLE) {
+            idle.push(view);
+        }
+    }
+
+    /**
+     * Clears everything the previous holder left on the view.
+     */
+    private static WebView reset(WebView view) {
+        WebEngine engine = view.getEngine();
+        engine.load(null);
+        engine.setUserStyleSheetLocation(null);
+        engine.setJavaScriptEnabled(true);
+        WebHistory history = engine.getHistory();
+        history.setMaxSize(0);
+        history.setMaxSize(HISTORY_SIZE);
+        return view;
+    }
+}
@@ -1,11 +1,13 @@
 package org.Finite.MicrOS.ui;
 
 import javafx.application.Platform;
+import javafx.beans.value.ChangeListener;
 import javafx.embed.swing.JFXPanel;
 import javafx.scene.Scene;
 import javafx.scene.web.WebEngine;
 import javafx.scene.web.WebView;
 import javafx.scene.layout.BorderPane;
+import javafx.scene.control.Label;
 import javafx.scene.control.TextField;
 import javafx.scene.control.Button;
 import javafx.scene.layout.HBox;
@@ -14,20 +16,39 @@ import javax.swing.*;
 import org.Finite.MicrOS.core.VirtualFileSystem;
 
 import java.awt.*;
+import java.awt.event.FocusAdapter;
+import java.awt.event.FocusEvent;
 import java.io.File;
-import java.nio.charset.StandardCharsets;
 import java.nio.file.Path;
 
-public class WebViewer extends JPanel {
+/**
+ * Shows web pages and HTML files from the VFS. The {@link WebView} comes
+ * from {@link WebEnginePool}, which may take it back while the window isn't
+ * in use; the page is reloaded when the window gets focus again.
+ */
+public class WebViewer extends JPanel implements WebEnginePool.Holder {
+    private static HtmlCache htmlCache;
+
     private final JFXPanel jfxPanel;
     private WebView webView;
     private WebEngine webEngine;
     private final VirtualFileSystem vfs;
+    private BorderPane borderPane;
     private TextField urlField;
     private String currentLocation;
+    private boolean disposed;
+    private final ChangeListener<String> locationListener = (obs, oldLoc, newLoc) -> {
+        if (newLoc != null && !newLoc.isEmpty()) {
+            currentLocation = newLoc;
+            urlField.setText(newLoc);
+        }
+    };
 
     public WebViewer(VirtualFileSystem vfs) {
         this.vfs = vfs;
+        if (htmlCache == null) {
+            htmlCache = new HtmlCache(vfs);
+        }
         setLayout(new BorderLayout());
 
         // Create Swing toolbar
@@ -43,15 +64,31 @@ public class WebViewer extends JPanel {
         Platform.runLater(() -> {
             initializeJavaFX();
         });
+
+        // Take a view back from the pool if it was given to another window
+        jfxPanel.addFocusListener(new FocusAdapter() {
+            @Override
+            public void focusGained(FocusEvent e) {
+                Platform.runLater(() -> {
+                    if (disposed || borderPane == null) {
+                        return;
+                    }
+                    if (webView == null) {
+                        attachView();
+                        if (currentLocation != null) {
+                            loadUrl(currentLocation);
+                        }
+                    } else {
+                        WebEnginePool.touch(webView);
+                    }
+                });
+            }
+        });
     }
 
     private void initializeJavaFX() {
-        // Create the WebView and WebEngine
-        webView = new WebView();
-        webEngine = webView.getEngine();
-
         // Create toolbar controls
-        BorderPane borderPane = new BorderPane();
+        borderPane = new BorderPane();
         HBox toolbar = new HBox(5);
         toolbar.setStyle("-fx-padding: 5; -fx-background-color: #f0f0f0;");
 
@@ -61,9 +98,22 @@ public class WebViewer extends JPanel {
         urlField = new TextField();
         
         // Set button actions
-        backButton.setOnAction(e -> webEngine.getHistory().go(-1));
-        forwardButton.setOnAction(e -> webEngine.getHistory().go(1));
-        refreshButton.setOnAction(e -> webEngine.reload());
+        backButton.setOnAction(e -> {
+            if (webEngine != null) {
+                webEngine.getHistory().go(-1);
+            }
+        });
+        forwardButton.setOnAction(e -> {
+            if (webEngine != null) {
+                webEngine.getHistory().go(1);
+            }
+        });
+        // Goes through loadUrl so edited VFS pages are re-read
+        refreshButton.setOnAction(e -> {
+            if (currentLocation != null) {
+                loadUrl(currentLocation);
+            }
+        });
         urlField.setOnAction(e -> loadUrl(urlField.getText()));
 
         // Make URL field expand
@@ -74,31 +124,62 @@ public class WebViewer extends JPanel {
 
         // Layout
         borderPane.setTop(toolbar);
-        borderPane.setCenter(webView);
 
         // Create scene
         Scene scene = new Scene(borderPane);
         jfxPanel.setScene(scene);
 
-        // Add web engine listeners
-        webEngine.locationProperty().addListener((obs, oldLoc, newLoc) -> {
-            if (newLoc != null) {
-                currentLocation = newLoc;
-                Platform.runLater(() -> urlField.setText(newLoc));
+        if (!disposed) {
+            attachView();
+        }
+    }
+
+    private void attachView() {
+        webView = WebEnginePool.acquire(this);
+        webEngine = webView.getEngine();
+        webEngine.locationProperty().addListener(locationListener);
+        borderPane.setCenter(webView);
+    }
+
+    @Override
+    public void onEvicted(WebView view) {
+        view.getEngine().locationProperty().removeListener(locationListener);
+        borderPane.setCenter(new Label("Page unloaded to save memory. Click to reload."));
+        webView = null;
+        webEngine = null;
+    }
+
+    /**
+     * Gives the view back to the pool. Called when the window closes.
+     */
+    public void dispose() {
+        Platform.runLater(() -> {
+            disposed = true;
+            if (webView != null) {
+                webEngine.locationProperty().removeListener(locationListener);
+                borderPane.setCenter(null);
+                WebEnginePool.release(webView);
+                webView = null;
+                webEngine = null;
             }
         });
     }
 
     public void loadUrl(String url) {
         Platform.runLater(() -> {
+            if (webEngine == null) {
+                // Unloaded or closed; reloaded from here when focused
+                currentLocation = url;
+                return;
+            }
+            WebEnginePool.touch(webView);
             try {
-                if (url.startsWith("http://") || url.startsWith("https://")) {
+                if (url.startsWith("http://") || url.startsWith("https://") || url.startsWith("file:")) {
                     webEngine.load(url);
                 } else {
                     // Load local file from VFS
                     String virtualPath = url.startsWith("/") ? url : "/" + url;
-                    byte[] content = vfs.readFile(virtualPath);
-                    String html = new String(content, StandardCharsets.UTF_8);
+                    String html = htmlCache.read(virtualPath);
                     
                     // Create base URL for relative paths
                     Path fullPath = vfs.resolveVirtualPath(virtualPath);
@@ -108,6 +189,9 @@ public class WebViewer extends JPanel {
                     webEngine.loadContent(html, "text/html");
                     // Set base URL for relative paths
                     webEngine.setUserStyleSheetLocation(baseUrl);
+                    // loadContent leaves the location empty
+                    currentLocation = virtualPath;
+                    urlField.setText(virtualPath);
                 }
             } catch (Exception e) {
                 webEngine.loadContent(
@@ -121,7 +205,9 @@ public class WebViewer extends JPanel {
 
     public void loadContent(String html) {
         Platform.runLater(() -> {
-            webEngine.loadContent(html, "text/html");
+            if (webEngine != null) {
+                webEngine.loadContent(html, "text/html");
+            }
         });
     }
 }
@@ -0,0 +1,59 @@
+package org.Finite.MicrOS.util;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.LongConsumer;
+
+/**
+ * Measures startup as the time from JVM launch to the first paint of the
+ * desktop, which is what startup benchmarks and CDS training boots wait for.
+ */
+public final class StartupTimer {
+    private static final List<LongConsumer> listeners = new ArrayList<>();
+    private static long firstPaintMillis = -1;
+
+    private StartupTimer() {
+    }
+
+    /**
+     * @return Milliseconds since the JVM was launched
+     */
+    public static long sinceJvmStart() {
+        return System.currentTimeMillis() - ManagementFactory.getRuntimeMXBean().getStartTime();
+    }
+
+    /**
+     * Called by the desktop every time it paints; only the first call counts.
+     */
+    public static void markFirstPaint() {
+        List<LongConsumer> notify;
+        synchronized (StartupTimer.class) {
+            if (firstPaintMillis >= 0) {
+                return;
+            }
+            firstPaintMillis = sinceJvmStart();
+            notify = new ArrayList<>(listeners);
+            listeners.clear();
+        }
+        for (LongConsumer listener : notify) {
+            listener.accept(firstPaintMillis);
+        }
+    }
+
+    /**
+     * Calls the listener with the startup time once the desktop has painted,
+     * right away if it already has.
+     */
+    public static void onFirstPaint(LongConsumer listener) {
+        long millis;
+        synchronized (StartupTimer.class) {
+            if (firstPaintMillis < 0) {
+                listeners.add(listener);
+                return;
+            }
+            millis = firstPaintMillis;
+        }
+        listener.accept(millis);
+    }
+}
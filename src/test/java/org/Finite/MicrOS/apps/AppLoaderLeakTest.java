@@ -0,0 +1,150 @@
+package org.Finite.MicrOS.apps;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.ref.WeakReference;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+import java.util.stream.Stream;
+import javax.tools.JavaCompiler;
+import javax.tools.ToolProvider;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Installs and uninstalls an app bundle many times and checks that every
+ * class loader is closed, can be collected, and has given back its JAR.
+ */
+class AppLoaderLeakTest {
+    private static final int CYCLES = 1000;
+    private static final String IDENTIFIER = "org.finite.test.leak";
+    private static final String MAIN_CLASS = "leaktest.LeakApp";
+    private static final String SOURCE = "package leaktest;\n"
+        + "public class LeakApp extends org.Finite.MicrOS.apps.MicrOSApp {\n"
+        + "    public javax.swing.JComponent createUI() { return null; }\n"
+        + "    public void onStart() { }\n"
+        + "    public void onStop() { }\n"
+        + "}\n";
+
+    @TempDir
+    Path temp;
+
+    private byte[] appJar;
+    private File apps;
+
+    @BeforeEach
+    void buildApp() throws IOException {
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        assumeTrue(compiler != null, "needs a JDK to compile the test app");
+        Path source = temp.resolve("src/leaktest/LeakApp.java");
+        Path classes = temp.resolve("classes");
+        Files.createDirectories(source.getParent());
+        Files.createDirectories(classes);
+        Files.writeString(source, SOURCE);
+        int result = compiler.run(null, null, null, "-classpath", System.getProperty("java.class.path"),
+            "-d", classes.toString(), source.toString());
+        assertEquals(0, result, "test app didn't compile");
+
+        Path jar = temp.resolve("leak.jar");
+        try (JarOutputStream out = new JarOutputStream(Files.newOutputStream(jar))) {
+            out.putNextEntry(new JarEntry("leaktest/LeakApp.class"));
+            out.write(Files.readAllBytes(classes.resolve("leaktest/LeakApp.class")));
+            out.closeEntry();
+        }
+        appJar = Files.readAllBytes(jar);
+        apps = temp.resolve("apps").toFile();
+        assertTrue(apps.mkdirs());
+    }
+
+    @Test
+    void installAndUninstallReleasesEveryLoader() throws Exception {
+        AppLoader loader = new AppLoader(apps.getPath());
+        File bundle = new File(apps, "Leak.app");
+        List<WeakReference<ClassLoader>> released = new ArrayList<>();
+        long unloadedBefore = ManagementFactory.getClassLoadingMXBean().getUnloadedClassCount();
+
+        for (int i = 0; i < CYCLES; i++) {
+            install(bundle);
+            loader.reloadBundle(bundle, changed -> { });
+            MicrOSApp first = loader.createAppInstance(IDENTIFIER);
+            MicrOSApp second = loader.createAppInstance(IDENTIFIER);
+            assertEquals(MAIN_CLASS, first.getClass().getName());
+            released.add(new WeakReference<>(first.getClass().getClassLoader()));
+            assertEquals(1, loader.getOpenClassLoaderCount());
+
+            loader.releaseAppInstance(first);
+            // Releasing twice must not drop the second instance's reference
+            loader.releaseAppInstance(first);
+            assertEquals(1, loader.getOpenClassLoaderCount());
+            loader.releaseAppInstance(second);
+
+            uninstall(bundle);
+            loader.reloadBundle(bundle, changed -> { });
+            assertTrue(loader.getLoadedApps().stream().noneMatch(app -> IDENTIFIER.equals(app.getIdentifier())));
+            assertEquals(0, loader.getOpenClassLoaderCount());
+        }
+
+        long deadline = System.nanoTime() + 30_000_000_000L;
+        while (released.stream().anyMatch(ref -> ref.get() != null) && System.nanoTime() < deadline) {
+            System.gc();
+            Thread.sleep(20);
+        }
+        assertEquals(0, released.stream().filter(ref -> ref.get() != null).count(), "class loaders still reachable");
+        // Classes of collected loaders are freed by the next full collection
+        System.gc();
+        long unloaded = ManagementFactory.getClassLoadingMXBean().getUnloadedClassCount() - unloadedBefore;
+        assertTrue(unloaded >= CYCLES, "only " + unloaded + " app classes unloaded");
+        assertEquals(0, openHandlesUnder(temp), "JAR files left open");
+    }
+
+    private void install(File bundle) throws IOException {
+        Path contents = bundle.toPath().resolve("Contents");
+        Files.createDirectories(contents.resolve("Resources"));
+        Files.writeString(contents.resolve("manifest.json"), "{\"name\": \"Leak\", \"identifier\": \"" + IDENTIFIER
+            + "\", \"version\": \"1.0\", \"mainClass\": \"" + MAIN_CLASS + "\"}");
+        try (OutputStream out = Files.newOutputStream(contents.resolve("Resources/leak.jar"))) {
+            out.write(appJar);
+        }
+    }
+
+    private static void uninstall(File bundle) throws IOException {
+        try (Stream<Path> files = Files.walk(bundle.toPath())) {
+            for (Path path : (Iterable<Path>) files.sorted(Comparator.reverseOrder())::iterator) {
+                Files.delete(path);
+            }
+        }
+    }
+
+    /**
+     * @return How many of this process's file descriptors point under the directory
+     */
+    private static long openHandlesUnder(Path directory) throws IOException {
+        Path descriptors = Path.of("/proc/self/fd");
+        assumeTrue(Files.isDirectory(descriptors), "needs /proc to count open files");
+        long count = 0;
+        try (Stream<Path> fds = Files.list(descriptors)) {
+            for (Path fd : (Iterable<Path>) fds::iterator) {
+                try {
+                    if (Files.readSymbolicLink(fd).toString().startsWith(directory.toString())) {
+                        count++;
+                    }
+                } catch (IOException e) {
+                    // Closed while listing
+                }
+            }
+        }
+        return count;
+    }
+}
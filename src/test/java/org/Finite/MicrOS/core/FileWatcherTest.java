@@ -0,0 +1,119 @@
+package org.Finite.MicrOS.core;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Checks that every directory registration a watch takes is given back when
+ * the watch is stopped or replaced, so watching doesn't leak native watches.
+ */
+class FileWatcherTest {
+    private static final int CYCLES = 1000;
+
+    @TempDir
+    Path root;
+
+    private Path tree;
+
+    @BeforeEach
+    void createTree() throws IOException {
+        tree = root.resolve("tree");
+        Files.createDirectories(tree.resolve("a/b/c"));
+        Files.createDirectories(tree.resolve("d"));
+        Files.writeString(tree.resolve("a/file.txt"), "text");
+        assertEquals(0, FileWatcher.getRegisteredDirectoryCount());
+    }
+
+    @AfterEach
+    void stopAll() {
+        FileWatcher.stopWatching(tree.toString());
+        FileWatcher.stopWatching(tree.resolve("a").toString());
+        FileWatcher.stopWatching(tree.resolve("a/file.txt").toString());
+    }
+
+    @Test
+    void fileWatchesAreReleased() {
+        String file = tree.resolve("a/file.txt").toString();
+        for (int i = 0; i < CYCLES; i++) {
+            FileWatcher.watchFile(file, changed -> { });
+            assertEquals(1, FileWatcher.getRegisteredDirectoryCount());
+            FileWatcher.stopWatching(file);
+            assertEquals(0, FileWatcher.getRegisteredDirectoryCount());
+        }
+    }
+
+    @Test
+    void recursiveWatchesAreReleased() {
+        for (int i = 0; i < CYCLES; i++) {
+            FileWatcher.watchDirectory(tree.toString(), true, changes -> { });
+            // tree, a, a/b, a/b/c and d
+            assertEquals(5, FileWatcher.getRegisteredDirectoryCount());
+            FileWatcher.stopWatching(tree.toString());
+            assertEquals(0, FileWatcher.getRegisteredDirectoryCount());
+        }
+    }
+
+    @Test
+    void replacingAWatchReleasesTheOldOne() {
+        for (int i = 0; i < CYCLES; i++) {
+            FileWatcher.watchDirectory(tree.toString(), true, changes -> { });
+            FileWatcher.watchDirectory(tree.toString(), false, changes -> { });
+            assertEquals(1, FileWatcher.getRegisteredDirectoryCount());
+            FileWatcher.watchDirectory(tree.toString(), true, changes -> { });
+            assertEquals(5, FileWatcher.getRegisteredDirectoryCount());
+        }
+        FileWatcher.stopWatching(tree.toString());
+        assertEquals(0, FileWatcher.getRegisteredDirectoryCount());
+    }
+
+    @Test
+    void sharedDirectoriesStayUntilTheLastWatchStops() {
+        for (int i = 0; i < CYCLES; i++) {
+            FileWatcher.watchDirectory(tree.toString(), true, changes -> { });
+            FileWatcher.watchDirectory(tree.resolve("a").toString(), false, changes -> { });
+            FileWatcher.watchFile(tree.resolve("a/file.txt").toString(), changed -> { });
+            assertEquals(5, FileWatcher.getRegisteredDirectoryCount());
+            FileWatcher.stopWatching(tree.toString());
+            assertEquals(1, FileWatcher.getRegisteredDirectoryCount());
+            FileWatcher.stopWatching(tree.resolve("a").toString());
+            assertEquals(1, FileWatcher.getRegisteredDirectoryCount());
+            FileWatcher.stopWatching(tree.resolve("a/file.txt").toString());
+            assertEquals(0, FileWatcher.getRegisteredDirectoryCount());
+        }
+    }
+
+    @Test
+    void directoriesCreatedWhileWatchingAreReleased() throws Exception {
+        AtomicInteger batches = new AtomicInteger();
+        FileWatcher.watchDirectory(tree.toString(), true, 10, changes -> batches.incrementAndGet());
+        Files.createDirectories(tree.resolve("d/e/f"));
+        // The dispatcher registers e and f when it sees them created
+        waitFor(() -> FileWatcher.getRegisteredDirectoryCount() == 7);
+        FileWatcher.stopWatching(tree.toString());
+        assertEquals(0, FileWatcher.getRegisteredDirectoryCount());
+
+        // No callbacks once stopped
+        int seen = batches.get();
+        Files.writeString(tree.resolve("d/e/f/late.txt"), "late");
+        Thread.sleep(300);
+        assertEquals(seen, batches.get());
+    }
+
+    private static void waitFor(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + 10_000_000_000L;
+        while (!condition.getAsBoolean() && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertTrue(condition.getAsBoolean(), "timed out; registered " + FileWatcher.getRegisteredDirectoryCount());
+    }
+}
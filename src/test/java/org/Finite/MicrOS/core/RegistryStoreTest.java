@@ -0,0 +1,119 @@
+package org.Finite.MicrOS.core;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Round-trips a namespace through {@link RegistryStore}: values written to
+ * the log or a snapshot come back when it is reopened, and a torn write at
+ * the end of the log is cut off without losing the records before it.
+ */
+class RegistryStoreTest {
+    @TempDir
+    Path directory;
+
+    @Test
+    void putsSurviveReopening() throws IOException {
+        Map<String, Object> entries = new HashMap<>();
+        try (RegistryStore store = RegistryStore.open(directory, entries)) {
+            put(store, entries, "name", "micrOS");
+            put(store, entries, "int", 42);
+            put(store, entries, "long", 1L << 40);
+            put(store, entries, "double", 0.5);
+            put(store, entries, "flag", true);
+            put(store, entries, "bytes", new byte[] {1, 2, 3});
+            put(store, entries, "gone", "soon");
+            remove(store, entries, "gone");
+        }
+
+        Map<String, Object> reopened = new HashMap<>();
+        RegistryStore.open(directory, reopened).close();
+        assertEquals(6, reopened.size());
+        assertEquals("micrOS", reopened.get("name"));
+        assertEquals(42, reopened.get("int"));
+        assertEquals(1L << 40, reopened.get("long"));
+        assertEquals(0.5, reopened.get("double"));
+        assertEquals(true, reopened.get("flag"));
+        assertArrayEquals(new byte[] {1, 2, 3}, (byte[]) reopened.get("bytes"));
+        assertFalse(reopened.containsKey("gone"));
+    }
+
+    @Test
+    void compactionKeepsEveryKeyAndEmptiesTheLog() throws IOException {
+        Map<String, Object> entries = new HashMap<>();
+        try (RegistryStore store = RegistryStore.open(directory, entries)) {
+            boolean shouldCompact = false;
+            for (int i = 0; !shouldCompact; i++) {
+                entries.put("key" + (i % 10), i);
+                shouldCompact = store.append(RegistryStore.encodePut("key" + (i % 10), i), entries.size());
+            }
+            store.compact(entries);
+            assertEquals(0, Files.size(directory.resolve("registry.log")));
+            put(store, entries, "after", "compaction");
+        }
+
+        Map<String, Object> reopened = new HashMap<>();
+        RegistryStore.open(directory, reopened).close();
+        assertEquals(entries, reopened);
+    }
+
+    @Test
+    void tornTailIsDroppedAndLaterWritesSurvive() throws IOException {
+        Map<String, Object> entries = new HashMap<>();
+        try (RegistryStore store = RegistryStore.open(directory, entries)) {
+            put(store, entries, "first", 1);
+            put(store, entries, "second", 2);
+        }
+        // Cut the last record short, as a crash mid-append would
+        Path log = directory.resolve("registry.log");
+        byte[] data = Files.readAllBytes(log);
+        Files.write(log, Arrays.copyOf(data, data.length - 3), StandardOpenOption.TRUNCATE_EXISTING);
+
+        Map<String, Object> reopened = new HashMap<>();
+        try (RegistryStore store = RegistryStore.open(directory, reopened)) {
+            assertEquals(Map.of("first", 1), reopened);
+            put(store, reopened, "third", 3);
+        }
+
+        Map<String, Object> again = new HashMap<>();
+        RegistryStore.open(directory, again).close();
+        assertEquals(Map.of("first", 1, "third", 3), again);
+    }
+
+    @Test
+    void refusesObjectsOfOtherClasses() {
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class,
+            () -> RegistryStore.encodePut("point", new Point()));
+        assertTrue(e.getMessage().contains(Point.class.getName()));
+    }
+
+    private static void put(RegistryStore store, Map<String, Object> entries, String key, Object value)
+            throws IOException {
+        entries.put(key, value);
+        store.append(RegistryStore.encodePut(key, value), entries.size());
+    }
+
+    private static void remove(RegistryStore store, Map<String, Object> entries, String key) throws IOException {
+        entries.remove(key);
+        store.append(RegistryStore.encodeRemove(key), entries.size());
+    }
+
+    private static class Point implements Serializable {
+        int x;
+        int y;
+    }
+}
@@ -0,0 +1,83 @@
+package org.Finite.MicrOS.core;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+import javax.swing.SwingUtilities;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks that a {@link MessageBus.OverflowPolicy#BLOCK} topic can't freeze
+ * the EDT: its EDT subscribers need the EDT to drain the buffer, so a sender
+ * on the EDT must not wait for them.
+ */
+class RingBufferTopicTest {
+    private static final String TOPIC = "org.finite.test.ringbuffer.block";
+    private static final int CAPACITY = 4;
+    private static final int MESSAGES = 100;
+
+    private final AtomicInteger delivered = new AtomicInteger();
+    private final Consumer<Object> handler = message -> {
+        if (SwingUtilities.isEventDispatchThread()) {
+            delivered.incrementAndGet();
+        }
+    };
+
+    @AfterEach
+    void unsubscribe() {
+        MessageBus.unsubscribe(TOPIC, handler);
+    }
+
+    @Test
+    void blockingSendsFromTheEdtDropInsteadOfWaiting() throws Exception {
+        MessageBus.createBoundedTopic(TOPIC, CAPACITY, MessageBus.OverflowPolicy.BLOCK);
+        MessageBus.subscribe(TOPIC, handler, MessageBus.DispatchMode.EDT);
+
+        CompletableFuture<Void> sent = new CompletableFuture<>();
+        SwingUtilities.invokeLater(() -> {
+            for (int i = 0; i < MESSAGES; i++) {
+                MessageBus.send(TOPIC, i);
+            }
+            sent.complete(null);
+        });
+        // Waiting for room here would deadlock with the reader's hand-off to the EDT
+        sent.get(10, TimeUnit.SECONDS);
+
+        waitFor(() -> delivered.get() + MessageBus.getDroppedCount(TOPIC) == MESSAGES);
+        assertTrue(MessageBus.getDroppedCount(TOPIC) > 0, "the buffer never filled");
+        assertTrue(delivered.get() >= CAPACITY);
+        assertEquals(0, MessageBus.getQueueDepth(TOPIC));
+    }
+
+    @Test
+    void blockingSendsFromOtherThreadsWait() throws Exception {
+        String topic = TOPIC + ".worker";
+        MessageBus.createBoundedTopic(topic, CAPACITY, MessageBus.OverflowPolicy.BLOCK);
+        AtomicInteger received = new AtomicInteger();
+        Consumer<Object> slow = message -> received.incrementAndGet();
+        MessageBus.subscribe(topic, slow, MessageBus.DispatchMode.EDT);
+        try {
+            for (int i = 0; i < MESSAGES; i++) {
+                MessageBus.send(topic, i);
+            }
+            waitFor(() -> received.get() == MESSAGES);
+            assertEquals(0, MessageBus.getDroppedCount(topic));
+        } finally {
+            MessageBus.unsubscribe(topic, slow);
+        }
+    }
+
+    private static void waitFor(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + 10_000_000_000L;
+        while (!condition.getAsBoolean() && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertTrue(condition.getAsBoolean(), "timed out");
+    }
+}
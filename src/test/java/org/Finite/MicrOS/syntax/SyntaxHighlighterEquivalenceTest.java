@@ -0,0 +1,174 @@
+package org.Finite.MicrOS.syntax;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.awt.Color;
+import java.util.Arrays;
+import java.util.Random;
+import javax.swing.JTextPane;
+import javax.swing.SwingUtilities;
+import javax.swing.text.AttributeSet;
+import javax.swing.text.BadLocationException;
+import javax.swing.text.StyleConstants;
+import javax.swing.text.StyledDocument;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Makes random edits to a document with a {@link SyntaxHighlighter} and,
+ * once the highlighter has caught up, checks that every character has the
+ * color a fresh lex of the whole text gives it. The seed is fixed so a
+ * failure can be replayed; the edits favor the pieces that open and close
+ * blocks and strings, since those are what the incremental passes get wrong.
+ */
+class SyntaxHighlighterEquivalenceTest {
+    private static final long SEED = 0x5EED_046L;
+    private static final int ROUNDS = 300;
+    private static final int MAX_LENGTH = 6000;
+    private static final String[] PIECES = {
+        "/*", "*/", "//", "\"", "'", "\n", "\n", "\n\n", " ", "int ", "x = 1;", "word",
+        "/* block */", "\"text\"", "'c'", "// note\n", "int a; /* open\n", "close */\n"
+    };
+
+    private final Random random = new Random(SEED);
+    private JSONObject syntax;
+    private JTextPane textPane;
+    private SyntaxHighlighter highlighter;
+
+    @BeforeEach
+    void createEditor() throws Exception {
+        JSONObject patterns = new JSONObject()
+            .put("comments", new JSONObject().put("regex", "//.*$|/\\*[\\s\\S]*?\\*/").put("color", "#00AA00"))
+            .put("keywords", new JSONObject().put("regex", "\\b(int|if|else)\\b").put("color", "#0000FF"))
+            .put("quoted", new JSONObject().put("regex", "([\"'])[^\"']*?\\1").put("color", "#AA5500"))
+            .put("numbers", new JSONObject().put("regex", "\\b\\d+\\b").put("color", "#FF00FF"));
+        syntax = new JSONObject().put("extensions", new JSONArray().put("test")).put("patterns", patterns);
+
+        SwingUtilities.invokeAndWait(() -> {
+            textPane = new JTextPane();
+            // Large enough that every line is on screen and gets colored
+            textPane.setSize(4000, 1_000_000);
+            highlighter = new SyntaxHighlighter(textPane);
+            highlighter.loadSyntaxConfig(syntax);
+            highlighter.setFileType("sample.test");
+            StringBuilder text = new StringBuilder();
+            while (text.length() < MAX_LENGTH / 2) {
+                text.append(piece());
+            }
+            insert(0, text.toString());
+        });
+    }
+
+    @AfterEach
+    void dispose() throws Exception {
+        SwingUtilities.invokeAndWait(() -> highlighter.dispose());
+    }
+
+    @Test
+    void incrementalColorsMatchAFullLex() throws Exception {
+        settle();
+        assertColorsMatch(-1);
+        for (int round = 0; round < ROUNDS; round++) {
+            // Several edits per round so some passes are lexed from a stale copy
+            int edits = 1 + random.nextInt(4);
+            for (int i = 0; i < edits; i++) {
+                SwingUtilities.invokeAndWait(this::edit);
+            }
+            settle();
+            assertColorsMatch(round);
+        }
+    }
+
+    private void edit() {
+        StyledDocument document = textPane.getStyledDocument();
+        int length = document.getLength();
+        if (length > 0 && (length > MAX_LENGTH || random.nextInt(3) == 0)) {
+            int offset = random.nextInt(length);
+            int count = Math.min(length - offset, 1 + random.nextInt(random.nextInt(8) == 0 ? 400 : 20));
+            try {
+                document.remove(offset, count);
+            } catch (BadLocationException e) {
+                throw new IllegalStateException(e);
+            }
+        } else {
+            insert(random.nextInt(length + 1), piece());
+        }
+    }
+
+    private void insert(int offset, String text) {
+        try {
+            textPane.getStyledDocument().insertString(offset, text, null);
+        } catch (BadLocationException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private String piece() {
+        return PIECES[random.nextInt(PIECES.length)];
+    }
+
+    /**
+     * Waits until the highlighter has no pass running or scheduled.
+     */
+    private void settle() throws Exception {
+        boolean[] idle = new boolean[1];
+        long deadline = System.nanoTime() + 10_000_000_000L;
+        do {
+            SwingUtilities.invokeAndWait(() -> idle[0] = highlighter.isIdle());
+            if (!idle[0]) {
+                Thread.sleep(1);
+            }
+        } while (!idle[0] && System.nanoTime() < deadline);
+        assertTrue(idle[0], "highlighter never settled");
+    }
+
+    private void assertColorsMatch(int round) throws Exception {
+        SwingUtilities.invokeAndWait(() -> {
+            StyledDocument document = textPane.getStyledDocument();
+            String text;
+            try {
+                text = document.getText(0, document.getLength());
+            } catch (BadLocationException e) {
+                throw new IllegalStateException(e);
+            }
+            Color[] expected = fullLex(text);
+            String[] lines = text.split("\n", -1);
+            int lineStart = 0;
+            for (int line = 0; line < lines.length; line++) {
+                for (int i = 0; i < lines[line].length(); i++) {
+                    int offset = lineStart + i;
+                    AttributeSet attributes = document.getCharacterElement(offset).getAttributes();
+                    Color actual = attributes.isDefined(StyleConstants.Foreground)
+                        ? StyleConstants.getForeground(attributes) : null;
+                    int column = i;
+                    int number = line;
+                    assertEquals(expected[offset], actual, () -> "seed " + SEED + ", round " + round
+                        + ", line " + number + " column " + column + ": " + lines[number]);
+                }
+                lineStart += lines[line].length() + 1;
+            }
+        });
+    }
+
+    /**
+     * @return The color of each character of the text, lexed from the top
+     *         with a new lexer; null where no rule matched
+     */
+    private Color[] fullLex(String text) {
+        SyntaxLexer lexer = new SyntaxLexer(syntax);
+        Color[] colors = new Color[text.length()];
+        int state = SyntaxLexer.PLAIN;
+        int lineStart = 0;
+        for (String line : text.split("\n", -1)) {
+            int offset = lineStart;
+            state = lexer.lexLine(line, state, (start, end, rule) ->
+                Arrays.fill(colors, offset + start, offset + end, Color.decode(lexer.getColors().get(rule))));
+            lineStart += line.length() + 1;
+        }
+        return colors;
+    }
+}
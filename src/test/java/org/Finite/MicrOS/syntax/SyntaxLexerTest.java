@@ -0,0 +1,156 @@
+package org.Finite.MicrOS.syntax;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.json.JSONObject;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks how {@link SyntaxLexer} takes patterns apart to build its combined
+ * pattern: splitting at top-level alternatives, shifting back references,
+ * and turning {@code BEGIN[\s\S]*?END} alternatives into multi-line blocks.
+ */
+class SyntaxLexerTest {
+
+    @Test
+    void splitsOnlyAtTopLevelBars() {
+        assertEquals(Arrays.asList("a", "b", "c"), SyntaxLexer.splitAlternatives("a|b|c"));
+        assertEquals(Arrays.asList("(a|b)", "c"), SyntaxLexer.splitAlternatives("(a|b)|c"));
+        assertEquals(Arrays.asList("x(?:a|(b|c))", "d"), SyntaxLexer.splitAlternatives("x(?:a|(b|c))|d"));
+        assertEquals(Arrays.asList("[|]", "x"), SyntaxLexer.splitAlternatives("[|]|x"));
+        assertEquals(Arrays.asList("[(]", "x"), SyntaxLexer.splitAlternatives("[(]|x"));
+        assertEquals(Arrays.asList("\\|", "y"), SyntaxLexer.splitAlternatives("\\||y"));
+        assertEquals(Arrays.asList("\\Qa|(b\\E", "c"), SyntaxLexer.splitAlternatives("\\Qa|(b\\E|c"));
+        assertEquals(Arrays.asList("a", ""), SyntaxLexer.splitAlternatives("a|"));
+        assertEquals(Arrays.asList("abc"), SyntaxLexer.splitAlternatives("abc"));
+    }
+
+    @Test
+    void backReferencesPointAtTheirOwnGroups() {
+        // The first rule's groups come before the second's in the combined pattern
+        SyntaxLexer lexer = lexer(
+            rule("pair", "(x)(y)", "#000001", 1),
+            rule("quoted", "(['\"]).*?\\1", "#000002", 0));
+        assertEquals(Arrays.asList("#000001 xy", "#000002 'a'", "#000002 \"b\""),
+            tokens(lexer, "xy 'a' \"b\" \"c' "));
+    }
+
+    @Test
+    void backReferencesInEveryAlternativeAreShifted() {
+        SyntaxLexer lexer = lexer(
+            rule("pair", "(x)(y)", "#000001", 1),
+            rule("repeat", "(a)\\1|(b)\\2", "#000002", 0));
+        assertEquals(Arrays.asList("#000001 xy", "#000002 aa", "#000002 bb"), tokens(lexer, "xy aa ab bb ba"));
+    }
+
+    @Test
+    void backReferencesToOtherAlternativesNeverMatch() {
+        SyntaxLexer lexer = lexer(
+            rule("pair", "(x)(y)", "#000001", 1),
+            rule("other", "(a)|b\\1", "#000002", 0));
+        assertEquals(Arrays.asList("#000002 a"), tokens(lexer, "bx by a"));
+    }
+
+    @Test
+    void escapedBackslashesAreNotBackReferences() {
+        SyntaxLexer lexer = lexer(
+            rule("pair", "(x)(y)", "#000001", 1),
+            rule("escape", "a\\\\1", "#000002", 0));
+        assertEquals(Arrays.asList("#000002 a\\1"), tokens(lexer, "a\\1 aa"));
+    }
+
+    @Test
+    void blockAlternativesSpanLines() {
+        SyntaxLexer lexer = lexer(
+            rule("comments", "//.*$|/\\*[\\s\\S]*?\\*/", "#000001", 0),
+            rule("keywords", "\\bint\\b", "#000002", 0));
+        List<String> tokens = new ArrayList<>();
+        int state = lex(lexer, "int a; /* open", SyntaxLexer.PLAIN, tokens);
+        assertNotEquals(SyntaxLexer.PLAIN, state);
+        state = lex(lexer, "int inside", state, tokens);
+        assertNotEquals(SyntaxLexer.PLAIN, state);
+        state = lex(lexer, "close */ int b; // line", state, tokens);
+        assertEquals(SyntaxLexer.PLAIN, state);
+        assertEquals(Arrays.asList("#000002 int", "#000001 /* open", "#000001 int inside",
+            "#000001 close */", "#000002 int", "#000001 // line"), tokens);
+    }
+
+    @Test
+    void blocksClosedOnTheSameLineStayPlain() {
+        SyntaxLexer lexer = lexer(rule("comments", "/\\*[\\S\\s]*?\\*/", "#000001", 0));
+        List<String> tokens = new ArrayList<>();
+        assertEquals(SyntaxLexer.PLAIN, lex(lexer, "a /* b */ c /* d */", SyntaxLexer.PLAIN, tokens));
+        assertEquals(Arrays.asList("#000001 /* b */", "#000001 /* d */"), tokens);
+    }
+
+    @Test
+    void unclosedBlocksRunToTheEnd() {
+        SyntaxLexer lexer = lexer(rule("comments", "/\\*[\\s\\S]*?\\*/", "#000001", 0));
+        int state = SyntaxLexer.PLAIN;
+        List<String> tokens = new ArrayList<>();
+        for (String line : new String[] {"/*", "a", "b"}) {
+            state = lex(lexer, line, state, tokens);
+            assertNotEquals(SyntaxLexer.PLAIN, state);
+        }
+        assertEquals(Arrays.asList("#000001 /*", "#000001 a", "#000001 b"), tokens);
+    }
+
+    @Test
+    void bodiesInsideGroupsAreNotBlocks() {
+        SyntaxLexer lexer = lexer(rule("comments", "(/\\*[\\s\\S]*?\\*/)", "#000001", 0));
+        List<String> tokens = new ArrayList<>();
+        assertEquals(SyntaxLexer.PLAIN, lex(lexer, "/* open", SyntaxLexer.PLAIN, tokens));
+        assertEquals(SyntaxLexer.PLAIN, lex(lexer, "/* a */", SyntaxLexer.PLAIN, tokens));
+        assertEquals(Arrays.asList("#000001 /* a */"), tokens);
+    }
+
+    @Test
+    void bodiesAtTheStartOrEndAreNotBlocks() {
+        SyntaxLexer lexer = lexer(
+            rule("leading", "[\\s\\S]*?;", "#000001", 0),
+            rule("trailing", "#[\\s\\S]*?", "#000002", 0));
+        List<String> tokens = new ArrayList<>();
+        assertEquals(SyntaxLexer.PLAIN, lex(lexer, "a; #", SyntaxLexer.PLAIN, tokens));
+        assertEquals(Arrays.asList("#000001 a;", "#000002 #"), tokens);
+    }
+
+    @Test
+    void higherPriorityThenNameWinsAtTheSameStart() {
+        SyntaxLexer lexer = lexer(
+            rule("b", "int", "#00000B", 0),
+            rule("a", "in", "#00000A", 0),
+            rule("z", "i\\b", "#00000F", 5));
+        assertEquals(Arrays.asList("#00000F", "#00000A", "#00000B"), lexer.getColors());
+        assertEquals(Arrays.asList("#00000F i", "#00000A in", "#00000A in"), tokens(lexer, "i in int"));
+    }
+
+    private static JSONObject rule(String name, String regex, String color, int priority) {
+        return new JSONObject().put("name", name).put("regex", regex).put("color", color).put("priority", priority);
+    }
+
+    private static SyntaxLexer lexer(JSONObject... rules) {
+        JSONObject patterns = new JSONObject();
+        for (JSONObject rule : rules) {
+            patterns.put(rule.getString("name"), rule);
+        }
+        return new SyntaxLexer(new JSONObject().put("patterns", patterns));
+    }
+
+    private static List<String> tokens(SyntaxLexer lexer, String line) {
+        List<String> tokens = new ArrayList<>();
+        assertEquals(SyntaxLexer.PLAIN, lex(lexer, line, SyntaxLexer.PLAIN, tokens));
+        return tokens;
+    }
+
+    /**
+     * Lexes a line, adding each token as its color and text.
+     */
+    private static int lex(SyntaxLexer lexer, String line, int state, List<String> tokens) {
+        return lexer.lexLine(line, state, (start, end, rule) ->
+            tokens.add(lexer.getColors().get(rule) + " " + line.substring(start, end)));
+    }
+}
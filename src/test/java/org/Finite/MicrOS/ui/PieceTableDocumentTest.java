@@ -0,0 +1,160 @@
+package org.Finite.MicrOS.ui;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import javax.swing.text.BadLocationException;
+import javax.swing.text.Document;
+import javax.swing.text.Element;
+import javax.swing.text.PlainDocument;
+import javax.swing.undo.UndoManager;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Checks {@link PieceTableDocument} and the {@link MappedText} under it
+ * against a {@link PlainDocument} given the same edits, and that saving
+ * writes back the line breaks the file was read with.
+ */
+class PieceTableDocumentTest {
+    private static final String[] SNIPPETS = {"a", "xyz", "\n", "line\n", "éè", "€\n", "😀", " "};
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void randomEditsMatchAPlainDocument() throws Exception {
+        StringBuilder initial = new StringBuilder();
+        Random random = new Random(42);
+        // Long enough to span several of MappedText's decoding checkpoints
+        while (initial.length() < 20_000) {
+            initial.append(SNIPPETS[random.nextInt(SNIPPETS.length)]);
+        }
+        Path file = write("edits.txt", initial.toString());
+
+        PlainDocument oracle = new PlainDocument();
+        oracle.insertString(0, initial.toString(), null);
+        try (PieceTableDocument document = PieceTableDocument.open(file)) {
+            assertSameText(oracle, document);
+            UndoManager undo = new UndoManager();
+            UndoManager oracleUndo = new UndoManager();
+            undo.setLimit(-1);
+            oracleUndo.setLimit(-1);
+            document.addUndoableEditListener(undo);
+            oracle.addUndoableEditListener(oracleUndo);
+
+            for (int i = 0; i < 500; i++) {
+                if (random.nextInt(3) > 0 || oracle.getLength() == 0) {
+                    int offset = random.nextInt(oracle.getLength() + 1);
+                    String text = SNIPPETS[random.nextInt(SNIPPETS.length)];
+                    oracle.insertString(offset, text, null);
+                    document.insertString(offset, text, null);
+                } else {
+                    int offset = random.nextInt(oracle.getLength());
+                    int length = random.nextInt(Math.min(200, oracle.getLength() - offset)) + 1;
+                    oracle.remove(offset, length);
+                    document.remove(offset, length);
+                }
+                if (i % 50 == 0) {
+                    assertSameText(oracle, document);
+                }
+            }
+            assertSameText(oracle, document);
+
+            String edited = oracle.getText(0, oracle.getLength());
+            while (oracleUndo.canUndo()) {
+                assertTrue(undo.canUndo());
+                oracleUndo.undo();
+                undo.undo();
+            }
+            assertFalse(undo.canUndo());
+            assertSameText(oracle, document);
+            assertEquals(initial.toString(), document.getText(0, document.getLength()));
+
+            while (oracleUndo.canRedo()) {
+                oracleUndo.redo();
+                undo.redo();
+            }
+            assertSameText(oracle, document);
+            assertEquals(edited, document.getText(0, document.getLength()));
+
+            document.save();
+            // Encoded the same way, since removals can split a surrogate pair
+            assertArrayEquals(edited.getBytes(StandardCharsets.UTF_8), Files.readAllBytes(file));
+        }
+    }
+
+    @Test
+    void crlfLineBreaksAreWrittenBack() throws Exception {
+        Path file = write("crlf.txt", "one\r\ntwo\r\n");
+        try (PieceTableDocument document = PieceTableDocument.open(file)) {
+            assertEquals("one\ntwo\n", document.getText(0, document.getLength()));
+            assertEquals(3, document.getDefaultRootElement().getElementCount());
+            document.insertString(4, "inserted\n", null);
+            document.save();
+        }
+        assertEquals("one\r\ninserted\r\ntwo\r\n", Files.readString(file, StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void crLineBreaksAreWrittenBack() throws Exception {
+        Path file = write("cr.txt", "one\rtwo");
+        try (PieceTableDocument document = PieceTableDocument.open(file)) {
+            assertEquals("one\ntwo", document.getText(0, document.getLength()));
+            assertFalse(document.hasMixedLineBreaks());
+            document.insertString(document.getLength(), "\nthree", null);
+            document.save();
+        }
+        assertEquals("one\rtwo\rthree", Files.readString(file, StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void mixedLineBreaksAreNoted() throws Exception {
+        Path file = write("mixed.txt", "one\r\ntwo\nthree\r");
+        try (PieceTableDocument document = PieceTableDocument.open(file)) {
+            assertTrue(document.hasMixedLineBreaks());
+            assertEquals("one\ntwo\nthree\n", document.getText(0, document.getLength()));
+        }
+    }
+
+    @Test
+    void refusesToSaveMalformedUtf8() throws Exception {
+        byte[] bytes = {'o', 'k', '\n', (byte) 0xFF, 'x', (byte) 0xC3};
+        Path file = directory.resolve("malformed.txt");
+        Files.write(file, bytes);
+        try (PieceTableDocument document = PieceTableDocument.open(file)) {
+            assertTrue(document.hasMalformedInput());
+            assertEquals("ok\n�x�", document.getText(0, document.getLength()));
+            assertThrows(IOException.class, document::save);
+        }
+        assertArrayEquals(bytes, Files.readAllBytes(file));
+    }
+
+    private Path write(String name, String text) throws IOException {
+        Path file = directory.resolve(name);
+        Files.writeString(file, text, StandardCharsets.UTF_8);
+        return file;
+    }
+
+    private static void assertSameText(Document expected, Document actual) throws BadLocationException {
+        assertEquals(expected.getLength(), actual.getLength());
+        assertEquals(expected.getText(0, expected.getLength()), actual.getText(0, actual.getLength()));
+        Element expectedRoot = expected.getDefaultRootElement();
+        Element actualRoot = actual.getDefaultRootElement();
+        assertEquals(expectedRoot.getElementCount(), actualRoot.getElementCount());
+        for (int i = 0; i < expectedRoot.getElementCount(); i++) {
+            Element line = expectedRoot.getElement(i);
+            assertEquals(line.getStartOffset(), actualRoot.getElement(i).getStartOffset(), "start of line " + i);
+            assertEquals(line.getEndOffset(), actualRoot.getElement(i).getEndOffset(), "end of line " + i);
+            assertEquals(i, actualRoot.getElementIndex(line.getStartOffset()));
+        }
+    }
+}
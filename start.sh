@@ -1,4 +1,25 @@
 #!/bin/bash
-mvn clean package
-cp target/MicrOS-1.0-SNAPSHOT-jar-with-dependencies.jar ./MicrOS.jar
-java -jar MicrOS.jar
\ No newline at end of file
+# Usage: ./start.sh [--cds] [MicrOS options]
+#   --cds  Start from a class data sharing archive of the classes used at boot,
+#          running a training boot to write it whenever MicrOS.jar changes
+
+CDS=false
+if [ "$1" = "--cds" ]; then
+    CDS=true
+    shift
+fi
+
+# Only rebuild when the sources changed, so the archive stays valid between starts
+if [ ! -f MicrOS.jar ] || [ -n "$(find src pom.xml -newer MicrOS.jar -print -quit)" ]; then
+    mvn clean package
+    cp target/MicrOS-1.0-SNAPSHOT-jar-with-dependencies.jar ./MicrOS.jar
+fi
+
+if [ "$CDS" = true ]; then
+    if [ ! -f micros.jsa ] || [ MicrOS.jar -nt micros.jsa ]; then
+        java -XX:ArchiveClassesAtExit=micros.jsa -jar MicrOS.jar --cds-training
+    fi
+    java -XX:SharedArchiveFile=micros.jsa -jar MicrOS.jar "$@"
+else
+    java -jar MicrOS.jar "$@"
+fi
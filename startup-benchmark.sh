@@ -0,0 +1,24 @@
+#!/bin/bash
+# Measures startup (JVM start to first desktop paint) without class data
+# sharing, with the JDK's default archive, and with the MicrOS AppCDS archive.
+# Needs a display. Run ./start.sh --cds once first to build MicrOS.jar and micros.jsa.
+# Usage: ./startup-benchmark.sh [runs]
+
+RUNS=${1:-5}
+
+measure() {
+    for ((i = 0; i < RUNS; i++)); do
+        java "$@" -jar MicrOS.jar --exit-after-boot | sed -n 's/^Startup time: \([0-9]*\) ms.*/\1/p'
+    done | sort -n | awk '{ v[NR] = $1 } END {
+        if (NR == 0) { print "no result"; exit }
+        printf "median %d ms, min %d ms, max %d ms (%d runs)\n", v[int((NR + 1) / 2)], v[1], v[NR], NR
+    }'
+}
+
+echo "No CDS:       $(measure -Xshare:off)"
+echo "JDK CDS:      $(measure)"
+if [ -f micros.jsa ]; then
+    echo "MicrOS CDS:   $(measure -XX:SharedArchiveFile=micros.jsa)"
+else
+    echo "MicrOS CDS:   no micros.jsa, run ./start.sh --cds first"
+fi